@@ -18,6 +18,7 @@
 
 package org.killbill.billing.account.dao;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -31,12 +32,13 @@ import org.killbill.billing.util.UUIDs;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableEntityModelDao;
 
 import com.google.common.base.MoreObjects;
 
 import static org.killbill.billing.account.api.DefaultMutableAccountData.DEFAULT_BILLING_CYCLE_DAY_LOCAL;
 
-public class AccountModelDao extends EntityModelDaoBase implements EntityModelDao<Account> {
+public class AccountModelDao extends EntityModelDaoBase implements EntityModelDao<Account>, SearchableEntityModelDao {
 
     private String externalKey;
     private String email;
@@ -412,4 +414,9 @@ public class AccountModelDao extends EntityModelDaoBase implements EntityModelDa
     public TableName getHistoryTableName() {
         return TableName.ACCOUNT_HISTORY;
     }
+
+    @Override
+    public Iterable<?> getSearchableValues() {
+        return Arrays.<Object>asList(getId(), name, email, externalKey, companyName);
+    }
 }
@@ -35,13 +35,17 @@ import org.killbill.billing.events.AccountCreationInternalEvent;
 import org.killbill.billing.util.audit.ChangeType;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.config.CacheConfig;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Pagination;
-import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
+import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.KeysetPaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntityDaoBase;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.entity.dao.SearchTokens;
+import org.killbill.billing.util.entity.dao.SearchTokensBackfillService;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.clock.Clock;
@@ -49,6 +53,7 @@ import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 
 public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, AccountApiException> implements AccountDao {
@@ -57,13 +62,17 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
 
     private final PersistentBus eventBus;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final boolean searchTokensEnabled;
 
     @Inject
     public DefaultAccountDao(final IDBI dbi, final PersistentBus eventBus, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher,
-                             final InternalCallContextFactory internalCallContextFactory, final NonEntityDao nonEntityDao) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao), AccountSqlDao.class);
+                             final InternalCallContextFactory internalCallContextFactory, final NonEntityDao nonEntityDao,
+                             final CacheConfig cacheConfig, final SearchTokensBackfillService searchTokensBackfillService) {
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, cacheConfig.isSearchTokensEnabled()), AccountSqlDao.class);
         this.eventBus = eventBus;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.searchTokensEnabled = cacheConfig.isSearchTokensEnabled();
+        searchTokensBackfillService.registerSearchableTable(TableName.ACCOUNT, AccountModelDao.class);
     }
 
     @Override
@@ -106,16 +115,27 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
 
     @Override
     public Pagination<AccountModelDao> searchAccounts(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
+        final List<String> searchTokens = searchTokensEnabled ? SearchTokens.toSearchTokens(searchKey) : ImmutableList.<String>of();
         return paginationHelper.getPagination(AccountSqlDao.class,
-                                              new PaginationIteratorBuilder<AccountModelDao, Account, AccountSqlDao>() {
+                                              new KeysetPaginationIteratorBuilder<AccountModelDao, Account, AccountSqlDao>() {
                                                   @Override
                                                   public Long getCount(final AccountSqlDao accountSqlDao, final InternalTenantContext context) {
-                                                      return accountSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return accountSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchTokens, context);
                                                   }
 
                                                   @Override
                                                   public Iterator<AccountModelDao> build(final AccountSqlDao accountSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return accountSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return accountSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Long getRecordIdAtOffset(final AccountSqlDao accountSqlDao, final Long offset, final InternalTenantContext context) {
+                                                      return accountSqlDao.searchRecordIdAtOffset(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<AccountModelDao> buildAfterRecordId(final AccountSqlDao accountSqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return accountSqlDao.searchAfterRecordId(searchKey, String.format("%%%s%%", searchKey), searchTokens, lastRecordId, limit, context);
                                                   }
                                               },
                                               offset,
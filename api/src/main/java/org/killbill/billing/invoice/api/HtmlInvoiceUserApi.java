@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
+import org.killbill.billing.account.api.AccountApiException;
+import org.killbill.billing.util.callcontext.TenantContext;
+
+/**
+ * Streaming variant of InvoiceUserApi#getInvoiceAsHTML: the body is written to the response instead of being built in memory.
+ */
+public interface HtmlInvoiceUserApi {
+
+    /**
+     * @param invoiceId the invoice to render
+     * @param context   the tenant context
+     * @return the body, rendered when written (the invoice, its account and the template are looked up right away)
+     */
+    public HtmlInvoiceBody getInvoiceAsHTMLBody(UUID invoiceId, TenantContext context) throws AccountApiException, IOException, InvoiceApiException;
+
+    public interface HtmlInvoiceBody {
+
+        public void writeTo(OutputStream out) throws IOException;
+    }
+}
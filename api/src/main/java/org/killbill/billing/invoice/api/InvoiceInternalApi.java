@@ -35,6 +35,17 @@ public interface InvoiceInternalApi {
 
     public Collection<Invoice> getUnpaidInvoicesByAccountId(UUID accountId, LocalDate upToDate, InternalTenantContext context);
 
+    /**
+     * Same as getUnpaidInvoicesByAccountId, but only returns the aggregated figures. This is maintained as invoices and
+     * payments are recorded, so it doesn't require loading the invoices of the account.
+     *
+     * @param accountId account id
+     * @param upToDate  only consider invoices with a target date up to that date
+     * @param context   the tenant context
+     * @return the summary of the unpaid invoices
+     */
+    public UnpaidInvoicesSummary getUnpaidInvoicesSummary(UUID accountId, LocalDate upToDate, InternalTenantContext context);
+
     public BigDecimal getAccountBalance(UUID accountId, InternalTenantContext context);
 
     public void notifyOfPayment(UUID invoiceId, BigDecimal amountOutstanding, Currency currency, Currency processedCurrency, UUID paymentId, DateTime paymentDate, boolean success, InternalCallContext context) throws InvoiceApiException;
@@ -20,6 +20,7 @@ import java.util.UUID;
 
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.invoice.api.DryRunArguments;
 
@@ -29,4 +30,9 @@ public interface BillingInternalApi {
      * @return an ordered list of billing event for the given accounts
      */
     public BillingEventSet getBillingEventsForAccountAndUpdateAccountBCD(UUID accountId, DryRunArguments dryRunArguments, InternalCallContext context) throws CatalogApiException, AccountApiException;
+
+    /**
+     * Discard any billing events cached for the account of that context (e.g. before processing a bus event which changed them)
+     */
+    public void invalidateBillingEvents(InternalTenantContext context);
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.tag;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.tag.ControlTagType;
+import org.killbill.billing.util.tag.Tag;
+
+/**
+ * Snapshot of all the (active) tags for an account, whatever the object type, loaded with a single query.
+ * <p/>
+ * It is meant to be retrieved once and shared for the duration of a request or an invoice run, so that control tag
+ * checks (WRITTEN_OFF, AUTO_INVOICING_OFF) are in-memory lookups.
+ */
+public class AccountTags {
+
+    private final Map<UUID, List<Tag>> tagsPerObjectId = new HashMap<UUID, List<Tag>>();
+
+    public AccountTags(final Iterable<Tag> tags) {
+        for (final Tag tag : tags) {
+            if (tagsPerObjectId.get(tag.getObjectId()) == null) {
+                tagsPerObjectId.put(tag.getObjectId(), new LinkedList<Tag>());
+            }
+            tagsPerObjectId.get(tag.getObjectId()).add(tag);
+        }
+    }
+
+    public List<Tag> getTags(final UUID objectId) {
+        final List<Tag> tags = tagsPerObjectId.get(objectId);
+        return tags == null ? Collections.<Tag>emptyList() : Collections.<Tag>unmodifiableList(tags);
+    }
+
+    public boolean hasControlTag(final UUID objectId, final ObjectType objectType, final ControlTagType controlTagType) {
+        for (final Tag tag : getTags(objectId)) {
+            if (objectType.equals(tag.getObjectType()) && controlTagType.getId().equals(tag.getTagDefinitionId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isWrittenOff(final UUID invoiceId) {
+        return hasControlTag(invoiceId, ObjectType.INVOICE, ControlTagType.WRITTEN_OFF);
+    }
+
+    // objectType is either ACCOUNT or BUNDLE
+    public boolean isAutoInvoicingOff(final UUID objectId, final ObjectType objectType) {
+        return hasControlTag(objectId, objectType, ControlTagType.AUTO_INVOICING_OFF);
+    }
+}
@@ -43,6 +43,23 @@ public interface TagInternalApi {
 
     public List<Tag> getTagsForAccountType(ObjectType objectType, boolean includedDeleted, InternalTenantContext internalTenantContext);
 
+    /**
+     * Return all tags for the account in the context, whatever the object type
+     *
+     * @param includedDeleted whether to include deleted tags
+     * @param internalTenantContext account context
+     * @return all tags for that account
+     */
+    public List<Tag> getTagsForAccount(boolean includedDeleted, InternalTenantContext internalTenantContext);
+
+    /**
+     * Return a snapshot of the active tags for the account in the context, to be shared by the callers of a request
+     *
+     * @param internalTenantContext account context
+     * @return all active tags for that account, indexed by object id
+     */
+    public AccountTags getAccountTags(InternalTenantContext internalTenantContext);
+
     public void addTag(final UUID objectId, final ObjectType objectType, UUID tagDefinitionId, InternalCallContext context) throws TagApiException;
 
     public void removeTag(final UUID objectId, final ObjectType objectType, final UUID tagDefinitionId, InternalCallContext context) throws TagApiException;
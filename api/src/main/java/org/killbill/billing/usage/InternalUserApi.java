@@ -17,13 +17,37 @@
 
 package org.killbill.billing.usage;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.usage.api.SubscriptionUsageRecord;
+import org.killbill.billing.util.callcontext.CallContext;
 
 public interface InternalUserApi {
 
     public List<RawUsage> getRawUsageForAccount(final LocalDate stateDate, final LocalDate endDate, final InternalTenantContext tenantContext);
+
+    /**
+     * Retrieve the usage for an account, sorted by date. Calendar months fully contained in [startDate, endDate) in which no
+     * billing period starts are returned as a single entry per subscription and unit type, dated on the first of the month.
+     *
+     * @param startDate        start date (inclusive)
+     * @param endDate          end date (exclusive)
+     * @param periodStartDates dates on which a billing period (or a billing event) starts
+     * @param tenantContext    account context
+     * @return the usage entries, one per subscription, unit type and day (or month)
+     */
+    public List<RawUsage> getRawUsageForAccount(final LocalDate startDate, final LocalDate endDate, final Collection<LocalDate> periodStartDates, final InternalTenantContext tenantContext);
+
+    /**
+     * Record usage for multiple subscriptions at once: all valid records are written as a single batch, in a single transaction.
+     *
+     * @param records usage records
+     * @param context call context
+     * @return the records which have been rejected (empty if everything was recorded)
+     */
+    public List<RejectedUsageRecord> recordRolledUpUsage(final Iterable<SubscriptionUsageRecord> records, final CallContext context);
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.catalog;
+
+import java.util.List;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableListMultimap;
+
+// Immutable name -> entries index over one of the catalog arrays. The index remembers the array it was built from,
+// so that owners can rebuild it whenever the array is swapped (setters, JAXB unmarshalling).
+final class CatalogNameIndex<T> {
+
+    private final T[] source;
+    private final ImmutableListMultimap<String, T> entriesByName;
+
+    CatalogNameIndex(final T[] source, final Function<T, String> nameFunction) {
+        this.source = source;
+
+        final ImmutableListMultimap.Builder<String, T> builder = ImmutableListMultimap.<String, T>builder();
+        if (source != null) {
+            for (final T entry : source) {
+                final String name = entry == null ? null : nameFunction.apply(entry);
+                if (name != null) {
+                    builder.put(name, entry);
+                }
+            }
+        }
+        this.entriesByName = builder.build();
+    }
+
+    boolean isIndexOf(final T[] array) {
+        return source == array;
+    }
+
+    // Entries are returned in array order, so that callers keep the first-match semantics of a linear scan
+    List<T> get(final String name) {
+        return entriesByName.get(name);
+    }
+}
@@ -33,6 +33,8 @@ import org.killbill.xmlloader.ValidatingConfig;
 import org.killbill.xmlloader.ValidationError;
 import org.killbill.xmlloader.ValidationErrors;
 
+import com.google.common.base.Function;
+
 @XmlAccessorType(XmlAccessType.NONE)
 public class DefaultPriceList extends ValidatingConfig<StandaloneCatalog> implements PriceList {
 
@@ -45,6 +47,9 @@ public class DefaultPriceList extends ValidatingConfig<StandaloneCatalog> implem
     @XmlElement(name = "plan", required = true)
     private DefaultPlan[] plans;
 
+    // Lazily built product name -> plans lookup, rebuilt whenever the plans array is swapped
+    private volatile CatalogNameIndex<DefaultPlan> plansByProductName;
+
     public DefaultPriceList() {
     }
 
@@ -71,7 +76,11 @@ public class DefaultPriceList extends ValidatingConfig<StandaloneCatalog> implem
       */
     @Override
     public DefaultPlan findPlan(final Product product, final BillingPeriod period) {
-        for (final DefaultPlan cur : getPlans()) {
+        // Product equality implies name equality, so only the plans for that product name need to be looked at
+        final Iterable<DefaultPlan> candidates = (product == null || product.getName() == null) ?
+                                                 Arrays.asList(getPlans()) :
+                                                 getPlansByProductName().get(product.getName());
+        for (final DefaultPlan cur : candidates) {
             if (cur.getProduct().equals(product) &&
                     (cur.getRecurringBillingPeriod() == null || cur.getRecurringBillingPeriod().equals(period))) {
                 return cur;
@@ -80,6 +89,20 @@ public class DefaultPriceList extends ValidatingConfig<StandaloneCatalog> implem
         return null;
     }
 
+    private CatalogNameIndex<DefaultPlan> getPlansByProductName() {
+        CatalogNameIndex<DefaultPlan> index = plansByProductName;
+        if (index == null || !index.isIndexOf(plans)) {
+            index = new CatalogNameIndex<DefaultPlan>(plans, new Function<DefaultPlan, String>() {
+                @Override
+                public String apply(final DefaultPlan input) {
+                    return input.getProduct() == null ? null : input.getProduct().getName();
+                }
+            });
+            plansByProductName = index;
+        }
+        return index;
+    }
+
     @Override
     public ValidationErrors validate(final StandaloneCatalog catalog, final ValidationErrors errors) {
         for (final DefaultPlan cur : getPlans()) {
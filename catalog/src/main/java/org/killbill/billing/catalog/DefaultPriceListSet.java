@@ -34,6 +34,8 @@ import org.killbill.xmlloader.ValidatingConfig;
 import org.killbill.xmlloader.ValidationError;
 import org.killbill.xmlloader.ValidationErrors;
 
+import com.google.common.base.Function;
+
 @XmlAccessorType(XmlAccessType.NONE)
 public class DefaultPriceListSet extends ValidatingConfig<StandaloneCatalog> implements PriceListSet {
     @XmlElement(required = true, name = "defaultPriceList")
@@ -42,6 +44,9 @@ public class DefaultPriceListSet extends ValidatingConfig<StandaloneCatalog> imp
     @XmlElement(required = false, name = "childPriceList")
     private DefaultPriceList[] childPriceLists;
 
+    // Lazily built name lookup, rebuilt whenever the child price lists array is swapped
+    private volatile CatalogNameIndex<DefaultPriceList> childPriceListsByName;
+
     public DefaultPriceListSet() {
         if (childPriceLists == null) {
             childPriceLists = new DefaultPriceList[0];
@@ -74,6 +79,12 @@ public class DefaultPriceListSet extends ValidatingConfig<StandaloneCatalog> imp
         if (defaultPricelist.getName().equals(priceListName)) {
             return defaultPricelist;
         }
+        for (final DefaultPriceList pl : getChildPriceListsByName().get(priceListName)) {
+            if (priceListName.equals(pl.getName())) {
+                return pl;
+            }
+        }
+        // Entries renamed after the index was built
         for (final DefaultPriceList pl : childPriceLists) {
             if (pl.getName().equals(priceListName)) {
                 return pl;
@@ -82,6 +93,20 @@ public class DefaultPriceListSet extends ValidatingConfig<StandaloneCatalog> imp
         throw new CatalogApiException(ErrorCode.CAT_PRICE_LIST_NOT_FOUND, priceListName);
     }
 
+    private CatalogNameIndex<DefaultPriceList> getChildPriceListsByName() {
+        CatalogNameIndex<DefaultPriceList> index = childPriceListsByName;
+        if (index == null || !index.isIndexOf(childPriceLists)) {
+            index = new CatalogNameIndex<DefaultPriceList>(childPriceLists, new Function<DefaultPriceList, String>() {
+                @Override
+                public String apply(final DefaultPriceList input) {
+                    return input.getName();
+                }
+            });
+            childPriceListsByName = index;
+        }
+        return index;
+    }
+
     @Override
     public ValidationErrors validate(final StandaloneCatalog catalog, final ValidationErrors errors) {
         defaultPricelist.validate(catalog, errors);
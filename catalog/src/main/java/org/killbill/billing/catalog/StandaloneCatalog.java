@@ -53,6 +53,8 @@ import org.killbill.billing.catalog.rules.DefaultPlanRules;
 import org.killbill.xmlloader.ValidatingConfig;
 import org.killbill.xmlloader.ValidationErrors;
 
+import com.google.common.base.Function;
+
 @XmlRootElement(name = "catalog")
 @XmlAccessorType(XmlAccessType.NONE)
 public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> implements StaticCatalog {
@@ -90,6 +92,10 @@ public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> imple
 
     private URI catalogURI;
 
+    // Lazily built name lookups (see CatalogNameIndex), rebuilt whenever the plans or products arrays are swapped
+    private volatile CatalogNameIndex<DefaultPlan> plansByName;
+    private volatile CatalogNameIndex<DefaultProduct> productsByName;
+
     public StandaloneCatalog() {
     }
 
@@ -182,6 +188,12 @@ public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> imple
         if (name == null || plans == null) {
             throw new CatalogApiException(ErrorCode.CAT_NO_SUCH_PLAN, name);
         }
+        for (final DefaultPlan p : getPlansByName().get(name)) {
+            if (name.equals(p.getName())) {
+                return p;
+            }
+        }
+        // Entries renamed after the index was built
         for (final DefaultPlan p : plans) {
             if (p.getName().equals(name)) {
                 return p;
@@ -195,6 +207,12 @@ public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> imple
         if (name == null || products == null) {
             throw new CatalogApiException(ErrorCode.CAT_NO_SUCH_PRODUCT, name);
         }
+        for (final DefaultProduct p : getProductsByName().get(name)) {
+            if (name.equals(p.getName())) {
+                return p;
+            }
+        }
+        // Entries renamed after the index was built
         for (final DefaultProduct p : products) {
             if (p.getName().equals(name)) {
                 return p;
@@ -203,6 +221,34 @@ public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> imple
         throw new CatalogApiException(ErrorCode.CAT_NO_SUCH_PRODUCT, name);
     }
 
+    private CatalogNameIndex<DefaultPlan> getPlansByName() {
+        CatalogNameIndex<DefaultPlan> index = plansByName;
+        if (index == null || !index.isIndexOf(plans)) {
+            index = new CatalogNameIndex<DefaultPlan>(plans, new Function<DefaultPlan, String>() {
+                @Override
+                public String apply(final DefaultPlan input) {
+                    return input.getName();
+                }
+            });
+            plansByName = index;
+        }
+        return index;
+    }
+
+    private CatalogNameIndex<DefaultProduct> getProductsByName() {
+        CatalogNameIndex<DefaultProduct> index = productsByName;
+        if (index == null || !index.isIndexOf(products)) {
+            index = new CatalogNameIndex<DefaultProduct>(products, new Function<DefaultProduct, String>() {
+                @Override
+                public String apply(final DefaultProduct input) {
+                    return input.getName();
+                }
+            });
+            productsByName = index;
+        }
+        return index;
+    }
+
     @Override
     public PlanPhase findCurrentPhase(final String name) throws CatalogApiException {
         if (name == null || plans == null) {
@@ -281,7 +327,9 @@ public class StandaloneCatalog extends ValidatingConfig<StandaloneCatalog> imple
         for (final DefaultPlan p : plans) {
             p.initialize(catalog, sourceURI);
         }
-
+        // Build the lookups once the catalog is fully loaded rather than on the first request
+        getPlansByName();
+        getProductsByName();
     }
 
     //////////////////////////////////////////////////////////////////////////////
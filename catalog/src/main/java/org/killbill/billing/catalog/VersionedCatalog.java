@@ -60,10 +60,16 @@ import org.killbill.clock.Clock;
 import org.killbill.xmlloader.ValidatingConfig;
 import org.killbill.xmlloader.ValidationErrors;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 @XmlRootElement(name = "catalog")
 @XmlAccessorType(XmlAccessType.NONE)
 public class VersionedCatalog extends ValidatingConfig<StandaloneCatalogWithPriceOverride> implements Catalog, StaticCatalog {
 
+    // Per memo below: one entry per plan (or phase) name and pair of versions actually requested
+    private static final int MAX_RESOLUTIONS = 10000;
+
     private final Clock clock;
     private String catalogName;
     private BillingMode recurringBillingMode;
@@ -71,6 +77,15 @@ public class VersionedCatalog extends ValidatingConfig<StandaloneCatalogWithPric
     @XmlElement(name = "catalogVersion", required = true)
     private List<StandaloneCatalogWithPriceOverride> versions;
 
+    // Snapshot of the version effective dates (millis) used to binary search versionForDate, see getEffectiveDates
+    private volatile long[] effectiveDates;
+
+    // Memoized findPlan / findPhase results for a given name and pair of versions, see ResolutionKey.
+    // Shared by all the callers of this catalog (subscription transitions, billing events, etc.): the size is capped, as catalogs
+    // with many plans and versions would otherwise keep an entry per combination for the lifetime of the catalog
+    private final Cache<ResolutionKey, Plan> resolvedPlans = CacheBuilder.newBuilder().maximumSize(MAX_RESOLUTIONS).build();
+    private final Cache<ResolutionKey, PlanPhase> resolvedPhases = CacheBuilder.newBuilder().maximumSize(MAX_RESOLUTIONS).build();
+
     // Required for JAXB deserialization
     public VersionedCatalog() {
         this.clock = null;
@@ -111,6 +126,27 @@ public class VersionedCatalog extends ValidatingConfig<StandaloneCatalogWithPric
     }
 
     private int indexOfVersionForDate(final Date date) throws CatalogApiException {
+        final long[] dates = getEffectiveDates();
+        if (dates != null) {
+            // Last version effective on or before that date
+            int low = 0;
+            int high = dates.length - 1;
+            int result = -1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (dates[mid] <= date.getTime()) {
+                    result = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (result >= 0) {
+                return result;
+            }
+            throw new CatalogApiException(ErrorCode.CAT_NO_CATALOG_FOR_GIVEN_DATE, date.toString());
+        }
+
         for (int i = versions.size() - 1; i >= 0; i--) {
             final StandaloneCatalogWithPriceOverride c = versions.get(i);
             if (c.getEffectiveDate().getTime() <= date.getTime()) {
@@ -120,6 +156,109 @@ public class VersionedCatalog extends ValidatingConfig<StandaloneCatalogWithPric
         throw new CatalogApiException(ErrorCode.CAT_NO_CATALOG_FOR_GIVEN_DATE, date.toString());
     }
 
+    // Returns null if the versions aren't sorted by effective date (e.g. mapped from a plugin), in which case we keep the linear scan
+    private long[] getEffectiveDates() {
+        long[] dates = effectiveDates;
+        if (dates == null || dates.length != versions.size()) {
+            dates = new long[versions.size()];
+            for (int i = 0; i < dates.length; i++) {
+                dates[i] = versions.get(i).getEffectiveDate().getTime();
+                if (i > 0 && dates[i] < dates[i - 1]) {
+                    return null;
+                }
+            }
+            effectiveDates = dates;
+            clearResolutions();
+        }
+        return dates;
+    }
+
+    private void clearResolutions() {
+        resolvedPlans.invalidateAll();
+        resolvedPhases.invalidateAll();
+    }
+
+    // Returns null if the resolution can't be memoized (versions not sorted by effective date)
+    private ResolutionKey getResolutionKey(final String name, final DateTime requestedDate, final DateTime subscriptionStartDate) throws CatalogApiException {
+        final long[] dates = getEffectiveDates();
+        if (dates == null) {
+            return null;
+        }
+        return new ResolutionKey(name, indexOfVersionForDate(requestedDate.toDate()), lastIndexOnOrBefore(dates, subscriptionStartDate.getMillis()));
+    }
+
+    private static int lastIndexOnOrBefore(final long[] dates, final long time) {
+        int low = 0;
+        int high = dates.length - 1;
+        int result = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (dates[mid] <= time) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    // The plan resolution only depends on the versions selected by the requested date and by the subscription start date, unless a version
+    // effective after the subscription started carries an effectiveDateForExistingSubscriptions for that plan
+    private boolean isResolutionMemoizable(final ResolutionKey key) throws CatalogApiException {
+        for (int i = key.subscriptionStartVersion + 1; i <= key.requestedVersion; i++) {
+            final Plan plan;
+            try {
+                plan = versions.get(i).findCurrentPlan(key.name);
+            } catch (final CatalogApiException e) {
+                if (e.getCode() != ErrorCode.CAT_NO_SUCH_PLAN.getCode()) {
+                    throw e;
+                }
+                continue;
+            }
+            if (plan.getEffectiveDateForExistingSubscriptons() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class ResolutionKey {
+
+        private final String name;
+        private final int requestedVersion;
+        // -1 if the subscription started before the first version
+        private final int subscriptionStartVersion;
+
+        private ResolutionKey(final String name, final int requestedVersion, final int subscriptionStartVersion) {
+            this.name = name;
+            this.requestedVersion = requestedVersion;
+            this.subscriptionStartVersion = subscriptionStartVersion;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final ResolutionKey that = (ResolutionKey) o;
+            return requestedVersion == that.requestedVersion &&
+                   subscriptionStartVersion == that.subscriptionStartVersion &&
+                   name.equals(that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = name.hashCode();
+            result = 31 * result + requestedVersion;
+            result = 31 * result + subscriptionStartVersion;
+            return result;
+        }
+    }
+
     private class PlanRequestWrapper {
 
         String name;
@@ -221,6 +360,8 @@ public class VersionedCatalog extends ValidatingConfig<StandaloneCatalogWithPric
                 return c1.getEffectiveDate().compareTo(c2.getEffectiveDate());
             }
         });
+        effectiveDates = null;
+        clearResolutions();
     }
 
     public Iterator<StandaloneCatalogWithPriceOverride> iterator() {
@@ -284,7 +425,21 @@ public class VersionedCatalog extends ValidatingConfig<StandaloneCatalogWithPric
                          final DateTime requestedDate,
                          final DateTime subscriptionStartDate)
             throws CatalogApiException {
-        return findPlan(new PlanRequestWrapper(name), requestedDate, subscriptionStartDate);
+        final ResolutionKey key = getResolutionKey(name, requestedDate, subscriptionStartDate);
+        if (key == null) {
+            return findPlan(new PlanRequestWrapper(name), requestedDate, subscriptionStartDate);
+        }
+
+        final Plan resolvedPlan = resolvedPlans.getIfPresent(key);
+        if (resolvedPlan != null) {
+            return resolvedPlan;
+        }
+
+        final Plan plan = findPlan(new PlanRequestWrapper(name), requestedDate, subscriptionStartDate);
+        if (isResolutionMemoizable(key)) {
+            resolvedPlans.put(key, plan);
+        }
+        return plan;
     }
 
     @Override
@@ -314,9 +469,22 @@ public class VersionedCatalog extends ValidatingConfig<StandaloneCatalogWithPric
                                final DateTime requestedDate,
                                final DateTime subscriptionStartDate)
             throws CatalogApiException {
+        final ResolutionKey key = getResolutionKey(phaseName, requestedDate, subscriptionStartDate);
+        if (key != null) {
+            final PlanPhase resolvedPhase = resolvedPhases.getIfPresent(key);
+            if (resolvedPhase != null) {
+                return resolvedPhase;
+            }
+        }
+
         final String planName = DefaultPlanPhase.planName(phaseName);
         final Plan plan = findPlan(planName, requestedDate, subscriptionStartDate);
-        return plan.findPhase(phaseName);
+        final PlanPhase phase = plan.findPhase(phaseName);
+        // The phase is memoizable if the plan was
+        if (key != null && resolvedPlans.getIfPresent(new ResolutionKey(planName, key.requestedVersion, key.subscriptionStartVersion)) != null) {
+            resolvedPhases.put(key, phase);
+        }
+        return phase;
     }
 
     //
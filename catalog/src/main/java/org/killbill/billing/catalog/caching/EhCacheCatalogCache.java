@@ -17,18 +17,27 @@
 
 package org.killbill.billing.catalog.caching;
 
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
+import org.joda.time.DateTime;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.StandaloneCatalogWithPriceOverride;
 import org.killbill.billing.catalog.VersionedCatalog;
+import org.killbill.billing.catalog.api.BillingMode;
 import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.catalog.io.VersionedCatalogLoader;
 import org.killbill.billing.catalog.plugin.VersionedCatalogMapper;
 import org.killbill.billing.catalog.plugin.api.CatalogPluginApi;
+import org.killbill.billing.catalog.plugin.api.StandalonePluginCatalog;
 import org.killbill.billing.catalog.plugin.api.VersionedPluginCatalog;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.payment.api.PluginProperty;
@@ -39,10 +48,13 @@ import org.killbill.billing.util.cache.CacheLoaderArgument;
 import org.killbill.billing.util.cache.TenantCatalogCacheLoader.LoaderCallback;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.CatalogConfig;
+import org.killbill.clock.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 
 public class EhCacheCatalogCache implements CatalogCache {
@@ -55,6 +67,10 @@ public class EhCacheCatalogCache implements CatalogCache {
     private final OSGIServiceRegistration<CatalogPluginApi> pluginRegistry;
     private final VersionedCatalogMapper versionedCatalogMapper;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final CatalogConfig catalogConfig;
+    private final Clock clock;
+    // Catalogs returned by the plugins, already mapped, per tenant record id
+    private final Map<Long, PluginCatalog> pluginCatalogs;
 
     private VersionedCatalog defaultCatalog;
 
@@ -63,12 +79,17 @@ public class EhCacheCatalogCache implements CatalogCache {
                                final VersionedCatalogMapper versionedCatalogMapper,
                                final CacheControllerDispatcher cacheControllerDispatcher,
                                final VersionedCatalogLoader loader,
-                               final InternalCallContextFactory internalCallContextFactory) {
+                               final InternalCallContextFactory internalCallContextFactory,
+                               final CatalogConfig catalogConfig,
+                               final Clock clock) {
         this.pluginRegistry = pluginRegistry;
         this.versionedCatalogMapper = versionedCatalogMapper;
         this.cacheController = cacheControllerDispatcher.getCacheController(CacheType.TENANT_CATALOG);
         this.loader = loader;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.catalogConfig = catalogConfig;
+        this.clock = clock;
+        this.pluginCatalogs = new ConcurrentHashMap<Long, PluginCatalog>();
         this.cacheLoaderArgument = initializeCacheLoaderArgument(this);
         setDefaultCatalog();
     }
@@ -82,8 +103,6 @@ public class EhCacheCatalogCache implements CatalogCache {
 
     @Override
     public VersionedCatalog getCatalog(final InternalTenantContext tenantContext) throws CatalogApiException {
-
-        // STEPH TODO what are the possibilities for caching here ?
         final VersionedCatalog pluginVersionedCatalog = getCatalogFromPlugins(tenantContext);
         if (pluginVersionedCatalog != null) {
             return pluginVersionedCatalog;
@@ -110,25 +129,66 @@ public class EhCacheCatalogCache implements CatalogCache {
 
     @Override
     public void clearCatalog(final InternalTenantContext tenantContext) {
+        // Catalog changes are broadcast to all nodes (see CatalogCacheInvalidationCallback): this also forces plugin catalogs to be mapped again
+        pluginCatalogs.remove(tenantContext.getTenantRecordId());
         if (tenantContext.getTenantRecordId() != InternalCallContextFactory.INTERNAL_TENANT_RECORD_ID) {
             cacheController.remove(tenantContext.getTenantRecordId());
         }
     }
 
     private VersionedCatalog getCatalogFromPlugins(final InternalTenantContext internalTenantContext) {
+        // Within the TTL, don't even ask the plugin (the catalog is usually fetched from a remote system)
+        final PluginCatalog cachedPluginCatalog = pluginCatalogs.get(internalTenantContext.getTenantRecordId());
+        if (cachedPluginCatalog != null && !cachedPluginCatalog.isExpired(clock.getUTCNow())) {
+            return cachedPluginCatalog.getVersionedCatalog();
+        }
+
         final TenantContext tenantContext = internalCallContextFactory.createTenantContext(internalTenantContext);
         for (final String service : pluginRegistry.getAllServices()) {
             final CatalogPluginApi plugin = pluginRegistry.getServiceForName(service);
             final VersionedPluginCatalog pluginCatalog = plugin.getVersionedPluginCatalog(ImmutableList.<PluginProperty>of(), tenantContext);
             // First plugin that gets something (for that tenant) returns it
             if (pluginCatalog != null) {
-                logger.info("Returning catalog from plugin {} on tenant {} ", service, internalTenantContext.getTenantRecordId());
-                return versionedCatalogMapper.toVersionedCatalog(pluginCatalog, internalTenantContext);
+                return getMappedPluginCatalog(service, pluginCatalog, internalTenantContext);
             }
         }
         return null;
     }
 
+    //
+    // Mapping a plugin catalog is expensive, so the result is kept per tenant and the plugin is only asked again once the TTL
+    // (org.killbill.catalog.plugin.cache.ttl) has expired. The plugin API doesn't expose a version token: the catalog versions (effective dates)
+    // returned by the plugin act as one, only new versions are mapped. Versions are immutable once they have been uploaded, changing an
+    // existing version requires a catalog invalidation for that tenant (see clearCatalog).
+    //
+    private VersionedCatalog getMappedPluginCatalog(final String service, final VersionedPluginCatalog pluginCatalog, final InternalTenantContext internalTenantContext) {
+        final Long tenantRecordId = internalTenantContext.getTenantRecordId();
+        final List<Date> effectiveDates = getEffectiveDates(pluginCatalog);
+
+        final PluginCatalog cachedPluginCatalog = pluginCatalogs.get(tenantRecordId);
+        final DateTime expirationDate = clock.getUTCNow().plus(catalogConfig.getPluginCatalogCacheTtl().getMillis());
+        if (cachedPluginCatalog != null && cachedPluginCatalog.isUpToDate(service, pluginCatalog, effectiveDates)) {
+            cachedPluginCatalog.setExpirationDate(expirationDate);
+            return cachedPluginCatalog.getVersionedCatalog();
+        }
+
+        logger.info("Mapping catalog from plugin {} on tenant {} ", service, tenantRecordId);
+        final Map<Date, StandaloneCatalogWithPriceOverride> mappedVersions = cachedPluginCatalog != null && cachedPluginCatalog.isSameCatalog(service, pluginCatalog) ?
+                                                                            cachedPluginCatalog.getMappedVersions() :
+                                                                            new HashMap<Date, StandaloneCatalogWithPriceOverride>();
+        final VersionedCatalog versionedCatalog = versionedCatalogMapper.toVersionedCatalog(pluginCatalog, mappedVersions, internalTenantContext);
+        pluginCatalogs.put(tenantRecordId, new PluginCatalog(service, pluginCatalog.getCatalogName(), pluginCatalog.getRecurringBillingMode(), effectiveDates, versionedCatalog, expirationDate));
+        return versionedCatalog;
+    }
+
+    private List<Date> getEffectiveDates(final VersionedPluginCatalog pluginCatalog) {
+        final List<Date> effectiveDates = new LinkedList<Date>();
+        for (final StandalonePluginCatalog standalonePluginCatalog : pluginCatalog.getStandalonePluginCatalogs()) {
+            effectiveDates.add(standalonePluginCatalog.getEffectiveDate().toDate());
+        }
+        return effectiveDates;
+    }
+
     //
     // Build the LoaderCallback that is required to build the catalog from the xml from a module that knows
     // nothing about catalog.
@@ -148,6 +208,56 @@ public class EhCacheCatalogCache implements CatalogCache {
         return new CacheLoaderArgument(irrelevant, args, notUsed);
     }
 
+    private static final class PluginCatalog {
+
+        private final String service;
+        private final String catalogName;
+        private final BillingMode recurringBillingMode;
+        private final List<Date> effectiveDates;
+        private final VersionedCatalog versionedCatalog;
+        private volatile DateTime expirationDate;
+
+        private PluginCatalog(final String service, final String catalogName, final BillingMode recurringBillingMode, final List<Date> effectiveDates,
+                              final VersionedCatalog versionedCatalog, final DateTime expirationDate) {
+            this.service = service;
+            this.catalogName = catalogName;
+            this.recurringBillingMode = recurringBillingMode;
+            this.effectiveDates = effectiveDates;
+            this.versionedCatalog = versionedCatalog;
+            this.expirationDate = expirationDate;
+        }
+
+        public boolean isExpired(final DateTime now) {
+            return !now.isBefore(expirationDate);
+        }
+
+        public void setExpirationDate(final DateTime expirationDate) {
+            this.expirationDate = expirationDate;
+        }
+
+        public boolean isSameCatalog(final String otherService, final VersionedPluginCatalog pluginCatalog) {
+            return service.equals(otherService) &&
+                   Objects.equal(catalogName, pluginCatalog.getCatalogName()) &&
+                   Objects.equal(recurringBillingMode, pluginCatalog.getRecurringBillingMode());
+        }
+
+        public boolean isUpToDate(final String otherService, final VersionedPluginCatalog pluginCatalog, final List<Date> otherEffectiveDates) {
+            return isSameCatalog(otherService, pluginCatalog) && effectiveDates.equals(otherEffectiveDates);
+        }
+
+        public Map<Date, StandaloneCatalogWithPriceOverride> getMappedVersions() {
+            final Map<Date, StandaloneCatalogWithPriceOverride> mappedVersions = new HashMap<Date, StandaloneCatalogWithPriceOverride>();
+            for (final StandaloneCatalogWithPriceOverride version : versionedCatalog.getVersions()) {
+                mappedVersions.put(version.getEffectiveDate(), version);
+            }
+            return mappedVersions;
+        }
+
+        public VersionedCatalog getVersionedCatalog() {
+            return versionedCatalog;
+        }
+    }
+
     @VisibleForTesting
     void setDefaultCatalog() {
         try {
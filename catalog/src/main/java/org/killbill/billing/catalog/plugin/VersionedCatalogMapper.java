@@ -18,7 +18,9 @@
 package org.killbill.billing.catalog.plugin;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -35,6 +37,7 @@ import org.killbill.clock.Clock;
 
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
 public class VersionedCatalogMapper {
@@ -52,15 +55,23 @@ public class VersionedCatalogMapper {
     }
 
     public VersionedCatalog toVersionedCatalog(final VersionedPluginCatalog pluginCatalog, final InternalTenantContext internalTenantContext) {
-        final VersionedCatalog result = new VersionedCatalog(clock, pluginCatalog.getCatalogName(), pluginCatalog.getRecurringBillingMode(), toStandaloneCatalogWithPriceOverrideList(pluginCatalog, internalTenantContext), internalTenantContext);
+        return toVersionedCatalog(pluginCatalog, ImmutableMap.<Date, StandaloneCatalogWithPriceOverride>of(), internalTenantContext);
+    }
+
+    /**
+     * @param mappedVersions versions previously mapped for that catalog, keyed by effective date: these are re-used as is
+     */
+    public VersionedCatalog toVersionedCatalog(final VersionedPluginCatalog pluginCatalog, final Map<Date, StandaloneCatalogWithPriceOverride> mappedVersions, final InternalTenantContext internalTenantContext) {
+        final VersionedCatalog result = new VersionedCatalog(clock, pluginCatalog.getCatalogName(), pluginCatalog.getRecurringBillingMode(), toStandaloneCatalogWithPriceOverrideList(pluginCatalog, mappedVersions, internalTenantContext), internalTenantContext);
         return result;
     }
 
-    private List<StandaloneCatalogWithPriceOverride> toStandaloneCatalogWithPriceOverrideList(final VersionedPluginCatalog pluginCatalog, final InternalTenantContext internalTenantContext) {
+    private List<StandaloneCatalogWithPriceOverride> toStandaloneCatalogWithPriceOverrideList(final VersionedPluginCatalog pluginCatalog, final Map<Date, StandaloneCatalogWithPriceOverride> mappedVersions, final InternalTenantContext internalTenantContext) {
         return ImmutableList.copyOf(Iterables.transform(pluginCatalog.getStandalonePluginCatalogs(), new Function<StandalonePluginCatalog, StandaloneCatalogWithPriceOverride>() {
             @Override
             public StandaloneCatalogWithPriceOverride apply(final StandalonePluginCatalog input) {
-                return toStandaloneCatalogWithPriceOverride(pluginCatalog, input, internalTenantContext);
+                final StandaloneCatalogWithPriceOverride mappedVersion = mappedVersions.get(input.getEffectiveDate().toDate());
+                return mappedVersion != null ? mappedVersion : toStandaloneCatalogWithPriceOverride(pluginCatalog, input, internalTenantContext);
             }
         }));
     }
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.catalog;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.catalog.api.BillingMode;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.PriceListSet;
+import org.killbill.billing.catalog.api.ProductCategory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCatalogLookups extends CatalogTestSuiteNoDB {
+
+    // Sizes used by the timing test, meant to look like a large tenant catalog
+    private static final int NB_PRODUCTS = 500;
+    private static final int NB_PLANS_PER_PRODUCT = 6;
+    private static final int NB_VERSIONS = 48;
+    private static final int NB_LOOKUPS = 100000;
+
+    @Test(groups = "fast")
+    public void testLookupsFollowArrayUpdates() throws CatalogApiException {
+        final MockCatalog catalog = new MockCatalog();
+        final DefaultPlan[] plans = catalog.getCurrentPlans();
+        Assert.assertEquals(catalog.findCurrentPlan(plans[1].getName()), plans[1]);
+
+        // Swap the plans: the index must be rebuilt
+        final DefaultPlan newPlan = new MockPlan("NewPlan");
+        catalog.setPlans(new DefaultPlan[]{newPlan});
+        Assert.assertEquals(catalog.findCurrentPlan("NewPlan"), newPlan);
+        try {
+            catalog.findCurrentPlan(plans[1].getName());
+            Assert.fail();
+        } catch (final CatalogApiException e) {
+            Assert.assertEquals(e.getCode(), ErrorCode.CAT_NO_SUCH_PLAN.getCode());
+        }
+
+        // Rename after the index was built
+        newPlan.setName("RenamedPlan");
+        Assert.assertEquals(catalog.findCurrentPlan("RenamedPlan"), newPlan);
+    }
+
+    @Test(groups = "fast")
+    public void testFirstMatchWins() throws CatalogApiException {
+        final DefaultProduct product = new MockProduct("Duplicate", ProductCategory.BASE, "MockCatalog");
+        final DefaultProduct otherProduct = new MockProduct("Duplicate", ProductCategory.ADD_ON, "MockCatalog");
+        final DefaultPlan plan = new MockPlan("DuplicatePlan");
+        final DefaultPlan otherPlan = new MockPlan("DuplicatePlan");
+
+        final StandaloneCatalog catalog = new MockCatalog().setProducts(new DefaultProduct[]{product, otherProduct})
+                                                            .setPlans(new DefaultPlan[]{plan, otherPlan});
+        Assert.assertSame(catalog.findCurrentProduct("Duplicate"), product);
+        Assert.assertSame(catalog.findCurrentPlan("DuplicatePlan"), plan);
+    }
+
+    @Test(groups = "fast")
+    public void testPriceListFindPlan() throws CatalogApiException {
+        final DefaultProduct product = new MockProduct("Product", ProductCategory.BASE, "MockCatalog");
+        final DefaultPlan monthly = createPlan("Product-monthly", product, BillingPeriod.MONTHLY);
+        final DefaultPlan annual = createPlan("Product-annual", product, BillingPeriod.ANNUAL);
+        final DefaultPriceList priceList = new DefaultPriceList(new DefaultPlan[]{monthly, annual}, "PriceList");
+
+        Assert.assertSame(priceList.findPlan(product, BillingPeriod.MONTHLY), monthly);
+        Assert.assertSame(priceList.findPlan(product, BillingPeriod.ANNUAL), annual);
+        Assert.assertNull(priceList.findPlan(product, BillingPeriod.QUARTERLY));
+        // Same name, but a different product
+        Assert.assertNull(priceList.findPlan(new MockProduct("Product", ProductCategory.ADD_ON, "MockCatalog"), BillingPeriod.MONTHLY));
+        Assert.assertNull(priceList.findPlan(null, BillingPeriod.MONTHLY));
+    }
+
+    @Test(groups = "fast")
+    public void testVersionForDate() throws CatalogApiException {
+        final VersionedCatalog versionedCatalog = createVersionedCatalog(new MockCatalog(), 3);
+        final DateTime firstEffectiveDate = new DateTime(versionedCatalog.getVersions().get(0).getEffectiveDate());
+
+        try {
+            versionedCatalog.getStandaloneCatalogEffectiveDate(firstEffectiveDate.minusMillis(1));
+            Assert.fail();
+        } catch (final CatalogApiException e) {
+            Assert.assertEquals(e.getCode(), ErrorCode.CAT_NO_CATALOG_FOR_GIVEN_DATE.getCode());
+        }
+        for (int i = 0; i < 3; i++) {
+            final DateTime effectiveDate = firstEffectiveDate.plusMonths(i);
+            Assert.assertEquals(versionedCatalog.getStandaloneCatalogEffectiveDate(effectiveDate), effectiveDate.toDate());
+            Assert.assertEquals(versionedCatalog.getStandaloneCatalogEffectiveDate(effectiveDate.plusDays(1)), effectiveDate.toDate());
+        }
+
+        // Versions added later are picked up
+        final DateTime newEffectiveDate = firstEffectiveDate.plusYears(1);
+        versionedCatalog.add(new StandaloneCatalogWithPriceOverride(new MockCatalog().setEffectiveDate(newEffectiveDate.toDate())
+                                                                                     .setCatalogName(versionedCatalog.getCatalogName())
+                                                                                     .setRecurringBillingMode(versionedCatalog.getRecurringBillingMode()), null, 0L, null));
+        Assert.assertEquals(versionedCatalog.getStandaloneCatalogEffectiveDate(newEffectiveDate.plusDays(1)), newEffectiveDate.toDate());
+    }
+
+    @Test(groups = "fast")
+    public void testMemoizedPlanAndPhaseResolution() throws CatalogApiException {
+        final DefaultProduct product = new MockProduct("Product", ProductCategory.BASE, "MockCatalog");
+        final DefaultPlan firstVersionPlan = createPlan("Product-monthly", product, BillingPeriod.MONTHLY);
+        final DefaultPlan secondVersionPlan = createPlan("Product-monthly", product, BillingPeriod.MONTHLY);
+        final VersionedCatalog versionedCatalog = new VersionedCatalog(clock);
+        final DateTime firstEffectiveDate = new DateTime("2015-01-01T00:00:00+00:00");
+        final DateTime secondEffectiveDate = firstEffectiveDate.plusMonths(1);
+        versionedCatalog.add(createVersion(firstEffectiveDate, product, firstVersionPlan));
+        versionedCatalog.add(createVersion(secondEffectiveDate, product, secondVersionPlan));
+
+        final String phaseName = firstVersionPlan.getFinalPhase().getName();
+        for (int i = 0; i < 2; i++) {
+            // Existing subscriptions stay on the first version
+            Assert.assertSame(versionedCatalog.findPlan("Product-monthly", secondEffectiveDate.plusDays(1), firstEffectiveDate), firstVersionPlan);
+            Assert.assertSame(versionedCatalog.findPhase(phaseName, secondEffectiveDate.plusDays(1), firstEffectiveDate), firstVersionPlan.getFinalPhase());
+            // New subscriptions get the second one
+            Assert.assertSame(versionedCatalog.findPlan("Product-monthly", secondEffectiveDate.plusDays(1), secondEffectiveDate), secondVersionPlan);
+            Assert.assertSame(versionedCatalog.findPhase(phaseName, secondEffectiveDate.plusDays(1), secondEffectiveDate), secondVersionPlan.getFinalPhase());
+        }
+
+        // With an effective date for existing subscriptions, the requested date matters within the same version
+        final DateTime existingSubscriptionsDate = secondEffectiveDate.plusDays(10);
+        secondVersionPlan.setEffectiveDateForExistingSubscriptons(existingSubscriptionsDate.toDate());
+        versionedCatalog.add(createVersion(secondEffectiveDate.plusYears(1), product, secondVersionPlan));
+        for (int i = 0; i < 2; i++) {
+            Assert.assertSame(versionedCatalog.findPlan("Product-monthly", existingSubscriptionsDate.minusDays(1), firstEffectiveDate), firstVersionPlan);
+            Assert.assertSame(versionedCatalog.findPlan("Product-monthly", existingSubscriptionsDate.plusDays(1), firstEffectiveDate), secondVersionPlan);
+            Assert.assertSame(versionedCatalog.findPhase(phaseName, existingSubscriptionsDate.minusDays(1), firstEffectiveDate), firstVersionPlan.getFinalPhase());
+            Assert.assertSame(versionedCatalog.findPhase(phaseName, existingSubscriptionsDate.plusDays(1), firstEffectiveDate), secondVersionPlan.getFinalPhase());
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testResolutionIsMemoizedUntilVersionIsAdded() throws CatalogApiException {
+        final DefaultProduct product = new MockProduct("Product", ProductCategory.BASE, "MockCatalog");
+        final DefaultPlan firstVersionPlan = createPlan("Product-monthly", product, BillingPeriod.MONTHLY);
+        final DefaultPlan secondVersionPlan = createPlan("Product-monthly", product, BillingPeriod.MONTHLY);
+        final VersionedCatalog versionedCatalog = new VersionedCatalog(clock);
+        final DateTime firstEffectiveDate = new DateTime("2015-01-01T00:00:00+00:00");
+        final DateTime secondEffectiveDate = firstEffectiveDate.plusMonths(1);
+        final StandaloneCatalogWithPriceOverride firstVersion = createVersion(firstEffectiveDate, product, firstVersionPlan);
+        versionedCatalog.add(firstVersion);
+        versionedCatalog.add(createVersion(secondEffectiveDate, product, secondVersionPlan));
+
+        final String phaseName = firstVersionPlan.getFinalPhase().getName();
+        Assert.assertSame(versionedCatalog.findPlan("Product-monthly", secondEffectiveDate.plusDays(1), firstEffectiveDate), firstVersionPlan);
+        Assert.assertSame(versionedCatalog.findPhase(phaseName, secondEffectiveDate.plusDays(1), firstEffectiveDate), firstVersionPlan.getFinalPhase());
+
+        // Modify the first version behind the back of the versioned catalog: requests resolving to the same pair of versions
+        // (whatever the exact dates) keep getting the memoized plan and phase
+        final DefaultPlan replacementPlan = createPlan("Product-monthly", product, BillingPeriod.MONTHLY);
+        firstVersion.getStandaloneCatalog().setPlans(new DefaultPlan[]{replacementPlan});
+        Assert.assertSame(versionedCatalog.findPlan("Product-monthly", secondEffectiveDate.plusDays(2), firstEffectiveDate.plusDays(1)), firstVersionPlan);
+        Assert.assertSame(versionedCatalog.findPhase(phaseName, secondEffectiveDate.plusDays(2), firstEffectiveDate.plusDays(1)), firstVersionPlan.getFinalPhase());
+        // Other pairs of versions are resolved on their own
+        Assert.assertSame(versionedCatalog.findPlan("Product-monthly", firstEffectiveDate.plusDays(1), firstEffectiveDate), replacementPlan);
+        Assert.assertSame(versionedCatalog.findPlan("Product-monthly", secondEffectiveDate.plusDays(1), secondEffectiveDate), secondVersionPlan);
+
+        // Adding a version invalidates the memoized resolutions
+        versionedCatalog.add(createVersion(secondEffectiveDate.plusYears(1), product, secondVersionPlan));
+        Assert.assertSame(versionedCatalog.findPlan("Product-monthly", secondEffectiveDate.plusDays(1), firstEffectiveDate), replacementPlan);
+        Assert.assertSame(versionedCatalog.findPhase(phaseName, secondEffectiveDate.plusDays(1), firstEffectiveDate), replacementPlan.getFinalPhase());
+    }
+
+    // Rough timing of the lookups on a large catalog (there is no microbenchmark harness in this build, numbers are logged)
+    @Test(groups = "fast")
+    public void testLookupsOnLargeCatalog() throws CatalogApiException {
+        final DefaultProduct[] products = new DefaultProduct[NB_PRODUCTS];
+        final DefaultPlan[] plans = new DefaultPlan[NB_PRODUCTS * NB_PLANS_PER_PRODUCT];
+        final BillingPeriod[] billingPeriods = new BillingPeriod[]{BillingPeriod.MONTHLY, BillingPeriod.QUARTERLY, BillingPeriod.BIANNUAL, BillingPeriod.ANNUAL, BillingPeriod.WEEKLY, BillingPeriod.BIWEEKLY};
+        for (int i = 0; i < NB_PRODUCTS; i++) {
+            products[i] = new MockProduct("Product-" + i, ProductCategory.BASE, "MockCatalog");
+            for (int j = 0; j < NB_PLANS_PER_PRODUCT; j++) {
+                plans[i * NB_PLANS_PER_PRODUCT + j] = createPlan("Product-" + i + "-" + j, products[i], billingPeriods[j]);
+            }
+        }
+        final MockCatalog catalog = new MockCatalog();
+        catalog.setProducts(products);
+        catalog.setPlans(plans);
+        catalog.setPriceLists(new DefaultPriceListSet(new PriceListDefault(plans), new DefaultPriceList[0]));
+        final VersionedCatalog versionedCatalog = createVersionedCatalog(catalog, NB_VERSIONS);
+        final DateTime lastEffectiveDate = new DateTime(versionedCatalog.getVersions().get(NB_VERSIONS - 1).getEffectiveDate());
+
+        long ini = System.nanoTime();
+        for (int i = 0; i < NB_LOOKUPS; i++) {
+            final DefaultPlan plan = plans[i % plans.length];
+            Assert.assertSame(catalog.findCurrentPlan(plan.getName()), plan);
+        }
+        log.info("{} findCurrentPlan on {} plans: {} ms", NB_LOOKUPS, plans.length, (System.nanoTime() - ini) / 1000000);
+
+        ini = System.nanoTime();
+        for (int i = 0; i < NB_LOOKUPS; i++) {
+            final DefaultProduct product = products[i % products.length];
+            Assert.assertSame(catalog.findCurrentProduct(product.getName()), product);
+        }
+        log.info("{} findCurrentProduct on {} products: {} ms", NB_LOOKUPS, products.length, (System.nanoTime() - ini) / 1000000);
+
+        ini = System.nanoTime();
+        for (int i = 0; i < NB_LOOKUPS; i++) {
+            final DefaultPlan plan = plans[i % plans.length];
+            Assert.assertSame(catalog.createOrFindCurrentPlan(plan.getProduct().getName(), plan.getRecurringBillingPeriod(), PriceListSet.DEFAULT_PRICELIST_NAME, null), plan);
+        }
+        log.info("{} createOrFindCurrentPlan on {} plans: {} ms", NB_LOOKUPS, plans.length, (System.nanoTime() - ini) / 1000000);
+
+        ini = System.nanoTime();
+        for (int i = 0; i < NB_LOOKUPS; i++) {
+            final DateTime effectiveDate = lastEffectiveDate.minusMonths(i % NB_VERSIONS);
+            Assert.assertEquals(versionedCatalog.getStandaloneCatalogEffectiveDate(effectiveDate.plusDays(1)), effectiveDate.toDate());
+        }
+        log.info("{} version lookups on {} versions: {} ms", NB_LOOKUPS, NB_VERSIONS, (System.nanoTime() - ini) / 1000000);
+    }
+
+    private DefaultPlan createPlan(final String name, final DefaultProduct product, final BillingPeriod billingPeriod) {
+        final MockPlanPhase evergreen = new MockPlanPhase(MockInternationalPrice.create1USD(), null, billingPeriod);
+        return new MockPlan(name, product, new DefaultPlanPhase[]{}, evergreen, -1);
+    }
+
+    private StandaloneCatalogWithPriceOverride createVersion(final DateTime effectiveDate, final DefaultProduct product, final DefaultPlan plan) {
+        final DefaultPlan[] plans = new DefaultPlan[]{plan};
+        final StandaloneCatalog version = new StandaloneCatalog(effectiveDate.toDate())
+                .setCatalogName("MockCatalog")
+                .setRecurringBillingMode(BillingMode.IN_ADVANCE)
+                .setProducts(new DefaultProduct[]{product})
+                .setPlans(plans)
+                .setPriceLists(new DefaultPriceListSet(new PriceListDefault(plans), new DefaultPriceList[0]));
+        return new StandaloneCatalogWithPriceOverride(version, null, 0L, null);
+    }
+
+    // Monthly versions sharing the same plans
+    private VersionedCatalog createVersionedCatalog(final StandaloneCatalog template, final int nbVersions) throws CatalogApiException {
+        final VersionedCatalog versionedCatalog = new VersionedCatalog(clock);
+        final DateTime firstEffectiveDate = new DateTime("2015-01-01T00:00:00+00:00");
+        for (int i = 0; i < nbVersions; i++) {
+            final StandaloneCatalog version = new StandaloneCatalog(firstEffectiveDate.plusMonths(i).toDate())
+                    .setCatalogName("MockCatalog")
+                    .setRecurringBillingMode(BillingMode.IN_ADVANCE)
+                    .setProducts(template.getCurrentProducts())
+                    .setPlans(template.getCurrentPlans())
+                    .setPriceLists(template.getPriceLists())
+                    .setPlanRules(template.getPlanRules());
+            versionedCatalog.add(new StandaloneCatalogWithPriceOverride(version, null, 0L, null));
+        }
+        return versionedCatalog;
+    }
+}
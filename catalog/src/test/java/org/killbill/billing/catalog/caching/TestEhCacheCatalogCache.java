@@ -22,25 +22,44 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.joda.time.DateTime;
+
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.CatalogTestSuiteNoDB;
 import org.killbill.billing.catalog.DefaultProduct;
+import org.killbill.billing.catalog.StandaloneCatalogWithPriceOverride;
 import org.killbill.billing.catalog.VersionedCatalog;
+import org.killbill.billing.catalog.api.BillingMode;
 import org.killbill.billing.catalog.api.Catalog;
 import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.plugin.TestModelVersionedPluginCatalog;
+import org.killbill.billing.catalog.plugin.VersionedCatalogMapper;
+import org.killbill.billing.catalog.plugin.api.CatalogPluginApi;
+import org.killbill.billing.catalog.plugin.api.StandalonePluginCatalog;
+import org.killbill.billing.catalog.plugin.api.VersionedPluginCatalog;
+import org.killbill.billing.osgi.api.OSGIServiceRegistration;
+import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.CatalogConfig;
 import org.killbill.xmlloader.UriAccessor;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.skife.config.TimeSpan;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.CharStreams;
 import com.google.common.io.Resources;
 
@@ -174,4 +193,62 @@ public class TestEhCacheCatalogCache extends CatalogTestSuiteNoDB {
         // Verify the lookup with the other tenant
         Assert.assertEquals(catalogCache.getCatalog(otherMultiTenantContext), otherResult);
     }
+
+    //
+    // Verify catalogs returned by plugins are only fetched again once the TTL has expired, and only mapped again when their versions change or when the catalog is invalidated
+    //
+    @Test(groups = "fast")
+    public void testPluginCatalog() throws CatalogApiException {
+        final StandalonePluginCatalog firstVersion = Mockito.mock(StandalonePluginCatalog.class);
+        Mockito.when(firstVersion.getEffectiveDate()).thenReturn(new DateTime("2013-02-08T00:00:00+00:00"));
+        final StandalonePluginCatalog secondVersion = Mockito.mock(StandalonePluginCatalog.class);
+        Mockito.when(secondVersion.getEffectiveDate()).thenReturn(new DateTime("2014-02-08T00:00:00+00:00"));
+        final List<StandalonePluginCatalog> versions = new LinkedList<StandalonePluginCatalog>();
+        versions.add(firstVersion);
+        final VersionedPluginCatalog pluginCatalog = new TestModelVersionedPluginCatalog("PluginCatalog", BillingMode.IN_ADVANCE, versions);
+
+        final CatalogPluginApi catalogPluginApi = Mockito.mock(CatalogPluginApi.class);
+        Mockito.when(catalogPluginApi.getVersionedPluginCatalog(Mockito.<Iterable<PluginProperty>>any(), Mockito.<TenantContext>any())).thenReturn(pluginCatalog);
+        final OSGIServiceRegistration<CatalogPluginApi> pluginRegistry = Mockito.mock(OSGIServiceRegistration.class);
+        Mockito.when(pluginRegistry.getAllServices()).thenReturn(ImmutableSet.<String>of("catalog-plugin"));
+        Mockito.when(pluginRegistry.getServiceForName("catalog-plugin")).thenReturn(catalogPluginApi);
+
+        final VersionedCatalogMapper versionedCatalogMapper = Mockito.mock(VersionedCatalogMapper.class);
+        Mockito.when(versionedCatalogMapper.toVersionedCatalog(Mockito.<VersionedPluginCatalog>any(), Mockito.<Map<Date, StandaloneCatalogWithPriceOverride>>any(), Mockito.<InternalTenantContext>any())).thenAnswer(new Answer<VersionedCatalog>() {
+            @Override
+            public VersionedCatalog answer(final InvocationOnMock invocation) throws Throwable {
+                return new VersionedCatalog(clock);
+            }
+        });
+
+        final CatalogConfig catalogConfig = Mockito.mock(CatalogConfig.class);
+        Mockito.when(catalogConfig.getPluginCatalogCacheTtl()).thenReturn(new TimeSpan("1m"));
+
+        final EhCacheCatalogCache pluginCatalogCache = new EhCacheCatalogCache(pluginRegistry, versionedCatalogMapper, cacheControllerDispatcher, loader, Mockito.mock(InternalCallContextFactory.class), catalogConfig, clock);
+
+        final VersionedCatalog result = pluginCatalogCache.getCatalog(multiTenantContext);
+        Assert.assertSame(pluginCatalogCache.getCatalog(multiTenantContext), result);
+        Mockito.verify(versionedCatalogMapper, Mockito.times(1)).toVersionedCatalog(Mockito.<VersionedPluginCatalog>any(), Mockito.<Map<Date, StandaloneCatalogWithPriceOverride>>any(), Mockito.<InternalTenantContext>any());
+
+        // Other tenants have their own mapping
+        Assert.assertNotSame(pluginCatalogCache.getCatalog(otherMultiTenantContext), result);
+        Mockito.verify(versionedCatalogMapper, Mockito.times(2)).toVersionedCatalog(Mockito.<VersionedPluginCatalog>any(), Mockito.<Map<Date, StandaloneCatalogWithPriceOverride>>any(), Mockito.<InternalTenantContext>any());
+
+        // Within the TTL, the plugin isn't asked again
+        versions.add(secondVersion);
+        Assert.assertSame(pluginCatalogCache.getCatalog(multiTenantContext), result);
+        Mockito.verify(catalogPluginApi, Mockito.times(2)).getVersionedPluginCatalog(Mockito.<Iterable<PluginProperty>>any(), Mockito.<TenantContext>any());
+
+        // New version, once the TTL has expired
+        clock.addDays(1);
+        final VersionedCatalog resultWithNewVersion = pluginCatalogCache.getCatalog(multiTenantContext);
+        Assert.assertNotSame(resultWithNewVersion, result);
+        Assert.assertSame(pluginCatalogCache.getCatalog(multiTenantContext), resultWithNewVersion);
+        Mockito.verify(versionedCatalogMapper, Mockito.times(3)).toVersionedCatalog(Mockito.<VersionedPluginCatalog>any(), Mockito.<Map<Date, StandaloneCatalogWithPriceOverride>>any(), Mockito.<InternalTenantContext>any());
+
+        // Invalidation
+        pluginCatalogCache.clearCatalog(multiTenantContext);
+        Assert.assertNotSame(pluginCatalogCache.getCatalog(multiTenantContext), resultWithNewVersion);
+        Mockito.verify(versionedCatalogMapper, Mockito.times(4)).toVersionedCatalog(Mockito.<VersionedPluginCatalog>any(), Mockito.<Map<Date, StandaloneCatalogWithPriceOverride>>any(), Mockito.<InternalTenantContext>any());
+    }
 }
@@ -64,9 +64,12 @@ import org.killbill.billing.invoice.api.user.DefaultInvoiceAdjustmentEvent;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceCreationEvent;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceNotificationInternalEvent;
 import org.killbill.billing.invoice.api.user.DefaultNullInvoiceEvent;
+import org.killbill.billing.invoice.dao.InvoiceBillingWatermarkModelDao;
 import org.killbill.billing.invoice.dao.InvoiceDao;
 import org.killbill.billing.invoice.dao.InvoiceItemModelDao;
 import org.killbill.billing.invoice.dao.InvoiceModelDao;
+import org.killbill.billing.invoice.generator.InvoiceBillingWatermarkCalculator;
+import org.killbill.billing.invoice.generator.InvoiceGenerationWindow;
 import org.killbill.billing.invoice.generator.InvoiceGenerator;
 import org.killbill.billing.invoice.generator.InvoiceWithMetadata;
 import org.killbill.billing.invoice.generator.InvoiceWithMetadata.SubscriptionFutureNotificationDates;
@@ -108,6 +111,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
 import com.google.inject.Inject;
@@ -300,9 +304,26 @@ public class InvoiceDispatcher {
         try {
             final ImmutableAccountData account = accountApi.getImmutableAccountDataById(accountId, context);
 
-            final List<Invoice> invoices = billingEvents.isAccountAutoInvoiceOff() ?
-                                           ImmutableList.<Invoice>of() :
-                                           ImmutableList.<Invoice>copyOf(Collections2.transform(invoiceDao.getInvoicesByAccount(context),
+            final boolean isIncrementalGeneration = invoiceConfig.isIncrementalInvoiceGenerationEnabled() && !billingEvents.isAccountAutoInvoiceOff();
+            final Map<UUID, String> billingEventsHashes = isIncrementalGeneration ?
+                                                          InvoiceBillingWatermarkCalculator.computeBillingEventsHashes(billingEvents, invoiceDao.getItemAdjustmentsForBillingWatermarks(context)) :
+                                                          ImmutableMap.<UUID, String>of();
+            final List<InvoiceBillingWatermarkModelDao> billingWatermarks = isIncrementalGeneration ?
+                                                                            invoiceDao.getBillingWatermarks(context) :
+                                                                            ImmutableList.<InvoiceBillingWatermarkModelDao>of();
+            final InvoiceGenerationWindow generationWindow = isIncrementalGeneration ?
+                                                             InvoiceBillingWatermarkCalculator.computeGenerationWindow(billingEvents, billingEventsHashes, billingWatermarks) :
+                                                             null;
+
+            final List<InvoiceModelDao> invoiceModelDaos;
+            if (billingEvents.isAccountAutoInvoiceOff()) {
+                invoiceModelDaos = ImmutableList.<InvoiceModelDao>of();
+            } else if (generationWindow != null) {
+                invoiceModelDaos = invoiceDao.getInvoicesByAccountForIncrementalGeneration(generationWindow.getMinWindowStartDate(), context);
+            } else {
+                invoiceModelDaos = invoiceDao.getInvoicesByAccount(context);
+            }
+            final List<Invoice> invoices = ImmutableList.<Invoice>copyOf(Collections2.transform(invoiceModelDaos,
                                                                                                 new Function<InvoiceModelDao, Invoice>() {
                                                                                                     @Override
                                                                                                     public Invoice apply(final InvoiceModelDao input) {
@@ -312,7 +333,7 @@ public class InvoiceDispatcher {
 
             final Currency targetCurrency = account.getCurrency();
             final LocalDate targetDate = billingEvents.getAccountDateAndTimeZoneContext().computeLocalDateFromFixedAccountOffset(targetDateTime);
-            final InvoiceWithMetadata invoiceWithMetadata = generator.generateInvoice(account, billingEvents, invoices, targetDate, targetCurrency, context);
+            final InvoiceWithMetadata invoiceWithMetadata = generator.generateInvoice(account, billingEvents, invoices, targetDate, targetCurrency, generationWindow, context);
             final Invoice invoice = invoiceWithMetadata.getInvoice();
 
             // Compute future notifications
@@ -331,7 +352,8 @@ public class InvoiceDispatcher {
                     final BusInternalEvent event = new DefaultNullInvoiceEvent(accountId, clock.getUTCToday(),
                                                                                context.getAccountRecordId(), context.getTenantRecordId(), context.getUserToken());
 
-                    commitInvoiceAndSetFutureNotifications(account, null, ImmutableList.<InvoiceItemModelDao>of(), futureAccountNotifications, false, context);
+                    final List<InvoiceBillingWatermarkModelDao> newBillingWatermarks = computeBillingWatermarks(isIncrementalGeneration, billingEventsHashes, billingEvents, invoices, null, targetDate, billingWatermarks);
+                    commitInvoiceAndSetFutureNotifications(account, null, ImmutableList.<InvoiceItemModelDao>of(), futureAccountNotifications, newBillingWatermarks, false, context);
                     postEvent(event, accountId, context);
                 }
                 return null;
@@ -362,7 +384,8 @@ public class InvoiceDispatcher {
                 final Iterable<InvoiceItemModelDao> invoiceItemModelDaos = transformToInvoiceModelDao(invoice.getInvoiceItems());
 
                 // Commit invoice on disk
-                final boolean isThereAnyItemsLeft = commitInvoiceAndSetFutureNotifications(account, invoiceModelDao, invoiceItemModelDaos, futureAccountNotifications, isRealInvoiceWithItems, context);
+                final List<InvoiceBillingWatermarkModelDao> newBillingWatermarks = computeBillingWatermarks(isIncrementalGeneration, billingEventsHashes, billingEvents, invoices, invoice, targetDate, billingWatermarks);
+                final boolean isThereAnyItemsLeft = commitInvoiceAndSetFutureNotifications(account, invoiceModelDao, invoiceItemModelDaos, futureAccountNotifications, newBillingWatermarks, isRealInvoiceWithItems, context);
 
                 final boolean isRealInvoiceWithNonEmptyItems = isThereAnyItemsLeft ? isRealInvoiceWithItems : false;
 
@@ -383,6 +406,18 @@ public class InvoiceDispatcher {
         }
     }
 
+    // Watermarks are recorded in the same transaction as the invoice, so they can never get ahead of (or lag behind) the committed items
+    private List<InvoiceBillingWatermarkModelDao> computeBillingWatermarks(final boolean isIncrementalGeneration, final Map<UUID, String> billingEventsHashes,
+                                                                           final BillingEventSet billingEvents, final List<Invoice> existingInvoices,
+                                                                           @Nullable final Invoice invoice, final LocalDate targetDate,
+                                                                           final List<InvoiceBillingWatermarkModelDao> currentWatermarks) {
+        if (!isIncrementalGeneration) {
+            return ImmutableList.<InvoiceBillingWatermarkModelDao>of();
+        }
+        return InvoiceBillingWatermarkCalculator.computeWatermarks(billingEventsHashes, billingEvents, existingInvoices, invoice,
+                                                                   targetDate, currentWatermarks, clock.getUTCNow());
+    }
+
     private FutureAccountNotifications createNextFutureNotificationDate(final InvoiceWithMetadata invoiceWithMetadata, final AccountDateAndTimeZoneContext dateAndTimeZoneContext, final InternalCallContext context) {
 
         final Map<UUID, List<SubscriptionNotification>> result = new HashMap<UUID, List<SubscriptionNotification>>();
@@ -466,6 +501,7 @@ public class InvoiceDispatcher {
     private boolean commitInvoiceAndSetFutureNotifications(final ImmutableAccountData account, final InvoiceModelDao invoiceModelDao,
                                                            final Iterable<InvoiceItemModelDao> invoiceItemModelDaos,
                                                            final FutureAccountNotifications futureAccountNotifications,
+                                                           final List<InvoiceBillingWatermarkModelDao> billingWatermarks,
                                                            boolean isRealInvoiceWithItems, final InternalCallContext context) throws SubscriptionBaseApiException, InvoiceApiException {
         // We filter any zero amount for USAGE items prior we generate the invoice, which may leave us with an invoice with no items;
         // we recompute the isRealInvoiceWithItems flag based on what is left (the call to invoice is still necessary to set the future notifications).
@@ -478,9 +514,9 @@ public class InvoiceDispatcher {
 
         final boolean isThereAnyItemsLeft = filteredInvoiceItemModelDaos.iterator().hasNext();
         if (isThereAnyItemsLeft) {
-            invoiceDao.createInvoice(invoiceModelDao, ImmutableList.copyOf(filteredInvoiceItemModelDaos), isRealInvoiceWithItems, futureAccountNotifications, context);
+            invoiceDao.createInvoice(invoiceModelDao, ImmutableList.copyOf(filteredInvoiceItemModelDaos), isRealInvoiceWithItems, futureAccountNotifications, billingWatermarks, context);
         } else {
-            invoiceDao.setFutureAccountNotificationsForEmptyInvoice(account.getId(), futureAccountNotifications, context);
+            invoiceDao.setFutureAccountNotificationsForEmptyInvoice(account.getId(), futureAccountNotifications, billingWatermarks, context);
         }
         return isThereAnyItemsLeft;
     }
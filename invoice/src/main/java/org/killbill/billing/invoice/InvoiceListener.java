@@ -35,6 +35,11 @@ import org.killbill.billing.util.callcontext.UserType;
 import org.killbill.billing.events.EffectiveEntitlementInternalEvent;
 import org.killbill.billing.events.EffectiveSubscriptionInternalEvent;
 import org.killbill.billing.events.RepairSubscriptionInternalEvent;
+import org.killbill.billing.events.TenantConfigChangeInternalEvent;
+import org.killbill.billing.events.TenantConfigDeletionInternalEvent;
+import org.killbill.billing.invoice.template.HtmlInvoiceGenerator;
+import org.killbill.billing.junction.BillingInternalApi;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.util.config.InvoiceConfig;
 
 import com.google.common.eventbus.AllowConcurrentEvents;
@@ -48,25 +53,51 @@ public class InvoiceListener {
     private final InvoiceDispatcher dispatcher;
     private final InternalCallContextFactory internalCallContextFactory;
     private final AccountInternalApi accountApi;
+    private final BillingInternalApi billingApi;
     private final InvoiceConfig invoiceConfig;
+    private final HtmlInvoiceGenerator htmlInvoiceGenerator;
     private final Clock clock;
 
     @Inject
-    public InvoiceListener(final AccountInternalApi accountApi, final Clock clock, final InternalCallContextFactory internalCallContextFactory,
-                           final InvoiceConfig invoiceConfig, final InvoiceDispatcher dispatcher) {
+    public InvoiceListener(final AccountInternalApi accountApi, final BillingInternalApi billingApi, final Clock clock, final InternalCallContextFactory internalCallContextFactory,
+                           final InvoiceConfig invoiceConfig, final InvoiceDispatcher dispatcher, final HtmlInvoiceGenerator htmlInvoiceGenerator) {
         this.accountApi = accountApi;
+        this.htmlInvoiceGenerator = htmlInvoiceGenerator;
+        this.billingApi = billingApi;
         this.dispatcher = dispatcher;
         this.invoiceConfig = invoiceConfig;
         this.internalCallContextFactory = internalCallContextFactory;
         this.clock = clock;
     }
 
+    // Posted on each node by the tenant broadcast, once the tenant cache has been invalidated
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleTenantConfigChange(final TenantConfigChangeInternalEvent event) {
+        if (isInvoiceTemplateKey(event.getKey())) {
+            htmlInvoiceGenerator.clearTemplates(event.getSearchKey2());
+        }
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleTenantConfigDeletion(final TenantConfigDeletionInternalEvent event) {
+        if (isInvoiceTemplateKey(event.getKey())) {
+            htmlInvoiceGenerator.clearTemplates(event.getSearchKey2());
+        }
+    }
+
+    private static boolean isInvoiceTemplateKey(final String key) {
+        return key != null && (key.startsWith(TenantKey.INVOICE_TEMPLATE.toString()) || key.startsWith(TenantKey.INVOICE_MP_TEMPLATE.toString()));
+    }
+
     @AllowConcurrentEvents
     @Subscribe
     public void handleRepairSubscriptionEvent(final RepairSubscriptionInternalEvent event) {
 
         try {
             final InternalCallContext context = internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "RepairBundle", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
+            billingApi.invalidateBillingEvents(context);
             dispatcher.processAccount(event.getAccountId(), event.getEffectiveDate(), null, context);
         } catch (InvoiceApiException e) {
             log.error(e.getMessage());
@@ -86,6 +117,7 @@ public class InvoiceListener {
                 return;
             }
             final InternalCallContext context = internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "SubscriptionBaseTransition", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
+            billingApi.invalidateBillingEvents(context);
             dispatcher.processSubscriptionForInvoiceGeneration(event, context);
         } catch (InvoiceApiException e) {
             log.error(e.getMessage());
@@ -98,6 +130,7 @@ public class InvoiceListener {
 
         try {
             final InternalCallContext context = internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "SubscriptionBaseTransition", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
+            billingApi.invalidateBillingEvents(context);
             dispatcher.processAccount(event.getAccountId(), event.getEffectiveTransitionTime(), null, context);
         } catch (InvoiceApiException e) {
             log.error(e.getMessage());
@@ -116,6 +149,7 @@ public class InvoiceListener {
         try {
             final InternalCallContext context = internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "SubscriptionBaseTransition", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
             final UUID accountId = accountApi.getByRecordId(event.getSearchKey1(), context);
+            billingApi.invalidateBillingEvents(context);
             dispatcher.processAccount(accountId, clock.getUTCNow(), null, context);
         } catch (InvoiceApiException e) {
             log.error(e.getMessage());
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.junction.BillingInternalApi;
 import org.killbill.billing.util.callcontext.CallOrigin;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
@@ -41,14 +42,17 @@ public class InvoiceTagHandler {
 
     private final Clock clock;
     private final InvoiceDispatcher dispatcher;
+    private final BillingInternalApi billingApi;
     private final InternalCallContextFactory internalCallContextFactory;
 
     @Inject
     public InvoiceTagHandler(final Clock clock,
                              final InvoiceDispatcher dispatcher,
+                             final BillingInternalApi billingApi,
                              final InternalCallContextFactory internalCallContextFactory) {
         this.clock = clock;
         this.dispatcher = dispatcher;
+        this.billingApi = billingApi;
         this.internalCallContextFactory = internalCallContextFactory;
     }
 
@@ -65,6 +69,7 @@ public class InvoiceTagHandler {
 
     private void processUnpaid_AUTO_INVOICING_OFF_invoices(final UUID accountId, final InternalCallContext context) {
         try {
+            billingApi.invalidateBillingEvents(context);
             dispatcher.processAccount(accountId, clock.getUTCNow(), null, context);
         } catch (InvoiceApiException e) {
             log.warn(String.format("Failed to process process removal AUTO_INVOICING_OFF for account %s", accountId), e);
@@ -41,6 +41,7 @@ import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.InvoiceDispatcher;
 import org.killbill.billing.invoice.api.DryRunArguments;
+import org.killbill.billing.invoice.api.HtmlInvoiceUserApi;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceApiHelper;
@@ -81,7 +82,7 @@ import com.google.inject.Inject;
 
 import static org.killbill.billing.util.entity.dao.DefaultPaginationHelper.getEntityPaginationNoException;
 
-public class DefaultInvoiceUserApi implements InvoiceUserApi {
+public class DefaultInvoiceUserApi implements InvoiceUserApi, HtmlInvoiceUserApi {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultInvoiceUserApi.class);
 
@@ -436,18 +437,32 @@ public class DefaultInvoiceUserApi implements InvoiceUserApi {
         final InternalTenantContext internalContext = internalCallContextFactory.createInternalTenantContext(invoiceId, ObjectType.INVOICE, context);
         final Account account = accountUserApi.getAccountById(invoice.getAccountId(), internalContext);
 
-        // Check if this account has the MANUAL_PAY system tag
-        boolean manualPay = false;
+        final HtmlInvoice htmlInvoice = generator.generateInvoice(account, invoice, isManualPay(account, internalContext), internalContext);
+        return htmlInvoice.getBody();
+    }
+
+    @Override
+    public HtmlInvoiceBody getInvoiceAsHTMLBody(final UUID invoiceId, final TenantContext context) throws AccountApiException, IOException, InvoiceApiException {
+        final Invoice invoice = getInvoice(invoiceId, context);
+        if (invoice == null) {
+            throw new InvoiceApiException(ErrorCode.INVOICE_NOT_FOUND, invoiceId);
+        }
+
+        final InternalTenantContext internalContext = internalCallContextFactory.createInternalTenantContext(invoiceId, ObjectType.INVOICE, context);
+        final Account account = accountUserApi.getAccountById(invoice.getAccountId(), internalContext);
+
+        return generator.generateInvoiceBody(account, invoice, isManualPay(account, internalContext), internalContext);
+    }
+
+    // Check if this account has the MANUAL_PAY system tag
+    private boolean isManualPay(final Account account, final InternalTenantContext internalContext) {
         final List<Tag> accountTags = tagApi.getTags(account.getId(), ObjectType.ACCOUNT, internalContext);
         for (final Tag tag : accountTags) {
             if (ControlTagType.MANUAL_PAY.getId().equals(tag.getTagDefinitionId())) {
-                manualPay = true;
-                break;
+                return true;
             }
         }
-
-        final HtmlInvoice htmlInvoice = generator.generateInvoice(account, invoice, manualPay, internalContext);
-        return htmlInvoice.getBody();
+        return false;
     }
 
     @Override
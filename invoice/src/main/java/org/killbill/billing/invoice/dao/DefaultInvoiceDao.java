@@ -19,11 +19,15 @@
 package org.killbill.billing.invoice.dao;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -45,23 +49,30 @@ import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItemType;
 import org.killbill.billing.invoice.api.InvoicePaymentType;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceAdjustmentEvent;
+import org.killbill.billing.invoice.notification.NextBillingDateNotification;
 import org.killbill.billing.invoice.notification.NextBillingDatePoster;
 import org.killbill.billing.util.UUIDs;
 import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.config.CacheConfig;
 import org.killbill.billing.util.config.InvoiceConfig;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Pagination;
-import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
+import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.KeysetPaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntityDaoBase;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.entity.dao.SearchTokens;
+import org.killbill.billing.util.entity.dao.SearchTokensBackfillService;
 import org.killbill.bus.api.BusEvent;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.clock.Clock;
+import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
+import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +81,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Ordering;
@@ -102,6 +114,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
     private final Clock clock;
     private final CacheControllerDispatcher cacheControllerDispatcher;
     private final NonEntityDao nonEntityDao;
+    private final boolean searchTokensEnabled;
 
     @Inject
     public DefaultInvoiceDao(final IDBI dbi,
@@ -113,8 +126,10 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                              final InvoiceConfig invoiceConfig,
                              final InvoiceDaoHelper invoiceDaoHelper,
                              final CBADao cbaDao,
-                             final InternalCallContextFactory internalCallContextFactory) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao), InvoiceSqlDao.class);
+                             final InternalCallContextFactory internalCallContextFactory,
+                             final CacheConfig cacheConfig,
+                             final SearchTokensBackfillService searchTokensBackfillService) {
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, cacheConfig.isSearchTokensEnabled()), InvoiceSqlDao.class);
         this.nextBillingDatePoster = nextBillingDatePoster;
         this.eventBus = eventBus;
         this.invoiceConfig = invoiceConfig;
@@ -124,6 +139,11 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         this.clock = clock;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.nonEntityDao = nonEntityDao;
+        this.searchTokensEnabled = cacheConfig.isSearchTokensEnabled();
+        searchTokensBackfillService.registerSearchableTable(TableName.INVOICES, InvoiceModelDao.class);
+        // The watermarks and balances are not entities, so the mappers aren't registered by the EntitySqlDaoStringTemplate
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(InvoiceBillingWatermarkModelDao.class));
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(InvoiceBalanceModelDao.class));
     }
 
     @Override
@@ -232,11 +252,18 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
     @Override
     public void setFutureAccountNotificationsForEmptyInvoice(final UUID accountId, final FutureAccountNotifications callbackDateTimePerSubscriptions,
                                                              final InternalCallContext context) {
+        setFutureAccountNotificationsForEmptyInvoice(accountId, callbackDateTimePerSubscriptions, ImmutableList.<InvoiceBillingWatermarkModelDao>of(), context);
+    }
+
+    @Override
+    public void setFutureAccountNotificationsForEmptyInvoice(final UUID accountId, final FutureAccountNotifications callbackDateTimePerSubscriptions,
+                                                             final List<InvoiceBillingWatermarkModelDao> billingWatermarks, final InternalCallContext context) {
 
         transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
             @Override
             public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
                 notifyOfFutureBillingEvents(entitySqlDaoWrapperFactory, accountId, callbackDateTimePerSubscriptions, context);
+                updateBillingWatermarksFromTransaction(entitySqlDaoWrapperFactory, billingWatermarks, context);
                 return null;
             }
         });
@@ -247,6 +274,13 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
     public void createInvoice(final InvoiceModelDao invoice, final List<InvoiceItemModelDao> invoiceItems,
                               final boolean isRealInvoice, final FutureAccountNotifications callbackDateTimePerSubscriptions,
                               final InternalCallContext context) {
+        createInvoice(invoice, invoiceItems, isRealInvoice, callbackDateTimePerSubscriptions, ImmutableList.<InvoiceBillingWatermarkModelDao>of(), context);
+    }
+
+    @Override
+    public void createInvoice(final InvoiceModelDao invoice, final List<InvoiceItemModelDao> invoiceItems,
+                              final boolean isRealInvoice, final FutureAccountNotifications callbackDateTimePerSubscriptions,
+                              final List<InvoiceBillingWatermarkModelDao> billingWatermarks, final InternalCallContext context) {
         transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
             @Override
             public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
@@ -262,11 +296,11 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
 
                     // Create the invoice items
                     final InvoiceItemSqlDao transInvoiceItemSqlDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
-                    for (final InvoiceItemModelDao invoiceItemModelDao : invoiceItems) {
-                        createInvoiceItemFromTransaction(transInvoiceItemSqlDao, invoiceItemModelDao, context);
-                    }
-                    cbaDao.addCBAComplexityFromTransaction(invoice, entitySqlDaoWrapperFactory, context);
+                    createInvoiceItemsFromTransaction(transInvoiceItemSqlDao, invoiceItems, context);
+                    final List<InvoiceModelDao> accountInvoices = cbaDao.addCBAComplexityFromTransaction(invoice, entitySqlDaoWrapperFactory, context);
+                    updateInvoiceBalancesFromTransaction(accountInvoices, entitySqlDaoWrapperFactory, context);
                     notifyOfFutureBillingEvents(entitySqlDaoWrapperFactory, invoice.getAccountId(), callbackDateTimePerSubscriptions, context);
+                    updateBillingWatermarksFromTransaction(entitySqlDaoWrapperFactory, billingWatermarks, context);
                 }
                 return null;
             }
@@ -282,6 +316,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 final InvoiceItemSqlDao transInvoiceItemSqlDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
 
                 final List<InvoiceItemModelDao> createdInvoiceItems = new LinkedList<InvoiceItemModelDao>();
+                List<InvoiceModelDao> accountInvoices = null;
                 for (final InvoiceModelDao invoiceModelDao : invoices) {
                     boolean madeChanges = false;
 
@@ -292,16 +327,22 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     }
 
                     // Create the invoice items if needed
+                    final List<InvoiceItemModelDao> invoiceItemsToCreate = new LinkedList<InvoiceItemModelDao>();
                     for (final InvoiceItemModelDao invoiceItemModelDao : invoiceModelDao.getInvoiceItems()) {
                         if (transInvoiceItemSqlDao.getById(invoiceItemModelDao.getId().toString(), context) == null) {
-                            createInvoiceItemFromTransaction(transInvoiceItemSqlDao, invoiceItemModelDao, context);
+                            invoiceItemsToCreate.add(invoiceItemModelDao);
+                        }
+                    }
+                    if (!invoiceItemsToCreate.isEmpty()) {
+                        createInvoiceItemsFromTransaction(transInvoiceItemSqlDao, invoiceItemsToCreate, context);
+                        for (final InvoiceItemModelDao invoiceItemModelDao : invoiceItemsToCreate) {
                             createdInvoiceItems.add(transInvoiceItemSqlDao.getById(invoiceItemModelDao.getId().toString(), context));
-                            madeChanges = true;
                         }
+                        madeChanges = true;
                     }
 
                     if (madeChanges) {
-                        cbaDao.addCBAComplexityFromTransaction(invoiceModelDao.getId(), entitySqlDaoWrapperFactory, context);
+                        accountInvoices = cbaDao.addCBAComplexityFromTransaction(invoiceModelDao.getId(), entitySqlDaoWrapperFactory, context);
 
                         // Notify the bus since the balance of the invoice changed
                         // TODO should we post an InvoiceCreationInternalEvent event instead? Note! This will trigger a payment (see InvoiceHandler)
@@ -309,6 +350,10 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     }
                 }
 
+                if (accountInvoices != null) {
+                    updateInvoiceBalancesFromTransaction(accountInvoices, entitySqlDaoWrapperFactory, context);
+                }
+
                 return createdInvoiceItems;
             }
         });
@@ -329,6 +374,86 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         });
     }
 
+    @Override
+    public List<InvoiceModelDao> getInvoicesByAccountForIncrementalGeneration(final LocalDate fromDate, final InternalTenantContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<InvoiceModelDao>>() {
+            @Override
+            public List<InvoiceModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final InvoiceSqlDao invoiceDao = entitySqlDaoWrapperFactory.become(InvoiceSqlDao.class);
+                final InvoiceItemSqlDao invoiceItemSqlDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
+
+                final List<InvoiceModelDao> invoices = INVOICE_MODEL_DAO_ORDERING.sortedCopy(invoiceDao.getInvoicesForIncrementalGeneration(fromDate, context));
+                final List<InvoiceItemModelDao> invoiceItems = invoiceItemSqlDao.getInvoiceItemsForIncrementalGeneration(fromDate, context);
+
+                final Map<UUID, List<InvoiceItemModelDao>> invoiceItemsPerInvoiceId = new HashMap<UUID, List<InvoiceItemModelDao>>();
+                for (final InvoiceItemModelDao invoiceItem : invoiceItems) {
+                    if (invoiceItemsPerInvoiceId.get(invoiceItem.getInvoiceId()) == null) {
+                        invoiceItemsPerInvoiceId.put(invoiceItem.getInvoiceId(), new LinkedList<InvoiceItemModelDao>());
+                    }
+                    invoiceItemsPerInvoiceId.get(invoiceItem.getInvoiceId()).add(invoiceItem);
+                }
+                for (final InvoiceModelDao invoice : invoices) {
+                    final List<InvoiceItemModelDao> invoiceItemsForInvoice = invoiceItemsPerInvoiceId.get(invoice.getId());
+                    if (invoiceItemsForInvoice != null) {
+                        invoice.addInvoiceItems(invoiceItemsForInvoice);
+                    }
+                }
+
+                return invoices;
+            }
+        });
+    }
+
+    @Override
+    public List<InvoiceBillingWatermarkModelDao> getBillingWatermarks(final InternalTenantContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<InvoiceBillingWatermarkModelDao>>() {
+            @Override
+            public List<InvoiceBillingWatermarkModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBillingWatermarkSqlDao.class).getByAccountRecordId(context);
+            }
+        });
+    }
+
+    @Override
+    public List<InvoiceItemModelDao> getItemAdjustmentsForBillingWatermarks(final InternalTenantContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<InvoiceItemModelDao>>() {
+            @Override
+            public List<InvoiceItemModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class).getItemAdjustmentsForBillingWatermarks(context);
+            }
+        });
+    }
+
+    private void updateBillingWatermarksFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final List<InvoiceBillingWatermarkModelDao> watermarks, final InternalCallContext context) {
+        if (watermarks.isEmpty()) {
+            return;
+        }
+
+        final InvoiceBillingWatermarkSqlDao watermarkSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBillingWatermarkSqlDao.class);
+
+        final Set<UUID> existingSubscriptionIds = new HashSet<UUID>();
+        for (final InvoiceBillingWatermarkModelDao existingWatermark : watermarkSqlDao.getByAccountRecordId(context)) {
+            existingSubscriptionIds.add(existingWatermark.getSubscriptionId());
+        }
+
+        final List<InvoiceBillingWatermarkModelDao> watermarksToCreate = new LinkedList<InvoiceBillingWatermarkModelDao>();
+        final List<InvoiceBillingWatermarkModelDao> watermarksToUpdate = new LinkedList<InvoiceBillingWatermarkModelDao>();
+        for (final InvoiceBillingWatermarkModelDao watermark : watermarks) {
+            if (existingSubscriptionIds.contains(watermark.getSubscriptionId())) {
+                watermarksToUpdate.add(watermark);
+            } else {
+                watermarksToCreate.add(watermark);
+            }
+        }
+
+        if (!watermarksToUpdate.isEmpty()) {
+            watermarkSqlDao.update(watermarksToUpdate, context);
+        }
+        if (!watermarksToCreate.isEmpty()) {
+            watermarkSqlDao.create(watermarksToCreate, context);
+        }
+    }
+
     @Override
     public Pagination<InvoiceModelDao> searchInvoices(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
         Integer invoiceNumberParsed = null;
@@ -338,11 +463,12 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         }
 
         final Integer invoiceNumber = invoiceNumberParsed;
+        final List<String> searchTokens = searchTokensEnabled ? SearchTokens.toSearchTokens(searchKey) : ImmutableList.<String>of();
         return paginationHelper.getPagination(InvoiceSqlDao.class,
-                                              new PaginationIteratorBuilder<InvoiceModelDao, Invoice, InvoiceSqlDao>() {
+                                              new KeysetPaginationIteratorBuilder<InvoiceModelDao, Invoice, InvoiceSqlDao>() {
                                                   @Override
                                                   public Long getCount(final InvoiceSqlDao invoiceSqlDao, final InternalTenantContext context) {
-                                                      return invoiceNumber != null ? 1L : invoiceSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return invoiceNumber != null ? 1L : invoiceSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchTokens, context);
                                                   }
 
                                                   @Override
@@ -350,11 +476,27 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                       try {
                                                           return invoiceNumber != null ?
                                                                  ImmutableList.<InvoiceModelDao>of(getByNumber(invoiceNumber, context)).iterator() :
-                                                                 invoiceSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                                 invoiceSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, limit, context);
                                                       } catch (final InvoiceApiException ignored) {
                                                           return Iterators.<InvoiceModelDao>emptyIterator();
                                                       }
                                                   }
+
+                                                  @Override
+                                                  public boolean isOrderedByRecordId() {
+                                                      // Lookups by invoice number return a single record
+                                                      return invoiceNumber == null;
+                                                  }
+
+                                                  @Override
+                                                  public Long getRecordIdAtOffset(final InvoiceSqlDao invoiceSqlDao, final Long offset, final InternalTenantContext context) {
+                                                      return invoiceSqlDao.searchRecordIdAtOffset(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<InvoiceModelDao> buildAfterRecordId(final InvoiceSqlDao invoiceSqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return invoiceSqlDao.searchAfterRecordId(searchKey, String.format("%%%s%%", searchKey), searchTokens, lastRecordId, limit, context);
+                                                  }
                                               },
                                               offset,
                                               limit,
@@ -400,6 +542,39 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         });
     }
 
+    @Override
+    public InvoiceUnpaidSummaryModelDao getUnpaidInvoicesSummary(final UUID accountId, @Nullable final LocalDate upToDate, final InternalTenantContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<InvoiceUnpaidSummaryModelDao>() {
+            @Override
+            public InvoiceUnpaidSummaryModelDao inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final InvoiceBalanceSqlDao balanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBalanceSqlDao.class);
+                if (balanceSqlDao.getCountOfInvoicesWithoutBalance(context) == 0) {
+                    return invoiceDaoHelper.buildUnpaidInvoicesSummaryFromBalances(balanceSqlDao.getUnpaidByAccountRecordId(context), upToDate, context);
+                }
+
+                // Some balances haven't been backfilled yet (see InvoiceBalancesBackfill): compute the summary the slow way
+                final List<InvoiceModelDao> invoices = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
+                return invoiceDaoHelper.buildUnpaidInvoicesSummary(invoices, upToDate);
+            }
+        });
+    }
+
+    @Override
+    public int createMissingInvoiceBalances(final InternalCallContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Integer>() {
+            @Override
+            public Integer inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final InvoiceBalanceSqlDao balanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBalanceSqlDao.class);
+                if (balanceSqlDao.getCountOfInvoicesWithoutBalance(context) == 0) {
+                    return 0;
+                }
+
+                final List<InvoiceModelDao> invoices = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
+                return updateInvoiceBalancesFromTransaction(invoices, entitySqlDaoWrapperFactory, context);
+            }
+        });
+    }
+
     @Override
     public UUID getInvoiceIdByPaymentId(final UUID paymentId, final InternalTenantContext context) {
         return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<UUID>() {
@@ -511,7 +686,8 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     }
                 }
 
-                cbaDao.addCBAComplexityFromTransaction(invoice, entitySqlDaoWrapperFactory, context);
+                final List<InvoiceModelDao> accountInvoices = cbaDao.addCBAComplexityFromTransaction(invoice, entitySqlDaoWrapperFactory, context);
+                updateInvoiceBalancesFromTransaction(accountInvoices, entitySqlDaoWrapperFactory, context);
 
                 if (isInvoiceAdjusted) {
                     notifyBusOfInvoiceAdjustment(entitySqlDaoWrapperFactory, invoice.getId(), invoice.getAccountId(), context.getUserToken(), context);
@@ -567,7 +743,8 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 // Notify the bus since the balance of the invoice changed
                 final UUID accountId = transactional.getAccountIdFromInvoicePaymentId(chargeBack.getId().toString(), context);
 
-                cbaDao.addCBAComplexityFromTransaction(payment.getInvoiceId(), entitySqlDaoWrapperFactory, context);
+                final List<InvoiceModelDao> accountInvoices = cbaDao.addCBAComplexityFromTransaction(payment.getInvoiceId(), entitySqlDaoWrapperFactory, context);
+                updateInvoiceBalancesFromTransaction(accountInvoices, entitySqlDaoWrapperFactory, context);
 
                 notifyBusOfInvoicePayment(entitySqlDaoWrapperFactory, chargeBack, accountId, context.getUserToken(), context);
 
@@ -690,8 +867,10 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                     }).orNull();
                     if (existingAttempt == null) {
                         transactional.create(invoicePayment, context);
+                        updateInvoiceBalanceFromTransaction(invoicePayment.getInvoiceId(), entitySqlDaoWrapperFactory, context);
                     } else if (!existingAttempt.getSuccess() && invoicePayment.getSuccess()) {
                         transactional.updateAttempt(existingAttempt.getRecordId(), invoicePayment.getPaymentDate().toDate(), invoicePayment.getAmount(), invoicePayment.getCurrency(), invoicePayment.getProcessedCurrency(), context);
+                        updateInvoiceBalanceFromTransaction(invoicePayment.getInvoiceId(), entitySqlDaoWrapperFactory, context);
                     }
                 }
 
@@ -749,6 +928,8 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 if (InvoiceModelDaoHelper.getBalance(invoice).compareTo(BigDecimal.ZERO) < 0) {
                     throw new InvoiceApiException(ErrorCode.INVOICE_WOULD_BE_NEGATIVE);
                 }
+                final List<InvoiceModelDao> adjustedInvoices = new LinkedList<InvoiceModelDao>();
+                adjustedInvoices.add(invoice);
 
                 // If there is more account credit than CBA we adjusted, we're done.
                 // Otherwise, we need to find further invoices on which this credit was consumed
@@ -800,12 +981,15 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                                                            context.getCreatedDate().toLocalDate(), null,
                                                                                            positiveCBAAdjItemAmount, null, cbaItem.getCurrency(), cbaItem.getId());
                         createInvoiceItemFromTransaction(invoiceItemSqlDao, nextCBAAdjItem, context);
+                        invoiceFollowing.addInvoiceItem(nextCBAAdjItem);
+                        adjustedInvoices.add(invoiceFollowing);
                         if (positiveRemainderToAdjust.compareTo(BigDecimal.ZERO) == 0) {
                             break;
                         }
                     }
                 }
 
+                updateInvoiceBalancesFromTransaction(adjustedInvoices, entitySqlDaoWrapperFactory, context);
                 return null;
             }
         });
@@ -816,7 +1000,8 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
             @Override
             public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
                 // In theory we should only have to call useExistingCBAFromTransaction but just to be safe we also check for credit generation
-                cbaDao.addCBAComplexityFromTransaction(entitySqlDaoWrapperFactory, context);
+                final List<InvoiceModelDao> accountInvoices = cbaDao.addCBAComplexityFromTransaction(entitySqlDaoWrapperFactory, context);
+                updateInvoiceBalancesFromTransaction(accountInvoices, entitySqlDaoWrapperFactory, context);
                 return null;
             }
         });
@@ -827,19 +1012,76 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
 
         final long dryRunNotificationTime = invoiceConfig.getDryRunNotificationSchedule().getMillis();
         final boolean isInvoiceNotificationEnabled = dryRunNotificationTime > 0;
+        // Scheduled all at once, to only read the account future notifications once
+        final List<NextBillingDateNotification> notifications = new ArrayList<NextBillingDateNotification>();
         for (final UUID subscriptionId : callbackDateTimePerSubscriptions.getNotifications().keySet()) {
             final List<SubscriptionNotification> callbackDateTimeUTC = callbackDateTimePerSubscriptions.getNotifications().get(subscriptionId);
             for (final SubscriptionNotification cur : callbackDateTimeUTC) {
                 if (isInvoiceNotificationEnabled) {
                     final DateTime curDryRunNotificationTime = cur.getEffectiveDate().minus(dryRunNotificationTime);
                     final DateTime effectiveCurDryRunNotificationTime = (curDryRunNotificationTime.isAfter(clock.getUTCNow())) ? curDryRunNotificationTime : clock.getUTCNow();
-                    nextBillingDatePoster.insertNextBillingDryRunNotificationFromTransaction(entitySqlDaoWrapperFactory, accountId, subscriptionId, effectiveCurDryRunNotificationTime, cur.getEffectiveDate(), callbackDateTimePerSubscriptions.getAccountDateAndTimeZoneContext(), internalCallContext);
+                    notifications.add(new NextBillingDateNotification(subscriptionId, effectiveCurDryRunNotificationTime, cur.getEffectiveDate(), true));
                 }
                 if (cur.isForInvoiceNotificationTrigger()) {
-                    nextBillingDatePoster.insertNextBillingNotificationFromTransaction(entitySqlDaoWrapperFactory, accountId, subscriptionId, cur.getEffectiveDate(), callbackDateTimePerSubscriptions.getAccountDateAndTimeZoneContext(), internalCallContext);
+                    notifications.add(new NextBillingDateNotification(subscriptionId, cur.getEffectiveDate(), cur.getEffectiveDate(), false));
                 }
             }
         }
+        nextBillingDatePoster.insertNextBillingNotificationsFromTransaction(entitySqlDaoWrapperFactory, accountId, notifications, callbackDateTimePerSubscriptions.getAccountDateAndTimeZoneContext(), internalCallContext);
+    }
+
+    // Must be called in the transaction which modified the invoice, before the bus events are posted, so that overdue never sees a stale balance
+    private void updateInvoiceBalanceFromTransaction(final UUID invoiceId, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        final InvoiceModelDao invoice = entitySqlDaoWrapperFactory.become(InvoiceSqlDao.class).getById(invoiceId.toString(), context);
+        if (invoice == null) {
+            return;
+        }
+        // Only the children of that invoice are needed for its balance
+        invoice.addInvoiceItems(entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class).getInvoiceItemsByInvoice(invoiceId.toString(), context));
+        invoice.addPayments(entitySqlDaoWrapperFactory.become(InvoicePaymentSqlDao.class).getPaymentsForInvoice(invoiceId.toString(), context));
+
+        final InvoiceBalanceSqlDao balanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBalanceSqlDao.class);
+        final InvoiceBalanceModelDao existingBalance = balanceSqlDao.getByInvoiceId(invoiceId.toString(), context);
+        writeInvoiceBalancesFromTransaction(ImmutableList.<InvoiceModelDao>of(invoice),
+                                            existingBalance == null ? ImmutableList.<InvoiceBalanceModelDao>of() : ImmutableList.<InvoiceBalanceModelDao>of(existingBalance),
+                                            balanceSqlDao,
+                                            context);
+    }
+
+    // Must be called in the transaction which modified the invoices, before the bus events are posted, so that overdue never sees a stale balance
+    private int updateInvoiceBalancesFromTransaction(final Iterable<InvoiceModelDao> invoices, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        final InvoiceBalanceSqlDao balanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBalanceSqlDao.class);
+        return writeInvoiceBalancesFromTransaction(invoices, balanceSqlDao.getByAccountRecordId(context), balanceSqlDao, context);
+    }
+
+    // Only the balances which changed are written. Returns the number of balances created.
+    private int writeInvoiceBalancesFromTransaction(final Iterable<InvoiceModelDao> invoices, final Iterable<InvoiceBalanceModelDao> existingBalances,
+                                                    final InvoiceBalanceSqlDao balanceSqlDao, final InternalCallContext context) {
+        final Map<UUID, BigDecimal> existingBalancePerInvoiceId = new HashMap<UUID, BigDecimal>();
+        for (final InvoiceBalanceModelDao existingBalance : existingBalances) {
+            existingBalancePerInvoiceId.put(existingBalance.getInvoiceId(), existingBalance.getBalance());
+        }
+
+        final List<InvoiceBalanceModelDao> balancesToCreate = new LinkedList<InvoiceBalanceModelDao>();
+        for (final InvoiceModelDao invoice : invoices) {
+            final InvoiceBalanceModelDao balance = new InvoiceBalanceModelDao(invoice, InvoiceModelDaoHelper.getBalance(invoice), context.getCreatedDate());
+            final BigDecimal existingBalance = existingBalancePerInvoiceId.get(invoice.getId());
+            if (existingBalance == null) {
+                balancesToCreate.add(balance);
+            } else if (existingBalance.compareTo(balance.getBalance()) != 0) {
+                balanceSqlDao.update(balance, context);
+            }
+        }
+
+        // The row can be created concurrently for the invoices which existed before the invoice_balances table (e.g. by the backfill).
+        // The invoice row is locked first, so that the second writer updates the row instead of failing on the unique index.
+        for (final InvoiceBalanceModelDao balance : balancesToCreate) {
+            balanceSqlDao.lockInvoice(balance.getInvoiceId().toString(), context);
+            if (balanceSqlDao.update(balance, context) == 0) {
+                balanceSqlDao.create(balance, context);
+            }
+        }
+        return balancesToCreate.size();
     }
 
     private void notifyBusOfInvoiceAdjustment(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final UUID invoiceId, final UUID accountId,
@@ -902,11 +1144,37 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         invoiceItemSqlDao.create(invoiceItemModelDao, context);
     }
 
+    // Items are inserted in a single JDBC batch (in order, so record ids still reflect the list order)
+    private void createInvoiceItemsFromTransaction(final InvoiceItemSqlDao invoiceItemSqlDao, final List<InvoiceItemModelDao> invoiceItemModelDaos, final InternalCallContext context) throws EntityPersistenceException, InvoiceApiException {
+        if (invoiceItemModelDaos.isEmpty()) {
+            return;
+        }
+
+        // Item adjustments may point to an item of the same batch, which isn't in the database yet
+        final Map<UUID, InvoiceItemModelDao> invoiceItemsInBatch = new HashMap<UUID, InvoiceItemModelDao>();
+        for (final InvoiceItemModelDao invoiceItemModelDao : invoiceItemModelDaos) {
+            if (InvoiceItemType.ITEM_ADJ.equals(invoiceItemModelDao.getType())) {
+                validateInvoiceItemToBeAdjusted(invoiceItemSqlDao, invoiceItemModelDao, invoiceItemsInBatch, context);
+            }
+            invoiceItemsInBatch.put(invoiceItemModelDao.getId(), invoiceItemModelDao);
+        }
+
+        invoiceItemSqlDao.createAll(invoiceItemModelDaos, context);
+    }
+
     private void validateInvoiceItemToBeAdjusted(final InvoiceItemSqlDao invoiceItemSqlDao, final InvoiceItemModelDao invoiceItemModelDao, final InternalCallContext context) throws InvoiceApiException {
+        validateInvoiceItemToBeAdjusted(invoiceItemSqlDao, invoiceItemModelDao, ImmutableMap.<UUID, InvoiceItemModelDao>of(), context);
+    }
+
+    private void validateInvoiceItemToBeAdjusted(final InvoiceItemSqlDao invoiceItemSqlDao, final InvoiceItemModelDao invoiceItemModelDao,
+                                                 final Map<UUID, InvoiceItemModelDao> pendingInvoiceItems, final InternalCallContext context) throws InvoiceApiException {
         Preconditions.checkNotNull(invoiceItemModelDao.getLinkedItemId(), "LinkedItemId cannot be null for ITEM_ADJ item: " + invoiceItemModelDao);
         // Note: this assumes the linked item has already been created in or prior to the transaction, which should almost always be the case
         // (unless some whacky plugin creates an out-of-order item adjustment on a subsequent external charge)
-        final InvoiceItemModelDao invoiceItemToBeAdjusted = invoiceItemSqlDao.getById(invoiceItemModelDao.getLinkedItemId().toString(), context);
+        final InvoiceItemModelDao pendingInvoiceItemToBeAdjusted = pendingInvoiceItems.get(invoiceItemModelDao.getLinkedItemId());
+        final InvoiceItemModelDao invoiceItemToBeAdjusted = pendingInvoiceItemToBeAdjusted != null ?
+                                                            pendingInvoiceItemToBeAdjusted :
+                                                            invoiceItemSqlDao.getById(invoiceItemModelDao.getLinkedItemId().toString(), context);
         if (!INVOICE_ITEM_TYPES_ADJUSTABLE.contains(invoiceItemToBeAdjusted.getType())) {
             throw new InvoiceApiException(ErrorCode.INVOICE_ITEM_ADJUSTMENT_ITEM_INVALID, invoiceItemToBeAdjusted.getId());
         }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.invoice.dao;
+
+import java.util.List;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
+import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+
+@EntitySqlDaoStringTemplate
+public interface InvoiceBalanceSqlDao extends Transactional<InvoiceBalanceSqlDao>, CloseMe {
+
+    @SqlQuery
+    public InvoiceBalanceModelDao getByInvoiceId(@Bind("invoiceId") final String invoiceId,
+                                                 @BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public List<InvoiceBalanceModelDao> getByAccountRecordId(@BindBean final InternalTenantContext context);
+
+    // Ordered by invoice date, i.e. the first one is the earliest unpaid invoice
+    @SqlQuery
+    public List<InvoiceBalanceModelDao> getUnpaidByAccountRecordId(@BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public Integer getCountOfInvoicesWithoutBalance(@BindBean final InternalTenantContext context);
+
+    // Locks the invoice row, to serialize the creation of its balance
+    @SqlQuery
+    public Long lockInvoice(@Bind("invoiceId") final String invoiceId,
+                            @BindBean final InternalTenantContext context);
+
+    @SqlUpdate
+    public void create(@BindBean final InvoiceBalanceModelDao balance,
+                       @BindBean final InternalCallContext context);
+
+    @SqlUpdate
+    public int update(@BindBean final InvoiceBalanceModelDao balance,
+                      @BindBean final InternalCallContext context);
+}
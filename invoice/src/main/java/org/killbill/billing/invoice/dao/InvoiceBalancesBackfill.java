@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.invoice.dao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.commons.concurrent.Executors;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the invoice_balances rows of the invoices created before the table existed. Until all the invoices of an
+ * account have a balance, its unpaid invoices summary is computed from the invoices instead.
+ * <p/>
+ * The backfill runs in the background when the invoice service starts, and is resumable: accounts backfilled by a
+ * previous run (or by the regular invoice and payment writes) are skipped.
+ */
+public class InvoiceBalancesBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceBalancesBackfill.class);
+
+    private static final int TERMINATION_TIMEOUT_SEC = 5;
+    private static final int BATCH_SIZE = 100;
+
+    private static final String ACCOUNTS_WITHOUT_BALANCES_QUERY = "select distinct i.account_record_id, i.tenant_record_id" +
+                                                                  " from invoices i" +
+                                                                  " where i.account_record_id > :fromAccountRecordId" +
+                                                                  " and not exists (select 1 from invoice_balances b where b.invoice_id = i.id)" +
+                                                                  " order by i.account_record_id" +
+                                                                  " limit :limit";
+
+    private final IDBI dbi;
+    private final InvoiceDao invoiceDao;
+    private final InternalCallContextFactory internalCallContextFactory;
+
+    private ScheduledExecutorService backfillExecutor;
+    private volatile boolean isStopped;
+
+    @Inject
+    public InvoiceBalancesBackfill(final IDBI dbi, final InvoiceDao invoiceDao, final InternalCallContextFactory internalCallContextFactory) {
+        this.dbi = dbi;
+        this.invoiceDao = invoiceDao;
+        this.internalCallContextFactory = internalCallContextFactory;
+    }
+
+    public void start() {
+        isStopped = false;
+        backfillExecutor = Executors.newSingleThreadScheduledExecutor("InvoiceBalancesBackfill");
+        backfillExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    backfill();
+                } catch (final RuntimeException e) {
+                    logger.warn("Failed to backfill invoice_balances, it will be resumed on the next restart", e);
+                }
+            }
+        });
+    }
+
+    public void stop() {
+        isStopped = true;
+        if (backfillExecutor == null) {
+            return;
+        }
+
+        try {
+            backfillExecutor.shutdown();
+            final boolean success = backfillExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+            if (!success) {
+                logger.warn("InvoiceBalancesBackfill failed to complete termination within " + TERMINATION_TIMEOUT_SEC + "sec");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("InvoiceBalancesBackfill stop sequence got interrupted");
+        } finally {
+            backfillExecutor = null;
+        }
+    }
+
+    public int backfill() {
+        int nbBalances = 0;
+        long fromAccountRecordId = 0L;
+        while (!isStopped) {
+            final List<Map<String, Object>> accounts = getAccountsWithoutBalances(fromAccountRecordId);
+            if (accounts.isEmpty()) {
+                break;
+            }
+
+            for (final Map<String, Object> account : accounts) {
+                if (isStopped) {
+                    break;
+                }
+
+                final Long accountRecordId = ((Number) account.get("account_record_id")).longValue();
+                final Long tenantRecordId = ((Number) account.get("tenant_record_id")).longValue();
+                final InternalCallContext context = internalCallContextFactory.createInternalCallContext(tenantRecordId, accountRecordId, "InvoiceBalancesBackfill", CallOrigin.INTERNAL, UserType.SYSTEM, null);
+                try {
+                    nbBalances += invoiceDao.createMissingInvoiceBalances(context);
+                } catch (final RuntimeException e) {
+                    // The account will be retried on the next restart
+                    logger.warn("Failed to backfill invoice_balances for accountRecordId=" + accountRecordId, e);
+                }
+            }
+            fromAccountRecordId = ((Number) accounts.get(accounts.size() - 1).get("account_record_id")).longValue();
+        }
+
+        if (nbBalances > 0) {
+            logger.info("Backfilled invoice_balances for {} invoices", nbBalances);
+        }
+        return nbBalances;
+    }
+
+    private List<Map<String, Object>> getAccountsWithoutBalances(final long fromAccountRecordId) {
+        return dbi.withHandle(new HandleCallback<List<Map<String, Object>>>() {
+            @Override
+            public List<Map<String, Object>> withHandle(final Handle handle) throws Exception {
+                return handle.createQuery(ACCOUNTS_WITHOUT_BALANCES_QUERY)
+                             .bind("fromAccountRecordId", fromAccountRecordId)
+                             .bind("limit", BATCH_SIZE)
+                             .list();
+            }
+        });
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+/**
+ * Per-subscription billed-through watermark used by the incremental invoice generation: all the invoice items
+ * ending before the billedThroughDate have already been reconciled against the billing events whose fingerprint
+ * is billingEventsHash.
+ */
+public class InvoiceBillingWatermarkModelDao {
+
+    private Long recordId;
+    private UUID subscriptionId;
+    private LocalDate billedThroughDate;
+    private String billingEventsHash;
+    private DateTime createdDate;
+    private DateTime updatedDate;
+
+    public InvoiceBillingWatermarkModelDao() { /* For the DAO mapper */ }
+
+    public InvoiceBillingWatermarkModelDao(final UUID subscriptionId, final LocalDate billedThroughDate, final String billingEventsHash, final DateTime createdDate) {
+        this.subscriptionId = subscriptionId;
+        this.billedThroughDate = billedThroughDate;
+        this.billingEventsHash = billingEventsHash;
+        this.createdDate = createdDate;
+        this.updatedDate = createdDate;
+    }
+
+    public Long getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(final Long recordId) {
+        this.recordId = recordId;
+    }
+
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public void setSubscriptionId(final UUID subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    public LocalDate getBilledThroughDate() {
+        return billedThroughDate;
+    }
+
+    public void setBilledThroughDate(final LocalDate billedThroughDate) {
+        this.billedThroughDate = billedThroughDate;
+    }
+
+    public String getBillingEventsHash() {
+        return billingEventsHash;
+    }
+
+    public void setBillingEventsHash(final String billingEventsHash) {
+        this.billingEventsHash = billingEventsHash;
+    }
+
+    public DateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(final DateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public DateTime getUpdatedDate() {
+        return updatedDate;
+    }
+
+    public void setUpdatedDate(final DateTime updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("InvoiceBillingWatermarkModelDao{");
+        sb.append("recordId=").append(recordId);
+        sb.append(", subscriptionId=").append(subscriptionId);
+        sb.append(", billedThroughDate=").append(billedThroughDate);
+        sb.append(", billingEventsHash='").append(billingEventsHash).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final InvoiceBillingWatermarkModelDao that = (InvoiceBillingWatermarkModelDao) o;
+
+        if (subscriptionId != null ? !subscriptionId.equals(that.subscriptionId) : that.subscriptionId != null) {
+            return false;
+        }
+        if (billedThroughDate != null ? billedThroughDate.compareTo(that.billedThroughDate) != 0 : that.billedThroughDate != null) {
+            return false;
+        }
+        return !(billingEventsHash != null ? !billingEventsHash.equals(that.billingEventsHash) : that.billingEventsHash != null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = subscriptionId != null ? subscriptionId.hashCode() : 0;
+        result = 31 * result + (billedThroughDate != null ? billedThroughDate.hashCode() : 0);
+        result = 31 * result + (billingEventsHash != null ? billingEventsHash.hashCode() : 0);
+        return result;
+    }
+}
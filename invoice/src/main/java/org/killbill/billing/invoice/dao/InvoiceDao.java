@@ -44,6 +44,14 @@ public interface InvoiceDao extends EntityDao<InvoiceModelDao, Invoice, InvoiceA
     public void setFutureAccountNotificationsForEmptyInvoice(final UUID accountId, final FutureAccountNotifications callbackDateTimePerSubscriptions,
                                                              final InternalCallContext context);
 
+    // The billing watermarks are recorded in the same transaction as the invoice, to stay in sync with the invoice items
+    void createInvoice(final InvoiceModelDao invoice, final List<InvoiceItemModelDao> invoiceItems,
+                       final boolean isRealInvoice, final FutureAccountNotifications callbackDateTimePerSubscriptions,
+                       final List<InvoiceBillingWatermarkModelDao> billingWatermarks, final InternalCallContext context);
+
+    public void setFutureAccountNotificationsForEmptyInvoice(final UUID accountId, final FutureAccountNotifications callbackDateTimePerSubscriptions,
+                                                             final List<InvoiceBillingWatermarkModelDao> billingWatermarks, final InternalCallContext context);
+
     List<InvoiceItemModelDao> createInvoices(final List<InvoiceModelDao> invoices, final InternalCallContext context);
 
     InvoiceModelDao getByNumber(Integer number, InternalTenantContext context) throws InvoiceApiException;
@@ -54,6 +62,26 @@ public interface InvoiceDao extends EntityDao<InvoiceModelDao, Invoice, InvoiceA
 
     List<InvoiceModelDao> getInvoicesBySubscription(UUID subscriptionId, InternalTenantContext context);
 
+    /**
+     * Retrieve the non migrated invoices required by the incremental invoice generation: only the items overlapping
+     * [fromDate, +inf) (as well as the adjustments pointing to them and all the usage items) are populated.
+     *
+     * @param fromDate the earliest window start date across all subscriptions
+     * @param context  the tenant context
+     * @return the partially populated invoices (payments are not populated)
+     */
+    List<InvoiceModelDao> getInvoicesByAccountForIncrementalGeneration(LocalDate fromDate, InternalTenantContext context);
+
+    List<InvoiceBillingWatermarkModelDao> getBillingWatermarks(InternalTenantContext context);
+
+    /**
+     * Retrieve the manual item adjustments of the account, with the subscription of the item they adjust
+     *
+     * @param context the tenant context
+     * @return the ITEM_ADJ items (subscriptionId and bundleId are the ones of the adjusted item)
+     */
+    List<InvoiceItemModelDao> getItemAdjustmentsForBillingWatermarks(InternalTenantContext context);
+
     Pagination<InvoiceModelDao> searchInvoices(String searchKey, Long offset, Long limit, InternalTenantContext context);
 
     UUID getInvoiceIdByPaymentId(UUID paymentId, InternalTenantContext context);
@@ -68,6 +96,11 @@ public interface InvoiceDao extends EntityDao<InvoiceModelDao, Invoice, InvoiceA
 
     List<InvoiceModelDao> getUnpaidInvoicesByAccountId(UUID accountId, @Nullable LocalDate upToDate, InternalTenantContext context);
 
+    InvoiceUnpaidSummaryModelDao getUnpaidInvoicesSummary(UUID accountId, @Nullable LocalDate upToDate, InternalTenantContext context);
+
+    // For the invoices created before the invoice_balances table, returns the number of balances created
+    int createMissingInvoiceBalances(InternalCallContext context);
+
     // Include migrated invoices
     List<InvoiceModelDao> getAllInvoicesByAccount(InternalTenantContext context);
 
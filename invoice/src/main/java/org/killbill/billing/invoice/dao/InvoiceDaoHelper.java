@@ -38,6 +38,7 @@ import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.tag.AccountTags;
 import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 import org.killbill.billing.util.tag.ControlTagType;
@@ -185,6 +186,56 @@ public class InvoiceDaoHelper {
 
     }
 
+    public InvoiceUnpaidSummaryModelDao buildUnpaidInvoicesSummary(final List<InvoiceModelDao> invoices, @Nullable final LocalDate upToDate) {
+        BigDecimal unpaidInvoiceBalance = BigDecimal.ZERO;
+        InvoiceModelDao earliestUnpaidInvoice = null;
+        final List<InvoiceModelDao> unpaidInvoices = getUnpaidInvoicesByAccountFromTransaction(invoices, upToDate);
+        for (final InvoiceModelDao unpaidInvoice : unpaidInvoices) {
+            unpaidInvoiceBalance = unpaidInvoiceBalance.add(InvoiceModelDaoHelper.getBalance(unpaidInvoice));
+            if (earliestUnpaidInvoice == null || unpaidInvoice.getInvoiceDate().isBefore(earliestUnpaidInvoice.getInvoiceDate())) {
+                earliestUnpaidInvoice = unpaidInvoice;
+            }
+        }
+
+        return new InvoiceUnpaidSummaryModelDao(unpaidInvoices.size(),
+                                                unpaidInvoiceBalance,
+                                                earliestUnpaidInvoice == null ? null : earliestUnpaidInvoice.getId(),
+                                                earliestUnpaidInvoice == null ? null : earliestUnpaidInvoice.getInvoiceDate());
+    }
+
+    // The balances are expected to be positive and ordered by invoice date (see InvoiceBalanceSqlDao#getUnpaidByAccountRecordId).
+    // The WRITTEN_OFF tags are checked here, so that tagging an invoice doesn't require to update its balance: this costs one
+    // query on the invoice tags of the account, only when it has unpaid invoices.
+    public InvoiceUnpaidSummaryModelDao buildUnpaidInvoicesSummaryFromBalances(final Iterable<InvoiceBalanceModelDao> unpaidBalances, @Nullable final LocalDate upToDate, final InternalTenantContext context) {
+        int numberOfUnpaidInvoices = 0;
+        BigDecimal unpaidInvoiceBalance = BigDecimal.ZERO;
+        InvoiceBalanceModelDao earliestUnpaidBalance = null;
+        AccountTags invoiceTags = null;
+        for (final InvoiceBalanceModelDao unpaidBalance : unpaidBalances) {
+            if (upToDate != null && unpaidBalance.getTargetDate().isAfter(upToDate)) {
+                continue;
+            }
+            if (invoiceTags == null) {
+                // Only the invoice tags are needed, not the ones of the other objects of the account
+                invoiceTags = new AccountTags(tagInternalApi.getTagsForAccountType(ObjectType.INVOICE, false, context));
+            }
+            if (invoiceTags.isWrittenOff(unpaidBalance.getInvoiceId())) {
+                continue;
+            }
+
+            numberOfUnpaidInvoices++;
+            unpaidInvoiceBalance = unpaidInvoiceBalance.add(unpaidBalance.getBalance());
+            if (earliestUnpaidBalance == null) {
+                earliestUnpaidBalance = unpaidBalance;
+            }
+        }
+
+        return new InvoiceUnpaidSummaryModelDao(numberOfUnpaidInvoices,
+                                                unpaidInvoiceBalance,
+                                                earliestUnpaidBalance == null ? null : earliestUnpaidBalance.getInvoiceId(),
+                                                earliestUnpaidBalance == null ? null : earliestUnpaidBalance.getInvoiceDate());
+    }
+
     /**
      * Create an adjustment for a given invoice item. This just creates the object in memory, it doesn't write it to disk.
      *
@@ -230,7 +281,7 @@ public class InvoiceDaoHelper {
     public void populateChildren(final Iterable<InvoiceModelDao> invoices, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
         getInvoiceItemsWithinTransaction(invoices, entitySqlDaoWrapperFactory, context);
         getInvoicePaymentsWithinTransaction(invoices, entitySqlDaoWrapperFactory, context);
-        setInvoicesWrittenOff(invoices, context);
+        setInvoicesWrittenOff(invoices, tagInternalApi.getAccountTags(context));
     }
 
     public List<InvoiceModelDao> getAllInvoicesByAccountFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
@@ -292,19 +343,10 @@ public class InvoiceDaoHelper {
         }
     }
 
-    private void setInvoicesWrittenOff(final Iterable<InvoiceModelDao> invoices, final InternalTenantContext internalTenantContext) {
-
-        final List<Tag> tags = tagInternalApi.getTagsForAccountType(ObjectType.INVOICE, false, internalTenantContext);
-        final Iterable<Tag> writtenOffTags = filterForWrittenOff(tags);
-        for (final Tag cur : writtenOffTags) {
-            final InvoiceModelDao foundInvoice = Iterables.tryFind(invoices, new Predicate<InvoiceModelDao>() {
-                @Override
-                public boolean apply(final InvoiceModelDao input) {
-                    return input.getId().equals(cur.getObjectId());
-                }
-            }).orNull();
-            if (foundInvoice != null) {
-                foundInvoice.setIsWrittenOff(true);
+    private void setInvoicesWrittenOff(final Iterable<InvoiceModelDao> invoices, final AccountTags accountTags) {
+        for (final InvoiceModelDao invoice : invoices) {
+            if (accountTags.isWrittenOff(invoice.getId())) {
+                invoice.setIsWrittenOff(true);
             }
         }
     }
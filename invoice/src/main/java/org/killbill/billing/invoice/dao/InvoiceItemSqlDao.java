@@ -18,6 +18,7 @@ package org.killbill.billing.invoice.dao;
 
 import java.util.List;
 
+import org.joda.time.LocalDate;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
@@ -42,4 +43,11 @@ public interface InvoiceItemSqlDao extends EntitySqlDao<InvoiceItemModelDao, Inv
     @SqlQuery
     List<InvoiceItemModelDao> getAdjustedOrRepairedInvoiceItemsByLinkedId(@Bind("linkedItemId") final String linkedItemId,
                                                             @BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    List<InvoiceItemModelDao> getInvoiceItemsForIncrementalGeneration(@Bind("fromDate") final LocalDate fromDate,
+                                                                      @BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    List<InvoiceItemModelDao> getItemAdjustmentsForBillingWatermarks(@BindBean final InternalTenantContext context);
 }
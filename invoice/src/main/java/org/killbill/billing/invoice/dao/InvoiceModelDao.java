@@ -18,6 +18,7 @@
 
 package org.killbill.billing.invoice.dao;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
@@ -33,8 +34,9 @@ import org.killbill.billing.util.UUIDs;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableEntityModelDao;
 
-public class InvoiceModelDao extends EntityModelDaoBase implements EntityModelDao<Invoice> {
+public class InvoiceModelDao extends EntityModelDaoBase implements EntityModelDao<Invoice>, SearchableEntityModelDao {
 
     private UUID accountId;
     private Integer invoiceNumber;
@@ -245,4 +247,8 @@ public class InvoiceModelDao extends EntityModelDaoBase implements EntityModelDa
         return null;
     }
 
+    @Override
+    public Iterable<?> getSearchableValues() {
+        return Arrays.<Object>asList(getId(), accountId, currency);
+    }
 }
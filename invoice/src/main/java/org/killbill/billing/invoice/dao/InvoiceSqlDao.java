@@ -19,6 +19,7 @@ package org.killbill.billing.invoice.dao;
 import java.util.List;
 import java.util.UUID;
 
+import org.joda.time.LocalDate;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
@@ -35,6 +36,10 @@ public interface InvoiceSqlDao extends EntitySqlDao<InvoiceModelDao, Invoice> {
     List<InvoiceModelDao> getInvoicesBySubscription(@Bind("subscriptionId") final String subscriptionId,
                                                     @BindBean final InternalTenantContext context);
 
+    @SqlQuery
+    List<InvoiceModelDao> getInvoicesForIncrementalGeneration(@Bind("fromDate") final LocalDate fromDate,
+                                                              @BindBean final InternalTenantContext context);
+
     @SqlQuery
     UUID getInvoiceIdByPaymentId(@Bind("paymentId") final String paymentId,
                                  @BindBean final InternalTenantContext context);
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.invoice.api.UnpaidInvoicesSummary;
+
+/**
+ * Summary of the unpaid invoices of an account, aggregated from the invoice_balances rows (see InvoiceBalanceModelDao).
+ */
+public class InvoiceUnpaidSummaryModelDao implements UnpaidInvoicesSummary {
+
+    private final int numberOfUnpaidInvoices;
+    private final BigDecimal unpaidInvoiceBalance;
+    private final UUID idOfEarliestUnpaidInvoice;
+    private final LocalDate dateOfEarliestUnpaidInvoice;
+
+    public InvoiceUnpaidSummaryModelDao(final int numberOfUnpaidInvoices, final BigDecimal unpaidInvoiceBalance,
+                                        final UUID idOfEarliestUnpaidInvoice, final LocalDate dateOfEarliestUnpaidInvoice) {
+        this.numberOfUnpaidInvoices = numberOfUnpaidInvoices;
+        this.unpaidInvoiceBalance = unpaidInvoiceBalance;
+        this.idOfEarliestUnpaidInvoice = idOfEarliestUnpaidInvoice;
+        this.dateOfEarliestUnpaidInvoice = dateOfEarliestUnpaidInvoice;
+    }
+
+    @Override
+    public int getNumberOfUnpaidInvoices() {
+        return numberOfUnpaidInvoices;
+    }
+
+    @Override
+    public BigDecimal getUnpaidInvoiceBalance() {
+        return unpaidInvoiceBalance;
+    }
+
+    @Override
+    public UUID getIdOfEarliestUnpaidInvoice() {
+        return idOfEarliestUnpaidInvoice;
+    }
+
+    @Override
+    public LocalDate getDateOfEarliestUnpaidInvoice() {
+        return dateOfEarliestUnpaidInvoice;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("InvoiceUnpaidSummaryModelDao{");
+        sb.append("numberOfUnpaidInvoices=").append(numberOfUnpaidInvoices);
+        sb.append(", unpaidInvoiceBalance=").append(unpaidInvoiceBalance);
+        sb.append(", idOfEarliestUnpaidInvoice=").append(idOfEarliestUnpaidInvoice);
+        sb.append(", dateOfEarliestUnpaidInvoice=").append(dateOfEarliestUnpaidInvoice);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final InvoiceUnpaidSummaryModelDao that = (InvoiceUnpaidSummaryModelDao) o;
+
+        if (numberOfUnpaidInvoices != that.numberOfUnpaidInvoices) {
+            return false;
+        }
+        if (unpaidInvoiceBalance != null ? unpaidInvoiceBalance.compareTo(that.unpaidInvoiceBalance) != 0 : that.unpaidInvoiceBalance != null) {
+            return false;
+        }
+        if (idOfEarliestUnpaidInvoice != null ? !idOfEarliestUnpaidInvoice.equals(that.idOfEarliestUnpaidInvoice) : that.idOfEarliestUnpaidInvoice != null) {
+            return false;
+        }
+        return !(dateOfEarliestUnpaidInvoice != null ? dateOfEarliestUnpaidInvoice.compareTo(that.dateOfEarliestUnpaidInvoice) != 0 : that.dateOfEarliestUnpaidInvoice != null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = numberOfUnpaidInvoices;
+        result = 31 * result + (idOfEarliestUnpaidInvoice != null ? idOfEarliestUnpaidInvoice.hashCode() : 0);
+        result = 31 * result + (dateOfEarliestUnpaidInvoice != null ? dateOfEarliestUnpaidInvoice.hashCode() : 0);
+        return result;
+    }
+}
@@ -67,6 +67,19 @@ public class DefaultInvoiceGenerator implements InvoiceGenerator {
                                                @Nullable final List<Invoice> existingInvoices,
                                                final LocalDate targetDate,
                                                final Currency targetCurrency, final InternalCallContext context) throws InvoiceApiException {
+        return generateInvoice(account, events, existingInvoices, targetDate, targetCurrency, null, context);
+    }
+
+    /*
+     * When a generation window is specified, existingInvoices only contain the items overlapping that window
+     */
+    @Override
+    public InvoiceWithMetadata generateInvoice(final ImmutableAccountData account, @Nullable final BillingEventSet events,
+                                               @Nullable final List<Invoice> existingInvoices,
+                                               final LocalDate targetDate,
+                                               final Currency targetCurrency,
+                                               @Nullable final InvoiceGenerationWindow generationWindow,
+                                               final InternalCallContext context) throws InvoiceApiException {
         if ((events == null) || (events.size() == 0) || events.isAccountAutoInvoiceOff()) {
             return new InvoiceWithMetadata(null, ImmutableMap.<UUID, SubscriptionFutureNotificationDates>of());
         }
@@ -79,7 +92,7 @@ public class DefaultInvoiceGenerator implements InvoiceGenerator {
         final UUID invoiceId = invoice.getId();
         final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDates = new HashMap<UUID, SubscriptionFutureNotificationDates>();
 
-        final List<InvoiceItem> fixedAndRecurringItems = recurringInvoiceItemGenerator.generateItems(account, invoiceId, events, existingInvoices, adjustedTargetDate, targetCurrency, perSubscriptionFutureNotificationDates, context);
+        final List<InvoiceItem> fixedAndRecurringItems = recurringInvoiceItemGenerator.generateItems(account, invoiceId, events, existingInvoices, adjustedTargetDate, targetCurrency, perSubscriptionFutureNotificationDates, generationWindow, context);
         invoice.addInvoiceItems(fixedAndRecurringItems);
 
         final List<InvoiceItem> usageItems = usageInvoiceItemGenerator.generateItems(account, invoiceId, events, existingInvoices, adjustedTargetDate, targetCurrency, perSubscriptionFutureNotificationDates, context);
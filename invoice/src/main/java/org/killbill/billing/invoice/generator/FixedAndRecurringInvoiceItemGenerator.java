@@ -69,15 +69,26 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
                                            @Nullable final List<Invoice> existingInvoices, final LocalDate targetDate,
                                            final Currency targetCurrency, Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate,
                                            final InternalCallContext internalCallContext) throws InvoiceApiException {
+        return generateItems(account, invoiceId, eventSet, existingInvoices, targetDate, targetCurrency, perSubscriptionFutureNotificationDate, null, internalCallContext);
+    }
+
+    public List<InvoiceItem> generateItems(final ImmutableAccountData account, final UUID invoiceId, final BillingEventSet eventSet,
+                                           @Nullable final List<Invoice> existingInvoices, final LocalDate targetDate,
+                                           final Currency targetCurrency, Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate,
+                                           @Nullable final InvoiceGenerationWindow generationWindow,
+                                           final InternalCallContext internalCallContext) throws InvoiceApiException {
         final AccountItemTree accountItemTree = new AccountItemTree(account.getId(), invoiceId);
         if (existingInvoices != null) {
+            final List<InvoiceItem> existingItems = new ArrayList<InvoiceItem>();
             for (final Invoice invoice : existingInvoices) {
-                for (final InvoiceItem item : invoice.getInvoiceItems()) {
-                    if (item.getSubscriptionId() == null || // Always include migration invoices, credits, external charges etc.
-                        !eventSet.getSubscriptionIdsWithAutoInvoiceOff()
-                                 .contains(item.getSubscriptionId())) { //don't add items with auto_invoice_off tag
-                        accountItemTree.addExistingItem(item);
-                    }
+                existingItems.addAll(invoice.getInvoiceItems());
+            }
+            // Adjustments can point to items on other invoices (REPAIR_ADJ), hence the filtering across all invoices
+            for (final InvoiceItem item : generationWindow == null ? existingItems : generationWindow.filterExistingItems(existingItems)) {
+                if (item.getSubscriptionId() == null || // Always include migration invoices, credits, external charges etc.
+                    !eventSet.getSubscriptionIdsWithAutoInvoiceOff()
+                             .contains(item.getSubscriptionId())) { //don't add items with auto_invoice_off tag
+                    accountItemTree.addExistingItem(item);
                 }
             }
         }
@@ -87,7 +98,8 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
         processRecurringBillingEvents(invoiceId, account.getId(), eventSet, targetDate, targetCurrency, proposedItems, perSubscriptionFutureNotificationDate);
         processFixedBillingEvents(invoiceId, account.getId(), eventSet, targetDate, targetCurrency, proposedItems);
 
-        accountItemTree.mergeWithProposedItems(proposedItems);
+        // In incremental mode, only merge what overlaps the window: everything before has already been reconciled
+        accountItemTree.mergeWithProposedItems(generationWindow == null ? proposedItems : generationWindow.filterProposedItems(proposedItems));
         return accountItemTree.getResultingItemList();
     }
 
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.generator;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.killbill.billing.catalog.api.Usage;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.dao.InvoiceBillingWatermarkModelDao;
+import org.killbill.billing.invoice.dao.InvoiceItemModelDao;
+import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.junction.BillingEventSet;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Computes the per-subscription billed-through watermarks used by the incremental invoice generation.
+ * <p/>
+ * A watermark is only trusted if the fingerprint of the billing events for that subscription hasn't changed since it was
+ * recorded: any new, modified or removed billing event (change, cancellation, blocking state, AUTO_INVOICE_OFF, ...)
+ * results in a different hash and the subscription is then reprocessed from its first billing event. Manual item adjustments
+ * are part of the fingerprint as well, since they change what the generator has to repair.
+ */
+public class InvoiceBillingWatermarkCalculator {
+
+    private InvoiceBillingWatermarkCalculator() {
+    }
+
+    /**
+     * @param billingEvents   the billing events for the account
+     * @param itemAdjustments the ITEM_ADJ items for the account, with the subscription of the item they adjust, sorted by record id
+     * @return the fingerprint per subscription
+     */
+    public static Map<UUID, String> computeBillingEventsHashes(final BillingEventSet billingEvents, final Iterable<InvoiceItemModelDao> itemAdjustments) {
+        final Map<UUID, Hasher> perSubscriptionHashers = new LinkedHashMap<UUID, Hasher>();
+        for (final BillingEvent event : billingEvents) {
+            final UUID subscriptionId = event.getSubscription().getId();
+            Hasher hasher = perSubscriptionHashers.get(subscriptionId);
+            if (hasher == null) {
+                hasher = Hashing.sha1().newHasher();
+                hasher.putString(billingEvents.getRecurringBillingMode().toString(), Charsets.UTF_8);
+                hasher.putBoolean(billingEvents.getSubscriptionIdsWithAutoInvoiceOff().contains(subscriptionId));
+                perSubscriptionHashers.put(subscriptionId, hasher);
+            }
+
+            hasher.putLong(event.getEffectiveDate().getMillis())
+                  .putString(String.valueOf(event.getTransitionType()), Charsets.UTF_8)
+                  .putString(event.getPlan() != null ? event.getPlan().getName() : "", Charsets.UTF_8)
+                  .putString(event.getPlanPhase() != null ? event.getPlanPhase().getName() : "", Charsets.UTF_8)
+                  .putString(String.valueOf(event.getBillingPeriod()), Charsets.UTF_8)
+                  .putInt(event.getBillCycleDayLocal())
+                  .putString(String.valueOf(event.getCurrency()), Charsets.UTF_8)
+                  .putString(toHashableString(event.getFixedPrice()), Charsets.UTF_8)
+                  .putString(toHashableString(event.getRecurringPrice()), Charsets.UTF_8);
+            for (final Usage usage : event.getUsages()) {
+                hasher.putString(usage.getName(), Charsets.UTF_8);
+            }
+        }
+
+        for (final InvoiceItemModelDao itemAdjustment : itemAdjustments) {
+            final Hasher hasher = perSubscriptionHashers.get(itemAdjustment.getSubscriptionId());
+            if (hasher == null) {
+                continue;
+            }
+
+            hasher.putString(itemAdjustment.getId().toString(), Charsets.UTF_8)
+                  .putString(toHashableString(itemAdjustment.getAmount()), Charsets.UTF_8);
+        }
+
+        final Map<UUID, String> result = new HashMap<UUID, String>();
+        for (final UUID subscriptionId : perSubscriptionHashers.keySet()) {
+            result.put(subscriptionId, perSubscriptionHashers.get(subscriptionId).hash().toString());
+        }
+        return result;
+    }
+
+    /**
+     * @return the window to use, or null if a full rebuild is required (no watermark recorded yet for that account)
+     */
+    @Nullable
+    public static InvoiceGenerationWindow computeGenerationWindow(final BillingEventSet billingEvents,
+                                                                  final Map<UUID, String> billingEventsHashes,
+                                                                  final List<InvoiceBillingWatermarkModelDao> watermarks) {
+        if (watermarks.isEmpty() || billingEvents.isEmpty()) {
+            return null;
+        }
+
+        final Map<UUID, InvoiceBillingWatermarkModelDao> perSubscriptionWatermarks = toMap(watermarks);
+        final Map<UUID, LocalDate> perSubscriptionWindowStartDates = new HashMap<UUID, LocalDate>();
+        for (final BillingEvent event : billingEvents) {
+            final UUID subscriptionId = event.getSubscription().getId();
+            if (perSubscriptionWindowStartDates.containsKey(subscriptionId)) {
+                continue;
+            }
+
+            final InvoiceBillingWatermarkModelDao watermark = perSubscriptionWatermarks.get(subscriptionId);
+            if (watermark != null && watermark.getBillingEventsHash().equals(billingEventsHashes.get(subscriptionId))) {
+                perSubscriptionWindowStartDates.put(subscriptionId, watermark.getBilledThroughDate());
+            } else {
+                // Billing events are sorted per subscription, so this is the first one: no item can start before it
+                perSubscriptionWindowStartDates.put(subscriptionId, billingEvents.getAccountDateAndTimeZoneContext().computeLocalDateFromFixedAccountOffset(event.getEffectiveDate()));
+            }
+        }
+        return new InvoiceGenerationWindow(perSubscriptionWindowStartDates);
+    }
+
+    /**
+     * Compute the watermarks to record after a successful (non dry-run) invoice generation.
+     *
+     * @param billingEventsHashes the billing events fingerprints used for that generation
+     * @param billingEvents       the billing events used for that generation
+     * @param existingInvoices    the existing invoices fed into the generator (full or windowed)
+     * @param newInvoice          the generated invoice, if any
+     * @param targetDate          the target date of that generation
+     * @param currentWatermarks   the watermarks read prior the generation
+     * @param now                 the current time
+     * @return the new or modified watermarks
+     */
+    public static List<InvoiceBillingWatermarkModelDao> computeWatermarks(final Map<UUID, String> billingEventsHashes,
+                                                                          final BillingEventSet billingEvents,
+                                                                          final Iterable<Invoice> existingInvoices,
+                                                                          @Nullable final Invoice newInvoice,
+                                                                          final LocalDate targetDate,
+                                                                          final List<InvoiceBillingWatermarkModelDao> currentWatermarks,
+                                                                          final DateTime now) {
+        final Map<UUID, LocalDate> perSubscriptionMaxItemDates = new HashMap<UUID, LocalDate>();
+        for (final Invoice invoice : existingInvoices) {
+            updateMaxItemDates(invoice.getInvoiceItems(), perSubscriptionMaxItemDates);
+        }
+        if (newInvoice != null) {
+            updateMaxItemDates(newInvoice.getInvoiceItems(), perSubscriptionMaxItemDates);
+        }
+
+        final Map<UUID, InvoiceBillingWatermarkModelDao> perSubscriptionWatermarks = toMap(currentWatermarks);
+        final List<InvoiceBillingWatermarkModelDao> result = new LinkedList<InvoiceBillingWatermarkModelDao>();
+        for (final UUID subscriptionId : billingEventsHashes.keySet()) {
+            if (billingEvents.getSubscriptionIdsWithAutoInvoiceOff().contains(subscriptionId)) {
+                // Nothing was reconciled for that subscription
+                continue;
+            }
+
+            final String billingEventsHash = billingEventsHashes.get(subscriptionId);
+            final InvoiceBillingWatermarkModelDao currentWatermark = perSubscriptionWatermarks.get(subscriptionId);
+            final boolean isCurrentWatermarkValid = currentWatermark != null && currentWatermark.getBillingEventsHash().equals(billingEventsHash);
+
+            // Items generated after this run can only start after the target date, or after the last item for that subscription
+            final LocalDate maxItemDate = perSubscriptionMaxItemDates.get(subscriptionId);
+            LocalDate billedThroughDate = maxItemDate != null && maxItemDate.isAfter(targetDate) ? targetDate : maxItemDate;
+            if (isCurrentWatermarkValid && (billedThroughDate == null || currentWatermark.getBilledThroughDate().isAfter(billedThroughDate))) {
+                billedThroughDate = currentWatermark.getBilledThroughDate();
+            }
+
+            if (billedThroughDate == null ||
+                (isCurrentWatermarkValid && currentWatermark.getBilledThroughDate().compareTo(billedThroughDate) == 0)) {
+                continue;
+            }
+            result.add(new InvoiceBillingWatermarkModelDao(subscriptionId, billedThroughDate, billingEventsHash, now));
+        }
+        return result;
+    }
+
+    private static void updateMaxItemDates(final Iterable<InvoiceItem> items, final Map<UUID, LocalDate> perSubscriptionMaxItemDates) {
+        for (final InvoiceItem item : items) {
+            if (item.getSubscriptionId() == null ||
+                (item.getInvoiceItemType() != InvoiceItemType.RECURRING && item.getInvoiceItemType() != InvoiceItemType.FIXED)) {
+                continue;
+            }
+
+            final LocalDate itemDate = item.getEndDate() != null ? item.getEndDate() : item.getStartDate();
+            final LocalDate maxItemDate = perSubscriptionMaxItemDates.get(item.getSubscriptionId());
+            if (maxItemDate == null || itemDate.isAfter(maxItemDate)) {
+                perSubscriptionMaxItemDates.put(item.getSubscriptionId(), itemDate);
+            }
+        }
+    }
+
+    private static Map<UUID, InvoiceBillingWatermarkModelDao> toMap(final Iterable<InvoiceBillingWatermarkModelDao> watermarks) {
+        final Map<UUID, InvoiceBillingWatermarkModelDao> result = new HashMap<UUID, InvoiceBillingWatermarkModelDao>();
+        for (final InvoiceBillingWatermarkModelDao watermark : watermarks) {
+            result.put(watermark.getSubscriptionId(), watermark);
+        }
+        return result;
+    }
+
+    private static String toHashableString(@Nullable final BigDecimal price) {
+        // Make sure 10 and 10.000 hash the same way
+        return price == null ? "" : price.setScale(9, BigDecimal.ROUND_HALF_UP).toPlainString();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.generator;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.InvoiceItemType;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Per-subscription window used by the incremental invoice generation.
+ * <p/>
+ * For each subscription, only the items overlapping [windowStartDate, +inf) are fed into the item tree, both for the
+ * existing items read on disk and for the proposed items computed from the billing events. Both sides must be filtered
+ * with the exact same rules for the merge to be equivalent to a full rebuild.
+ */
+public class InvoiceGenerationWindow {
+
+    private final Map<UUID, LocalDate> perSubscriptionWindowStartDates;
+    private final LocalDate minWindowStartDate;
+
+    public InvoiceGenerationWindow(final Map<UUID, LocalDate> perSubscriptionWindowStartDates) {
+        Preconditions.checkArgument(!perSubscriptionWindowStartDates.isEmpty(), "The generation window needs at least one subscription");
+        this.perSubscriptionWindowStartDates = ImmutableMap.<UUID, LocalDate>copyOf(perSubscriptionWindowStartDates);
+
+        LocalDate minDate = null;
+        for (final LocalDate windowStartDate : perSubscriptionWindowStartDates.values()) {
+            if (minDate == null || windowStartDate.isBefore(minDate)) {
+                minDate = windowStartDate;
+            }
+        }
+        this.minWindowStartDate = minDate;
+    }
+
+    public LocalDate getMinWindowStartDate() {
+        return minWindowStartDate;
+    }
+
+    @Nullable
+    public LocalDate getWindowStartDate(final UUID subscriptionId) {
+        return perSubscriptionWindowStartDates.get(subscriptionId);
+    }
+
+    public List<InvoiceItem> filterProposedItems(final Iterable<InvoiceItem> proposedItems) {
+        final List<InvoiceItem> result = new LinkedList<InvoiceItem>();
+        for (final InvoiceItem item : proposedItems) {
+            if (isInWindow(item)) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Filter the existing items: adjustments (ITEM_ADJ, REPAIR_ADJ) are kept if and only if the item they point to is kept,
+     * as the tree can't attach an adjustment to a missing item.
+     *
+     * @param existingItems items read on disk
+     * @return the items to feed into the tree
+     */
+    public List<InvoiceItem> filterExistingItems(final Iterable<InvoiceItem> existingItems) {
+        final Set<UUID> keptItemIds = new HashSet<UUID>();
+        final List<InvoiceItem> result = new LinkedList<InvoiceItem>();
+        for (final InvoiceItem item : existingItems) {
+            if (!isAdjustment(item) && isInWindow(item)) {
+                keptItemIds.add(item.getId());
+                result.add(item);
+            }
+        }
+        for (final InvoiceItem item : existingItems) {
+            if (isAdjustment(item) && keptItemIds.contains(item.getLinkedItemId())) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private boolean isInWindow(final InvoiceItem item) {
+        if (item.getSubscriptionId() == null ||
+            (item.getInvoiceItemType() != InvoiceItemType.RECURRING && item.getInvoiceItemType() != InvoiceItemType.FIXED)) {
+            // Not tracked by the watermarks (usage items, credits, external charges, ...)
+            return true;
+        }
+
+        final LocalDate windowStartDate = perSubscriptionWindowStartDates.get(item.getSubscriptionId());
+        if (windowStartDate == null) {
+            // Unknown subscription (e.g. no billing event anymore): keep it to be on the safe side
+            return true;
+        }
+
+        return item.getEndDate() != null ? item.getEndDate().isAfter(windowStartDate) : !item.getStartDate().isBefore(windowStartDate);
+    }
+
+    private boolean isAdjustment(final InvoiceItem item) {
+        return item.getInvoiceItemType() == InvoiceItemType.ITEM_ADJ || item.getInvoiceItemType() == InvoiceItemType.REPAIR_ADJ;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("InvoiceGenerationWindow{");
+        sb.append("minWindowStartDate=").append(minWindowStartDate);
+        sb.append(", perSubscriptionWindowStartDates=").append(perSubscriptionWindowStartDates);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -32,4 +32,8 @@ import org.killbill.billing.junction.BillingEventSet;
 public interface InvoiceGenerator {
     InvoiceWithMetadata generateInvoice(ImmutableAccountData account,  @Nullable BillingEventSet events, @Nullable List<Invoice> existingInvoices,
                                         LocalDate targetDate, Currency targetCurrency, final InternalCallContext context) throws InvoiceApiException;
+
+    InvoiceWithMetadata generateInvoice(ImmutableAccountData account,  @Nullable BillingEventSet events, @Nullable List<Invoice> existingInvoices,
+                                        LocalDate targetDate, Currency targetCurrency, @Nullable InvoiceGenerationWindow generationWindow,
+                                        final InternalCallContext context) throws InvoiceApiException;
 }
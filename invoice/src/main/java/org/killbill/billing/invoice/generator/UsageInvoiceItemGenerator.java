@@ -18,10 +18,12 @@
 package org.killbill.billing.invoice.generator;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -108,7 +110,8 @@ public class UsageInvoiceItemGenerator extends InvoiceItemGenerator {
                                     input.getBillingMode() == BillingMode.IN_ARREAR);
                         }
                     })) {
-                    rawUsageOptimizerResult = rawUsageOptimizer.getConsumableInArrearUsage(minBillingEventDate, targetDate, Iterables.concat(perSubscriptionConsumableInArrearUsageItems.values()), eventSet.getUsages(), internalCallContext);
+                    rawUsageOptimizerResult = rawUsageOptimizer.getConsumableInArrearUsage(minBillingEventDate, targetDate, Iterables.concat(perSubscriptionConsumableInArrearUsageItems.values()), eventSet.getUsages(),
+                                                                                           getPeriodStartDates(eventSet, minBillingEventDate, targetDate), internalCallContext);
                 }
 
                 // None of the billing events report any usage (CONSUMABLE/IN_ARREAR) sections
@@ -147,6 +150,24 @@ public class UsageInvoiceItemGenerator extends InvoiceItemGenerator {
     }
 
 
+    // Usage is billed per [BCD, next BCD) period, and each billing event starts a new period: usage for a calendar month can only be
+    // read as a single total if none of these dates fall within that month. All BCDs of the account are used, which is conservative.
+    private Set<LocalDate> getPeriodStartDates(final BillingEventSet eventSet, final LocalDate minBillingEventDate, final LocalDate targetDate) {
+        final Set<LocalDate> result = new HashSet<LocalDate>();
+        final Set<Integer> billCycleDays = new HashSet<Integer>();
+        for (final BillingEvent event : eventSet) {
+            result.add(eventSet.getAccountDateAndTimeZoneContext().computeLocalDateFromFixedAccountOffset(event.getEffectiveDate()));
+            billCycleDays.add(event.getBillCycleDayLocal());
+        }
+
+        for (LocalDate month = minBillingEventDate.withDayOfMonth(1); !month.isAfter(targetDate); month = month.plusMonths(1)) {
+            for (final Integer billCycleDay : billCycleDays) {
+                result.add(month.withDayOfMonth(Math.min(billCycleDay, month.dayOfMonth().getMaximumValue())));
+            }
+        }
+        return result;
+    }
+
     private LocalDate getMinBillingEventDate(final BillingEventSet eventSet, final DateTimeZone accountTimeZone) {
         DateTime minDate = null;
         final Iterator<BillingEvent> events = eventSet.iterator();
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.invoice.notification;
+
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+
+public class NextBillingDateNotification {
+
+    private final UUID subscriptionId;
+    private final DateTime futureNotificationTime;
+    private final DateTime targetDate;
+    private final boolean isDryRunForInvoiceNotification;
+
+    public NextBillingDateNotification(final UUID subscriptionId, final DateTime futureNotificationTime, final DateTime targetDate, final boolean isDryRunForInvoiceNotification) {
+        this.subscriptionId = subscriptionId;
+        this.futureNotificationTime = futureNotificationTime;
+        this.targetDate = targetDate;
+        this.isDryRunForInvoiceNotification = isDryRunForInvoiceNotification;
+    }
+
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public DateTime getFutureNotificationTime() {
+        return futureNotificationTime;
+    }
+
+    public DateTime getTargetDate() {
+        return targetDate;
+    }
+
+    public boolean isDryRunForInvoiceNotification() {
+        return isDryRunForInvoiceNotification;
+    }
+}
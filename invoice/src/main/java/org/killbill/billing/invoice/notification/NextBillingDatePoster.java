@@ -18,6 +18,7 @@
 
 package org.killbill.billing.invoice.notification;
 
+import java.util.List;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -33,4 +34,7 @@ public interface NextBillingDatePoster {
     void insertNextBillingDryRunNotificationFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final UUID accountId,
                                                             final UUID subscriptionId, final DateTime futureNotificationTime, final DateTime targetDate, final AccountDateAndTimeZoneContext accountDateAndTimeZoneContext, final InternalCallContext internalCallContext);
 
+    // Reads the account future notifications once and only schedules the dates (per local date and dry-run mode) not already scheduled
+    void insertNextBillingNotificationsFromTransaction(EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, UUID accountId,
+                                                       List<NextBillingDateNotification> notifications, AccountDateAndTimeZoneContext accountDateAndTimeZoneContext, InternalCallContext internalCallContext);
 }
@@ -18,17 +18,23 @@ package org.killbill.billing.invoice.template;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nullable;
 
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.currency.api.CurrencyConversionApi;
+import org.killbill.billing.invoice.api.HtmlInvoiceUserApi.HtmlInvoiceBody;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.formatters.InvoiceFormatter;
 import org.killbill.billing.invoice.api.formatters.InvoiceFormatterFactory;
@@ -39,10 +45,12 @@ import org.killbill.billing.tenant.api.TenantInternalApi;
 import org.killbill.billing.util.LocaleUtils;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.email.templates.TemplateEngine;
+import org.killbill.billing.util.email.templates.TemplateEngine.CompiledTemplate;
 import org.killbill.billing.util.io.IOUtils;
 import org.killbill.billing.util.template.translation.TranslatorConfig;
 import org.killbill.xmlloader.UriAccessor;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
 
@@ -55,6 +63,12 @@ public class HtmlInvoiceGenerator {
     private final TenantInternalApi tenantApi;
     private final ResourceBundleFactory bundleFactory;
 
+    // Compiled templates per tenant record id, keyed by locale and variant. The entry of a tenant is dropped when its invoice
+    // templates change (see InvoiceListener#handleTenantConfigChange), once the tenant cache has been invalidated.
+    private final ConcurrentMap<Long, ConcurrentMap<String, CompiledTemplate>> compiledTemplates = new ConcurrentHashMap<Long, ConcurrentMap<String, CompiledTemplate>>();
+    // Default templates are read from the classpath (or a configured uri) once
+    private final ConcurrentMap<String, String> defaultTemplates = new ConcurrentHashMap<String, String>();
+
     @Inject
     public HtmlInvoiceGenerator(final InvoiceFormatterFactory factory,
                                 final TemplateEngine templateEngine,
@@ -76,11 +90,34 @@ public class HtmlInvoiceGenerator {
             return null;
         }
 
-        final String accountLocale = Strings.emptyToNull(account.getLocale());
-        final Locale locale = accountLocale == null ? Locale.getDefault() : LocaleUtils.toLocale(accountLocale);
-
         final HtmlInvoice invoiceData = new HtmlInvoice();
         final Map<String, Object> data = new HashMap<String, Object>();
+        final CompiledTemplate template = prepareInvoice(account, invoice, manualPay, invoiceData, data, context);
+        invoiceData.setBody(template.execute(data));
+        return invoiceData;
+    }
+
+    // Same as above, but the body is only rendered when written, straight to the stream
+    public HtmlInvoiceBody generateInvoiceBody(final Account account, final Invoice invoice, final boolean manualPay, final InternalTenantContext context) throws IOException {
+        final Map<String, Object> data = new HashMap<String, Object>();
+        final CompiledTemplate template = prepareInvoice(account, invoice, manualPay, new HtmlInvoice(), data, context);
+        return new HtmlInvoiceBody() {
+            @Override
+            public void writeTo(final OutputStream out) throws IOException {
+                final Writer writer = new OutputStreamWriter(out, Charsets.UTF_8);
+                template.execute(data, writer);
+                writer.flush();
+            }
+        };
+    }
+
+    public void clearTemplates(final Long tenantRecordId) {
+        compiledTemplates.remove(tenantRecordId);
+    }
+
+    private CompiledTemplate prepareInvoice(final Account account, final Invoice invoice, final boolean manualPay, final HtmlInvoice invoiceData, final Map<String, Object> data, final InternalTenantContext context) throws IOException {
+        final String accountLocale = Strings.emptyToNull(account.getLocale());
+        final Locale locale = accountLocale == null ? Locale.getDefault() : LocaleUtils.toLocale(accountLocale);
 
         final ResourceBundle invoiceBundle = accountLocale != null ?
                                              bundleFactory.createBundle(LocaleUtils.toLocale(accountLocale), config.getInvoiceTemplateBundlePath(), ResourceBundleType.INVOICE_TRANSLATION, context) : null;
@@ -94,9 +131,26 @@ public class HtmlInvoiceGenerator {
         data.put("invoice", formattedInvoice);
 
         invoiceData.setSubject(invoiceTranslator.getInvoiceEmailSubject());
-        final String templateText = getTemplateText(locale, manualPay, context);
-        invoiceData.setBody(templateEngine.executeTemplateText(templateText, data));
-        return invoiceData;
+        return getTemplate(locale, manualPay, context);
+    }
+
+    private CompiledTemplate getTemplate(final Locale locale, final boolean manualPay, final InternalTenantContext context) throws IOException {
+        // Retrieve the tenant entry before the template text: if the cache is cleared in between, the template we compile lands in the detached entry
+        ConcurrentMap<String, CompiledTemplate> tenantTemplates = compiledTemplates.get(context.getTenantRecordId());
+        if (tenantTemplates == null) {
+            final ConcurrentMap<String, CompiledTemplate> newTenantTemplates = new ConcurrentHashMap<String, CompiledTemplate>();
+            final ConcurrentMap<String, CompiledTemplate> existingTenantTemplates = compiledTemplates.putIfAbsent(context.getTenantRecordId(), newTenantTemplates);
+            tenantTemplates = existingTenantTemplates != null ? existingTenantTemplates : newTenantTemplates;
+        }
+
+        final String key = locale + (manualPay ? "-manualPay" : "");
+        CompiledTemplate template = tenantTemplates.get(key);
+        if (template == null) {
+            // Concurrent misses may compile the same template twice, which is harmless
+            template = templateEngine.compileTemplateText(getTemplateText(locale, manualPay, context));
+            tenantTemplates.put(key, template);
+        }
+        return template;
     }
 
     private String getTemplateText(final Locale locale, final boolean manualPay, final InternalTenantContext context) throws IOException {
@@ -113,9 +167,16 @@ public class HtmlInvoiceGenerator {
     }
 
     private String getDefaultTemplate(final String templateName) throws IOException {
+        final String cachedTemplate = defaultTemplates.get(templateName);
+        if (cachedTemplate != null) {
+            return cachedTemplate;
+        }
+
         try {
             final InputStream templateStream = UriAccessor.accessUri(templateName);
-            return IOUtils.toString(templateStream);
+            final String template = IOUtils.toString(templateStream);
+            defaultTemplates.put(templateName, template);
+            return template;
         } catch (URISyntaxException e) {
             throw new IOException(e);
         }
@@ -18,6 +18,7 @@
 
 package org.killbill.billing.invoice;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
@@ -27,13 +28,16 @@ import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
 import org.killbill.billing.account.api.Account;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.formatters.InvoiceFormatterFactory;
 import org.killbill.billing.invoice.template.HtmlInvoice;
 import org.killbill.billing.invoice.template.HtmlInvoiceGenerator;
+import org.killbill.billing.invoice.template.bundles.DefaultResourceBundleFactory;
 import org.killbill.billing.invoice.template.formatters.DefaultInvoiceFormatterFactory;
+import org.killbill.billing.tenant.api.TenantInternalApi;
 import org.killbill.billing.util.email.templates.MustacheTemplateEngine;
 import org.killbill.billing.util.email.templates.TemplateEngine;
 import org.killbill.billing.util.template.translation.TranslatorConfig;
@@ -65,6 +69,37 @@ public class TestHtmlInvoiceGenerator extends InvoiceTestSuiteNoDB {
         Assert.assertEquals(output.getSubject(), "Your invoice");
     }
 
+    @Test(groups = "fast")
+    public void testGenerateInvoiceWithUpdatedTenantTemplate() throws Exception {
+        final TenantInternalApi tenantInternalApi = Mockito.mock(TenantInternalApi.class);
+        final TranslatorConfig config = new ConfigurationObjectFactory(skifeConfigSource).build(TranslatorConfig.class);
+        final HtmlInvoiceGenerator generator = new HtmlInvoiceGenerator(new DefaultInvoiceFormatterFactory(), new MustacheTemplateEngine(), config, null, new DefaultResourceBundleFactory(tenantInternalApi), tenantInternalApi);
+        final InternalTenantContext tenantContext = new InternalTenantContext(1L, internalCallContext.getAccountRecordId());
+        final Account account = createAccount();
+        final Invoice invoice = createInvoice();
+
+        Mockito.when(tenantInternalApi.getInvoiceTemplate(Locale.US, tenantContext)).thenReturn("<p>{{account.name}}</p>");
+        Assert.assertEquals(generator.generateInvoice(account, invoice, false, tenantContext).getBody(), "<p>Jim Smith</p>");
+        Assert.assertEquals(generator.generateInvoice(account, invoice, false, tenantContext).getBody(), "<p>Jim Smith</p>");
+
+        // The compiled template is kept until the tenant templates change (see InvoiceListener)
+        Mockito.when(tenantInternalApi.getInvoiceTemplate(Locale.US, tenantContext)).thenReturn("<p>{{account.email}}</p>");
+        Assert.assertEquals(generator.generateInvoice(account, invoice, false, tenantContext).getBody(), "<p>Jim Smith</p>");
+        generator.clearTemplates(tenantContext.getTenantRecordId());
+        Assert.assertEquals(generator.generateInvoice(account, invoice, false, tenantContext).getBody(), "<p>jim.smith@mail.com</p>");
+    }
+
+    @Test(groups = "fast")
+    public void testGenerateInvoiceBody() throws Exception {
+        final Account account = createAccount();
+        final Invoice invoice = createInvoice();
+        final HtmlInvoice expected = g.generateInvoice(account, invoice, false, internalCallContext);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        g.generateInvoiceBody(account, invoice, false, internalCallContext).writeTo(out);
+        Assert.assertEquals(out.toString("UTF-8"), expected.getBody());
+    }
+
     @Test(groups = "fast")
     public void testGenerateEmptyInvoice() throws Exception {
         final Invoice invoice = Mockito.mock(Invoice.class);
@@ -23,6 +23,7 @@ import javax.inject.Inject;
 import org.joda.time.DateTime;
 
 import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.junction.BillingInternalApi;
 import org.killbill.clock.Clock;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 
@@ -32,8 +33,8 @@ public class TestInvoiceNotificationQListener extends InvoiceListener {
     UUID latestSubscriptionId = null;
 
     @Inject
-    public TestInvoiceNotificationQListener(final AccountInternalApi accountApi, final Clock clock, final InternalCallContextFactory internalCallContextFactory, final InvoiceDispatcher dispatcher) {
-        super(accountApi, clock, internalCallContextFactory, null, dispatcher);
+    public TestInvoiceNotificationQListener(final AccountInternalApi accountApi, final BillingInternalApi billingApi, final Clock clock, final InternalCallContextFactory internalCallContextFactory, final InvoiceDispatcher dispatcher) {
+        super(accountApi, billingApi, clock, internalCallContextFactory, null, dispatcher);
     }
 
     @Override
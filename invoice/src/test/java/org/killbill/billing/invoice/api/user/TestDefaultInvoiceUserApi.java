@@ -26,12 +26,14 @@ import org.killbill.billing.ErrorCode;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.callcontext.DefaultCallContext;
+import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.InvoiceTestSuiteWithEmbeddedDB;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.api.UnpaidInvoicesSummary;
 import org.killbill.billing.invoice.model.ExternalChargeInvoiceItem;
 import org.killbill.billing.util.api.TagApiException;
 import org.killbill.billing.util.callcontext.CallContext;
@@ -367,4 +369,27 @@ public class TestDefaultInvoiceUserApi extends InvoiceTestSuiteWithEmbeddedDB {
         final Invoice invoiceAfterTagRemoval = invoiceUserApi.getInvoice(invoiceId, callContext);
         assertEquals(invoiceAfterTagRemoval.getBalance().compareTo(BigDecimal.ZERO), 1);
     }
+
+    @Test(groups = "slow")
+    public void testWrittenOffTagFromTagApiInUnpaidInvoicesSummary() throws TagApiException {
+        final InternalCallContext internalContext = internalCallContextFactory.createInternalCallContext(accountId, callContext);
+
+        final UnpaidInvoicesSummary originalSummary = invoiceInternalApi.getUnpaidInvoicesSummary(accountId, null, internalContext);
+        assertEquals(originalSummary.getNumberOfUnpaidInvoices(), 1);
+        assertEquals(originalSummary.getIdOfEarliestUnpaidInvoice(), invoiceId);
+
+        // Not through the invoice api: the summary must not rely on a refresh
+        tagUserApi.addTag(invoiceId, ObjectType.INVOICE, ControlTagType.WRITTEN_OFF.getId(), callContext);
+
+        final UnpaidInvoicesSummary summaryWithTag = invoiceInternalApi.getUnpaidInvoicesSummary(accountId, null, internalContext);
+        assertEquals(summaryWithTag.getNumberOfUnpaidInvoices(), 0);
+        assertEquals(summaryWithTag.getUnpaidInvoiceBalance().compareTo(BigDecimal.ZERO), 0);
+        Assert.assertNull(summaryWithTag.getIdOfEarliestUnpaidInvoice());
+
+        tagUserApi.removeTag(invoiceId, ObjectType.INVOICE, ControlTagType.WRITTEN_OFF.getId(), callContext);
+
+        final UnpaidInvoicesSummary summaryAfterTagRemoval = invoiceInternalApi.getUnpaidInvoicesSummary(accountId, null, internalContext);
+        assertEquals(summaryAfterTagRemoval.getNumberOfUnpaidInvoices(), 1);
+        assertEquals(summaryAfterTagRemoval.getUnpaidInvoiceBalance().compareTo(originalSummary.getUnpaidInvoiceBalance()), 0);
+    }
 }
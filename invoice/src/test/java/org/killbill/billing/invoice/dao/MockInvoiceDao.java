@@ -35,6 +35,7 @@ import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.InvoiceDispatcher.FutureAccountNotifications;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.InvoiceItemType;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceCreationEvent;
 import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Pagination;
@@ -43,6 +44,7 @@ import org.killbill.bus.api.PersistentBus;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 
 public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice, InvoiceApiException> implements InvoiceDao {
@@ -53,6 +55,7 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
     private final Map<UUID, InvoiceItemModelDao> items = new LinkedHashMap<UUID, InvoiceItemModelDao>();
     private final Map<UUID, InvoicePaymentModelDao> payments = new LinkedHashMap<UUID, InvoicePaymentModelDao>();
     private final BiMap<UUID, Long> accountRecordIds = HashBiMap.create();
+    private final Map<UUID, InvoiceBillingWatermarkModelDao> watermarks = new LinkedHashMap<UUID, InvoiceBillingWatermarkModelDao>();
 
     @Inject
     public MockInvoiceDao(final PersistentBus eventBus) {
@@ -62,8 +65,16 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
     @Override
     public void createInvoice(final InvoiceModelDao invoice, final List<InvoiceItemModelDao> invoiceItems,
                               final boolean isRealInvoice, final FutureAccountNotifications callbackDateTimePerSubscriptions, final InternalCallContext context) {
+        createInvoice(invoice, invoiceItems, isRealInvoice, callbackDateTimePerSubscriptions, ImmutableList.<InvoiceBillingWatermarkModelDao>of(), context);
+    }
+
+    @Override
+    public void createInvoice(final InvoiceModelDao invoice, final List<InvoiceItemModelDao> invoiceItems,
+                              final boolean isRealInvoice, final FutureAccountNotifications callbackDateTimePerSubscriptions,
+                              final List<InvoiceBillingWatermarkModelDao> billingWatermarks, final InternalCallContext context) {
         synchronized (monitor) {
             storeInvoice(invoice, context);
+            storeBillingWatermarks(billingWatermarks);
         }
         try {
             eventBus.post(new DefaultInvoiceCreationEvent(invoice.getId(), invoice.getAccountId(),
@@ -79,6 +90,14 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
 
     }
 
+    @Override
+    public void setFutureAccountNotificationsForEmptyInvoice(final UUID accountId, final FutureAccountNotifications callbackDateTimePerSubscriptions,
+                                                             final List<InvoiceBillingWatermarkModelDao> billingWatermarks, final InternalCallContext context) {
+        synchronized (monitor) {
+            storeBillingWatermarks(billingWatermarks);
+        }
+    }
+
     @Override
     public List<InvoiceItemModelDao> createInvoices(final List<InvoiceModelDao> invoiceModelDaos, final InternalCallContext context) {
         synchronized (monitor) {
@@ -179,6 +198,46 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
         return result;
     }
 
+    @Override
+    public List<InvoiceModelDao> getInvoicesByAccountForIncrementalGeneration(final LocalDate fromDate, final InternalTenantContext context) {
+        // The window is only an optimization, the generator filters the items anyway
+        return getInvoicesByAccount(context);
+    }
+
+    @Override
+    public List<InvoiceBillingWatermarkModelDao> getBillingWatermarks(final InternalTenantContext context) {
+        synchronized (monitor) {
+            return new ArrayList<InvoiceBillingWatermarkModelDao>(watermarks.values());
+        }
+    }
+
+    @Override
+    public List<InvoiceItemModelDao> getItemAdjustmentsForBillingWatermarks(final InternalTenantContext context) {
+        final List<InvoiceItemModelDao> result = new LinkedList<InvoiceItemModelDao>();
+        synchronized (monitor) {
+            final UUID accountId = accountRecordIds.inverse().get(context.getAccountRecordId());
+            for (final InvoiceItemModelDao item : items.values()) {
+                final InvoiceItemModelDao linkedItem = item.getLinkedItemId() == null ? null : items.get(item.getLinkedItemId());
+                if (item.getType() != InvoiceItemType.ITEM_ADJ || linkedItem == null || !item.getAccountId().equals(accountId)) {
+                    continue;
+                }
+
+                final InvoiceItemModelDao itemAdjustment = new InvoiceItemModelDao(item.getId(), item.getCreatedDate(), item.getType(), item.getInvoiceId(), item.getAccountId(),
+                                                                                   linkedItem.getBundleId(), linkedItem.getSubscriptionId(), item.getDescription(), item.getPlanName(),
+                                                                                   item.getPhaseName(), item.getUsageName(), item.getStartDate(), item.getEndDate(), item.getAmount(),
+                                                                                   item.getRate(), item.getCurrency(), item.getLinkedItemId());
+                result.add(itemAdjustment);
+            }
+        }
+        return result;
+    }
+
+    private void storeBillingWatermarks(final Iterable<InvoiceBillingWatermarkModelDao> newWatermarks) {
+        for (final InvoiceBillingWatermarkModelDao watermark : newWatermarks) {
+            watermarks.put(watermark.getSubscriptionId(), watermark);
+        }
+    }
+
     @Override
     public Pagination<InvoiceModelDao> searchInvoices(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
         final List<InvoiceModelDao> results = new LinkedList<InvoiceModelDao>();
@@ -279,6 +338,29 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
         return unpaidInvoices;
     }
 
+    @Override
+    public InvoiceUnpaidSummaryModelDao getUnpaidInvoicesSummary(final UUID accountId, final LocalDate upToDate, final InternalTenantContext context) {
+        BigDecimal unpaidInvoiceBalance = BigDecimal.ZERO;
+        InvoiceModelDao earliestUnpaidInvoice = null;
+        final List<InvoiceModelDao> unpaidInvoices = getUnpaidInvoicesByAccountId(accountId, upToDate, context);
+        for (final InvoiceModelDao invoice : unpaidInvoices) {
+            unpaidInvoiceBalance = unpaidInvoiceBalance.add(InvoiceModelDaoHelper.getBalance(invoice));
+            if (earliestUnpaidInvoice == null || invoice.getInvoiceDate().isBefore(earliestUnpaidInvoice.getInvoiceDate())) {
+                earliestUnpaidInvoice = invoice;
+            }
+        }
+        return new InvoiceUnpaidSummaryModelDao(unpaidInvoices.size(),
+                                                unpaidInvoiceBalance,
+                                                earliestUnpaidInvoice == null ? null : earliestUnpaidInvoice.getId(),
+                                                earliestUnpaidInvoice == null ? null : earliestUnpaidInvoice.getInvoiceDate());
+    }
+
+    @Override
+    public int createMissingInvoiceBalances(final InternalCallContext context) {
+        // The summary is computed on the fly
+        return 0;
+    }
+
     @Override
     public List<InvoiceModelDao> getAllInvoicesByAccount(final InternalTenantContext context) {
         final List<InvoiceModelDao> result = new ArrayList<InvoiceModelDao>();
@@ -29,6 +29,7 @@ import java.util.UUID;
 import javax.annotation.Nullable;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.account.api.Account;
@@ -46,6 +47,8 @@ import org.killbill.billing.catalog.api.PhaseType;
 import org.killbill.billing.catalog.api.Plan;
 import org.killbill.billing.catalog.api.PlanPhase;
 import org.killbill.billing.entity.EntityPersistenceException;
+import org.killbill.billing.invoice.InvoiceDispatcher.FutureAccountNotifications;
+import org.killbill.billing.invoice.InvoiceDispatcher.FutureAccountNotifications.SubscriptionNotification;
 import org.killbill.billing.invoice.InvoiceTestSuiteWithEmbeddedDB;
 import org.killbill.billing.invoice.MockBillingEventSet;
 import org.killbill.billing.invoice.api.Invoice;
@@ -61,16 +64,21 @@ import org.killbill.billing.invoice.model.DefaultInvoice;
 import org.killbill.billing.invoice.model.DefaultInvoicePayment;
 import org.killbill.billing.invoice.model.ExternalChargeInvoiceItem;
 import org.killbill.billing.invoice.model.FixedPriceInvoiceItem;
+import org.killbill.billing.invoice.model.ItemAdjInvoiceItem;
 import org.killbill.billing.invoice.model.RecurringInvoiceItem;
 import org.killbill.billing.invoice.model.RepairAdjInvoiceItem;
+import org.killbill.billing.invoice.model.UsageInvoiceItem;
 import org.killbill.billing.junction.BillingEvent;
 import org.killbill.billing.junction.BillingEventSet;
 import org.killbill.billing.subscription.api.SubscriptionBase;
 import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
 import org.killbill.billing.util.currency.KillBillMoney;
+import org.killbill.billing.util.timezone.DefaultAccountDateAndTimeZoneContext;
 import org.killbill.clock.ClockMock;
 import org.mockito.Mockito;
+import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.exceptions.TransactionFailedException;
+import org.skife.jdbi.v2.tweak.HandleCallback;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -160,6 +168,160 @@ public class TestInvoiceDao extends InvoiceTestSuiteWithEmbeddedDB {
         assertEquals(InvoiceModelDaoHelper.getBalance(retrievedInvoice).compareTo(new BigDecimal("10.00")), 0);
     }
 
+    @Test(groups = "slow")
+    public void testCreateInvoiceWithManyItems() throws InvoiceApiException {
+        final UUID accountId = account.getId();
+        final Invoice invoice = new DefaultInvoice(accountId, clock.getUTCToday(), clock.getUTCToday(), Currency.USD);
+        final UUID invoiceId = invoice.getId();
+        final LocalDate startDate = new LocalDate(2010, 1, 1);
+        final LocalDate endDate = new LocalDate(2010, 2, 1);
+
+        final List<UUID> expectedItemIds = new ArrayList<UUID>();
+        for (int i = 0; i < 150; i++) {
+            final InvoiceItem invoiceItem = new RecurringInvoiceItem(invoiceId, accountId, UUID.randomUUID(), UUID.randomUUID(), "test plan", "test phase", startDate, endDate,
+                                                                     BigDecimal.ONE, BigDecimal.ONE, Currency.USD);
+            invoice.addInvoiceItem(invoiceItem);
+            expectedItemIds.add(invoiceItem.getId());
+        }
+        // The adjusted item is part of the same batch
+        final InvoiceItem itemAdjustment = new ItemAdjInvoiceItem(invoice.getInvoiceItems().get(0), startDate, BigDecimal.ONE.negate(), Currency.USD);
+        invoice.addInvoiceItem(itemAdjustment);
+        expectedItemIds.add(itemAdjustment.getId());
+
+        invoiceUtil.createInvoice(invoice, true, context);
+
+        final InvoiceModelDao savedInvoice = invoiceDao.getById(invoiceId, context);
+        assertEquals(savedInvoice.getInvoiceItems().size(), 151);
+        assertEquals(InvoiceModelDaoHelper.getBalance(savedInvoice).compareTo(new BigDecimal("149.00")), 0);
+
+        // Rows are inserted in order
+        final List<UUID> savedItemIds = new ArrayList<UUID>();
+        Long previousRecordId = null;
+        for (final InvoiceItemModelDao savedItem : savedInvoice.getInvoiceItems()) {
+            savedItemIds.add(savedItem.getId());
+            assertTrue(previousRecordId == null || savedItem.getRecordId() > previousRecordId);
+            previousRecordId = savedItem.getRecordId();
+        }
+        assertEquals(savedItemIds, expectedItemIds);
+    }
+
+    @Test(groups = "slow")
+    public void testIncrementalGenerationQueries() throws Exception {
+        final UUID accountId = account.getId();
+        final UUID bundleId = UUID.randomUUID();
+        final UUID subscriptionId = UUID.randomUUID();
+
+        final Invoice invoice1 = new DefaultInvoice(accountId, clock.getUTCToday(), new LocalDate(2010, 1, 1), Currency.USD);
+        final InvoiceItem recurringItem1 = new RecurringInvoiceItem(invoice1.getId(), accountId, bundleId, subscriptionId, "test plan", "test phase",
+                                                                    new LocalDate(2010, 1, 1), new LocalDate(2010, 2, 1), TEN, TEN, Currency.USD);
+        final InvoiceItem usageItem1 = new UsageInvoiceItem(invoice1.getId(), accountId, bundleId, subscriptionId, "test plan", "test phase", "test usage",
+                                                            new LocalDate(2010, 1, 1), new LocalDate(2010, 2, 1), FIVE, Currency.USD);
+        invoice1.addInvoiceItem(recurringItem1);
+        invoice1.addInvoiceItem(usageItem1);
+        invoiceUtil.createInvoice(invoice1, true, context);
+
+        final Invoice invoice2 = new DefaultInvoice(accountId, clock.getUTCToday(), new LocalDate(2010, 2, 1), Currency.USD);
+        final InvoiceItem recurringItem2 = new RecurringInvoiceItem(invoice2.getId(), accountId, bundleId, subscriptionId, "test plan", "test phase",
+                                                                    new LocalDate(2010, 2, 1), new LocalDate(2010, 3, 1), TEN, TEN, Currency.USD);
+        invoice2.addInvoiceItem(recurringItem2);
+        invoiceUtil.createInvoice(invoice2, true, context);
+
+        // Item adjustments live on the invoice of the item they adjust
+        final InvoiceItem itemAdjustment1 = new ItemAdjInvoiceItem(recurringItem1, new LocalDate(2010, 2, 10), BigDecimal.ONE.negate(), Currency.USD);
+        final InvoiceItem itemAdjustment2 = new ItemAdjInvoiceItem(recurringItem2, new LocalDate(2010, 2, 10), BigDecimal.ONE.negate(), Currency.USD);
+        invoiceUtil.createInvoiceItem(itemAdjustment1, context);
+        invoiceUtil.createInvoiceItem(itemAdjustment2, context);
+
+        // recurringItem1 (and its adjustment) is before the window, usage items are always returned
+        final Map<UUID, List<UUID>> itemIdsPerInvoiceId = toItemIdsPerInvoiceId(invoiceDao.getInvoicesByAccountForIncrementalGeneration(new LocalDate(2010, 2, 15), context));
+        assertEquals(itemIdsPerInvoiceId.size(), 2);
+        assertEquals(itemIdsPerInvoiceId.get(invoice1.getId()), ImmutableList.<UUID>of(usageItem1.getId()));
+        assertEquals(itemIdsPerInvoiceId.get(invoice2.getId()), ImmutableList.<UUID>of(recurringItem2.getId(), itemAdjustment2.getId()));
+
+        final Map<UUID, List<UUID>> itemIdsPerInvoiceIdAfterLastItem = toItemIdsPerInvoiceId(invoiceDao.getInvoicesByAccountForIncrementalGeneration(new LocalDate(2010, 3, 15), context));
+        assertEquals(itemIdsPerInvoiceIdAfterLastItem.size(), 1);
+        assertEquals(itemIdsPerInvoiceIdAfterLastItem.get(invoice1.getId()), ImmutableList.<UUID>of(usageItem1.getId()));
+
+        // The whole history is returned when the window starts with the first item
+        final Map<UUID, List<UUID>> itemIdsPerInvoiceIdFullWindow = toItemIdsPerInvoiceId(invoiceDao.getInvoicesByAccountForIncrementalGeneration(new LocalDate(2010, 1, 1), context));
+        assertEquals(itemIdsPerInvoiceIdFullWindow.get(invoice1.getId()), ImmutableList.<UUID>of(recurringItem1.getId(), usageItem1.getId(), itemAdjustment1.getId()));
+        assertEquals(itemIdsPerInvoiceIdFullWindow.get(invoice2.getId()), ImmutableList.<UUID>of(recurringItem2.getId(), itemAdjustment2.getId()));
+
+        // Item adjustments are reported against the subscription of the adjusted item
+        final List<InvoiceItemModelDao> itemAdjustments = invoiceDao.getItemAdjustmentsForBillingWatermarks(context);
+        assertEquals(itemAdjustments.size(), 2);
+        assertEquals(itemAdjustments.get(0).getId(), itemAdjustment1.getId());
+        assertEquals(itemAdjustments.get(1).getId(), itemAdjustment2.getId());
+        for (final InvoiceItemModelDao itemAdjustment : itemAdjustments) {
+            assertEquals(itemAdjustment.getType(), InvoiceItemType.ITEM_ADJ);
+            assertEquals(itemAdjustment.getSubscriptionId(), subscriptionId);
+            assertEquals(itemAdjustment.getBundleId(), bundleId);
+            assertEquals(itemAdjustment.getAmount().compareTo(BigDecimal.ONE.negate()), 0);
+        }
+    }
+
+    @Test(groups = "slow")
+    public void testBillingWatermarksAreWrittenWithTheInvoice() throws Exception {
+        final UUID accountId = account.getId();
+        final UUID subscriptionId1 = UUID.randomUUID();
+        final UUID subscriptionId2 = UUID.randomUUID();
+        final FutureAccountNotifications noNotifications = new FutureAccountNotifications(new DefaultAccountDateAndTimeZoneContext(clock.getUTCNow(), DateTimeZone.UTC),
+                                                                                          ImmutableMap.<UUID, List<SubscriptionNotification>>of());
+        assertTrue(invoiceDao.getBillingWatermarks(context).isEmpty());
+
+        final Invoice invoice = new DefaultInvoice(accountId, clock.getUTCToday(), new LocalDate(2010, 1, 1), Currency.USD);
+        invoice.addInvoiceItem(new RecurringInvoiceItem(invoice.getId(), accountId, UUID.randomUUID(), subscriptionId1, "test plan", "test phase",
+                                                        new LocalDate(2010, 1, 1), new LocalDate(2010, 2, 1), TEN, TEN, Currency.USD));
+        final InvoiceModelDao invoiceModelDao = new InvoiceModelDao(invoice);
+        final List<InvoiceItemModelDao> invoiceItemModelDaos = ImmutableList.<InvoiceItemModelDao>of(new InvoiceItemModelDao(invoice.getInvoiceItems().get(0)));
+        invoiceDao.createInvoice(invoiceModelDao, invoiceItemModelDaos, true, noNotifications,
+                                 ImmutableList.<InvoiceBillingWatermarkModelDao>of(new InvoiceBillingWatermarkModelDao(subscriptionId1, new LocalDate(2010, 1, 1), "hash1", clock.getUTCNow())),
+                                 context);
+
+        final Map<UUID, InvoiceBillingWatermarkModelDao> watermarks = toWatermarksPerSubscriptionId(invoiceDao.getBillingWatermarks(context));
+        assertEquals(watermarks.size(), 1);
+        assertEquals(watermarks.get(subscriptionId1).getBilledThroughDate(), new LocalDate(2010, 1, 1));
+        assertEquals(watermarks.get(subscriptionId1).getBillingEventsHash(), "hash1");
+
+        // Empty generation: existing watermarks are updated, new ones created
+        invoiceDao.setFutureAccountNotificationsForEmptyInvoice(accountId, noNotifications,
+                                                                ImmutableList.<InvoiceBillingWatermarkModelDao>of(new InvoiceBillingWatermarkModelDao(subscriptionId1, new LocalDate(2010, 2, 1), "hash2", clock.getUTCNow()),
+                                                                                                                  new InvoiceBillingWatermarkModelDao(subscriptionId2, new LocalDate(2010, 2, 1), "hash3", clock.getUTCNow())),
+                                                                context);
+
+        final Map<UUID, InvoiceBillingWatermarkModelDao> updatedWatermarks = toWatermarksPerSubscriptionId(invoiceDao.getBillingWatermarks(context));
+        assertEquals(updatedWatermarks.size(), 2);
+        assertEquals(updatedWatermarks.get(subscriptionId1).getBilledThroughDate(), new LocalDate(2010, 2, 1));
+        assertEquals(updatedWatermarks.get(subscriptionId1).getBillingEventsHash(), "hash2");
+        assertEquals(updatedWatermarks.get(subscriptionId2).getBillingEventsHash(), "hash3");
+
+        // Replaying an existing invoice is a no-op, including for the watermarks
+        invoiceDao.createInvoice(invoiceModelDao, invoiceItemModelDaos, true, noNotifications,
+                                 ImmutableList.<InvoiceBillingWatermarkModelDao>of(new InvoiceBillingWatermarkModelDao(subscriptionId1, new LocalDate(2010, 1, 1), "hash1", clock.getUTCNow())),
+                                 context);
+        assertEquals(toWatermarksPerSubscriptionId(invoiceDao.getBillingWatermarks(context)).get(subscriptionId1).getBillingEventsHash(), "hash2");
+    }
+
+    private Map<UUID, List<UUID>> toItemIdsPerInvoiceId(final Iterable<InvoiceModelDao> invoices) {
+        final Map<UUID, List<UUID>> result = new HashMap<UUID, List<UUID>>();
+        for (final InvoiceModelDao invoice : invoices) {
+            final List<UUID> itemIds = new ArrayList<UUID>();
+            for (final InvoiceItemModelDao invoiceItem : invoice.getInvoiceItems()) {
+                itemIds.add(invoiceItem.getId());
+            }
+            result.put(invoice.getId(), itemIds);
+        }
+        return result;
+    }
+
+    private Map<UUID, InvoiceBillingWatermarkModelDao> toWatermarksPerSubscriptionId(final Iterable<InvoiceBillingWatermarkModelDao> watermarks) {
+        final Map<UUID, InvoiceBillingWatermarkModelDao> result = new HashMap<UUID, InvoiceBillingWatermarkModelDao>();
+        for (final InvoiceBillingWatermarkModelDao watermark : watermarks) {
+            result.put(watermark.getSubscriptionId(), watermark);
+        }
+        return result;
+    }
+
     @Test(groups = "slow")
     public void testRetrievalForNonExistentInvoiceOrInvoiceItem() throws InvoiceApiException {
         try {
@@ -1083,6 +1245,78 @@ public class TestInvoiceDao extends InvoiceTestSuiteWithEmbeddedDB {
         assertEquals(invoices.size(), 2);
     }
 
+    @Test(groups = "slow")
+    public void testUnpaidInvoicesSummary() throws EntityPersistenceException {
+        final UUID accountId = account.getId();
+        final UUID bundleId = UUID.randomUUID();
+        final LocalDate targetDate = new LocalDate(2011, 10, 6);
+        final Invoice invoice = new DefaultInvoice(accountId, clock.getUTCToday(), targetDate, Currency.USD);
+
+        final LocalDate startDate = new LocalDate(2011, 3, 1);
+        final LocalDate endDate = startDate.plusMonths(1);
+        final BigDecimal rate1 = new BigDecimal("17.0");
+        final BigDecimal rate2 = new BigDecimal("42.0");
+        invoice.addInvoiceItem(new RecurringInvoiceItem(invoice.getId(), accountId, bundleId, UUID.randomUUID(), "test plan", "test phase A", startDate, endDate,
+                                                        rate1, rate1, Currency.USD));
+        invoice.addInvoiceItem(new RecurringInvoiceItem(invoice.getId(), accountId, bundleId, UUID.randomUUID(), "test plan", "test phase B", startDate, endDate,
+                                                        rate2, rate2, Currency.USD));
+        invoiceUtil.createInvoice(invoice, true, context);
+
+        // Maintained when the invoice is created
+        InvoiceUnpaidSummaryModelDao summary = invoiceDao.getUnpaidInvoicesSummary(accountId, new LocalDate(2012, 1, 1), context);
+        assertEquals(summary.getNumberOfUnpaidInvoices(), 1);
+        assertEquals(summary.getUnpaidInvoiceBalance().compareTo(rate1.add(rate2)), 0);
+        assertEquals(summary.getIdOfEarliestUnpaidInvoice(), invoice.getId());
+        assertEquals(summary.getDateOfEarliestUnpaidInvoice(), invoice.getInvoiceDate());
+        assertEquals(invoiceDao.createMissingInvoiceBalances(context), 0);
+
+        // The invoice is after upToDate
+        summary = invoiceDao.getUnpaidInvoicesSummary(accountId, new LocalDate(2011, 1, 1), context);
+        assertEquals(summary.getNumberOfUnpaidInvoices(), 0);
+        assertEquals(summary.getUnpaidInvoiceBalance().compareTo(BigDecimal.ZERO), 0);
+        assertNull(summary.getIdOfEarliestUnpaidInvoice());
+
+        // Maintained when the payment is recorded
+        final DefaultInvoicePayment defaultInvoicePayment = new DefaultInvoicePayment(InvoicePaymentType.ATTEMPT, UUID.randomUUID(), invoice.getId(), clock.getUTCNow(), rate1.add(rate2), Currency.USD, Currency.USD, true);
+        invoiceDao.notifyOfPayment(new InvoicePaymentModelDao(defaultInvoicePayment), context);
+
+        summary = invoiceDao.getUnpaidInvoicesSummary(accountId, new LocalDate(2012, 1, 1), context);
+        assertEquals(summary.getNumberOfUnpaidInvoices(), 0);
+        assertEquals(summary.getUnpaidInvoiceBalance().compareTo(BigDecimal.ZERO), 0);
+        assertNull(summary.getIdOfEarliestUnpaidInvoice());
+        assertNull(summary.getDateOfEarliestUnpaidInvoice());
+    }
+
+    @Test(groups = "slow")
+    public void testUnpaidInvoicesSummaryWithoutBalances() throws EntityPersistenceException {
+        final UUID accountId = account.getId();
+        final LocalDate targetDate = new LocalDate(2011, 10, 6);
+        final Invoice invoice = new DefaultInvoice(accountId, clock.getUTCToday(), targetDate, Currency.USD);
+        final BigDecimal rate = new BigDecimal("17.0");
+        invoice.addInvoiceItem(new RecurringInvoiceItem(invoice.getId(), accountId, UUID.randomUUID(), UUID.randomUUID(), "test plan", "test phase A",
+                                                        new LocalDate(2011, 3, 1), new LocalDate(2011, 4, 1), rate, rate, Currency.USD));
+        invoiceUtil.createInvoice(invoice, true, context);
+
+        // Simulate an invoice created before the invoice_balances table
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.execute("delete from invoice_balances where account_record_id = ?", context.getAccountRecordId());
+                return null;
+            }
+        });
+
+        // The summary is computed from the invoices until the balance is backfilled
+        final InvoiceUnpaidSummaryModelDao summary = invoiceDao.getUnpaidInvoicesSummary(accountId, null, context);
+        assertEquals(summary.getNumberOfUnpaidInvoices(), 1);
+        assertEquals(summary.getUnpaidInvoiceBalance().compareTo(rate), 0);
+        assertEquals(summary.getIdOfEarliestUnpaidInvoice(), invoice.getId());
+
+        assertEquals(invoiceDao.createMissingInvoiceBalances(context), 1);
+        assertEquals(invoiceDao.createMissingInvoiceBalances(context), 0);
+        assertEquals(invoiceDao.getUnpaidInvoicesSummary(accountId, null, context), summary);
+    }
+
 
     /*
      *
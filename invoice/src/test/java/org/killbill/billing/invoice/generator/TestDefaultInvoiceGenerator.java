@@ -20,8 +20,10 @@ package org.killbill.billing.invoice.generator;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -53,9 +55,12 @@ import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
 import org.killbill.billing.invoice.api.InvoicePaymentType;
+import org.killbill.billing.invoice.dao.InvoiceBillingWatermarkModelDao;
+import org.killbill.billing.invoice.dao.InvoiceItemModelDao;
 import org.killbill.billing.invoice.model.DefaultInvoice;
 import org.killbill.billing.invoice.model.DefaultInvoicePayment;
 import org.killbill.billing.invoice.model.FixedPriceInvoiceItem;
+import org.killbill.billing.invoice.model.ItemAdjInvoiceItem;
 import org.killbill.billing.invoice.model.RecurringInvoiceItem;
 import org.killbill.billing.invoice.model.RepairAdjInvoiceItem;
 import org.killbill.billing.junction.BillingEvent;
@@ -133,6 +138,11 @@ public class TestDefaultInvoiceGenerator extends InvoiceTestSuiteNoDB {
             public int getMaxGlobalLockRetries() {
                 return 10;
             }
+
+            @Override
+            public boolean isIncrementalInvoiceGenerationEnabled() {
+                return false;
+            }
         };
         this.account = new MockAccountBuilder().name(UUID.randomUUID().toString().substring(1, 8))
                                                .firstNameLength(6)
@@ -1036,6 +1046,124 @@ public class TestDefaultInvoiceGenerator extends InvoiceTestSuiteNoDB {
         assertNull(newInvoice);
     }
 
+    @Test(groups = "fast")
+    public void testIncrementalGenerationMatchesFullRebuild() throws InvoiceApiException, CatalogApiException {
+        final UUID bundleId = UUID.randomUUID();
+        final UUID subscriptionId1 = UUID.randomUUID();
+        final UUID subscriptionId2 = UUID.randomUUID();
+
+        final Plan plan1 = new MockPlan("Monthly, immediate upgrade");
+        final PlanPhase plan1Phase1 = createMockMonthlyPlanPhase(TEN, PhaseType.EVERGREEN);
+        final Plan plan1Upgraded = new MockPlan("Monthly, upgraded");
+        final PlanPhase plan1UpgradedPhase1 = createMockMonthlyPlanPhase(THIRTY, PhaseType.EVERGREEN);
+        final Plan plan2 = new MockPlan("Monthly, adjusted");
+        final PlanPhase plan2Phase1 = createMockMonthlyPlanPhase(TWENTY, PhaseType.EVERGREEN);
+
+        final List<Invoice> invoices = new ArrayList<Invoice>();
+        final List<InvoiceBillingWatermarkModelDao> watermarks = new ArrayList<InvoiceBillingWatermarkModelDao>();
+        final BillingEventSet events = new MockBillingEventSet();
+
+        events.add(createBillingEvent(subscriptionId1, bundleId, invoiceUtil.buildDate(2011, 1, 5), plan1, plan1Phase1, 5));
+        generateFullAndIncrementalInvoices(events, invoices, watermarks, invoiceUtil.buildDate(2011, 1, 5));
+        generateFullAndIncrementalInvoices(events, invoices, watermarks, invoiceUtil.buildDate(2011, 2, 5));
+
+        events.add(createBillingEvent(subscriptionId2, bundleId, invoiceUtil.buildDate(2011, 2, 10), plan2, plan2Phase1, 10));
+        generateFullAndIncrementalInvoices(events, invoices, watermarks, invoiceUtil.buildDate(2011, 2, 10));
+        generateFullAndIncrementalInvoices(events, invoices, watermarks, invoiceUtil.buildDate(2011, 3, 5));
+        generateFullAndIncrementalInvoices(events, invoices, watermarks, invoiceUtil.buildDate(2011, 3, 10));
+
+        // Manual adjustment on the first subscription 2 item, after watermarks have been recorded for it
+        final InvoiceItem itemToAdjust = findItem(invoices, subscriptionId2, invoiceUtil.buildDate(2011, 2, 10));
+        for (final Invoice invoice : invoices) {
+            if (invoice.getId().equals(itemToAdjust.getInvoiceId())) {
+                invoice.addInvoiceItem(new ItemAdjInvoiceItem(itemToAdjust, invoiceUtil.buildDate(2011, 3, 15), FIVE.negate(), Currency.USD));
+            }
+        }
+        generateFullAndIncrementalInvoices(events, invoices, watermarks, invoiceUtil.buildDate(2011, 4, 5));
+
+        // Immediate upgrade in the middle of a period, which repairs an item covered by the watermark
+        events.add(createBillingEvent(subscriptionId1, bundleId, invoiceUtil.buildDate(2011, 4, 20), plan1Upgraded, plan1UpgradedPhase1, 5));
+        generateFullAndIncrementalInvoices(events, invoices, watermarks, invoiceUtil.buildDate(2011, 4, 20));
+        generateFullAndIncrementalInvoices(events, invoices, watermarks, invoiceUtil.buildDate(2011, 5, 5));
+        generateFullAndIncrementalInvoices(events, invoices, watermarks, invoiceUtil.buildDate(2011, 5, 10));
+
+        // Nothing left to bill
+        generateFullAndIncrementalInvoices(events, invoices, watermarks, invoiceUtil.buildDate(2011, 5, 10));
+        assertTrue(!watermarks.isEmpty());
+    }
+
+    // Generate the invoice with and without the watermarks, check both are the same and record the full one (and the new watermarks)
+    private void generateFullAndIncrementalInvoices(final BillingEventSet events, final List<Invoice> invoices,
+                                                    final List<InvoiceBillingWatermarkModelDao> watermarks, final LocalDate targetDate) throws InvoiceApiException {
+        final Map<UUID, String> billingEventsHashes = InvoiceBillingWatermarkCalculator.computeBillingEventsHashes(events, getItemAdjustmentsForBillingWatermarks(invoices));
+        final InvoiceGenerationWindow generationWindow = InvoiceBillingWatermarkCalculator.computeGenerationWindow(events, billingEventsHashes, watermarks);
+
+        final Invoice fullInvoice = generator.generateInvoice(account, events, invoices, targetDate, Currency.USD, internalCallContext).getInvoice();
+        final Invoice incrementalInvoice = generator.generateInvoice(account, events, invoices, targetDate, Currency.USD, generationWindow, internalCallContext).getInvoice();
+        assertEquals(toComparableItems(incrementalInvoice), toComparableItems(fullInvoice));
+
+        final List<InvoiceBillingWatermarkModelDao> newWatermarks = InvoiceBillingWatermarkCalculator.computeWatermarks(billingEventsHashes, events, invoices, fullInvoice,
+                                                                                                                        targetDate, watermarks, clock.getUTCNow());
+        for (final InvoiceBillingWatermarkModelDao newWatermark : newWatermarks) {
+            final Iterator<InvoiceBillingWatermarkModelDao> iterator = watermarks.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getSubscriptionId().equals(newWatermark.getSubscriptionId())) {
+                    iterator.remove();
+                }
+            }
+            watermarks.add(newWatermark);
+        }
+
+        if (fullInvoice != null) {
+            invoices.add(fullInvoice);
+            distributeItems(invoices);
+        }
+    }
+
+    private List<InvoiceItemModelDao> getItemAdjustmentsForBillingWatermarks(final Iterable<Invoice> invoices) {
+        final Map<UUID, InvoiceItem> itemsById = new LinkedHashMap<UUID, InvoiceItem>();
+        for (final Invoice invoice : invoices) {
+            for (final InvoiceItem item : invoice.getInvoiceItems()) {
+                itemsById.put(item.getId(), item);
+            }
+        }
+
+        final List<InvoiceItemModelDao> result = new ArrayList<InvoiceItemModelDao>();
+        for (final InvoiceItem item : itemsById.values()) {
+            if (item.getInvoiceItemType() == InvoiceItemType.ITEM_ADJ) {
+                final InvoiceItemModelDao itemAdjustment = new InvoiceItemModelDao(item);
+                itemAdjustment.setSubscriptionId(itemsById.get(item.getLinkedItemId()).getSubscriptionId());
+                result.add(itemAdjustment);
+            }
+        }
+        return result;
+    }
+
+    private InvoiceItem findItem(final Iterable<Invoice> invoices, final UUID subscriptionId, final LocalDate startDate) {
+        for (final Invoice invoice : invoices) {
+            for (final InvoiceItem item : invoice.getInvoiceItems()) {
+                if (subscriptionId.equals(item.getSubscriptionId()) && item.getStartDate().compareTo(startDate) == 0) {
+                    return item;
+                }
+            }
+        }
+        throw new IllegalStateException("No item for subscription " + subscriptionId + " starting on " + startDate);
+    }
+
+    private List<String> toComparableItems(@Nullable final Invoice invoice) {
+        final List<String> result = new ArrayList<String>();
+        if (invoice == null) {
+            return result;
+        }
+        for (final InvoiceItem item : invoice.getInvoiceItems()) {
+            // Item ids are random, compare what was billed
+            result.add(String.format("%s %s %s %s %s %s", item.getInvoiceItemType(), item.getSubscriptionId(), item.getStartDate(), item.getEndDate(),
+                                     item.getAmount(), item.getLinkedItemId()));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
     private void distributeItems(final List<Invoice> invoices) {
         final Map<UUID, Invoice> invoiceMap = new HashMap<UUID, Invoice>();
 
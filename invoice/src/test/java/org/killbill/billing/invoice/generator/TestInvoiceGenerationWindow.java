@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.generator;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.invoice.InvoiceTestSuiteNoDB;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.model.ExternalChargeInvoiceItem;
+import org.killbill.billing.invoice.model.RecurringInvoiceItem;
+import org.killbill.billing.invoice.model.RepairAdjInvoiceItem;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class TestInvoiceGenerationWindow extends InvoiceTestSuiteNoDB {
+
+    private final UUID invoiceId = UUID.randomUUID();
+    private final UUID accountId = UUID.randomUUID();
+    private final UUID bundleId = UUID.randomUUID();
+
+    @Test(groups = "fast")
+    public void testMinWindowStartDate() {
+        final InvoiceGenerationWindow window = new InvoiceGenerationWindow(ImmutableMap.<UUID, LocalDate>of(UUID.randomUUID(), new LocalDate(2016, 3, 1),
+                                                                                                          UUID.randomUUID(), new LocalDate(2016, 1, 15)));
+        Assert.assertEquals(window.getMinWindowStartDate(), new LocalDate(2016, 1, 15));
+    }
+
+    @Test(groups = "fast")
+    public void testFilterRecurringItems() {
+        final UUID subscriptionId = UUID.randomUUID();
+        final InvoiceGenerationWindow window = new InvoiceGenerationWindow(ImmutableMap.<UUID, LocalDate>of(subscriptionId, new LocalDate(2016, 2, 1)));
+
+        final InvoiceItem january = createRecurringItem(subscriptionId, new LocalDate(2016, 1, 1), new LocalDate(2016, 2, 1));
+        final InvoiceItem february = createRecurringItem(subscriptionId, new LocalDate(2016, 2, 1), new LocalDate(2016, 3, 1));
+        final InvoiceItem unknownSubscription = createRecurringItem(UUID.randomUUID(), new LocalDate(2015, 1, 1), new LocalDate(2015, 2, 1));
+        final InvoiceItem externalCharge = new ExternalChargeInvoiceItem(invoiceId, accountId, null, "charge", new LocalDate(2015, 1, 1), BigDecimal.TEN, Currency.USD);
+
+        final List<InvoiceItem> result = window.filterProposedItems(ImmutableList.<InvoiceItem>of(january, february, unknownSubscription, externalCharge));
+        Assert.assertEquals(result, ImmutableList.<InvoiceItem>of(february, unknownSubscription, externalCharge));
+    }
+
+    @Test(groups = "fast")
+    public void testFilterAdjustmentsFollowLinkedItem() {
+        final UUID subscriptionId = UUID.randomUUID();
+        final InvoiceGenerationWindow window = new InvoiceGenerationWindow(ImmutableMap.<UUID, LocalDate>of(subscriptionId, new LocalDate(2016, 2, 1)));
+
+        final InvoiceItem january = createRecurringItem(subscriptionId, new LocalDate(2016, 1, 1), new LocalDate(2016, 2, 1));
+        final InvoiceItem januaryRepair = new RepairAdjInvoiceItem(UUID.randomUUID(), accountId, new LocalDate(2016, 1, 1), new LocalDate(2016, 2, 1), BigDecimal.ONE.negate(), Currency.USD, january.getId());
+        final InvoiceItem february = createRecurringItem(subscriptionId, new LocalDate(2016, 2, 1), new LocalDate(2016, 3, 1));
+        final InvoiceItem februaryRepair = new RepairAdjInvoiceItem(UUID.randomUUID(), accountId, new LocalDate(2016, 2, 1), new LocalDate(2016, 3, 1), BigDecimal.ONE.negate(), Currency.USD, february.getId());
+
+        // Repair items come first to make sure the order doesn't matter
+        final List<InvoiceItem> result = window.filterExistingItems(ImmutableList.<InvoiceItem>of(januaryRepair, februaryRepair, january, february));
+        Assert.assertEquals(result, ImmutableList.<InvoiceItem>of(february, februaryRepair));
+    }
+
+    private InvoiceItem createRecurringItem(final UUID subscriptionId, final LocalDate startDate, final LocalDate endDate) {
+        return new RecurringInvoiceItem(invoiceId, accountId, bundleId, subscriptionId, "plan", "phase", startDate, endDate, BigDecimal.ONE, BigDecimal.ONE, Currency.USD);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.invoice.notification;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.invoice.InvoiceTestSuiteWithEmbeddedDB;
+import org.killbill.billing.invoice.api.DefaultInvoiceService;
+import org.killbill.billing.util.AccountDateAndTimeZoneContext;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.timezone.DefaultAccountDateAndTimeZoneContext;
+import org.killbill.notificationq.api.NotificationEventWithMetadata;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestNextBillingDatePoster extends InvoiceTestSuiteWithEmbeddedDB {
+
+    @Test(groups = "slow")
+    public void testInsertDeduplicatedNotificationsForAccount() throws Exception {
+        final NextBillingDatePoster nextBillingDatePoster = new DefaultNextBillingDatePoster(notificationQueueService);
+        final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controllerDispatcher, nonEntityDao);
+        final NotificationQueue nextBillingQueue = notificationQueueService.getNotificationQueue(DefaultInvoiceService.INVOICE_SERVICE_NAME, DefaultNextBillingDateNotifier.NEXT_BILLING_DATE_NOTIFIER_QUEUE);
+
+        final UUID accountId = UUID.randomUUID();
+        final DateTime now = clock.getUTCNow();
+        final AccountDateAndTimeZoneContext accountDateAndTimeZoneContext = new DefaultAccountDateAndTimeZoneContext(now, DateTimeZone.UTC);
+        final DateTime firstDate = now.plusMonths(1).withTimeAtStartOfDay();
+        final DateTime secondDate = now.plusMonths(2).withTimeAtStartOfDay();
+
+        transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                // Already scheduled
+                nextBillingDatePoster.insertNextBillingNotificationFromTransaction(entitySqlDaoWrapperFactory, accountId, UUID.randomUUID(), secondDate, accountDateAndTimeZoneContext, internalCallContext);
+
+                final UUID subscriptionId = UUID.randomUUID();
+                nextBillingDatePoster.insertNextBillingNotificationsFromTransaction(entitySqlDaoWrapperFactory,
+                                                                                   accountId,
+                                                                                   ImmutableList.<NextBillingDateNotification>of(new NextBillingDateNotification(subscriptionId, firstDate, firstDate, false),
+                                                                                                                                 new NextBillingDateNotification(UUID.randomUUID(), firstDate.plusHours(1), firstDate.plusHours(1), false),
+                                                                                                                                 new NextBillingDateNotification(UUID.randomUUID(), firstDate, firstDate, false),
+                                                                                                                                 new NextBillingDateNotification(subscriptionId, firstDate.minusDays(3), firstDate, true),
+                                                                                                                                 new NextBillingDateNotification(UUID.randomUUID(), secondDate, secondDate, false)),
+                                                                                   accountDateAndTimeZoneContext,
+                                                                                   internalCallContext);
+                return null;
+            }
+        });
+
+        // One notification per date (and dry-run mode), the first subscription wins
+        final List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> futureNotifications = nextBillingQueue.getFutureNotificationForSearchKeys(internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId());
+        Assert.assertEquals(futureNotifications.size(), 3);
+        int nbDryRunNotifications = 0;
+        for (final NotificationEventWithMetadata<NextBillingDateNotificationKey> futureNotification : futureNotifications) {
+            if (futureNotification.getEvent().isDryRunForInvoiceNotification()) {
+                nbDryRunNotifications++;
+                Assert.assertEquals(futureNotification.getEffectiveDate().compareTo(firstDate.minusDays(3)), 0);
+                Assert.assertEquals(futureNotification.getEvent().getTargetDate().compareTo(firstDate), 0);
+            } else {
+                Assert.assertTrue(futureNotification.getEffectiveDate().compareTo(firstDate) == 0 || futureNotification.getEffectiveDate().compareTo(secondDate) == 0);
+            }
+        }
+        Assert.assertEquals(nbDryRunNotifications, 1);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.usage.RejectedUsageRecord;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.wordnik.swagger.annotations.ApiModelProperty;
+
+public class RejectedUsageRecordJson {
+
+    @ApiModelProperty(dataType = "java.util.UUID")
+    private final String subscriptionId;
+    private final String unitType;
+    private final LocalDate recordDate;
+    private final Long amount;
+    private final String reason;
+
+    @JsonCreator
+    public RejectedUsageRecordJson(@JsonProperty("subscriptionId") final String subscriptionId,
+                                   @JsonProperty("unitType") final String unitType,
+                                   @JsonProperty("recordDate") final LocalDate recordDate,
+                                   @JsonProperty("amount") final Long amount,
+                                   @JsonProperty("reason") final String reason) {
+        this.subscriptionId = subscriptionId;
+        this.unitType = unitType;
+        this.recordDate = recordDate;
+        this.amount = amount;
+        this.reason = reason;
+    }
+
+    public RejectedUsageRecordJson(final RejectedUsageRecord input) {
+        this(input.getSubscriptionId() != null ? input.getSubscriptionId().toString() : null, input.getUnitType(), input.getDate(), input.getAmount(), input.getReason());
+    }
+
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public String getUnitType() {
+        return unitType;
+    }
+
+    public LocalDate getRecordDate() {
+        return recordDate;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RejectedUsageRecordJson{");
+        sb.append("subscriptionId='").append(subscriptionId).append('\'');
+        sb.append(", unitType='").append(unitType).append('\'');
+        sb.append(", recordDate=").append(recordDate);
+        sb.append(", amount=").append(amount);
+        sb.append(", reason='").append(reason).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final RejectedUsageRecordJson that = (RejectedUsageRecordJson) o;
+
+        if (subscriptionId != null ? !subscriptionId.equals(that.subscriptionId) : that.subscriptionId != null) {
+            return false;
+        }
+        if (unitType != null ? !unitType.equals(that.unitType) : that.unitType != null) {
+            return false;
+        }
+        if (recordDate != null ? recordDate.compareTo(that.recordDate) != 0 : that.recordDate != null) {
+            return false;
+        }
+        if (amount != null ? !amount.equals(that.amount) : that.amount != null) {
+            return false;
+        }
+        return reason != null ? reason.equals(that.reason) : that.reason == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = subscriptionId != null ? subscriptionId.hashCode() : 0;
+        result = 31 * result + (unitType != null ? unitType.hashCode() : 0);
+        result = 31 * result + (recordDate != null ? recordDate.hashCode() : 0);
+        result = 31 * result + (amount != null ? amount.hashCode() : 0);
+        result = 31 * result + (reason != null ? reason.hashCode() : 0);
+        return result;
+    }
+}
@@ -22,12 +22,16 @@ import java.util.UUID;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.StreamingOutput;
 
 import org.killbill.billing.account.api.AccountUserApi;
@@ -39,6 +43,8 @@ import org.killbill.billing.util.api.CustomFieldUserApi;
 import org.killbill.billing.util.api.ExportUserApi;
 import org.killbill.billing.util.api.TagUserApi;
 import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.export.api.BinaryExportUserApi;
+import org.killbill.billing.util.export.dao.ExportCheckpoint;
 import org.killbill.clock.Clock;
 import org.killbill.commons.metrics.TimedResource;
 
@@ -48,6 +54,7 @@ import com.wordnik.swagger.annotations.ApiOperation;
 import com.wordnik.swagger.annotations.ApiResponse;
 import com.wordnik.swagger.annotations.ApiResponses;
 
+import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
 
 @Singleton
@@ -55,10 +62,15 @@ import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
 @Api(value = JaxrsResource.EXPORT_PATH, description = "Export endpoints")
 public class ExportResource extends JaxRsResourceBase {
 
+    private static final String FORMAT_CSV = "CSV";
+    private static final String FORMAT_BINARY = "BINARY";
+
     private final ExportUserApi exportUserApi;
+    private final BinaryExportUserApi binaryExportUserApi;
 
     @Inject
     public ExportResource(final ExportUserApi exportUserApi,
+                          final BinaryExportUserApi binaryExportUserApi,
                           final JaxrsUriBuilder uriBuilder,
                           final TagUserApi tagUserApi,
                           final CustomFieldUserApi customFieldUserApi,
@@ -69,27 +81,45 @@ public class ExportResource extends JaxRsResourceBase {
                           final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
         this.exportUserApi = exportUserApi;
+        this.binaryExportUserApi = binaryExportUserApi;
     }
 
     @TimedResource
     @GET
     @Path("/{accountId:" + UUID_PATTERN + "}")
-    @Produces(TEXT_PLAIN)
+    @Produces({TEXT_PLAIN, APPLICATION_OCTET_STREAM})
     @ApiOperation(value = "Export account data", response = String.class)
-    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid account id supplied"),
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid account id or format supplied"),
                            @ApiResponse(code = 404, message = "Account not found")})
-    public StreamingOutput exportDataForAccount(@PathParam("accountId") final String accountId,
-                                                @HeaderParam(HDR_CREATED_BY) final String createdBy,
-                                                @HeaderParam(HDR_REASON) final String reason,
-                                                @HeaderParam(HDR_COMMENT) final String comment,
-                                                @javax.ws.rs.core.Context final HttpServletRequest request) {
+    public Response exportDataForAccount(@PathParam("accountId") final String accountId,
+                                         @QueryParam(QUERY_EXPORT_FORMAT) @DefaultValue(FORMAT_CSV) final String format,
+                                         @QueryParam(QUERY_EXPORT_RESUME_FROM) final String resumeFrom,
+                                         @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                         @HeaderParam(HDR_REASON) final String reason,
+                                         @HeaderParam(HDR_COMMENT) final String comment,
+                                         @javax.ws.rs.core.Context final HttpServletRequest request) {
         final CallContext callContext = context.createContext(createdBy, reason, comment, request);
-        return new StreamingOutput() {
-            @Override
-            public void write(final OutputStream output) throws IOException, WebApplicationException {
-                // CSV by default for now
-                exportUserApi.exportDataAsCSVForAccount(UUID.fromString(accountId), output, callContext);
-            }
-        };
+        if (FORMAT_BINARY.equalsIgnoreCase(format)) {
+            // Tables are streamed concurrently. If the download is interrupted, the checkpoint of the partial file
+            // (see BinaryExportInputStream) can be passed as resumeFrom to only export the remaining rows.
+            final ExportCheckpoint checkpoint = ExportCheckpoint.fromString(resumeFrom);
+            final StreamingOutput output = new StreamingOutput() {
+                @Override
+                public void write(final OutputStream output) throws IOException, WebApplicationException {
+                    binaryExportUserApi.exportDataAsBinaryForAccount(UUID.fromString(accountId), output, checkpoint, callContext);
+                }
+            };
+            return Response.status(Status.OK).entity(output).type(APPLICATION_OCTET_STREAM).build();
+        } else if (FORMAT_CSV.equalsIgnoreCase(format)) {
+            final StreamingOutput output = new StreamingOutput() {
+                @Override
+                public void write(final OutputStream output) throws IOException, WebApplicationException {
+                    exportUserApi.exportDataAsCSVForAccount(UUID.fromString(accountId), output, callContext);
+                }
+            };
+            return Response.status(Status.OK).entity(output).type(TEXT_PLAIN).build();
+        } else {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
     }
 }
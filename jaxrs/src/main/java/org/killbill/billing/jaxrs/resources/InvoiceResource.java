@@ -21,6 +21,7 @@ package org.killbill.billing.jaxrs.resources;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -47,8 +48,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.joda.time.DateTime;
@@ -71,6 +74,8 @@ import org.killbill.billing.entitlement.api.SubscriptionApiException;
 import org.killbill.billing.entitlement.api.SubscriptionEventType;
 import org.killbill.billing.invoice.api.DryRunArguments;
 import org.killbill.billing.invoice.api.DryRunType;
+import org.killbill.billing.invoice.api.HtmlInvoiceUserApi;
+import org.killbill.billing.invoice.api.HtmlInvoiceUserApi.HtmlInvoiceBody;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
@@ -137,6 +142,7 @@ public class InvoiceResource extends JaxRsResourceBase {
     private static final String LOCALE_PARAM_NAME = "locale";
 
     private final InvoiceUserApi invoiceApi;
+    private final HtmlInvoiceUserApi htmlInvoiceApi;
     private final InvoiceNotifier invoiceNotifier;
     private final TenantUserApi tenantApi;
     private final Locale defaultLocale;
@@ -151,6 +157,7 @@ public class InvoiceResource extends JaxRsResourceBase {
     @Inject
     public InvoiceResource(final AccountUserApi accountUserApi,
                            final InvoiceUserApi invoiceApi,
+                           final HtmlInvoiceUserApi htmlInvoiceApi,
                            final PaymentApi paymentApi,
                            final InvoiceNotifier invoiceNotifier,
                            final Clock clock,
@@ -162,6 +169,7 @@ public class InvoiceResource extends JaxRsResourceBase {
                            final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
         this.invoiceApi = invoiceApi;
+        this.htmlInvoiceApi = htmlInvoiceApi;
         this.invoiceNotifier = invoiceNotifier;
         this.tenantApi = tenantApi;
         this.defaultLocale = Locale.getDefault();
@@ -220,7 +228,15 @@ public class InvoiceResource extends JaxRsResourceBase {
     @ApiResponses(value = {@ApiResponse(code = 404, message = "Invoice not found")})
     public Response getInvoiceAsHTML(@PathParam("invoiceId") final String invoiceId,
                                      @javax.ws.rs.core.Context final HttpServletRequest request) throws InvoiceApiException, IOException, AccountApiException {
-        return Response.status(Status.OK).entity(invoiceApi.getInvoiceAsHTML(UUID.fromString(invoiceId), context.createContext(request))).build();
+        // Lookups (and a missing invoice) are handled right away, the body is rendered straight to the response
+        final HtmlInvoiceBody body = htmlInvoiceApi.getInvoiceAsHTMLBody(UUID.fromString(invoiceId), context.createContext(request));
+        final StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(final OutputStream output) throws IOException, WebApplicationException {
+                body.writeTo(output);
+            }
+        };
+        return Response.status(Status.OK).entity(output).build();
     }
 
     @TimedResource
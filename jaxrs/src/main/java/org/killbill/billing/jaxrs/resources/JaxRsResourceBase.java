@@ -79,6 +79,7 @@ import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.customfield.CustomField;
 import org.killbill.billing.util.customfield.StringCustomField;
+import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.jackson.ObjectMapper;
@@ -261,6 +262,13 @@ public abstract class JaxRsResourceBase implements JaxrsResource {
     protected <E extends Entity, J extends JsonBase> Response buildStreamingPaginationResponse(final Pagination<E> entities,
                                                                                                final Function<E, J> toJson,
                                                                                                final URI nextPageUri) {
+        // Read the page (bounded by the limit) before writing the headers, so that the next page URI can carry the position of its last record
+        // (this also releases the database connection before the JSON is streamed out)
+        final List<E> page = ImmutableList.<E>copyOf(entities);
+        final Long lastRecordId = entities instanceof DefaultPagination ? ((DefaultPagination<E>) entities).getLastRecordId() : null;
+
+        final URI nextPage = uriBuilder.nextPage(nextPageUri, lastRecordId, entities.getTotalNbRecords(), entities.getMaxNbRecords());
+
         final StreamingOutput json = new StreamingOutput() {
             @Override
             public void write(final OutputStream output) throws IOException, WebApplicationException {
@@ -268,7 +276,7 @@ public abstract class JaxRsResourceBase implements JaxrsResource {
                 generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 
                 generator.writeStartArray();
-                for (final E entity : entities) {
+                for (final E entity : page) {
                     final J asJson = toJson.apply(entity);
                     if (asJson != null) {
                         generator.writeObject(asJson);
@@ -285,7 +293,7 @@ public abstract class JaxRsResourceBase implements JaxrsResource {
                        .header(HDR_PAGINATION_NEXT_OFFSET, entities.getNextOffset())
                        .header(HDR_PAGINATION_TOTAL_NB_RECORDS, entities.getTotalNbRecords())
                        .header(HDR_PAGINATION_MAX_NB_RECORDS, entities.getMaxNbRecords())
-                       .header(HDR_PAGINATION_NEXT_PAGE_URI, nextPageUri)
+                       .header(HDR_PAGINATION_NEXT_PAGE_URI, nextPage)
                        .build();
     }
 
@@ -31,6 +31,7 @@ public interface JaxrsResource {
     public static final String UPLOAD_PLUGIN_CONFIG = "uploadPluginConfig";
     public static final String USER_KEY_VALUE = "userKeyValue";
     public static final String SEARCH = "search";
+    public static final String BULK = "bulk";
 
     /*
      * Multi-Tenancy headers
@@ -75,6 +76,9 @@ public interface JaxrsResource {
     public static final String QUERY_ENTITLEMENT_POLICY = "entitlementPolicy";
     public static final String QUERY_SEARCH_OFFSET = "offset";
     public static final String QUERY_SEARCH_LIMIT = "limit";
+    public static final String QUERY_SEARCH_LAST_RECORD_ID = "lastRecordId";
+    public static final String QUERY_SEARCH_TOTAL_NB_RECORDS = "totalNbRecords";
+    public static final String QUERY_SEARCH_MAX_NB_RECORDS = "maxNbRecords";
 
     public static final String QUERY_ACCOUNT_WITH_BALANCE = "accountWithBalance";
     public static final String QUERY_ACCOUNT_WITH_BALANCE_AND_CBA = "accountWithBalanceAndCBA";
@@ -123,6 +127,9 @@ public interface JaxrsResource {
 
     public static final String QUERY_NOTIFICATION_CALLBACK = "cb";
 
+    public static final String QUERY_EXPORT_FORMAT = "format";
+    public static final String QUERY_EXPORT_RESUME_FROM = "resumeFrom";
+
     public static final String PAGINATION = "pagination";
 
     public static final String ADMIN = "admin";
@@ -16,7 +16,10 @@
 
 package org.killbill.billing.jaxrs.resources;
 
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -40,11 +43,15 @@ import org.killbill.billing.entitlement.api.Entitlement;
 import org.killbill.billing.entitlement.api.Entitlement.EntitlementState;
 import org.killbill.billing.entitlement.api.EntitlementApi;
 import org.killbill.billing.entitlement.api.EntitlementApiException;
+import org.killbill.billing.jaxrs.json.RejectedUsageRecordJson;
 import org.killbill.billing.jaxrs.json.RolledUpUsageJson;
 import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson;
+import org.killbill.billing.jaxrs.json.SubscriptionUsageRecordJson.UnitUsageRecordJson;
 import org.killbill.billing.jaxrs.util.Context;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
 import org.killbill.billing.payment.api.PaymentApi;
+import org.killbill.billing.usage.InternalUserApi;
+import org.killbill.billing.usage.RejectedUsageRecord;
 import org.killbill.billing.usage.api.RolledUpUsage;
 import org.killbill.billing.usage.api.SubscriptionUsageRecord;
 import org.killbill.billing.usage.api.UsageUserApi;
@@ -56,6 +63,7 @@ import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.clock.Clock;
 import org.killbill.commons.metrics.TimedResource;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Singleton;
@@ -72,6 +80,7 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 public class UsageResource extends JaxRsResourceBase {
 
     private final UsageUserApi usageUserApi;
+    private final InternalUserApi internalUsageApi;
     private final EntitlementApi entitlementApi;
 
     @Inject
@@ -81,12 +90,14 @@ public class UsageResource extends JaxRsResourceBase {
                          final AuditUserApi auditUserApi,
                          final AccountUserApi accountUserApi,
                          final UsageUserApi usageUserApi,
+                         final InternalUserApi internalUsageApi,
                          final PaymentApi paymentApi,
                          final EntitlementApi entitlementApi,
                          final Clock clock,
                          final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
         this.usageUserApi = usageUserApi;
+        this.internalUsageApi = internalUsageApi;
         this.entitlementApi = entitlementApi;
     }
 
@@ -119,6 +130,101 @@ public class UsageResource extends JaxRsResourceBase {
         return Response.status(Status.CREATED).build();
     }
 
+    @TimedResource
+    @POST
+    @Path("/" + BULK)
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Record usage for multiple subscriptions", response = RejectedUsageRecordJson.class, responseContainer = "List")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "None of the usage records could be recorded")})
+    public Response recordUsages(final List<SubscriptionUsageRecordJson> json,
+                                 @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                 @HeaderParam(HDR_REASON) final String reason,
+                                 @HeaderParam(HDR_COMMENT) final String comment,
+                                 @javax.ws.rs.core.Context final HttpServletRequest request,
+                                 @javax.ws.rs.core.Context final UriInfo uriInfo) {
+        verifyNonNullOrEmpty(json, "SubscriptionUsageRecordJson list should be specified");
+
+        final CallContext callContext = context.createContext(createdBy, reason, comment, request);
+
+        // Invalid or inactive subscriptions are reported back instead of failing the whole request
+        final List<RejectedUsageRecordJson> result = new LinkedList<RejectedUsageRecordJson>();
+        final List<SubscriptionUsageRecord> records = new LinkedList<SubscriptionUsageRecord>();
+        // Each distinct subscription is only looked up once per request
+        final Map<String, Optional<String>> subscriptionRejectionReasons = new HashMap<String, Optional<String>>();
+        int nbUsageRecords = 0;
+        for (final SubscriptionUsageRecordJson cur : json) {
+            final String rejectionReason = validateSubscriptionUsageRecord(cur, subscriptionRejectionReasons, callContext);
+            if (rejectionReason != null) {
+                result.add(new RejectedUsageRecordJson(cur.getSubscriptionId(), null, null, null, rejectionReason));
+            } else {
+                records.add(cur.toSubscriptionUsageRecord());
+                nbUsageRecords += countUsageRecords(cur);
+            }
+        }
+
+        int nbRejectedUsageRecords = 0;
+        if (!records.isEmpty()) {
+            for (final RejectedUsageRecord rejectedUsageRecord : internalUsageApi.recordRolledUpUsage(records, callContext)) {
+                result.add(new RejectedUsageRecordJson(rejectedUsageRecord));
+                // A rejection without unit type covers all the records of that subscription
+                nbRejectedUsageRecords += rejectedUsageRecord.getUnitType() == null ? countUsageRecords(json, rejectedUsageRecord.getSubscriptionId()) : 1;
+            }
+        }
+
+        // Nothing was recorded: the whole request is invalid
+        final Status status = nbRejectedUsageRecords >= nbUsageRecords ? Status.BAD_REQUEST : Status.CREATED;
+        return Response.status(status).entity(result).build();
+    }
+
+    private String validateSubscriptionUsageRecord(final SubscriptionUsageRecordJson json, final Map<String, Optional<String>> subscriptionRejectionReasons, final CallContext callContext) {
+        if (json.getSubscriptionId() == null || json.getUnitUsageRecords() == null || json.getUnitUsageRecords().isEmpty()) {
+            return "subscriptionId and unitUsageRecords need to be set";
+        }
+        for (final UnitUsageRecordJson unitUsageRecordJson : json.getUnitUsageRecords()) {
+            if (unitUsageRecordJson.getUsageRecords() == null) {
+                return "usageRecords need to be set";
+            }
+        }
+
+        Optional<String> subscriptionRejectionReason = subscriptionRejectionReasons.get(json.getSubscriptionId());
+        if (subscriptionRejectionReason == null) {
+            subscriptionRejectionReason = Optional.fromNullable(validateSubscription(json.getSubscriptionId(), callContext));
+            subscriptionRejectionReasons.put(json.getSubscriptionId(), subscriptionRejectionReason);
+        }
+        return subscriptionRejectionReason.orNull();
+    }
+
+    private String validateSubscription(final String subscriptionId, final CallContext callContext) {
+        final Entitlement entitlement;
+        try {
+            entitlement = entitlementApi.getEntitlementForId(UUID.fromString(subscriptionId), callContext);
+        } catch (final IllegalArgumentException e) {
+            return "Invalid subscriptionId";
+        } catch (final EntitlementApiException e) {
+            return "Unknown subscription";
+        }
+        return entitlement.getState() != EntitlementState.ACTIVE ? "Subscription is not active" : null;
+    }
+
+    private int countUsageRecords(final Iterable<SubscriptionUsageRecordJson> json, final UUID subscriptionId) {
+        int result = 0;
+        for (final SubscriptionUsageRecordJson cur : json) {
+            if (subscriptionId != null && subscriptionId.toString().equals(cur.getSubscriptionId())) {
+                result += countUsageRecords(cur);
+            }
+        }
+        return result;
+    }
+
+    private int countUsageRecords(final SubscriptionUsageRecordJson json) {
+        int result = 0;
+        for (final UnitUsageRecordJson unitUsageRecordJson : json.getUnitUsageRecords()) {
+            result += unitUsageRecordJson.getUsageRecords().size();
+        }
+        return result;
+    }
+
     @TimedResource
     @GET
     @Path("/{subscriptionId:" + UUID_PATTERN + "}/{unitType}")
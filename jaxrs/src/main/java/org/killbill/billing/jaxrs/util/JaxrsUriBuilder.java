@@ -53,6 +53,20 @@ public class JaxrsUriBuilder {
         return uriBuilder.build();
     }
 
+    // Let the next page seek past the last record of the current one and reuse the counts of the first page (instead of skipping offset rows and recounting)
+    public URI nextPage(@Nullable final URI nextPageUri, @Nullable final Long lastRecordId, @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords) {
+        if (nextPageUri == null || lastRecordId == null) {
+            return nextPageUri;
+        }
+
+        final UriBuilder uriBuilder = UriBuilder.fromUri(nextPageUri).replaceQueryParam(JaxRsResourceBase.QUERY_SEARCH_LAST_RECORD_ID, lastRecordId);
+        if (totalNbRecords != null && maxNbRecords != null) {
+            uriBuilder.replaceQueryParam(JaxRsResourceBase.QUERY_SEARCH_TOTAL_NB_RECORDS, totalNbRecords)
+                      .replaceQueryParam(JaxRsResourceBase.QUERY_SEARCH_MAX_NB_RECORDS, maxNbRecords);
+        }
+        return uriBuilder.build();
+    }
+
     public Response buildResponse(final Class<? extends JaxrsResource> theClass, final String getMethodName, final Object objectId, final String baseUri) {
 
         // Let's build a n absolute location for cross resources
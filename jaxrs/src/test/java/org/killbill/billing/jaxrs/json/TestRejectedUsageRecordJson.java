@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.jaxrs.JaxrsTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestRejectedUsageRecordJson extends JaxrsTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testJson() throws Exception {
+        final String subscriptionId = UUID.randomUUID().toString();
+        final LocalDate recordDate = clock.getUTCToday();
+        final RejectedUsageRecordJson rejectedUsageRecordJson = new RejectedUsageRecordJson(subscriptionId, "bytes", recordDate, -1L, "amount needs to be positive");
+        Assert.assertEquals(rejectedUsageRecordJson.getSubscriptionId(), subscriptionId);
+        Assert.assertEquals(rejectedUsageRecordJson.getUnitType(), "bytes");
+        Assert.assertEquals(rejectedUsageRecordJson.getRecordDate(), recordDate);
+        Assert.assertEquals(rejectedUsageRecordJson.getAmount(), (Long) (-1L));
+        Assert.assertEquals(rejectedUsageRecordJson.getReason(), "amount needs to be positive");
+
+        final String asJson = mapper.writeValueAsString(rejectedUsageRecordJson);
+        final RejectedUsageRecordJson fromJson = mapper.readValue(asJson, RejectedUsageRecordJson.class);
+        Assert.assertEquals(fromJson, rejectedUsageRecordJson);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.junction;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.junction.plumbing.billing.BillingEventSetCache;
+import org.killbill.billing.junction.plumbing.billing.BillingEventSetCacheInvalidationListener;
+import org.killbill.billing.platform.api.LifecycleHandlerType;
+import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.bus.api.PersistentBus;
+
+public class DefaultJunctionService implements JunctionService {
+
+    public static final String JUNCTION_SERVICE_NAME = "junction-service";
+
+    private final BillingEventSetCache billingEventSetCache;
+    private final BillingEventSetCacheInvalidationListener billingEventSetCacheInvalidationListener;
+    private final PersistentBus eventBus;
+
+    @Inject
+    public DefaultJunctionService(final BillingEventSetCache billingEventSetCache,
+                                  final BillingEventSetCacheInvalidationListener billingEventSetCacheInvalidationListener,
+                                  final PersistentBus eventBus) {
+        this.billingEventSetCache = billingEventSetCache;
+        this.billingEventSetCacheInvalidationListener = billingEventSetCacheInvalidationListener;
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public String getName() {
+        return JUNCTION_SERVICE_NAME;
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.INIT_SERVICE)
+    public void initialize() {
+        if (!billingEventSetCache.isEnabled()) {
+            return;
+        }
+        try {
+            eventBus.register(billingEventSetCacheInvalidationListener);
+        } catch (final PersistentBus.EventBusException e) {
+            throw new RuntimeException("Unable to register to the EventBus!", e);
+        }
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
+    public void stop() {
+        if (!billingEventSetCache.isEnabled()) {
+            return;
+        }
+        try {
+            eventBus.unregister(billingEventSetCacheInvalidationListener);
+        } catch (final PersistentBus.EventBusException e) {
+            throw new RuntimeException("Unable to unregister to the EventBus!", e);
+        }
+        billingEventSetCache.invalidateAll();
+    }
+}
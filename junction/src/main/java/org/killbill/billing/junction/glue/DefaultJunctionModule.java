@@ -20,10 +20,16 @@ package org.killbill.billing.junction.glue;
 
 import org.killbill.billing.glue.JunctionModule;
 import org.killbill.billing.junction.BillingInternalApi;
+import org.killbill.billing.junction.DefaultJunctionService;
+import org.killbill.billing.junction.JunctionService;
+import org.killbill.billing.junction.plumbing.billing.BillingEventSetCache;
+import org.killbill.billing.junction.plumbing.billing.BillingEventSetCacheInvalidationListener;
 import org.killbill.billing.junction.plumbing.billing.BlockingCalculator;
 import org.killbill.billing.junction.plumbing.billing.DefaultInternalBillingApi;
 import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.config.JunctionConfig;
 import org.killbill.billing.util.glue.KillBillModule;
+import org.skife.config.ConfigurationObjectFactory;
 
 public class DefaultJunctionModule extends KillBillModule implements JunctionModule {
 
@@ -33,8 +39,16 @@ public class DefaultJunctionModule extends KillBillModule implements JunctionMod
 
     @Override
     protected void configure() {
+        installConfig();
         installBillingApi();
         installBlockingCalculator();
+        installBillingEventSetCache();
+        installJunctionService();
+    }
+
+    protected void installConfig() {
+        final JunctionConfig config = new ConfigurationObjectFactory(skifeConfigSource).build(JunctionConfig.class);
+        bind(JunctionConfig.class).toInstance(config);
     }
 
     @Override
@@ -46,4 +60,13 @@ public class DefaultJunctionModule extends KillBillModule implements JunctionMod
         bind(BlockingCalculator.class).asEagerSingleton();
     }
 
+    public void installBillingEventSetCache() {
+        bind(BillingEventSetCache.class).asEagerSingleton();
+        bind(BillingEventSetCacheInvalidationListener.class).asEagerSingleton();
+    }
+
+    public void installJunctionService() {
+        bind(JunctionService.class).to(DefaultJunctionService.class).asEagerSingleton();
+    }
+
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.junction.plumbing.billing;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.junction.BillingEventSet;
+import org.killbill.billing.util.config.JunctionConfig;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Per-account cache of the computed billing events, keyed by account record id.
+ * <p/>
+ * Each entry records the version of the inputs it was computed from (latest audit log entry of the account for the
+ * subscription, blocking state, tag and account tables) and is only served for that same version: changes made on
+ * other nodes, or future-dated blocking states (which aren't notified on the bus until their effective date), are
+ * picked up on the next lookup. The {@link BillingEventSetCacheInvalidationListener} additionally drops entries on
+ * bus events, and is the only invalidation for catalog changes (per tenant).
+ * <p/>
+ * Callers get their own copy of the cached set.
+ */
+@Singleton
+public class BillingEventSetCache {
+
+    private final boolean enabled;
+    private final Cache<Long, CachedBillingEventSet> cache;
+
+    @Inject
+    public BillingEventSetCache(final JunctionConfig config) {
+        this.enabled = config.isBillingEventsCacheEnabled();
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumSize(config.getBillingEventsCacheMaxAccounts())
+                                 .expireAfterWrite(config.getBillingEventsCacheTtl().getMillis(), TimeUnit.MILLISECONDS)
+                                 .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Nullable
+    public BillingEventSet get(@Nullable final Long inputsVersion, final InternalTenantContext context) {
+        if (!enabled || context.getAccountRecordId() == null) {
+            return null;
+        }
+        final CachedBillingEventSet cached = cache.getIfPresent(context.getAccountRecordId());
+        if (cached == null || !Objects.equal(cached.getInputsVersion(), inputsVersion)) {
+            return null;
+        }
+        return new DefaultBillingEventSet(cached.getBillingEvents());
+    }
+
+    public void put(final DefaultBillingEventSet billingEvents, @Nullable final Long inputsVersion, final InternalTenantContext context) {
+        if (!enabled || context.getAccountRecordId() == null) {
+            return;
+        }
+        // The caller keeps working on its own instance
+        cache.put(context.getAccountRecordId(), new CachedBillingEventSet(context.getTenantRecordId(), inputsVersion, new DefaultBillingEventSet(billingEvents)));
+    }
+
+    public void invalidateAccount(@Nullable final Long accountRecordId) {
+        if (accountRecordId != null) {
+            cache.invalidate(accountRecordId);
+        }
+    }
+
+    // Catalog changes affect all accounts of the tenant
+    public void invalidateTenant(@Nullable final Long tenantRecordId) {
+        final Iterator<Entry<Long, CachedBillingEventSet>> iterator = cache.asMap().entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Long cachedTenantRecordId = iterator.next().getValue().getTenantRecordId();
+            if (tenantRecordId == null || tenantRecordId.equals(cachedTenantRecordId)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static final class CachedBillingEventSet {
+
+        private final Long tenantRecordId;
+        private final Long inputsVersion;
+        private final DefaultBillingEventSet billingEvents;
+
+        private CachedBillingEventSet(final Long tenantRecordId, @Nullable final Long inputsVersion, final DefaultBillingEventSet billingEvents) {
+            this.tenantRecordId = tenantRecordId;
+            this.inputsVersion = inputsVersion;
+            this.billingEvents = billingEvents;
+        }
+
+        public Long getTenantRecordId() {
+            return tenantRecordId;
+        }
+
+        public Long getInputsVersion() {
+            return inputsVersion;
+        }
+
+        public DefaultBillingEventSet getBillingEvents() {
+            return billingEvents;
+        }
+    }
+}
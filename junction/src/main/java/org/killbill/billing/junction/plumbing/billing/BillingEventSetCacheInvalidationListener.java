@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.junction.plumbing.billing;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.events.AccountChangeInternalEvent;
+import org.killbill.billing.events.BlockingTransitionInternalEvent;
+import org.killbill.billing.events.ControlTagCreationInternalEvent;
+import org.killbill.billing.events.ControlTagDeletionInternalEvent;
+import org.killbill.billing.events.EffectiveEntitlementInternalEvent;
+import org.killbill.billing.events.RepairSubscriptionInternalEvent;
+import org.killbill.billing.events.SubscriptionInternalEvent;
+import org.killbill.billing.events.TenantConfigChangeInternalEvent;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Drops the cached billing events of an account when one of the inputs used to compute them changes.
+ * The search keys of internal bus events are the account and tenant record ids.
+ */
+public class BillingEventSetCacheInvalidationListener {
+
+    private final BillingEventSetCache billingEventSetCache;
+
+    @Inject
+    public BillingEventSetCacheInvalidationListener(final BillingEventSetCache billingEventSetCache) {
+        this.billingEventSetCache = billingEventSetCache;
+    }
+
+    // Requested (future) as well as effective subscription transitions
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleSubscriptionEvent(final SubscriptionInternalEvent event) {
+        billingEventSetCache.invalidateAccount(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleRepairSubscriptionEvent(final RepairSubscriptionInternalEvent event) {
+        billingEventSetCache.invalidateAccount(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleEntitlementTransition(final EffectiveEntitlementInternalEvent event) {
+        billingEventSetCache.invalidateAccount(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleBlockingStateTransition(final BlockingTransitionInternalEvent event) {
+        billingEventSetCache.invalidateAccount(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleControlTagCreation(final ControlTagCreationInternalEvent event) {
+        invalidateForControlTag(event.getObjectType(), event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleControlTagDeletion(final ControlTagDeletionInternalEvent event) {
+        invalidateForControlTag(event.getObjectType(), event.getSearchKey1());
+    }
+
+    // BCD, time zone or currency changes
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleAccountChange(final AccountChangeInternalEvent event) {
+        billingEventSetCache.invalidateAccount(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleTenantConfigChange(final TenantConfigChangeInternalEvent event) {
+        if (TenantKey.CATALOG.toString().equals(event.getKey())) {
+            billingEventSetCache.invalidateTenant(event.getSearchKey2());
+        }
+    }
+
+    private void invalidateForControlTag(final ObjectType objectType, final Long accountRecordId) {
+        // Only account and bundle level tags (e.g. AUTO_INVOICING_OFF) are looked at when computing the billing events
+        if (objectType == ObjectType.ACCOUNT || objectType == ObjectType.BUNDLE) {
+            billingEventSetCache.invalidateAccount(accountRecordId);
+        }
+    }
+}
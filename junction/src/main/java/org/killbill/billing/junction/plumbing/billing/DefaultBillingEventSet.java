@@ -58,6 +58,16 @@ public class DefaultBillingEventSet extends TreeSet<BillingEvent> implements Sor
         this.subscriptionIdsWithAutoInvoiceOff = new ArrayList<UUID>();
     }
 
+    // Copy of the events and settings (billing events themselves are immutable)
+    public DefaultBillingEventSet(final DefaultBillingEventSet billingEvents) {
+        super(billingEvents);
+        this.accountAutoInvoiceOff = billingEvents.accountAutoInvoiceOff;
+        this.recurringBillingMode = billingEvents.recurringBillingMode;
+        this.accountTimeZone = billingEvents.accountTimeZone;
+        this.subscriptionIdsWithAutoInvoiceOff = new ArrayList<UUID>(billingEvents.subscriptionIdsWithAutoInvoiceOff);
+        this.dateTimeZoneContext = billingEvents.dateTimeZoneContext;
+    }
+
     @Override
     public boolean add(final BillingEvent e) {
         if (dateTimeZoneContext == null) {
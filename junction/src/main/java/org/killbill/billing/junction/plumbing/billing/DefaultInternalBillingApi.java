@@ -19,12 +19,11 @@ package org.killbill.billing.junction.plumbing.billing;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.UUID;
 
-import javax.annotation.Nullable;
-
 import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
 import org.killbill.billing.ObjectType;
@@ -32,6 +31,8 @@ import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.AccountInternalApi;
 import org.killbill.billing.account.api.ImmutableAccountData;
 import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.api.Catalog;
 import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.catalog.api.CatalogService;
 import org.killbill.billing.catalog.api.StaticCatalog;
@@ -46,27 +47,39 @@ import org.killbill.billing.subscription.api.SubscriptionBaseInternalApi;
 import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseBundle;
+import org.killbill.billing.tag.AccountTags;
 import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.billing.util.UUIDs;
-import org.killbill.billing.util.tag.ControlTagType;
-import org.killbill.billing.util.tag.Tag;
+import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.TableName;
 import org.killbill.clock.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Collections2;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 
 public class DefaultInternalBillingApi implements BillingInternalApi {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultInternalBillingApi.class);
+
+    // Tables (audit log names) of the inputs of the billing events: subscriptions, blocking states, account and bundle tags, account (BCD, time zone)
+    private static final List<TableName> BILLING_EVENTS_INPUT_TABLES = ImmutableList.<TableName>of(TableName.BUNDLES,
+                                                                                                  TableName.SUBSCRIPTIONS,
+                                                                                                  TableName.SUBSCRIPTION_EVENTS,
+                                                                                                  TableName.BLOCKING_STATES,
+                                                                                                  TableName.TAG_HISTORY,
+                                                                                                  TableName.ACCOUNT_HISTORY);
+
     private final AccountInternalApi accountApi;
     private final BillCycleDayCalculator bcdCalculator;
     private final SubscriptionBaseInternalApi subscriptionApi;
     private final CatalogService catalogService;
     private final BlockingCalculator blockCalculator;
     private final TagInternalApi tagApi;
+    private final BillingEventSetCache billingEventSetCache;
+    private final NonEntityDao nonEntityDao;
     private final Clock clock;
 
     @Inject
@@ -76,6 +89,8 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
                                      final BlockingCalculator blockCalculator,
                                      final CatalogService catalogService,
                                      final TagInternalApi tagApi,
+                                     final BillingEventSetCache billingEventSetCache,
+                                     final NonEntityDao nonEntityDao,
                                      final Clock clock) {
         this.accountApi = accountApi;
         this.bcdCalculator = bcdCalculator;
@@ -83,29 +98,50 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
         this.catalogService = catalogService;
         this.blockCalculator = blockCalculator;
         this.tagApi = tagApi;
+        this.billingEventSetCache = billingEventSetCache;
+        this.nonEntityDao = nonEntityDao;
         this.clock = clock;
     }
 
     @Override
     public BillingEventSet getBillingEventsForAccountAndUpdateAccountBCD(final UUID accountId, final DryRunArguments dryRunArguments, final InternalCallContext context) throws CatalogApiException, AccountApiException {
+        // Dry-run arguments with an action inject hypothetical events: these results are never cached nor served from the cache
+        final boolean isCachable = billingEventSetCache.isEnabled() && (dryRunArguments == null || dryRunArguments.getAction() == null);
+        // Read before computing the events: a concurrent change will make the entry stale for the next lookup
+        final Long inputsVersion = isCachable ? nonEntityDao.retrieveLatestAuditRecordIdForAccount(BILLING_EVENTS_INPUT_TABLES, context) : null;
+        if (isCachable) {
+            final BillingEventSet cachedBillingEvents = billingEventSetCache.get(inputsVersion, context);
+            if (cachedBillingEvents != null) {
+                log.debug("Using cached billing events for accountId {}", accountId);
+                return cachedBillingEvents;
+            }
+        }
+
         final List<SubscriptionBaseBundle> bundles = subscriptionApi.getBundlesForAccount(accountId, context);
         final StaticCatalog currentCatalog = catalogService.getCurrentCatalog(context);
 
         final ImmutableAccountData account = accountApi.getImmutableAccountDataById(accountId, context);
         final DefaultBillingEventSet result = new DefaultBillingEventSet(false, currentCatalog.getRecurringBillingMode(), account.getTimeZone());
 
-
-
         final Set<UUID> skippedSubscriptions = new HashSet<UUID>();
+        boolean cacheComputedResult = false;
         try {
+            // Retrieve all tags for the account at once (account and bundle level)
+            final AccountTags accountTags = tagApi.getAccountTags(context);
+
             // Check to see if billing is off for the account
-            final List<Tag> accountTags = tagApi.getTags(accountId, ObjectType.ACCOUNT, context);
-            final boolean found_AUTO_INVOICING_OFF = is_AUTO_INVOICING_OFF(accountTags);
+            final boolean found_AUTO_INVOICING_OFF = accountTags.isAutoInvoicingOff(accountId, ObjectType.ACCOUNT);
             if (found_AUTO_INVOICING_OFF) {
-                return new DefaultBillingEventSet(true, currentCatalog.getRecurringBillingMode(), account.getTimeZone()); // billing is off, we are done
+                final DefaultBillingEventSet billingOff = new DefaultBillingEventSet(true, currentCatalog.getRecurringBillingMode(), account.getTimeZone()); // billing is off, we are done
+                if (isCachable) {
+                    billingEventSetCache.put(billingOff, inputsVersion, context);
+                }
+                return billingOff;
             }
 
-            addBillingEventsForBundles(bundles, account, dryRunArguments, context, result, skippedSubscriptions);
+            final int accountBCD = addBillingEventsForBundles(bundles, accountTags, account, dryRunArguments, context, result, skippedSubscriptions);
+            // A dry-run doesn't set the account BCD: don't let a later (real) run skip that update by hitting the cache
+            cacheComputedResult = isCachable && (dryRunArguments == null || accountBCD != 0);
         } catch (SubscriptionBaseApiException e) {
             log.warn("Failed while getting BillingEvent", e);
         }
@@ -117,9 +153,17 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
         eventsToString(logStringBuilder, result, "\nBilling Events After Blocking");
         log.info(logStringBuilder.toString());
 
+        if (cacheComputedResult) {
+            billingEventSetCache.put(result, inputsVersion, context);
+        }
         return result;
     }
 
+    @Override
+    public void invalidateBillingEvents(final InternalTenantContext context) {
+        billingEventSetCache.invalidateAccount(context.getAccountRecordId());
+    }
+
     private void eventsToString(final StringBuilder stringBuilder, final SortedSet<BillingEvent> events, final String title) {
         stringBuilder.append(title);
         for (final BillingEvent event : events) {
@@ -127,11 +171,16 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
         }
     }
 
-    private void addBillingEventsForBundles(final List<SubscriptionBaseBundle> bundles, final ImmutableAccountData account, final DryRunArguments dryRunArguments, final InternalCallContext context,
-                                            final DefaultBillingEventSet result, final Set<UUID> skipSubscriptionsSet) throws SubscriptionBaseApiException, AccountApiException {
+    // Returns the account BCD after processing all bundles
+    private int addBillingEventsForBundles(final List<SubscriptionBaseBundle> bundles, final AccountTags accountTags, final ImmutableAccountData account, final DryRunArguments dryRunArguments, final InternalCallContext context,
+                                            final DefaultBillingEventSet result, final Set<UUID> skipSubscriptionsSet) throws SubscriptionBaseApiException, AccountApiException, CatalogApiException {
 
         final boolean dryRunMode = dryRunArguments != null;
 
+        // The catalog and the account BCD are resolved once for all subscriptions
+        final Catalog catalog = catalogService.getFullCatalog(context);
+        int currentAccountBCD = accountApi.getBCD(account.getId(), context);
+
         // In dryRun mode, when we care about invoice generated for new BASE subscription, no such bundle exists yet; we still
         // want to tap into subscriptionBase logic, so we make up a bundleId
         if (dryRunArguments != null &&
@@ -140,44 +189,51 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
             final UUID fakeBundleId = UUIDs.randomUUID();
             final List<SubscriptionBase> subscriptions = subscriptionApi.getSubscriptionsForBundle(fakeBundleId, dryRunArguments, context);
 
-            addBillingEventsForSubscription(account, subscriptions, fakeBundleId, dryRunMode, context, result, skipSubscriptionsSet);
-
+            currentAccountBCD = addBillingEventsForSubscription(account, currentAccountBCD, catalog, subscriptions, fakeBundleId, dryRunMode, context, result, skipSubscriptionsSet);
         }
 
+        // Subscriptions (and their events) for all bundles are loaded at once
+        final Map<UUID, List<SubscriptionBase>> subscriptionsForAccount = subscriptionApi.getSubscriptionsForAccount(context);
+
         for (final SubscriptionBaseBundle bundle : bundles) {
-            final DryRunArguments dryRunArgumentsForBundle = (dryRunArguments != null &&
-                                                              dryRunArguments.getBundleId() != null &&
-                                                              dryRunArguments.getBundleId().equals(bundle.getId())) ?
-                                                             dryRunArguments : null;
-            final List<SubscriptionBase> subscriptions = subscriptionApi.getSubscriptionsForBundle(bundle.getId(), dryRunArgumentsForBundle, context);
+            final List<SubscriptionBase> subscriptions;
+            if (dryRunArguments != null &&
+                dryRunArguments.getBundleId() != null &&
+                dryRunArguments.getBundleId().equals(bundle.getId())) {
+                // The dry-run events need to be merged for that bundle
+                subscriptions = subscriptionApi.getSubscriptionsForBundle(bundle.getId(), dryRunArguments, context);
+            } else {
+                subscriptions = Objects.firstNonNull(subscriptionsForAccount.get(bundle.getId()), ImmutableList.<SubscriptionBase>of());
+            }
 
             //Check if billing is off for the bundle
-            final List<Tag> bundleTags = tagApi.getTags(bundle.getId(), ObjectType.BUNDLE, context);
-            boolean found_AUTO_INVOICING_OFF = is_AUTO_INVOICING_OFF(bundleTags);
+            final boolean found_AUTO_INVOICING_OFF = accountTags.isAutoInvoicingOff(bundle.getId(), ObjectType.BUNDLE);
             if (found_AUTO_INVOICING_OFF) {
                 for (final SubscriptionBase subscription : subscriptions) { // billing is off so list sub ids in set to be excluded
                     result.getSubscriptionIdsWithAutoInvoiceOff().add(subscription.getId());
                 }
             } else { // billing is not off
-                addBillingEventsForSubscription(account, subscriptions, bundle.getId(), dryRunMode, context, result, skipSubscriptionsSet);
+                currentAccountBCD = addBillingEventsForSubscription(account, currentAccountBCD, catalog, subscriptions, bundle.getId(), dryRunMode, context, result, skipSubscriptionsSet);
             }
         }
+        return currentAccountBCD;
     }
 
-
-    private void addBillingEventsForSubscription(final ImmutableAccountData account,
-                                                 final List<SubscriptionBase> subscriptions,
-                                                 final UUID bundleId,
-                                                 final boolean dryRunMode,
-                                                 final InternalCallContext context,
-                                                 final DefaultBillingEventSet result,
-                                                 final Set<UUID> skipSubscriptionsSet) throws AccountApiException {
+    // Returns the account BCD to use for the next bundles
+    private int addBillingEventsForSubscription(final ImmutableAccountData account,
+                                                final int currentAccountBCD,
+                                                final Catalog catalog,
+                                                final List<SubscriptionBase> subscriptions,
+                                                final UUID bundleId,
+                                                final boolean dryRunMode,
+                                                final InternalCallContext context,
+                                                final DefaultBillingEventSet result,
+                                                final Set<UUID> skipSubscriptionsSet) throws AccountApiException {
 
         // If dryRun is specified, we don't want to to update the account BCD value, so we initialize the flag updatedAccountBCD to true
         boolean updatedAccountBCD = dryRunMode;
 
-
-        int currentAccountBCD = accountApi.getBCD(account.getId(), context);
+        int newAccountBCD = currentAccountBCD;
         for (final SubscriptionBase subscription : subscriptions) {
 
             // The subscription did not even start, so there is nothing to do yet, we can skip and avoid some NPE down the line when calculating the BCD
@@ -192,7 +248,7 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
                  billingTransitions.get(0).getTransitionType() != SubscriptionBaseTransitionType.TRANSFER)) {
                 log.warn("Skipping billing events for subscription " + subscription.getId() + ": Does not start with a valid CREATE transition");
                 skipSubscriptionsSet.add(subscription.getId());
-                return;
+                return newAccountBCD;
             }
 
 
@@ -203,9 +259,10 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
                     if (currentAccountBCD == 0 && !updatedAccountBCD) {
                         accountApi.updateBCD(account.getExternalKey(), bcdLocal, context);
                         updatedAccountBCD = true;
+                        newAccountBCD = bcdLocal;
                     }
 
-                    final BillingEvent event = new DefaultBillingEvent(account, transition, subscription, bcdLocal, account.getCurrency(), catalogService.getFullCatalog(context));
+                    final BillingEvent event = new DefaultBillingEvent(account, transition, subscription, bcdLocal, account.getCurrency(), catalog);
                     result.add(event);
                 } catch (CatalogApiException e) {
                     log.error("Failing to identify catalog components while creating BillingEvent from transition: " +
@@ -218,15 +275,7 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
                 }
             }
         }
+        return newAccountBCD;
     }
 
-    private final boolean is_AUTO_INVOICING_OFF(final List<Tag> tags) {
-        return ControlTagType.isAutoInvoicingOff(Collections2.transform(tags, new Function<Tag, UUID>() {
-            @Nullable
-            @Override
-            public UUID apply(@Nullable final Tag tag) {
-                return tag.getTagDefinitionId();
-            }
-        }));
-    }
 }
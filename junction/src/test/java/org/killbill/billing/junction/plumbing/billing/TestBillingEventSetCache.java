@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.junction.plumbing.billing;
+
+import java.util.UUID;
+
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.api.BillingMode;
+import org.killbill.billing.events.ControlTagCreationInternalEvent;
+import org.killbill.billing.events.EffectiveSubscriptionInternalEvent;
+import org.killbill.billing.events.TenantConfigChangeInternalEvent;
+import org.killbill.billing.junction.BillingEventSet;
+import org.killbill.billing.junction.JunctionTestSuiteNoDB;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
+import org.killbill.billing.util.config.JunctionConfig;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestBillingEventSetCache extends JunctionTestSuiteNoDB {
+
+    private static final Long VERSION = 12L;
+
+    private final InternalTenantContext account1Tenant1 = new InternalTenantContext(1L, 1L);
+    private final InternalTenantContext account2Tenant1 = new InternalTenantContext(1L, 2L);
+    private final InternalTenantContext account3Tenant2 = new InternalTenantContext(2L, 3L);
+
+    private BillingEventSetCache cache;
+    private BillingEventSetCacheInvalidationListener listener;
+
+    @BeforeMethod(groups = "fast")
+    public void setUpCache() throws Exception {
+        cache = new BillingEventSetCache(createConfig(true));
+        listener = new BillingEventSetCacheInvalidationListener(cache);
+    }
+
+    @Test(groups = "fast")
+    public void testDisabledCache() throws Exception {
+        final BillingEventSetCache disabledCache = new BillingEventSetCache(createConfig(false));
+        disabledCache.put(createBillingEventSet(false), VERSION, account1Tenant1);
+        Assert.assertNull(disabledCache.get(VERSION, account1Tenant1));
+    }
+
+    @Test(groups = "fast")
+    public void testInputsVersion() throws Exception {
+        cache.put(createBillingEventSet(true), VERSION, account1Tenant1);
+        Assert.assertNotNull(cache.get(VERSION, account1Tenant1));
+
+        // Inputs modified by another node, or future-dated blocking state: no bus event but a new version
+        Assert.assertNull(cache.get(VERSION + 1, account1Tenant1));
+        Assert.assertNull(cache.get(null, account1Tenant1));
+    }
+
+    @Test(groups = "fast")
+    public void testCallersGetTheirOwnCopy() throws Exception {
+        final DefaultBillingEventSet events = createBillingEventSet(false);
+        events.getSubscriptionIdsWithAutoInvoiceOff().add(UUID.randomUUID());
+        cache.put(events, VERSION, account1Tenant1);
+
+        // Changes made by the caller after the put aren't cached
+        events.getSubscriptionIdsWithAutoInvoiceOff().clear();
+        final BillingEventSet cachedEvents1 = cache.get(VERSION, account1Tenant1);
+        Assert.assertEquals(cachedEvents1.getSubscriptionIdsWithAutoInvoiceOff().size(), 1);
+
+        // Changes made by one reader aren't seen by the others
+        cachedEvents1.getSubscriptionIdsWithAutoInvoiceOff().clear();
+        final BillingEventSet cachedEvents2 = cache.get(VERSION, account1Tenant1);
+        Assert.assertNotSame(cachedEvents2, cachedEvents1);
+        Assert.assertEquals(cachedEvents2.getSubscriptionIdsWithAutoInvoiceOff().size(), 1);
+        Assert.assertEquals(cachedEvents2.getRecurringBillingMode(), BillingMode.IN_ADVANCE);
+        Assert.assertFalse(cachedEvents2.isAccountAutoInvoiceOff());
+    }
+
+    @Test(groups = "fast")
+    public void testInvalidateAccount() throws Exception {
+        cache.put(createBillingEventSet(true), VERSION, account1Tenant1);
+        cache.put(createBillingEventSet(false), VERSION, account2Tenant1);
+        Assert.assertTrue(cache.get(VERSION, account1Tenant1).isAccountAutoInvoiceOff());
+        Assert.assertFalse(cache.get(VERSION, account2Tenant1).isAccountAutoInvoiceOff());
+
+        final EffectiveSubscriptionInternalEvent subscriptionEvent = Mockito.mock(EffectiveSubscriptionInternalEvent.class);
+        Mockito.when(subscriptionEvent.getSearchKey1()).thenReturn(account1Tenant1.getAccountRecordId());
+        listener.handleSubscriptionEvent(subscriptionEvent);
+
+        Assert.assertNull(cache.get(VERSION, account1Tenant1));
+        Assert.assertNotNull(cache.get(VERSION, account2Tenant1));
+    }
+
+    @Test(groups = "fast")
+    public void testInvalidateOnControlTags() throws Exception {
+        cache.put(createBillingEventSet(false), VERSION, account1Tenant1);
+
+        // Tags on other objects (e.g. invoices) don't impact the billing events
+        final ControlTagCreationInternalEvent invoiceTagEvent = Mockito.mock(ControlTagCreationInternalEvent.class);
+        Mockito.when(invoiceTagEvent.getObjectType()).thenReturn(ObjectType.INVOICE);
+        Mockito.when(invoiceTagEvent.getSearchKey1()).thenReturn(account1Tenant1.getAccountRecordId());
+        listener.handleControlTagCreation(invoiceTagEvent);
+        Assert.assertNotNull(cache.get(VERSION, account1Tenant1));
+
+        final ControlTagCreationInternalEvent accountTagEvent = Mockito.mock(ControlTagCreationInternalEvent.class);
+        Mockito.when(accountTagEvent.getObjectType()).thenReturn(ObjectType.ACCOUNT);
+        Mockito.when(accountTagEvent.getSearchKey1()).thenReturn(account1Tenant1.getAccountRecordId());
+        listener.handleControlTagCreation(accountTagEvent);
+        Assert.assertNull(cache.get(VERSION, account1Tenant1));
+    }
+
+    @Test(groups = "fast")
+    public void testInvalidateTenantOnCatalogChange() throws Exception {
+        cache.put(createBillingEventSet(false), VERSION, account1Tenant1);
+        cache.put(createBillingEventSet(false), VERSION, account2Tenant1);
+        cache.put(createBillingEventSet(false), VERSION, account3Tenant2);
+
+        final TenantConfigChangeInternalEvent overdueConfigEvent = Mockito.mock(TenantConfigChangeInternalEvent.class);
+        Mockito.when(overdueConfigEvent.getKey()).thenReturn(TenantKey.OVERDUE_CONFIG.toString());
+        Mockito.when(overdueConfigEvent.getSearchKey2()).thenReturn(account1Tenant1.getTenantRecordId());
+        listener.handleTenantConfigChange(overdueConfigEvent);
+        Assert.assertNotNull(cache.get(VERSION, account1Tenant1));
+
+        final TenantConfigChangeInternalEvent catalogEvent = Mockito.mock(TenantConfigChangeInternalEvent.class);
+        Mockito.when(catalogEvent.getKey()).thenReturn(TenantKey.CATALOG.toString());
+        Mockito.when(catalogEvent.getSearchKey2()).thenReturn(account1Tenant1.getTenantRecordId());
+        listener.handleTenantConfigChange(catalogEvent);
+
+        Assert.assertNull(cache.get(VERSION, account1Tenant1));
+        Assert.assertNull(cache.get(VERSION, account2Tenant1));
+        Assert.assertNotNull(cache.get(VERSION, account3Tenant2));
+    }
+
+    private DefaultBillingEventSet createBillingEventSet(final boolean accountAutoInvoiceOff) {
+        return new DefaultBillingEventSet(accountAutoInvoiceOff, BillingMode.IN_ADVANCE, DateTimeZone.UTC);
+    }
+
+    private JunctionConfig createConfig(final boolean enabled) {
+        final JunctionConfig config = Mockito.mock(JunctionConfig.class);
+        Mockito.when(config.isBillingEventsCacheEnabled()).thenReturn(enabled);
+        Mockito.when(config.getBillingEventsCacheMaxAccounts()).thenReturn(100L);
+        Mockito.when(config.getBillingEventsCacheTtl()).thenReturn(new TimeSpan("5m"));
+        return config;
+    }
+}
@@ -34,6 +34,7 @@ import org.testng.Assert;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.UnpaidInvoicesSummary;
 import org.killbill.billing.entitlement.api.BlockingState;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -126,7 +127,8 @@ public class TestOverdueHelper {
         final Invoice invoice = Mockito.mock(Invoice.class);
         Mockito.when(invoice.getInvoiceDate()).thenReturn(dateOfLastUnPaidInvoice);
         Mockito.when(invoice.getBalance()).thenReturn(BigDecimal.TEN);
-        Mockito.when(invoice.getId()).thenReturn(UUID.randomUUID());
+        final UUID invoiceId = UUID.randomUUID();
+        Mockito.when(invoice.getId()).thenReturn(invoiceId);
 
         final InvoiceItem item = Mockito.mock(InvoiceItem.class);
         final List<InvoiceItem> items = new ArrayList<InvoiceItem>();
@@ -138,6 +140,13 @@ public class TestOverdueHelper {
         invoices.add(invoice);
         Mockito.when(invoiceInternalApi.getUnpaidInvoicesByAccountId(Mockito.<UUID>any(), Mockito.<LocalDate>any(), Mockito.<InternalTenantContext>any())).thenReturn(invoices);
 
+        final UnpaidInvoicesSummary unpaidInvoicesSummary = Mockito.mock(UnpaidInvoicesSummary.class);
+        Mockito.when(unpaidInvoicesSummary.getNumberOfUnpaidInvoices()).thenReturn(1);
+        Mockito.when(unpaidInvoicesSummary.getUnpaidInvoiceBalance()).thenReturn(BigDecimal.TEN);
+        Mockito.when(unpaidInvoicesSummary.getDateOfEarliestUnpaidInvoice()).thenReturn(dateOfLastUnPaidInvoice);
+        Mockito.when(unpaidInvoicesSummary.getIdOfEarliestUnpaidInvoice()).thenReturn(invoiceId);
+        Mockito.when(invoiceInternalApi.getUnpaidInvoicesSummary(Mockito.<UUID>any(), Mockito.<LocalDate>any(), Mockito.<InternalTenantContext>any())).thenReturn(unpaidInvoicesSummary);
+
         return account;
     }
 
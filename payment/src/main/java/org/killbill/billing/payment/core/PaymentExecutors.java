@@ -17,18 +17,26 @@
 
 package org.killbill.billing.payment.core;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
+import org.killbill.billing.payment.core.janitor.JanitorWorkers;
+import org.killbill.billing.payment.dispatcher.PluginExecutor;
 import org.killbill.billing.util.config.PaymentConfig;
 import org.killbill.commons.concurrent.Executors;
 import org.killbill.commons.concurrent.WithProfilingThreadPoolExecutor;
 
+import com.codahale.metrics.MetricRegistry;
+
 public class PaymentExecutors {
 
     private static final long TIMEOUT_EXECUTOR_SEC = 3L;
@@ -37,46 +45,89 @@ public class PaymentExecutors {
 
     private static final String PLUGIN_THREAD_PREFIX = "Plugin-th-";
     private static final String PAYMENT_PLUGIN_TH_GROUP_NAME = "pay-plugin-grp";
+    private static final String PAYMENT_INFO_THREAD_PREFIX = "PaymentInfo-th-";
 
     public static final String JANITOR_EXECUTOR_NAMED = "JanitorExecutor";
     public static final String PLUGIN_EXECUTOR_NAMED = "PluginExecutor";
 
     private final PaymentConfig paymentConfig;
+    private final MetricRegistry metricRegistry;
+
+    // Per plugin bulkheads, created on first use
+    private final ConcurrentMap<String, PluginExecutor> pluginExecutors = new ConcurrentHashMap<String, PluginExecutor>();
 
     private volatile ExecutorService pluginExecutorService;
+    private volatile ExecutorService paymentInfoExecutorService;
     private volatile ScheduledExecutorService janitorExecutorService;
+    private volatile JanitorWorkers janitorWorkers;
 
     @Inject
-    public PaymentExecutors(PaymentConfig paymentConfig) {
+    public PaymentExecutors(final PaymentConfig paymentConfig, final MetricRegistry metricRegistry) {
         this.paymentConfig = paymentConfig;
-
+        this.metricRegistry = metricRegistry;
     }
 
     public void initialize() {
         this.pluginExecutorService = createPluginExecutorService();
+        this.paymentInfoExecutorService = createPaymentInfoExecutorService();
         this.janitorExecutorService = createJanitorExecutorService();
+        this.janitorWorkers = createJanitorWorkers();
     }
 
 
     public void stop() throws InterruptedException {
         pluginExecutorService.shutdownNow();
+        paymentInfoExecutorService.shutdownNow();
         janitorExecutorService.shutdownNow();
 
         pluginExecutorService.awaitTermination(TIMEOUT_EXECUTOR_SEC, TimeUnit.SECONDS);
         pluginExecutorService = null;
 
+        paymentInfoExecutorService.awaitTermination(TIMEOUT_EXECUTOR_SEC, TimeUnit.SECONDS);
+        paymentInfoExecutorService = null;
+
         janitorExecutorService.awaitTermination(TIMEOUT_EXECUTOR_SEC, TimeUnit.SECONDS);
         janitorExecutorService = null;
+
+        // Normally already stopped by the Janitor, which reschedules the pending notifications
+        janitorWorkers.shutdownNow();
+        janitorWorkers.awaitTermination(TIMEOUT_EXECUTOR_SEC, TimeUnit.SECONDS);
+        janitorWorkers = null;
+
+        synchronized (pluginExecutors) {
+            for (final PluginExecutor pluginExecutor : pluginExecutors.values()) {
+                pluginExecutor.shutdownNow();
+            }
+            for (final PluginExecutor pluginExecutor : pluginExecutors.values()) {
+                pluginExecutor.awaitTermination(TIMEOUT_EXECUTOR_SEC, TimeUnit.SECONDS);
+            }
+            pluginExecutors.clear();
+        }
     }
 
     public ExecutorService getPluginExecutorService() {
         return pluginExecutorService;
     }
 
+    // Bulk plugin info lookups (see PaymentProcessor#getPaymentTransactionInfoPluginsInParallel), separate from the payment operations
+    public ExecutorService getPaymentInfoExecutorService() {
+        return paymentInfoExecutorService;
+    }
+
+    // Executor dedicated to the calls to that plugin (see PluginDispatcher#dispatchWithTimeout)
+    public PluginExecutor getPluginExecutor(final String pluginName) {
+        final PluginExecutor pluginExecutor = pluginExecutors.get(pluginName);
+        return pluginExecutor != null ? pluginExecutor : createPluginExecutor(pluginName);
+    }
+
     public ScheduledExecutorService getJanitorExecutorService() {
         return janitorExecutorService;
     }
 
+    public JanitorWorkers getJanitorWorkers() {
+        return janitorWorkers;
+    }
+
     private ExecutorService createPluginExecutorService() {
         final int minThreadNb = DEFAULT_MIN_PLUGIN_THREADS < paymentConfig.getPaymentPluginThreadNb() ? DEFAULT_MIN_PLUGIN_THREADS : paymentConfig.getPaymentPluginThreadNb();
         return new WithProfilingThreadPoolExecutor(minThreadNb,
@@ -96,6 +147,52 @@ public class PaymentExecutors {
 
     }
 
+    private ExecutorService createPaymentInfoExecutorService() {
+        final int threadNb = Math.max(1, paymentConfig.getPaymentInfoPluginThreadNb());
+        final ThreadPoolExecutor executor = new WithProfilingThreadPoolExecutor(threadNb,
+                                                                                threadNb,
+                                                                                10,
+                                                                                TimeUnit.MINUTES,
+                                                                                new ArrayBlockingQueue<Runnable>(Math.max(1, paymentConfig.getPaymentInfoPluginQueueSize())),
+                                                                                new ThreadFactory() {
+
+                                                                                    @Override
+                                                                                    public Thread newThread(final Runnable r) {
+                                                                                        final Thread th = new Thread(new ThreadGroup(PAYMENT_PLUGIN_TH_GROUP_NAME), r);
+                                                                                        th.setName(PAYMENT_INFO_THREAD_PREFIX + th.getId());
+                                                                                        return th;
+                                                                                    }
+                                                                                });
+        // Idle threads don't need to be kept around between listings
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private PluginExecutor createPluginExecutor(final String pluginName) {
+        synchronized (pluginExecutors) {
+            PluginExecutor pluginExecutor = pluginExecutors.get(pluginName);
+            if (pluginExecutor == null) {
+                pluginExecutor = new PluginExecutor(pluginName,
+                                                    paymentConfig.getPaymentPluginMaxConcurrentCalls(),
+                                                    paymentConfig.getPaymentPluginQueueSize(),
+                                                    paymentConfig.getPaymentPluginCircuitBreakerTimeouts(),
+                                                    paymentConfig.getPaymentPluginCircuitBreakerDelay().getMillis());
+                pluginExecutor.registerMetrics(metricRegistry);
+                pluginExecutors.put(pluginName, pluginExecutor);
+            }
+            return pluginExecutor;
+        }
+    }
+
+    private JanitorWorkers createJanitorWorkers() {
+        final JanitorWorkers workers = new JanitorWorkers(paymentConfig.getJanitorWorkersNb(),
+                                                          paymentConfig.getJanitorWorkersQueueSize(),
+                                                          paymentConfig.getJanitorWorkersSubmitTimeout().getMillis(),
+                                                          paymentConfig.getJanitorPluginCallsPerSecond());
+        workers.registerMetrics(metricRegistry);
+        return workers;
+    }
+
     private ScheduledExecutorService createJanitorExecutorService() {
         return Executors.newSingleThreadScheduledExecutor("PaymentJanitor");
     }
@@ -50,7 +50,7 @@ import org.killbill.commons.locker.GlobalLocker;
 
 import com.google.common.base.Objects;
 
-import static org.killbill.billing.payment.dispatcher.PaymentPluginDispatcher.dispatchWithExceptionHandling;
+import static org.killbill.billing.payment.dispatcher.PaymentPluginDispatcher.dispatchToPluginWithExceptionHandling;
 
 public class PaymentGatewayProcessor extends ProcessorBase {
 
@@ -81,21 +81,21 @@ public class PaymentGatewayProcessor extends ProcessorBase {
 
     public GatewayNotification processNotification(final boolean shouldDispatch, final String notification, final String pluginName, final Iterable<PluginProperty> properties, final CallContext callContext) throws PaymentApiException {
         if (shouldDispatch) {
-            return dispatchWithExceptionHandling(null,
-                                                 pluginName,
-                                                 new Callable<PluginDispatcherReturnType<GatewayNotification>>() {
-                                                     @Override
-                                                     public PluginDispatcherReturnType<GatewayNotification> call() throws PaymentApiException {
-                                                         final PaymentPluginApi plugin = getPaymentPluginApi(pluginName);
+            return dispatchToPluginWithExceptionHandling(null,
+                                                         pluginName,
+                                                         new Callable<PluginDispatcherReturnType<GatewayNotification>>() {
+                                                             @Override
+                                                             public PluginDispatcherReturnType<GatewayNotification> call() throws PaymentApiException {
+                                                                 final PaymentPluginApi plugin = getPaymentPluginApi(pluginName);
 
-                                                         try {
-                                                             final GatewayNotification result = plugin.processNotification(notification, properties, callContext);
-                                                             return PluginDispatcher.createPluginDispatcherReturnType(result == null ? new DefaultNoOpGatewayNotification() : result);
-                                                         } catch (final PaymentPluginApiException e) {
-                                                             throw new PaymentApiException(e, ErrorCode.PAYMENT_PLUGIN_EXCEPTION, e.getErrorMessage());
-                                                         }
-                                                     }
-                                                 }, paymentPluginNotificationDispatcher);
+                                                                 try {
+                                                                     final GatewayNotification result = plugin.processNotification(notification, properties, callContext);
+                                                                     return PluginDispatcher.createPluginDispatcherReturnType(result == null ? new DefaultNoOpGatewayNotification() : result);
+                                                                 } catch (final PaymentPluginApiException e) {
+                                                                     throw new PaymentApiException(e, ErrorCode.PAYMENT_PLUGIN_EXCEPTION, e.getErrorMessage());
+                                                                 }
+                                                             }
+                                                         }, paymentPluginNotificationDispatcher);
         } else {
             final PaymentPluginApi plugin = getPaymentPluginApi(pluginName);
             try {
@@ -110,23 +110,23 @@ public class PaymentGatewayProcessor extends ProcessorBase {
         final String pluginName = getPaymentProviderPluginName(paymentMethodId, internalCallContext);
 
         if (shouldDispatch) {
-            return dispatchWithExceptionHandling(account,
-                                                 pluginName,
-                                                 new Callable<PluginDispatcherReturnType<HostedPaymentPageFormDescriptor>>() {
-                                                     @Override
-                                                     public PluginDispatcherReturnType<HostedPaymentPageFormDescriptor> call() throws PaymentApiException {
-                                                         final PaymentPluginApi plugin = getPaymentPluginApi(pluginName);
+            return dispatchToPluginWithExceptionHandling(account,
+                                                         pluginName,
+                                                         new Callable<PluginDispatcherReturnType<HostedPaymentPageFormDescriptor>>() {
+                                                             @Override
+                                                             public PluginDispatcherReturnType<HostedPaymentPageFormDescriptor> call() throws PaymentApiException {
+                                                                 final PaymentPluginApi plugin = getPaymentPluginApi(pluginName);
 
-                                                         try {
-                                                             final HostedPaymentPageFormDescriptor result = plugin.buildFormDescriptor(account.getId(), customFields, properties, callContext);
-                                                             return PluginDispatcher.createPluginDispatcherReturnType(result == null ? new DefaultNoOpHostedPaymentPageFormDescriptor(account.getId()) : result);
-                                                         } catch (final RuntimeException e) {
-                                                             throw new PaymentApiException(e, ErrorCode.PAYMENT_INTERNAL_ERROR, Objects.firstNonNull(e.getMessage(), ""));
-                                                         } catch (final PaymentPluginApiException e) {
-                                                             throw new PaymentApiException(e, ErrorCode.PAYMENT_PLUGIN_EXCEPTION, e.getErrorMessage());
-                                                         }
-                                                     }
-                                                 }, paymentPluginFormDispatcher);
+                                                                 try {
+                                                                     final HostedPaymentPageFormDescriptor result = plugin.buildFormDescriptor(account.getId(), customFields, properties, callContext);
+                                                                     return PluginDispatcher.createPluginDispatcherReturnType(result == null ? new DefaultNoOpHostedPaymentPageFormDescriptor(account.getId()) : result);
+                                                                 } catch (final RuntimeException e) {
+                                                                     throw new PaymentApiException(e, ErrorCode.PAYMENT_INTERNAL_ERROR, Objects.firstNonNull(e.getMessage(), ""));
+                                                                 } catch (final PaymentPluginApiException e) {
+                                                                     throw new PaymentApiException(e, ErrorCode.PAYMENT_PLUGIN_EXCEPTION, e.getErrorMessage());
+                                                                 }
+                                                             }
+                                                         }, paymentPluginFormDispatcher);
         } else {
             final PaymentPluginApi plugin = getPaymentPluginApi(pluginName);
             try {
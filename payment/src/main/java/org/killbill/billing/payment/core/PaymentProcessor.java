@@ -23,14 +23,24 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
+import org.apache.shiro.util.ThreadContext;
 import org.killbill.automaton.OperationResult;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.account.api.Account;
@@ -50,6 +60,7 @@ import org.killbill.billing.payment.api.TransactionStatus;
 import org.killbill.billing.payment.api.TransactionType;
 import org.killbill.billing.payment.core.janitor.IncompletePaymentTransactionTask;
 import org.killbill.billing.payment.core.sm.PaymentAutomatonRunner;
+import org.killbill.billing.payment.dispatcher.CallableWithRequestData;
 import org.killbill.billing.payment.dao.PaymentDao;
 import org.killbill.billing.payment.dao.PaymentModelDao;
 import org.killbill.billing.payment.dao.PaymentTransactionModelDao;
@@ -57,21 +68,26 @@ import org.killbill.billing.payment.plugin.api.PaymentPluginApi;
 import org.killbill.billing.payment.plugin.api.PaymentPluginApiException;
 import org.killbill.billing.payment.plugin.api.PaymentTransactionInfoPlugin;
 import org.killbill.billing.tag.TagInternalApi;
+import org.killbill.billing.util.UUIDs;
 import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.PaymentConfig;
 import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.DefaultPaginationHelper.EntityPaginationBuilder;
 import org.killbill.billing.util.entity.dao.DefaultPaginationHelper.SourcePaginationBuilder;
 import org.killbill.clock.Clock;
 import org.killbill.commons.locker.GlobalLocker;
+import org.killbill.commons.request.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
@@ -86,6 +102,9 @@ public class PaymentProcessor extends ProcessorBase {
 
     private final PaymentAutomatonRunner paymentAutomatonRunner;
     private final IncompletePaymentTransactionTask incompletePaymentTransactionTask;
+    private final PaymentExecutors paymentExecutors;
+    private final long paymentInfoPluginTimeoutMs;
+    private final int paymentInfoPluginParallelism;
 
     private static final Logger log = LoggerFactory.getLogger(PaymentProcessor.class);
 
@@ -99,10 +118,15 @@ public class PaymentProcessor extends ProcessorBase {
                             final GlobalLocker locker,
                             final PaymentAutomatonRunner paymentAutomatonRunner,
                             final IncompletePaymentTransactionTask incompletePaymentTransactionTask,
+                            final PaymentExecutors paymentExecutors,
+                            final PaymentConfig paymentConfig,
                             final Clock clock) {
         super(pluginRegistry, accountUserApi, paymentDao, tagUserApi, locker, internalCallContextFactory, invoiceApi, clock);
         this.paymentAutomatonRunner = paymentAutomatonRunner;
         this.incompletePaymentTransactionTask = incompletePaymentTransactionTask;
+        this.paymentExecutors = paymentExecutors;
+        this.paymentInfoPluginTimeoutMs = paymentConfig.getPaymentInfoPluginTimeout().getMillis();
+        this.paymentInfoPluginParallelism = Math.max(1, paymentConfig.getPaymentInfoPluginParallelism());
     }
 
     public Payment createAuthorization(final boolean isApiPayment, @Nullable final UUID attemptId, final Account account, @Nullable final UUID paymentMethodId, @Nullable final UUID paymentId, final BigDecimal amount, final Currency currency,
@@ -162,29 +186,37 @@ public class PaymentProcessor extends ProcessorBase {
         final List<PaymentModelDao> paymentsModelDao = paymentDao.getPaymentsForAccount(accountId, tenantContext);
         final List<PaymentTransactionModelDao> transactionsModelDao = paymentDao.getTransactionsForAccount(accountId, tenantContext);
 
-        final Map<UUID, PaymentPluginApi> paymentPluginByPaymentMethodId = new HashMap<UUID, PaymentPluginApi>();
-        final Collection<UUID> absentPlugins = new HashSet<UUID>();
+        final Map<UUID, List<PaymentTransactionInfoPlugin>> pluginInfoByPaymentId;
+        if (withPluginInfo) {
+            final Map<UUID, PaymentPluginApi> paymentPluginByPaymentMethodId = new HashMap<UUID, PaymentPluginApi>();
+            final Collection<UUID> absentPlugins = new HashSet<UUID>();
+            pluginInfoByPaymentId = getPaymentTransactionInfoPluginsInParallel(paymentsModelDao,
+                                                                               new Function<PaymentModelDao, PaymentPluginApi>() {
+                                                                                   @Override
+                                                                                   public PaymentPluginApi apply(final PaymentModelDao paymentModelDao) {
+                                                                                       PaymentPluginApi pluginApi = paymentPluginByPaymentMethodId.get(paymentModelDao.getPaymentMethodId());
+                                                                                       if (pluginApi == null && !absentPlugins.contains(paymentModelDao.getPaymentMethodId())) {
+                                                                                           try {
+                                                                                               pluginApi = getPaymentProviderPlugin(paymentModelDao.getPaymentMethodId(), tenantContext);
+                                                                                               paymentPluginByPaymentMethodId.put(paymentModelDao.getPaymentMethodId(), pluginApi);
+                                                                                           } catch (final PaymentApiException e) {
+                                                                                               log.warn("Unable to retrieve pluginApi for payment method " + paymentModelDao.getPaymentMethodId());
+                                                                                               absentPlugins.add(paymentModelDao.getPaymentMethodId());
+                                                                                           }
+                                                                                       }
+                                                                                       return pluginApi;
+                                                                                   }
+                                                                               },
+                                                                               context);
+        } else {
+            pluginInfoByPaymentId = ImmutableMap.<UUID, List<PaymentTransactionInfoPlugin>>of();
+        }
+
         return Lists.<PaymentModelDao, Payment>transform(paymentsModelDao,
                                                          new Function<PaymentModelDao, Payment>() {
                                                              @Override
                                                              public Payment apply(final PaymentModelDao paymentModelDao) {
-                                                                 List<PaymentTransactionInfoPlugin> pluginInfo = null;
-
-                                                                 if (withPluginInfo) {
-                                                                     PaymentPluginApi pluginApi = paymentPluginByPaymentMethodId.get(paymentModelDao.getPaymentMethodId());
-                                                                     if (pluginApi == null && !absentPlugins.contains(paymentModelDao.getPaymentMethodId())) {
-                                                                         try {
-                                                                             pluginApi = getPaymentProviderPlugin(paymentModelDao.getPaymentMethodId(), tenantContext);
-                                                                             paymentPluginByPaymentMethodId.put(paymentModelDao.getPaymentMethodId(), pluginApi);
-                                                                         } catch (final PaymentApiException e) {
-                                                                             log.warn("Unable to retrieve pluginApi for payment method " + paymentModelDao.getPaymentMethodId());
-                                                                             absentPlugins.add(paymentModelDao.getPaymentMethodId());
-                                                                         }
-                                                                     }
-
-                                                                     pluginInfo = getPaymentTransactionInfoPluginsIfNeeded(pluginApi, paymentModelDao, context);
-                                                                 }
-
+                                                                 final List<PaymentTransactionInfoPlugin> pluginInfo = pluginInfoByPaymentId.get(paymentModelDao.getId());
                                                                  return toPayment(paymentModelDao, transactionsModelDao, pluginInfo, tenantContext);
                                                              }
                                                          });
@@ -223,19 +255,28 @@ public class PaymentProcessor extends ProcessorBase {
 
     public Pagination<Payment> getPayments(final Long offset, final Long limit, final String pluginName, final boolean withPluginInfo, final Iterable<PluginProperty> properties, final TenantContext tenantContext, final InternalTenantContext internalTenantContext) throws PaymentApiException {
         final PaymentPluginApi pluginApi = withPluginInfo ? getPaymentPluginApi(pluginName) : null;
+        final Map<UUID, List<PaymentTransactionInfoPlugin>> pluginInfoByPaymentId = new HashMap<UUID, List<PaymentTransactionInfoPlugin>>();
 
         return getEntityPagination(limit,
                                    new SourcePaginationBuilder<PaymentModelDao, PaymentApiException>() {
                                        @Override
                                        public Pagination<PaymentModelDao> build() {
                                            // Find all payments for all accounts
-                                           return paymentDao.getPayments(pluginName, offset, limit, internalTenantContext);
+                                           final Pagination<PaymentModelDao> payments = paymentDao.getPayments(pluginName, offset, limit, internalTenantContext);
+                                           if (pluginApi == null) {
+                                               return payments;
+                                           }
+
+                                           // Keep streaming the page: the plugin info is fetched in parallel, ahead of the consumption, with a single deadline for the whole page
+                                           final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(paymentInfoPluginTimeoutMs);
+                                           final Iterator<PaymentModelDao> paymentsWithPluginInfo = new PaymentInfoPluginIterator(payments.iterator(), pluginApi, pluginInfoByPaymentId, deadlineNanos, tenantContext);
+                                           return new DefaultPagination<PaymentModelDao>(payments, limit, paymentsWithPluginInfo);
                                        }
                                    },
                                    new Function<PaymentModelDao, Payment>() {
                                        @Override
                                        public Payment apply(final PaymentModelDao paymentModelDao) {
-                                           final List<PaymentTransactionInfoPlugin> pluginInfo = getPaymentTransactionInfoPluginsIfNeeded(pluginApi, paymentModelDao, tenantContext);
+                                           final List<PaymentTransactionInfoPlugin> pluginInfo = pluginInfoByPaymentId.remove(paymentModelDao.getId());
                                            return toPayment(paymentModelDao.getId(), pluginInfo, internalTenantContext);
                                        }
                                    }
@@ -346,17 +387,177 @@ public class PaymentProcessor extends ProcessorBase {
         return getPayment(nonNullPaymentId, true, properties, callContext, internalCallContext);
     }
 
-    // Used in bulk get API (getAccountPayments / getPayments)
-    private List<PaymentTransactionInfoPlugin> getPaymentTransactionInfoPluginsIfNeeded(@Nullable final PaymentPluginApi pluginApi, final PaymentModelDao paymentModelDao, final TenantContext context) {
-        if (pluginApi == null) {
-            return null;
-        }
+    // Used in bulk get API (getAccountPayments): the plugin calls are dispatched in parallel (at most paymentInfoPluginParallelism
+    // at a time for this request) and the payments whose plugin info isn't available before the deadline (or which can't be queued) are returned without it
+    private Map<UUID, List<PaymentTransactionInfoPlugin>> getPaymentTransactionInfoPluginsInParallel(final Iterable<PaymentModelDao> paymentsModelDao,
+                                                                                                     final Function<PaymentModelDao, PaymentPluginApi> pluginApiResolver,
+                                                                                                     final TenantContext context) {
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(paymentInfoPluginTimeoutMs);
+        final Map<UUID, List<PaymentTransactionInfoPlugin>> pluginInfoByPaymentId = new HashMap<UUID, List<PaymentTransactionInfoPlugin>>();
+
+        // Dedicated pool: these lookups must not delay the plugin calls of actual payment operations (see PluginDispatcher)
+        final CompletionService<List<PaymentTransactionInfoPlugin>> completionService = new ExecutorCompletionService<List<PaymentTransactionInfoPlugin>>(paymentExecutors.getPaymentInfoExecutorService());
+        final Map<Future<List<PaymentTransactionInfoPlugin>>, UUID> inFlight = new HashMap<Future<List<PaymentTransactionInfoPlugin>>, UUID>();
+        // A payment is only looked up once per request
+        final Collection<UUID> submittedPaymentIds = new HashSet<UUID>();
+        final Iterator<PaymentModelDao> pending = paymentsModelDao.iterator();
 
         try {
-            return getPaymentTransactionInfoPlugins(pluginApi, paymentModelDao, PLUGIN_PROPERTIES, context);
-        } catch (final PaymentApiException e) {
-            log.warn("Unable to retrieve plugin info for payment " + paymentModelDao.getId());
-            return null;
+            submitPaymentInfoPluginCalls(pending, inFlight, submittedPaymentIds, completionService, pluginApiResolver, context);
+            while (!inFlight.isEmpty()) {
+                final long remainingNanos = deadlineNanos - System.nanoTime();
+                final Future<List<PaymentTransactionInfoPlugin>> completed = remainingNanos > 0 ? completionService.poll(remainingNanos, TimeUnit.NANOSECONDS) : null;
+                if (completed == null) {
+                    log.warn("Timeout retrieving plugin info: {} payment(s) will be returned without it", inFlight.size() + Iterators.size(pending));
+                    break;
+                }
+
+                final UUID paymentId = inFlight.remove(completed);
+                try {
+                    pluginInfoByPaymentId.put(paymentId, completed.get());
+                } catch (final ExecutionException e) {
+                    log.warn("Unable to retrieve plugin info for payment " + paymentId);
+                }
+
+                submitPaymentInfoPluginCalls(pending, inFlight, submittedPaymentIds, completionService, pluginApiResolver, context);
+            }
+        } catch (final InterruptedException e) {
+            log.warn("Interrupted while retrieving plugin info");
+            Thread.currentThread().interrupt();
+        } finally {
+            for (final Future<List<PaymentTransactionInfoPlugin>> future : inFlight.keySet()) {
+                future.cancel(true);
+            }
+        }
+
+        return pluginInfoByPaymentId;
+    }
+
+    private void submitPaymentInfoPluginCalls(final Iterator<PaymentModelDao> pending,
+                                              final Map<Future<List<PaymentTransactionInfoPlugin>>, UUID> inFlight,
+                                              final Collection<UUID> submittedPaymentIds,
+                                              final CompletionService<List<PaymentTransactionInfoPlugin>> completionService,
+                                              final Function<PaymentModelDao, PaymentPluginApi> pluginApiResolver,
+                                              final TenantContext context) {
+        while (inFlight.size() < paymentInfoPluginParallelism && pending.hasNext()) {
+            final PaymentModelDao paymentModelDao = pending.next();
+            if (!submittedPaymentIds.add(paymentModelDao.getId())) {
+                continue;
+            }
+
+            final PaymentPluginApi pluginApi = pluginApiResolver.apply(paymentModelDao);
+            if (pluginApi == null) {
+                continue;
+            }
+
+            final Callable<List<PaymentTransactionInfoPlugin>> callable = toPaymentInfoPluginCallable(pluginApi, paymentModelDao, context);
+            try {
+                inFlight.put(completionService.submit(callable), paymentModelDao.getId());
+            } catch (final RejectedExecutionException e) {
+                // The pool is saturated: this payment is returned without its plugin info, the next ones are submitted as our own calls complete (if any)
+                log.warn("Unable to retrieve plugin info for payment {}: too many concurrent requests", paymentModelDao.getId());
+                return;
+            }
+        }
+    }
+
+    private Callable<List<PaymentTransactionInfoPlugin>> toPaymentInfoPluginCallable(final PaymentPluginApi pluginApi, final PaymentModelDao paymentModelDao, final TenantContext context) {
+        // Wrap the callable to keep the original requestId (see PluginDispatcher)
+        return new CallableWithRequestData<List<PaymentTransactionInfoPlugin>>(Request.getPerThreadRequestData(),
+                                                                               UUIDs.getRandom(),
+                                                                               ThreadContext.getSecurityManager(),
+                                                                               ThreadContext.getSubject(),
+                                                                               new Callable<List<PaymentTransactionInfoPlugin>>() {
+                                                                                   @Override
+                                                                                   public List<PaymentTransactionInfoPlugin> call() throws PaymentApiException {
+                                                                                       return getPaymentTransactionInfoPlugins(pluginApi, paymentModelDao, PLUGIN_PROPERTIES, context);
+                                                                                   }
+                                                                               });
+    }
+
+    // Returns the payments in order, while keeping paymentInfoPluginParallelism plugin calls in flight for the next ones (the plugin info is
+    // added to pluginInfoByPaymentId as each payment is returned). Once the deadline has passed, the remaining payments are returned without it.
+    private final class PaymentInfoPluginIterator extends AbstractIterator<PaymentModelDao> {
+
+        private final Iterator<PaymentModelDao> payments;
+        private final PaymentPluginApi pluginApi;
+        private final Map<UUID, List<PaymentTransactionInfoPlugin>> pluginInfoByPaymentId;
+        private final long deadlineNanos;
+        private final TenantContext context;
+        private final LinkedList<PaymentModelDao> pending = new LinkedList<PaymentModelDao>();
+        private final Map<UUID, Future<List<PaymentTransactionInfoPlugin>>> inFlight = new HashMap<UUID, Future<List<PaymentTransactionInfoPlugin>>>();
+
+        private boolean timedOut = false;
+
+        private PaymentInfoPluginIterator(final Iterator<PaymentModelDao> payments,
+                                          final PaymentPluginApi pluginApi,
+                                          final Map<UUID, List<PaymentTransactionInfoPlugin>> pluginInfoByPaymentId,
+                                          final long deadlineNanos,
+                                          final TenantContext context) {
+            this.payments = payments;
+            this.pluginApi = pluginApi;
+            this.pluginInfoByPaymentId = pluginInfoByPaymentId;
+            this.deadlineNanos = deadlineNanos;
+            this.context = context;
+        }
+
+        @Override
+        protected PaymentModelDao computeNext() {
+            submitPaymentInfoPluginCalls();
+            if (pending.isEmpty()) {
+                return endOfData();
+            }
+
+            final PaymentModelDao paymentModelDao = pending.removeFirst();
+            final Future<List<PaymentTransactionInfoPlugin>> future = inFlight.remove(paymentModelDao.getId());
+            if (future != null) {
+                waitForPaymentInfoPlugin(paymentModelDao, future);
+            }
+            // Replace the call that just completed, while the caller processes that payment
+            submitPaymentInfoPluginCalls();
+            return paymentModelDao;
+        }
+
+        private void submitPaymentInfoPluginCalls() {
+            while (pending.size() < paymentInfoPluginParallelism && payments.hasNext()) {
+                final PaymentModelDao paymentModelDao = payments.next();
+                pending.add(paymentModelDao);
+                if (timedOut) {
+                    continue;
+                }
+
+                try {
+                    inFlight.put(paymentModelDao.getId(), paymentExecutors.getPaymentInfoExecutorService().submit(toPaymentInfoPluginCallable(pluginApi, paymentModelDao, context)));
+                } catch (final RejectedExecutionException e) {
+                    // The pool is saturated: this payment is returned without its plugin info
+                    log.warn("Unable to retrieve plugin info for payment {}: too many concurrent requests", paymentModelDao.getId());
+                }
+            }
+        }
+
+        private void waitForPaymentInfoPlugin(final PaymentModelDao paymentModelDao, final Future<List<PaymentTransactionInfoPlugin>> future) {
+            try {
+                final long remainingNanos = Math.max(0L, deadlineNanos - System.nanoTime());
+                pluginInfoByPaymentId.put(paymentModelDao.getId(), future.get(remainingNanos, TimeUnit.NANOSECONDS));
+            } catch (final TimeoutException e) {
+                log.warn("Timeout retrieving plugin info: the remaining payments of the page will be returned without it");
+                cancelPaymentInfoPluginCalls(future);
+            } catch (final ExecutionException e) {
+                log.warn("Unable to retrieve plugin info for payment " + paymentModelDao.getId());
+            } catch (final InterruptedException e) {
+                log.warn("Interrupted while retrieving plugin info");
+                Thread.currentThread().interrupt();
+                cancelPaymentInfoPluginCalls(future);
+            }
+        }
+
+        private void cancelPaymentInfoPluginCalls(final Future<List<PaymentTransactionInfoPlugin>> future) {
+            timedOut = true;
+            future.cancel(true);
+            for (final Future<List<PaymentTransactionInfoPlugin>> inFlightFuture : inFlight.values()) {
+                inFlightFuture.cancel(true);
+            }
+            inFlight.clear();
         }
     }
 
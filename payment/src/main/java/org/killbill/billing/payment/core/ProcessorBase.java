@@ -36,6 +36,7 @@ import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.payment.api.PaymentApiException;
 import org.killbill.billing.payment.dao.PaymentDao;
 import org.killbill.billing.payment.dao.PaymentMethodModelDao;
+import org.killbill.billing.payment.dispatcher.PluginDispatcher.PluginCallStartAware;
 import org.killbill.billing.payment.dispatcher.PluginDispatcher.PluginDispatcherReturnType;
 import org.killbill.billing.payment.plugin.api.PaymentPluginApi;
 import org.killbill.billing.tag.TagInternalApi;
@@ -160,13 +161,15 @@ public abstract class ProcessorBase {
         public PluginDispatcherReturnType doOperation() throws ExceptionType;
     }
 
-    public static class CallableWithAccountLock<ReturnType, ExceptionType extends Exception> implements Callable<PluginDispatcherReturnType<ReturnType>> {
+    public static class CallableWithAccountLock<ReturnType, ExceptionType extends Exception> implements Callable<PluginDispatcherReturnType<ReturnType>>, PluginCallStartAware {
 
         private final GlobalLocker locker;
         private final String accountExternalKey;
         private final DispatcherCallback<PluginDispatcherReturnType<ReturnType>, ExceptionType> callback;
         private final PaymentConfig paymentConfig;
 
+        private volatile Runnable pluginCallStartListener;
+
         public CallableWithAccountLock(final GlobalLocker locker,
                                        final String accountExternalKey,
                                        final PaymentConfig paymentConfig,
@@ -177,9 +180,14 @@ public abstract class ProcessorBase {
             this.paymentConfig = paymentConfig;
         }
 
+        @Override
+        public void setPluginCallStartListener(final Runnable listener) {
+            this.pluginCallStartListener = listener;
+        }
+
         @Override
         public PluginDispatcherReturnType<ReturnType> call() throws ExceptionType, LockFailedException {
-            return new WithAccountLock<ReturnType, ExceptionType>(paymentConfig).processAccountWithLock(locker, accountExternalKey, callback);
+            return new WithAccountLock<ReturnType, ExceptionType>(paymentConfig).processAccountWithLock(locker, accountExternalKey, callback, pluginCallStartListener);
         }
     }
 
@@ -193,9 +201,17 @@ public abstract class ProcessorBase {
 
         public PluginDispatcherReturnType<ReturnType> processAccountWithLock(final GlobalLocker locker, final String accountExternalKey, final DispatcherCallback<PluginDispatcherReturnType<ReturnType>, ExceptionType> callback)
                 throws ExceptionType, LockFailedException {
+            return processAccountWithLock(locker, accountExternalKey, callback, null);
+        }
+
+        public PluginDispatcherReturnType<ReturnType> processAccountWithLock(final GlobalLocker locker, final String accountExternalKey, final DispatcherCallback<PluginDispatcherReturnType<ReturnType>, ExceptionType> callback, @Nullable final Runnable onLockAcquired)
+                throws ExceptionType, LockFailedException {
             GlobalLock lock = null;
             try {
                 lock = locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), accountExternalKey, paymentConfig.getMaxGlobalLockRetries());
+                if (onLockAcquired != null) {
+                    onLockAcquired.run();
+                }
                 return callback.doOperation();
             } finally {
                 if (lock != null) {
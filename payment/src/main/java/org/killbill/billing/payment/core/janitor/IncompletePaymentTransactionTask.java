@@ -56,6 +56,7 @@ import org.killbill.notificationq.api.NotificationQueue;
 import org.skife.config.TimeSpan;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
@@ -69,6 +70,9 @@ public class IncompletePaymentTransactionTask extends CompletionTaskBase<Payment
                                                                                                           .add(TransactionStatus.UNKNOWN)
                                                                                                           .build();
 
+    // Only set on the instance driven by the Janitor
+    private volatile JanitorWorkers janitorWorkers;
+
     @Inject
     public IncompletePaymentTransactionTask(final InternalCallContextFactory internalCallContextFactory, final PaymentConfig paymentConfig,
                                             final PaymentDao paymentDao, final Clock clock,
@@ -88,49 +92,37 @@ public class IncompletePaymentTransactionTask extends CompletionTaskBase<Payment
         // Nothing
     }
 
+    public void attachJanitorWorkers(final JanitorWorkers janitorWorkers) {
+        this.janitorWorkers = janitorWorkers;
+    }
+
     public void processNotification(final JanitorNotificationKey notificationKey, final UUID userToken, final Long accountRecordId, final long tenantRecordId) {
 
         final InternalTenantContext internalTenantContext = internalCallContextFactory.createInternalTenantContext(tenantRecordId, accountRecordId);
+
+        // Query the plugin before grabbing the account lock: the call can be slow, and payments for that account would be blocked in the meantime
+        final PaymentTransactionModelDao paymentTransaction = paymentDao.getPaymentTransaction(notificationKey.getUuidKey(), internalTenantContext);
+        if (!TRANSACTION_STATUSES_TO_CONSIDER.contains(paymentTransaction.getTransactionStatus())) {
+            // Nothing to do
+            return;
+        }
+        final PaymentTransactionInfoPlugin paymentTransactionInfoPlugin = getPaymentTransactionInfoPlugin(paymentTransaction, internalTenantContext);
+
         doJanitorOperationWithAccountLock(new JanitorIterationCallback() {
             @Override
             public Void doIteration() {
 
-                // State may have changed since we originally retrieved with no lock
+                // State may have changed since we called the plugin
                 final PaymentTransactionModelDao rehydratedPaymentTransaction = paymentDao.getPaymentTransaction(notificationKey.getUuidKey(), internalTenantContext);
-
-                final TenantContext tenantContext = internalCallContextFactory.createTenantContext(internalTenantContext);
                 final PaymentModelDao payment = paymentDao.getPayment(rehydratedPaymentTransaction.getPaymentId(), internalTenantContext);
 
-                final PaymentMethodModelDao paymentMethod = paymentDao.getPaymentMethod(payment.getPaymentMethodId(), internalTenantContext);
-                final PaymentPluginApi paymentPluginApi = getPaymentPluginApi(payment, paymentMethod.getPluginName());
-
-                final PaymentTransactionInfoPlugin undefinedPaymentTransaction = new DefaultNoOpPaymentInfoPlugin(payment.getId(),
-                                                                                                                  rehydratedPaymentTransaction.getId(),
-                                                                                                                  rehydratedPaymentTransaction.getTransactionType(),
-                                                                                                                  rehydratedPaymentTransaction.getAmount(),
-                                                                                                                  rehydratedPaymentTransaction.getCurrency(),
-                                                                                                                  rehydratedPaymentTransaction.getCreatedDate(),
-                                                                                                                  rehydratedPaymentTransaction.getCreatedDate(),
-                                                                                                                  PaymentPluginStatus.UNDEFINED,
-                                                                                                                  null,
-                                                                                                                  null);
-                PaymentTransactionInfoPlugin paymentTransactionInfoPlugin;
-                try {
-                    final List<PaymentTransactionInfoPlugin> result = paymentPluginApi.getPaymentInfo(payment.getAccountId(), payment.getId(), ImmutableList.<PluginProperty>of(), tenantContext);
-                    paymentTransactionInfoPlugin = Iterables.tryFind(result, new Predicate<PaymentTransactionInfoPlugin>() {
-                        @Override
-                        public boolean apply(final PaymentTransactionInfoPlugin input) {
-                            return input.getKbTransactionPaymentId().equals(rehydratedPaymentTransaction.getId());
-                        }
-                    }).or(new Supplier<PaymentTransactionInfoPlugin>() {
-                        @Override
-                        public PaymentTransactionInfoPlugin get() {
-                            return undefinedPaymentTransaction;
-                        }
-                    });
-                } catch (final Exception e) {
-                    paymentTransactionInfoPlugin = undefinedPaymentTransaction;
+                if (rehydratedPaymentTransaction.getTransactionStatus() != paymentTransaction.getTransactionStatus() ||
+                    !Objects.equal(rehydratedPaymentTransaction.getUpdatedDate(), paymentTransaction.getUpdatedDate())) {
+                    // The plugin answer may predate that change: don't act on it. The update which changed the transaction posted a payment event,
+                    // and processPaymentEvent already scheduled a new check if the transaction is still unresolved (rescheduling here would add a second chain)
+                    return null;
                 }
+
                 updatePaymentAndTransactionIfNeeded(payment, notificationKey.getAttemptNumber(), userToken, rehydratedPaymentTransaction, paymentTransactionInfoPlugin, internalTenantContext);
                 return null;
             }
@@ -138,6 +130,44 @@ public class IncompletePaymentTransactionTask extends CompletionTaskBase<Payment
 
     }
 
+    private PaymentTransactionInfoPlugin getPaymentTransactionInfoPlugin(final PaymentTransactionModelDao paymentTransaction, final InternalTenantContext internalTenantContext) {
+        final TenantContext tenantContext = internalCallContextFactory.createTenantContext(internalTenantContext);
+        final PaymentModelDao payment = paymentDao.getPayment(paymentTransaction.getPaymentId(), internalTenantContext);
+
+        final PaymentMethodModelDao paymentMethod = paymentDao.getPaymentMethod(payment.getPaymentMethodId(), internalTenantContext);
+        final PaymentPluginApi paymentPluginApi = getPaymentPluginApi(payment, paymentMethod.getPluginName());
+
+        final PaymentTransactionInfoPlugin undefinedPaymentTransaction = new DefaultNoOpPaymentInfoPlugin(payment.getId(),
+                                                                                                          paymentTransaction.getId(),
+                                                                                                          paymentTransaction.getTransactionType(),
+                                                                                                          paymentTransaction.getAmount(),
+                                                                                                          paymentTransaction.getCurrency(),
+                                                                                                          paymentTransaction.getCreatedDate(),
+                                                                                                          paymentTransaction.getCreatedDate(),
+                                                                                                          PaymentPluginStatus.UNDEFINED,
+                                                                                                          null,
+                                                                                                          null);
+        if (janitorWorkers != null) {
+            janitorWorkers.acquirePluginPermit(paymentMethod.getPluginName());
+        }
+        try {
+            final List<PaymentTransactionInfoPlugin> result = paymentPluginApi.getPaymentInfo(payment.getAccountId(), payment.getId(), ImmutableList.<PluginProperty>of(), tenantContext);
+            return Iterables.tryFind(result, new Predicate<PaymentTransactionInfoPlugin>() {
+                @Override
+                public boolean apply(final PaymentTransactionInfoPlugin input) {
+                    return input.getKbTransactionPaymentId().equals(paymentTransaction.getId());
+                }
+            }).or(new Supplier<PaymentTransactionInfoPlugin>() {
+                @Override
+                public PaymentTransactionInfoPlugin get() {
+                    return undefinedPaymentTransaction;
+                }
+            });
+        } catch (final Exception e) {
+            return undefinedPaymentTransaction;
+        }
+    }
+
     @Override
     public void processPaymentEvent(final PaymentInternalEvent event, final NotificationQueue janitorQueue) {
         if (!TRANSACTION_STATUSES_TO_CONSIDER.contains(event.getStatus())) {
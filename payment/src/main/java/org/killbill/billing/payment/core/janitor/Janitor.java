@@ -18,6 +18,9 @@
 package org.killbill.billing.payment.core.janitor;
 
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -44,6 +47,11 @@ import org.killbill.notificationq.api.NotificationQueueService;
 import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
 import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
 import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueHandler;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
+import org.skife.jdbi.v2.util.LongMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,6 +77,7 @@ public class Janitor {
     private final OSGIServiceRegistration<PaymentPluginApi> pluginRegistry;
     private final GlobalLocker locker;
     private final PluginControlPaymentAutomatonRunner pluginControlledPaymentAutomatonRunner;
+    private final IDBI dbi;
 
 
 
@@ -77,6 +86,10 @@ public class Janitor {
     private IncompletePaymentTransactionTask incompletePaymentTransactionTask;
     private NotificationQueue janitorQueue;
     private ScheduledExecutorService janitorExecutor;
+    private JanitorWorkers janitorWorkers;
+
+    // Notifications handed to a worker and not done yet (see IncompleteTransactionNotification#getId)
+    private final ConcurrentMap<String, IncompleteTransactionNotification> inFlightNotifications = new ConcurrentHashMap<String, IncompleteTransactionNotification>();
 
     private volatile boolean isStopped;
 
@@ -92,8 +105,10 @@ public class Janitor {
                    final GlobalLocker locker,
                    final PaymentConfig paymentConfig,
                    final NotificationQueueService notificationQueueService,
-                   final PaymentExecutors paymentExecutors) {
+                   final PaymentExecutors paymentExecutors,
+                   final IDBI dbi) {
         this.notificationQueueService = notificationQueueService;
+        this.dbi = dbi;
         this.paymentExecutors = paymentExecutors;
         this.paymentConfig = paymentConfig;
         this.internalCallContextFactory = internalCallContextFactory;
@@ -141,7 +156,7 @@ public class Janitor {
                                                                                 }
                                                                                 final JanitorNotificationKey janitorKey = (JanitorNotificationKey) notificationKey;
                                                                                 if (janitorKey.getTaskName().equals(incompletePaymentTransactionTask.getClass().toString())) {
-                                                                                    incompletePaymentTransactionTask.processNotification(janitorKey, userToken, accountRecordId, tenantRecordId);
+                                                                                    handleNotification(new IncompleteTransactionNotification(janitorKey, userToken, accountRecordId, tenantRecordId));
                                                                                 }
                                                                             }
                                                                         }
@@ -178,6 +193,8 @@ public class Janitor {
         this.isStopped = false;
 
         janitorExecutor = paymentExecutors.getJanitorExecutorService();
+        janitorWorkers = paymentExecutors.getJanitorWorkers();
+        incompletePaymentTransactionTask.attachJanitorWorkers(janitorWorkers);
 
         janitorQueue.startQueue();
 
@@ -215,6 +232,15 @@ public class Janitor {
 
             if (janitorQueue != null) {
                 janitorQueue.stopQueue();
+            }
+
+            // The notifications which never started are covered by their safety copy
+            janitorWorkers.shutdownNow();
+            if (!janitorWorkers.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS)) {
+                log.warn("Janitor workers failed to complete termination within " + TERMINATION_TIMEOUT_SEC + "sec");
+            }
+
+            if (janitorQueue != null) {
                 notificationQueueService.deleteNotificationQueue(DefaultPaymentService.SERVICE_NAME, QUEUE_NAME);
             }
         } catch (final InterruptedException e) {
@@ -229,4 +255,111 @@ public class Janitor {
         incompletePaymentAttemptTask.processPaymentEvent(event, janitorQueue);
         incompletePaymentTransactionTask.processPaymentEvent(event, janitorQueue);
     }
+
+    private void handleNotification(final IncompleteTransactionNotification notification) {
+        if (!janitorWorkers.hasWorkers()) {
+            // Processed in the queue thread
+            notification.run();
+            return;
+        }
+
+        // The queue considers the notification processed as soon as we return: record a safety copy first, which the worker removes once done
+        final Long guardRecordId = notification.recordGuard();
+        if (guardRecordId == null) {
+            notification.run();
+            return;
+        }
+        notification.replaceGuard(guardRecordId);
+
+        IncompleteTransactionNotification inFlight;
+        while ((inFlight = inFlightNotifications.putIfAbsent(notification.getId(), notification)) != null) {
+            // Our own safety copy, while the original is still waiting for (or being processed by) its worker: the new copy replaces it
+            if (inFlight.replaceGuard(guardRecordId)) {
+                return;
+            }
+            // The original just completed
+            inFlightNotifications.remove(notification.getId(), inFlight);
+        }
+
+        try {
+            janitorWorkers.submit(notification.accountRecordId, notification);
+        } catch (final RejectedExecutionException e) {
+            // Janitor is stopping, or the worker is saturated: the safety copy takes over
+            log.warn("Janitor deferred notification for paymentTransactionId {}: {}", notification.janitorKey.getUuidKey(), e.getMessage());
+            notification.complete();
+            inFlightNotifications.remove(notification.getId(), notification);
+        }
+    }
+
+    private final class IncompleteTransactionNotification implements Runnable {
+
+        private final JanitorNotificationKey janitorKey;
+        private final UUID userToken;
+        private final Long accountRecordId;
+        private final Long tenantRecordId;
+
+        // Safety copy to remove once done, guarded by this
+        private Long guardRecordId;
+        private boolean completed;
+
+        private IncompleteTransactionNotification(final JanitorNotificationKey janitorKey, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+            this.janitorKey = janitorKey;
+            this.userToken = userToken;
+            this.accountRecordId = accountRecordId;
+            this.tenantRecordId = tenantRecordId;
+        }
+
+        @Override
+        public void run() {
+            try {
+                incompletePaymentTransactionTask.processNotification(janitorKey, userToken, accountRecordId, tenantRecordId);
+            } catch (final RuntimeException e) {
+                log.warn(String.format("Janitor failed to process notification for paymentTransactionId %s", janitorKey.getUuidKey()), e);
+            } finally {
+                final Long guardToRemove = complete();
+                inFlightNotifications.remove(getId(), this);
+                if (guardToRemove != null) {
+                    janitorQueue.removeNotification(guardToRemove);
+                }
+            }
+        }
+
+        // Returns the safety copy still pending, if any: no new one can be attached afterwards
+        private synchronized Long complete() {
+            completed = true;
+            return guardRecordId;
+        }
+
+        private synchronized boolean replaceGuard(final Long newGuardRecordId) {
+            if (completed) {
+                return false;
+            }
+            // The previous copy is the one being processed
+            guardRecordId = newGuardRecordId;
+            return true;
+        }
+
+        private String getId() {
+            return janitorKey.getUuidKey() + "-" + janitorKey.getAttemptNumber();
+        }
+
+        // Returns the record id of the safety copy, or null if it couldn't be recorded
+        private Long recordGuard() {
+            final DateTime guardTime = clock.getUTCNow().plus(paymentConfig.getJanitorWorkersGuardDelay().getMillis());
+            final JanitorGuardNotificationKey guardKey = new JanitorGuardNotificationKey(janitorKey.getUuidKey(), janitorKey.getTaskName(), janitorKey.getAttemptNumber());
+            try {
+                return dbi.inTransaction(new TransactionCallback<Long>() {
+                    @Override
+                    public Long inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                        janitorQueue.recordFutureNotificationFromTransaction(handle.getConnection(), guardTime, guardKey, userToken, accountRecordId, tenantRecordId);
+                        // Same connection as the insert
+                        return handle.createQuery("select LAST_INSERT_ID()").map(LongMapper.FIRST).first();
+                    }
+                });
+            } catch (final RuntimeException e) {
+                log.warn("Janitor failed to record safety notification for paymentTransactionId = {}: {}", janitorKey.getUuidKey(), e.getMessage());
+                return null;
+            }
+        }
+    }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.janitor;
+
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+//
+// Safety copy of a notification handed to a janitor worker (see Janitor): it is removed once the worker is done with the notification,
+// and is processed like the original one otherwise (e.g. if the node stopped in the meantime).
+//
+public class JanitorGuardNotificationKey extends JanitorNotificationKey {
+
+    @JsonCreator
+    public JanitorGuardNotificationKey(@JsonProperty("uuidKey") final UUID uuidKey,
+                                       @JsonProperty("taskName") final String taskName,
+                                       @JsonProperty("attemptNumber") final Integer attemptNumber) {
+        super(uuidKey, taskName, attemptNumber);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.janitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.RateLimiter;
+
+//
+// Worker pool for the janitor notifications: notifications are partitioned by account, so that the notifications for a given account
+// are handled serially (by the same worker) while different accounts are handled in parallel. Across nodes, the notification queue
+// already distributes the notifications, and the account lock keeps two nodes from repairing the same account at the same time.
+//
+// Each worker has a bounded queue: once full, submit blocks (up to submitTimeoutMillis), which in turn slows down the notification
+// queue (backpressure). With no worker, notifications are processed by the calling thread.
+//
+// The pool also throttles the calls the janitor makes to each payment plugin, so that a backlog of incomplete transactions
+// doesn't hammer a gateway which is recovering from an incident.
+//
+public class JanitorWorkers {
+
+    private static final String JANITOR_THREAD_PREFIX = "Janitor-th-";
+    private static final String JANITOR_TH_GROUP_NAME = "pay-janitor-grp";
+    private static final String METRICS_PREFIX = "org.killbill.billing.payment.janitor";
+    private static final String[] METRIC_NAMES = {"queueDepth", "inFlight", "processing", "rateLimitWait"};
+    private static final long SHUTDOWN_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final List<ThreadPoolExecutor> workers;
+    private final double pluginCallsPerSecond;
+    private final ConcurrentMap<String, RateLimiter> pluginRateLimiters = new ConcurrentHashMap<String, RateLimiter>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer processing = new Timer();
+    private final Timer rateLimitWait = new Timer();
+
+    private MetricRegistry metricRegistry;
+
+    public JanitorWorkers(final int workersNb, final int queueSize, final long submitTimeoutMillis, final double pluginCallsPerSecond) {
+        this.pluginCallsPerSecond = pluginCallsPerSecond;
+        this.workers = new ArrayList<ThreadPoolExecutor>(workersNb);
+        for (int i = 0; i < workersNb; i++) {
+            workers.add(createWorker(i, queueSize, submitTimeoutMillis));
+        }
+    }
+
+    // Whether submitted tasks run asynchronously, i.e. after submit returns
+    public boolean hasWorkers() {
+        return !workers.isEmpty();
+    }
+
+    // Blocks if the worker for that account is saturated. Throws RejectedExecutionException if it stays saturated for longer than
+    // submitTimeoutMillis, or once the pool has been shut down.
+    public void submit(@Nullable final Long accountRecordId, final Runnable task) throws RejectedExecutionException {
+        if (workers.isEmpty()) {
+            run(task);
+            return;
+        }
+
+        final int partition = accountRecordId == null ? 0 : (int) (Math.abs(accountRecordId % workers.size()));
+        workers.get(partition).execute(new WorkerTask(task));
+    }
+
+    // Blocks until the janitor is allowed to call that plugin
+    public void acquirePluginPermit(final String pluginName) {
+        if (pluginCallsPerSecond <= 0) {
+            return;
+        }
+
+        RateLimiter rateLimiter = pluginRateLimiters.get(pluginName);
+        if (rateLimiter == null) {
+            pluginRateLimiters.putIfAbsent(pluginName, RateLimiter.create(pluginCallsPerSecond));
+            rateLimiter = pluginRateLimiters.get(pluginName);
+        }
+        final double waitSec = rateLimiter.acquire();
+        rateLimitWait.update((long) (waitSec * 1000), TimeUnit.MILLISECONDS);
+    }
+
+    private void run(final Runnable task) {
+        inFlight.incrementAndGet();
+        final Timer.Context context = processing.time();
+        try {
+            task.run();
+        } finally {
+            context.stop();
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public int getQueueDepth() {
+        int queueDepth = 0;
+        for (final ThreadPoolExecutor worker : workers) {
+            queueDepth += worker.getQueue().size();
+        }
+        return queueDepth;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public Timer getProcessing() {
+        return processing;
+    }
+
+    public void registerMetrics(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+        register("queueDepth", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return getQueueDepth();
+            }
+        });
+        register("inFlight", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return getInFlight();
+            }
+        });
+        register("processing", processing);
+        register("rateLimitWait", rateLimitWait);
+    }
+
+    private void register(final String name, final Metric metric) {
+        final String metricName = MetricRegistry.name(METRICS_PREFIX, name);
+        // Left behind by a previous lifecycle (e.g. tests restarting the service)
+        metricRegistry.remove(metricName);
+        metricRegistry.register(metricName, metric);
+    }
+
+    // Returns the tasks which never started, in the order they were submitted (per worker)
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> pending = new ArrayList<Runnable>();
+        for (final ThreadPoolExecutor worker : workers) {
+            for (final Runnable runnable : worker.shutdownNow()) {
+                pending.add(((WorkerTask) runnable).task);
+            }
+        }
+        if (metricRegistry != null) {
+            for (final String name : METRIC_NAMES) {
+                metricRegistry.remove(MetricRegistry.name(METRICS_PREFIX, name));
+            }
+        }
+        return pending;
+    }
+
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = true;
+        for (final ThreadPoolExecutor worker : workers) {
+            terminated = worker.awaitTermination(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS) && terminated;
+        }
+        return terminated;
+    }
+
+    private final class WorkerTask implements Runnable {
+
+        private final Runnable task;
+
+        private WorkerTask(final Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            JanitorWorkers.this.run(task);
+        }
+    }
+
+    private static ThreadPoolExecutor createWorker(final int index, final int queueSize, final long submitTimeoutMillis) {
+        return new ThreadPoolExecutor(1,
+                                      1,
+                                      0,
+                                      TimeUnit.MILLISECONDS,
+                                      new ArrayBlockingQueue<Runnable>(queueSize),
+                                      new ThreadFactory() {
+                                          @Override
+                                          public Thread newThread(final Runnable r) {
+                                              final Thread th = new Thread(new ThreadGroup(JANITOR_TH_GROUP_NAME), r);
+                                              th.setName(JANITOR_THREAD_PREFIX + index);
+                                              return th;
+                                          }
+                                      },
+                                      new RejectedExecutionHandler() {
+                                          @Override
+                                          public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+                                              final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(submitTimeoutMillis);
+                                              try {
+                                                  // Backpressure: wait for room in the queue of that worker, as long as it is running
+                                                  while (!executor.isShutdown()) {
+                                                      final long remainingNanos = deadlineNanos - System.nanoTime();
+                                                      if (remainingNanos <= 0) {
+                                                          throw new RejectedExecutionException(String.format("Janitor worker %s saturated for %s ms", index, submitTimeoutMillis));
+                                                      }
+                                                      if (executor.getQueue().offer(r, Math.min(remainingNanos, SHUTDOWN_CHECK_NANOS), TimeUnit.NANOSECONDS)) {
+                                                          // The queue may have been drained by a concurrent shutdownNow in the meantime: the task would never run
+                                                          if (executor.isShutdown() && executor.getQueue().remove(r)) {
+                                                              break;
+                                                          }
+                                                          return;
+                                                      }
+                                                  }
+                                              } catch (final InterruptedException e) {
+                                                  Thread.currentThread().interrupt();
+                                                  throw new RejectedExecutionException(e);
+                                              }
+                                              throw new RejectedExecutionException("Janitor workers have been shut down");
+                                          }
+                                      });
+    }
+}
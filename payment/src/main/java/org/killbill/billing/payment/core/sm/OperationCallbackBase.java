@@ -59,6 +59,18 @@ public abstract class OperationCallbackBase<CallbackOperationResult, CallbackOpe
     // callback to eventually throw a OperationException, that will be used to drive the state machine in the right direction.
     //
     protected <ExceptionType extends Exception> OperationResult dispatchWithAccountLockAndTimeout(final String pluginNames, final DispatcherCallback<PluginDispatcherReturnType<OperationResult>, ExceptionType> callback) throws OperationException {
+        return dispatchWithAccountLockAndTimeout(pluginNames, false, callback);
+    }
+
+    //
+    // Same as above, for a callback which calls a single payment plugin: the call is isolated on the executor of that plugin
+    // (see PluginDispatcher#dispatchWithTimeout(Callable, String)).
+    //
+    protected <ExceptionType extends Exception> OperationResult dispatchToPluginWithAccountLockAndTimeout(final String pluginName, final DispatcherCallback<PluginDispatcherReturnType<OperationResult>, ExceptionType> callback) throws OperationException {
+        return dispatchWithAccountLockAndTimeout(pluginName, true, callback);
+    }
+
+    private <ExceptionType extends Exception> OperationResult dispatchWithAccountLockAndTimeout(final String pluginNames, final boolean isSinglePluginCall, final DispatcherCallback<PluginDispatcherReturnType<OperationResult>, ExceptionType> callback) throws OperationException {
         final Account account = paymentStateContext.getAccount();
         logger.debug("Dispatching plugin call for account {}", account.getExternalKey());
 
@@ -68,7 +80,7 @@ public abstract class OperationCallbackBase<CallbackOperationResult, CallbackOpe
                                                                                                                                            paymentConfig,
                                                                                                                                            callback);
             logger.debug("Calling plugin(s) {}", pluginNames);
-            final OperationResult operationResult = paymentPluginDispatcher.dispatchWithTimeout(task);
+            final OperationResult operationResult = isSinglePluginCall ? paymentPluginDispatcher.dispatchWithTimeout(task, pluginNames) : paymentPluginDispatcher.dispatchWithTimeout(task);
             logger.debug("Successful plugin(s) call of {} for account {} with result {}", pluginNames, account.getExternalKey(), operationResult);
             return operationResult;
         } catch (final ExecutionException e) {
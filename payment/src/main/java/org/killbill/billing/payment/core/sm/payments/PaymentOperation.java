@@ -20,6 +20,7 @@ package org.killbill.billing.payment.core.sm.payments;
 import java.math.BigDecimal;
 import java.util.Iterator;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 
 import org.killbill.automaton.Operation.OperationCallback;
@@ -92,7 +93,11 @@ public abstract class PaymentOperation extends OperationCallbackBase<PaymentTran
         // Any case of exception (checked or runtime) should lead to a TransactionStatus.UNKNOWN (and a XXX_ERRORED payment state).
         // In order to reach that state we create PaymentTransactionInfoPlugin with an PaymentPluginStatus.UNDEFINED status (and an OperationResult.EXCEPTION).
         //
-        if (originalExceptionOrCause instanceof LockFailedException) {
+        if (originalExceptionOrCause instanceof RejectedExecutionException) {
+            // The plugin is saturated or its circuit breaker is open: we know for sure the call didn't go through
+            logger.warn("Plugin call rejected for account {}: {}", paymentStateContext.getAccount().getExternalKey(), originalExceptionOrCause.getMessage());
+            return convertToErroredPaymentState(originalExceptionOrCause, PaymentPluginStatus.CANCELED);
+        } else if (originalExceptionOrCause instanceof LockFailedException) {
             logger.warn("Failed to lock account {}", paymentStateContext.getAccount().getExternalKey());
         } else if (originalExceptionOrCause instanceof TimeoutException) {
             logger.error("Plugin call TIMEOUT for account {}", paymentStateContext.getAccount().getExternalKey());
@@ -110,9 +115,13 @@ public abstract class PaymentOperation extends OperationCallbackBase<PaymentTran
     // - Return an OperationResult.EXCEPTION to transition Payment State to Errored (see PaymentTransactionInfoPluginConverter#toOperationResult)
     // - Construct a PaymentTransactionInfoPlugin whose PaymentPluginStatus = UNDEFINED to end up with a paymentTransactionStatus = UNKNOWN and have a chance to
     //   be fixed by Janitor.
+    // - Unless the call was rejected before reaching the plugin: PaymentPluginStatus = CANCELED ends up with a paymentTransactionStatus = PLUGIN_FAILURE.
     //
     private OperationException convertToUnknownTransactionStatusAndErroredPaymentState(final Throwable e) {
+        return convertToErroredPaymentState(e, PaymentPluginStatus.UNDEFINED);
+    }
 
+    private OperationException convertToErroredPaymentState(final Throwable e, final PaymentPluginStatus paymentPluginStatus) {
         final PaymentTransactionInfoPlugin paymentInfoPlugin = new DefaultNoOpPaymentInfoPlugin(paymentStateContext.getPaymentId(),
                                                                                                 paymentStateContext.getTransactionId(),
                                                                                                 paymentStateContext.getTransactionType(),
@@ -120,7 +129,7 @@ public abstract class PaymentOperation extends OperationCallbackBase<PaymentTran
                                                                                                 paymentStateContext.getCurrency(),
                                                                                                 paymentStateContext.getCallContext().getCreatedDate(),
                                                                                                 paymentStateContext.getCallContext().getCreatedDate(),
-                                                                                                PaymentPluginStatus.UNDEFINED,
+                                                                                                paymentPluginStatus,
                                                                                                 null,
                                                                                                 null);
         paymentStateContext.setPaymentTransactionInfoPlugin(paymentInfoPlugin);
@@ -153,7 +162,7 @@ public abstract class PaymentOperation extends OperationCallbackBase<PaymentTran
     }
 
     private OperationResult doOperationCallbackWithDispatchAndAccountLock(String pluginName) throws OperationException {
-        return dispatchWithAccountLockAndTimeout(pluginName, new DispatcherCallback<PluginDispatcherReturnType<OperationResult>, OperationException>() {
+        return dispatchToPluginWithAccountLockAndTimeout(pluginName, new DispatcherCallback<PluginDispatcherReturnType<OperationResult>, OperationException>() {
             @Override
             public PluginDispatcherReturnType<OperationResult> doOperation() throws OperationException {
                 final OperationResult result = doSimpleOperationCallback();
@@ -43,14 +43,19 @@ import org.killbill.billing.payment.api.PaymentTransaction;
 import org.killbill.billing.payment.api.TransactionStatus;
 import org.killbill.billing.payment.api.TransactionType;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.config.CacheConfig;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper;
+import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.KeysetPaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.entity.dao.SearchTokens;
+import org.killbill.billing.util.entity.dao.SearchTokensBackfillService;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.clock.Clock;
@@ -73,13 +78,18 @@ public class DefaultPaymentDao implements PaymentDao {
     private final DefaultPaginationSqlDaoHelper paginationHelper;
     private final PersistentBus eventBus;
     private final Clock clock;
+    private final boolean searchTokensEnabled;
 
     @Inject
-    public DefaultPaymentDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final PersistentBus eventBus) {
-        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao);
+    public DefaultPaymentDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final PersistentBus eventBus,
+                             final CacheConfig cacheConfig, final SearchTokensBackfillService searchTokensBackfillService) {
+        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, cacheConfig.isSearchTokensEnabled());
         this.paginationHelper = new DefaultPaginationSqlDaoHelper(transactionalSqlDao);
         this.eventBus = eventBus;
         this.clock = clock;
+        this.searchTokensEnabled = cacheConfig.isSearchTokensEnabled();
+        searchTokensBackfillService.registerSearchableTable(TableName.PAYMENTS, PaymentModelDao.class);
+        searchTokensBackfillService.registerSearchableTable(TableName.PAYMENT_METHODS, PaymentMethodModelDao.class);
     }
 
     @Override
@@ -246,16 +256,27 @@ public class DefaultPaymentDao implements PaymentDao {
 
     @Override
     public Pagination<PaymentModelDao> searchPayments(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
+        final List<String> searchTokens = searchTokensEnabled ? SearchTokens.toSearchTokens(searchKey) : ImmutableList.<String>of();
         return paginationHelper.getPagination(PaymentSqlDao.class,
-                                              new PaginationIteratorBuilder<PaymentModelDao, Payment, PaymentSqlDao>() {
+                                              new KeysetPaginationIteratorBuilder<PaymentModelDao, Payment, PaymentSqlDao>() {
                                                   @Override
                                                   public Long getCount(final PaymentSqlDao paymentSqlDao, final InternalTenantContext context) {
-                                                      return paymentSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return paymentSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchTokens, context);
                                                   }
 
                                                   @Override
                                                   public Iterator<PaymentModelDao> build(final PaymentSqlDao paymentSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return paymentSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return paymentSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Long getRecordIdAtOffset(final PaymentSqlDao paymentSqlDao, final Long offset, final InternalTenantContext context) {
+                                                      return paymentSqlDao.searchRecordIdAtOffset(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<PaymentModelDao> buildAfterRecordId(final PaymentSqlDao paymentSqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return paymentSqlDao.searchAfterRecordId(searchKey, String.format("%%%s%%", searchKey), searchTokens, lastRecordId, limit, context);
                                                   }
                                               },
                                               offset,
@@ -453,16 +474,27 @@ public class DefaultPaymentDao implements PaymentDao {
 
     @Override
     public Pagination<PaymentMethodModelDao> searchPaymentMethods(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
+        final List<String> searchTokens = searchTokensEnabled ? SearchTokens.toSearchTokens(searchKey) : ImmutableList.<String>of();
         return paginationHelper.getPagination(PaymentMethodSqlDao.class,
-                                              new PaginationIteratorBuilder<PaymentMethodModelDao, PaymentMethod, PaymentMethodSqlDao>() {
+                                              new KeysetPaginationIteratorBuilder<PaymentMethodModelDao, PaymentMethod, PaymentMethodSqlDao>() {
                                                   @Override
                                                   public Long getCount(final PaymentMethodSqlDao paymentMethodSqlDao, final InternalTenantContext context) {
-                                                      return paymentMethodSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return paymentMethodSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchTokens, context);
                                                   }
 
                                                   @Override
                                                   public Iterator<PaymentMethodModelDao> build(final PaymentMethodSqlDao paymentMethodSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return paymentMethodSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return paymentMethodSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Long getRecordIdAtOffset(final PaymentMethodSqlDao paymentMethodSqlDao, final Long offset, final InternalTenantContext context) {
+                                                      return paymentMethodSqlDao.searchRecordIdAtOffset(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<PaymentMethodModelDao> buildAfterRecordId(final PaymentMethodSqlDao paymentMethodSqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return paymentMethodSqlDao.searchAfterRecordId(searchKey, String.format("%%%s%%", searchKey), searchTokens, lastRecordId, limit, context);
                                                   }
                                               },
                                               offset,
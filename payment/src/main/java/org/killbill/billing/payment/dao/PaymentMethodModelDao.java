@@ -16,6 +16,7 @@
 
 package org.killbill.billing.payment.dao;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -27,10 +28,11 @@ import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.entity.EntityBase;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableEntityModelDao;
 
 import com.google.common.base.Objects;
 
-public class PaymentMethodModelDao extends EntityModelDaoBase implements EntityModelDao<PaymentMethod> {
+public class PaymentMethodModelDao extends EntityModelDaoBase implements EntityModelDao<PaymentMethod>, SearchableEntityModelDao {
 
     private String externalKey;
     private UUID accountId;
@@ -158,4 +160,8 @@ public class PaymentMethodModelDao extends EntityModelDaoBase implements EntityM
         return TableName.PAYMENT_METHOD_HISTORY;
     }
 
+    @Override
+    public Iterable<?> getSearchableValues() {
+        return Arrays.<Object>asList(getId(), externalKey, accountId, pluginName);
+    }
 }
@@ -17,6 +17,7 @@
 
 package org.killbill.billing.payment.dao;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -26,11 +27,12 @@ import org.killbill.billing.payment.api.Payment;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableEntityModelDao;
 import org.killbill.billing.util.UUIDs;
 
 import com.google.common.base.Objects;
 
-public class PaymentModelDao extends EntityModelDaoBase implements EntityModelDao<Payment> {
+public class PaymentModelDao extends EntityModelDaoBase implements EntityModelDao<Payment>, SearchableEntityModelDao {
 
     public static final Integer INVALID_PAYMENT_NUMBER = new Integer(-17);
 
@@ -174,4 +176,9 @@ public class PaymentModelDao extends EntityModelDaoBase implements EntityModelDa
     public TableName getHistoryTableName() {
         return TableName.PAYMENT_HISTORY;
     }
+
+    @Override
+    public Iterable<?> getSearchableValues() {
+        return Arrays.<Object>asList(getId(), accountId, paymentMethodId, externalKey, stateName);
+    }
 }
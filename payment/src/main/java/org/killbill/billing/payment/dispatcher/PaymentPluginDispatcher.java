@@ -20,6 +20,7 @@ package org.killbill.billing.payment.dispatcher;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Nullable;
@@ -39,12 +40,21 @@ public class PaymentPluginDispatcher {
     private static final Logger log = LoggerFactory.getLogger(PaymentPluginDispatcher.class);
 
     public static <ReturnType> ReturnType dispatchWithExceptionHandling(@Nullable final Account account, final String pluginNames, final Callable<PluginDispatcherReturnType<ReturnType>> callable, final PluginDispatcher<ReturnType> pluginDispatcher) throws PaymentApiException {
+        return dispatchWithExceptionHandling(account, pluginNames, false, callable, pluginDispatcher);
+    }
+
+    // For callables calling a single plugin: the call is isolated on the executor of that plugin
+    public static <ReturnType> ReturnType dispatchToPluginWithExceptionHandling(@Nullable final Account account, final String pluginName, final Callable<PluginDispatcherReturnType<ReturnType>> callable, final PluginDispatcher<ReturnType> pluginDispatcher) throws PaymentApiException {
+        return dispatchWithExceptionHandling(account, pluginName, true, callable, pluginDispatcher);
+    }
+
+    private static <ReturnType> ReturnType dispatchWithExceptionHandling(@Nullable final Account account, final String pluginNames, final boolean isSinglePluginCall, final Callable<PluginDispatcherReturnType<ReturnType>> callable, final PluginDispatcher<ReturnType> pluginDispatcher) throws PaymentApiException {
         final UUID accountId = account != null ? account.getId() : null;
         final String accountExternalKey = account != null ? account.getExternalKey() : "";
 
         try {
             log.debug("Calling plugin(s) {}", pluginNames);
-            final ReturnType result = pluginDispatcher.dispatchWithTimeout(callable);
+            final ReturnType result = isSinglePluginCall ? pluginDispatcher.dispatchWithTimeout(callable, pluginNames) : pluginDispatcher.dispatchWithTimeout(callable);
             log.debug("Successful plugin(s) call of {} for account {} with result {}", pluginNames, accountId, result);
             return result;
         } catch (final TimeoutException e) {
@@ -59,6 +69,9 @@ public class PaymentPluginDispatcher {
         } catch (final ExecutionException e) {
             if (e.getCause() instanceof PaymentApiException) {
                 throw (PaymentApiException) e.getCause();
+            } else if (e.getCause() instanceof RejectedExecutionException) {
+                log.warn("Call to plugin(s) {} rejected: {}", pluginNames, e.getCause().getMessage());
+                throw new PaymentApiException(ErrorCode.PAYMENT_PLUGIN_EXCEPTION, e.getCause().getMessage());
             } else if (e.getCause() instanceof LockFailedException) {
                 final String format = String.format("Failed to lock account %s", accountExternalKey);
                 log.error(format, e);
@@ -19,11 +19,14 @@
 package org.killbill.billing.payment.dispatcher;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.shiro.util.ThreadContext;
 import org.killbill.billing.payment.core.PaymentExecutors;
@@ -51,22 +54,104 @@ public class PluginDispatcher<ReturnType> {
         return dispatchWithTimeout(task, timeoutSeconds, DEFAULT_PLUGIN_TIMEOUT_UNIT);
     }
 
+    //
+    // Dispatch a call to a single plugin on its own bounded executor (see PluginExecutor), so that a degraded plugin cannot starve the others.
+    // If the plugin is saturated or its circuit breaker is open, the task is not run and an ExecutionException wrapping a
+    // RejectedExecutionException is thrown right away.
+    //
+    public ReturnType dispatchWithTimeout(final Callable<PluginDispatcherReturnType<ReturnType>> task, final String pluginName) throws TimeoutException, ExecutionException, InterruptedException {
+        return dispatchWithTimeout(task, paymentExecutors.getPluginExecutor(pluginName), timeoutSeconds, DEFAULT_PLUGIN_TIMEOUT_UNIT);
+    }
+
     @VisibleForTesting
     ReturnType dispatchWithTimeout(final Callable<PluginDispatcherReturnType<ReturnType>> task, final long timeout, final TimeUnit unit)
             throws TimeoutException, ExecutionException, InterruptedException {
 
         final ExecutorService pluginExecutor = paymentExecutors.getPluginExecutorService();
 
-        // Wrap existing callable to keep the original requestId
-        final Callable<PluginDispatcherReturnType<ReturnType>> callableWithRequestData = new CallableWithRequestData(Request.getPerThreadRequestData(),
-                                                                                                                     UUIDs.getRandom(),
-                                                                                                                     ThreadContext.getSecurityManager(),
-                                                                                                                     ThreadContext.getSubject(),
-                                                                                                                     task);
+        final Future<PluginDispatcherReturnType<ReturnType>> future = pluginExecutor.submit(wrapWithRequestData(task));
+        return getReturnType(future.get(timeout, unit));
+    }
+
+    //
+    // The timeout and the circuit breaker accounting only cover the plugin call: for a PluginCallStartAware task, the time spent
+    // in the queue and waiting for the account lock is bounded separately (by the same timeout), and isn't held against the plugin.
+    //
+    @VisibleForTesting
+    ReturnType dispatchWithTimeout(final Callable<PluginDispatcherReturnType<ReturnType>> task, final PluginExecutor pluginExecutor, final long timeout, final TimeUnit unit)
+            throws TimeoutException, ExecutionException, InterruptedException {
+
+        final CountDownLatch pluginCallStarted = new CountDownLatch(1);
+        final AtomicBoolean pluginCalled = new AtomicBoolean(!(task instanceof PluginCallStartAware));
+        if (task instanceof PluginCallStartAware) {
+            ((PluginCallStartAware) task).setPluginCallStartListener(new Runnable() {
+                @Override
+                public void run() {
+                    pluginCalled.set(true);
+                    pluginCallStarted.countDown();
+                }
+            });
+        }
+        final Callable<PluginDispatcherReturnType<ReturnType>> signalingTask = new Callable<PluginDispatcherReturnType<ReturnType>>() {
+            @Override
+            public PluginDispatcherReturnType<ReturnType> call() throws Exception {
+                try {
+                    if (pluginCalled.get()) {
+                        pluginCallStarted.countDown();
+                    }
+                    return task.call();
+                } finally {
+                    // E.g. the lock couldn't be acquired
+                    pluginCallStarted.countDown();
+                }
+            }
+        };
 
-        final Future<PluginDispatcherReturnType<ReturnType>> future = pluginExecutor.submit(callableWithRequestData);
-        final PluginDispatcherReturnType<ReturnType> pluginDispatcherResult = future.get(timeout, unit);
+        final Future<PluginDispatcherReturnType<ReturnType>> future;
+        try {
+            future = pluginExecutor.submit(wrapWithRequestData(signalingTask));
+        } catch (final RejectedExecutionException e) {
+            throw new ExecutionException(e);
+        }
 
+        if (!pluginCallStarted.await(timeout, unit)) {
+            // Still queued or waiting for the lock: not the plugin's fault
+            future.cancel(false);
+            pluginExecutor.releaseTrial(future);
+            throw new TimeoutException(String.format("Call to plugin %s not started after %s %s", pluginExecutor.getPluginName(), timeout, unit));
+        }
+
+        final PluginDispatcherReturnType<ReturnType> pluginDispatcherResult;
+        try {
+            pluginDispatcherResult = future.get(timeout, unit);
+        } catch (final TimeoutException e) {
+            pluginExecutor.recordTimeout();
+            // A call already in flight is left alone, the plugin may be processing the payment
+            future.cancel(false);
+            throw e;
+        } catch (final ExecutionException e) {
+            if (pluginCalled.get()) {
+                pluginExecutor.recordSuccess();
+            } else {
+                // E.g. LockFailedException
+                pluginExecutor.releaseTrial(future);
+            }
+            throw e;
+        }
+        pluginExecutor.recordSuccess();
+        return getReturnType(pluginDispatcherResult);
+    }
+
+    private Callable<PluginDispatcherReturnType<ReturnType>> wrapWithRequestData(final Callable<PluginDispatcherReturnType<ReturnType>> task) {
+        // Wrap existing callable to keep the original requestId
+        return new CallableWithRequestData(Request.getPerThreadRequestData(),
+                                           UUIDs.getRandom(),
+                                           ThreadContext.getSecurityManager(),
+                                           ThreadContext.getSubject(),
+                                           task);
+    }
+
+    private ReturnType getReturnType(final PluginDispatcherReturnType<ReturnType> pluginDispatcherResult) {
         if (pluginDispatcherResult instanceof WithProfilingPluginDispatcherReturnType) {
             // Transfer state from dispatch thread into current one.
             final ProfilingData currentThreadProfilingData = Profiling.getPerThreadProfilingData();
@@ -77,6 +162,13 @@ public class PluginDispatcher<ReturnType> {
         return pluginDispatcherResult.getReturnType();
     }
 
+    // Implemented by tasks which need to wait before calling the plugin (e.g. for the account lock, see CallableWithAccountLock):
+    // the listener is invoked right before the plugin is called
+    public interface PluginCallStartAware {
+
+        public void setPluginCallStartListener(Runnable listener);
+    }
+
     public interface PluginDispatcherReturnType<ReturnType> {
         public ReturnType getReturnType();
     }
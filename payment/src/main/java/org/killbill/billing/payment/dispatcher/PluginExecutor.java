@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.payment.dispatcher;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.killbill.commons.concurrent.WithProfilingThreadPoolExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+//
+// Bulkhead for the calls to a given plugin: a bounded pool (and bounded queue) so that a slow gateway can only exhaust its own threads,
+// and a circuit breaker which fails calls fast once the plugin keeps timing out.
+//
+// The breaker opens after a number of consecutive timeouts, rejects all calls for a configurable delay, and then lets a single trial call through:
+// the breaker closes if that call completes in time, and opens again otherwise. A threshold of 0 disables the breaker.
+//
+public class PluginExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(PluginExecutor.class);
+
+    private static final String PLUGIN_THREAD_PREFIX = "Plugin-th-";
+    private static final String PAYMENT_PLUGIN_TH_GROUP_NAME = "pay-plugin-grp";
+    private static final String METRICS_PREFIX = "org.killbill.billing.payment.plugin";
+
+    private final String pluginName;
+    private final int failureThreshold;
+    private final long openDelayMillis;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger consecutiveTimeouts = new AtomicInteger();
+    private final AtomicBoolean trialInProgress = new AtomicBoolean();
+    // The call holding the trial slot, so that only that call can give it back (see releaseTrial)
+    private final AtomicReference<Future<?>> trialCall = new AtomicReference<Future<?>>();
+    private volatile long openUntilMillis;
+
+    private final Timer waitTime = new Timer();
+    private final Meter rejected = new Meter();
+
+    private MetricRegistry metricRegistry;
+
+    public PluginExecutor(final String pluginName, final int threadNb, final int queueSize, final int failureThreshold, final long openDelayMillis) {
+        this.pluginName = pluginName;
+        this.failureThreshold = failureThreshold;
+        this.openDelayMillis = openDelayMillis;
+        this.executor = new WithProfilingThreadPoolExecutor(threadNb,
+                                                            threadNb,
+                                                            10,
+                                                            TimeUnit.MINUTES,
+                                                            new ArrayBlockingQueue<Runnable>(queueSize),
+                                                            new ThreadFactory() {
+
+                                                                @Override
+                                                                public Thread newThread(final Runnable r) {
+                                                                    final Thread th = new Thread(new ThreadGroup(PAYMENT_PLUGIN_TH_GROUP_NAME), r);
+                                                                    th.setName(PLUGIN_THREAD_PREFIX + pluginName + "-" + th.getId());
+                                                                    return th;
+                                                                }
+                                                            });
+        // Grow up to threadNb before queueing, and release the threads of idle plugins
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Throws RejectedExecutionException if the circuit is open or if the plugin is saturated (all threads busy and queue full)
+    public <T> Future<T> submit(final Callable<T> task) throws RejectedExecutionException {
+        final boolean isTrial = isTripped();
+        if (isTrial && (isOpen() || !trialInProgress.compareAndSet(false, true))) {
+            // Open, or half-open with the trial call already in progress
+            rejected.mark();
+            throw new RejectedExecutionException(String.format("Circuit open for plugin %s", pluginName));
+        }
+
+        final long submittedNanos = System.nanoTime();
+        final Future<T> future;
+        try {
+            future = executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    waitTime.update(System.nanoTime() - submittedNanos, TimeUnit.NANOSECONDS);
+                    inFlight.incrementAndGet();
+                    try {
+                        return task.call();
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            if (isTrial) {
+                // Give the trial slot back, the call never reached the plugin
+                trialInProgress.set(false);
+            }
+            rejected.mark();
+            throw new RejectedExecutionException(String.format("Too many pending calls for plugin %s", pluginName), e);
+        }
+        if (isTrial) {
+            trialCall.set(future);
+        }
+        return future;
+    }
+
+    // The call never reached the plugin (e.g. the account lock couldn't be acquired): if it was the trial call, let another one through
+    public void releaseTrial(final Future<?> future) {
+        if (trialCall.compareAndSet(future, null)) {
+            trialInProgress.set(false);
+        }
+    }
+
+    // The plugin answered in time (successfully or not)
+    public void recordSuccess() {
+        consecutiveTimeouts.set(0);
+        trialCall.set(null);
+        trialInProgress.set(false);
+    }
+
+    public void recordTimeout() {
+        if (isCircuitBreakerEnabled() && consecutiveTimeouts.incrementAndGet() >= failureThreshold) {
+            if (!isOpen()) {
+                log.warn("Opening circuit for plugin {} for {} ms after {} consecutive timeouts", pluginName, openDelayMillis, consecutiveTimeouts.get());
+            }
+            openUntilMillis = System.currentTimeMillis() + openDelayMillis;
+            trialCall.set(null);
+            trialInProgress.set(false);
+        }
+    }
+
+    // Open or half-open
+    private boolean isTripped() {
+        return isCircuitBreakerEnabled() && consecutiveTimeouts.get() >= failureThreshold;
+    }
+
+    private boolean isCircuitBreakerEnabled() {
+        return failureThreshold > 0;
+    }
+
+    public boolean isOpen() {
+        return isTripped() && System.currentTimeMillis() < openUntilMillis;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public Timer getWaitTime() {
+        return waitTime;
+    }
+
+    public long getRejectedCount() {
+        return rejected.getCount();
+    }
+
+    public void registerMetrics(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+        register("queueDepth", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return getQueueDepth();
+            }
+        });
+        register("inFlight", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return getInFlight();
+            }
+        });
+        register("circuitOpen", new Gauge<Boolean>() {
+            @Override
+            public Boolean getValue() {
+                return isOpen();
+            }
+        });
+        register("waitTime", waitTime);
+        register("rejected", rejected);
+    }
+
+    private void register(final String name, final Metric metric) {
+        final String metricName = MetricRegistry.name(METRICS_PREFIX, pluginName, name);
+        // Left behind by a previous lifecycle (e.g. tests restarting the service)
+        metricRegistry.remove(metricName);
+        metricRegistry.register(metricName, metric);
+    }
+
+    public void shutdownNow() {
+        executor.shutdownNow();
+        if (metricRegistry != null) {
+            for (final String name : new String[]{"queueDepth", "inFlight", "circuitOpen", "waitTime", "rejected"}) {
+                metricRegistry.remove(MetricRegistry.name(METRICS_PREFIX, pluginName, name));
+            }
+        }
+    }
+
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+}
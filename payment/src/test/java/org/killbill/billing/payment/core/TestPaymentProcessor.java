@@ -39,6 +39,7 @@ import org.killbill.billing.payment.api.PaymentTransaction;
 import org.killbill.billing.payment.api.PluginProperty;
 import org.killbill.billing.payment.api.TransactionStatus;
 import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.payment.provider.MockPaymentProviderPlugin;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -159,6 +160,33 @@ public class TestPaymentProcessor extends PaymentTestSuiteWithEmbeddedDB {
         paymentBusListener.verify(1, account.getId(), paymentId, TEN);
     }
 
+    @Test(groups = "slow")
+    public void testGetAccountPaymentsWithPluginInfo() throws Exception {
+        final List<UUID> paymentIds = new LinkedList<UUID>();
+        for (int i = 0; i < 3; i++) {
+            final Payment purchase = paymentProcessor.createPurchase(true, null, account, null, null, TEN, CURRENCY, UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+                                                                     SHOULD_LOCK_ACCOUNT, PLUGIN_PROPERTIES, callContext, internalCallContext);
+            paymentIds.add(purchase.getId());
+        }
+
+        // The plugin info is fetched in parallel for all payments
+        final List<Payment> accountPayments = paymentProcessor.getAccountPayments(account.getId(), true, callContext, internalCallContext);
+        Assert.assertEquals(accountPayments.size(), 3);
+        for (final Payment payment : accountPayments) {
+            Assert.assertTrue(paymentIds.contains(payment.getId()));
+            Assert.assertEquals(payment.getTransactions().size(), 1);
+            Assert.assertNotNull(payment.getTransactions().get(0).getPaymentInfoPlugin());
+        }
+
+        // Same for the (streamed) pages of all payments
+        final List<Payment> payments = ImmutableList.<Payment>copyOf(paymentProcessor.getPayments(0L, 10L, MockPaymentProviderPlugin.PLUGIN_NAME, true, PLUGIN_PROPERTIES, callContext, internalCallContext));
+        Assert.assertEquals(payments.size(), 3);
+        for (final Payment payment : payments) {
+            Assert.assertTrue(paymentIds.contains(payment.getId()));
+            Assert.assertNotNull(payment.getTransactions().get(0).getPaymentInfoPlugin());
+        }
+    }
+
     @Test(groups = "slow")
     public void testCredit() throws Exception {
         final String paymentExternalKey = UUID.randomUUID().toString();
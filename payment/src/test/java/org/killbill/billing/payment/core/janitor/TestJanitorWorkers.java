@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.janitor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.killbill.billing.payment.PaymentTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestJanitorWorkers extends PaymentTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testInlineWithoutWorkers() {
+        final JanitorWorkers janitorWorkers = new JanitorWorkers(0, 10, 1000L, 0);
+        final Thread[] executingThread = new Thread[1];
+        janitorWorkers.submit(1L, new Runnable() {
+            @Override
+            public void run() {
+                executingThread[0] = Thread.currentThread();
+            }
+        });
+        Assert.assertEquals(executingThread[0], Thread.currentThread());
+        Assert.assertEquals(janitorWorkers.getProcessing().getCount(), 1L);
+    }
+
+    @Test(groups = "fast")
+    public void testPartitionedByAccount() throws Exception {
+        final JanitorWorkers janitorWorkers = new JanitorWorkers(4, 10, 1000L, 0);
+        final Map<Long, Thread> threadByAccount = new ConcurrentHashMap<Long, Thread>();
+        final AtomicBoolean sameThreadPerAccount = new AtomicBoolean(true);
+        final CountDownLatch done = new CountDownLatch(40);
+        try {
+            for (int i = 0; i < 40; i++) {
+                final Long accountRecordId = (long) (i % 8);
+                janitorWorkers.submit(accountRecordId, new Runnable() {
+                    @Override
+                    public void run() {
+                        final Thread previous = threadByAccount.put(accountRecordId, Thread.currentThread());
+                        if (previous != null && previous != Thread.currentThread()) {
+                            sameThreadPerAccount.set(false);
+                        }
+                        done.countDown();
+                    }
+                });
+            }
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(sameThreadPerAccount.get());
+            // Accounts 1 and 5 share a worker, accounts 1 and 2 don't
+            Assert.assertEquals(threadByAccount.get(1L), threadByAccount.get(5L));
+            Assert.assertNotEquals(threadByAccount.get(1L), threadByAccount.get(2L));
+        } finally {
+            janitorWorkers.shutdownNow();
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testShutdownReturnsPendingTasks() throws Exception {
+        final JanitorWorkers janitorWorkers = new JanitorWorkers(1, 10, 1000L, 0);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        janitorWorkers.submit(1L, new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    latch.await();
+                } catch (final InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final Runnable pendingTask = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        janitorWorkers.submit(1L, pendingTask);
+        Assert.assertEquals(janitorWorkers.getQueueDepth(), 1);
+
+        final List<Runnable> pending = janitorWorkers.shutdownNow();
+        Assert.assertEquals(pending.size(), 1);
+        Assert.assertSame(pending.get(0), pendingTask);
+        Assert.assertTrue(janitorWorkers.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testSubmitGivesUpWhenSaturated() throws Exception {
+        final JanitorWorkers janitorWorkers = new JanitorWorkers(1, 1, 200L, 0);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Runnable blockingTask = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (final InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try {
+            // One task running, one queued
+            janitorWorkers.submit(1L, blockingTask);
+            janitorWorkers.submit(1L, blockingTask);
+
+            try {
+                janitorWorkers.submit(1L, blockingTask);
+                Assert.fail("Submit should give up once the worker stays saturated");
+            } catch (final RejectedExecutionException e) {
+                // Expected
+            }
+            Assert.assertEquals(janitorWorkers.getQueueDepth(), 1);
+        } finally {
+            latch.countDown();
+            janitorWorkers.shutdownNow();
+        }
+
+        try {
+            janitorWorkers.submit(1L, blockingTask);
+            Assert.fail("Submit should be rejected once shut down");
+        } catch (final RejectedExecutionException e) {
+            // Expected
+        }
+    }
+}
@@ -19,7 +19,9 @@
 package org.killbill.billing.payment.dispatcher;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -146,4 +148,177 @@ public class TestPluginDispatcher extends PaymentTestSuiteNoDB {
         Assert.assertEquals(actualRequestId, requestId);
     }
 
+    @Test(groups = "fast")
+    public void testDispatchRejectedWhenPluginSaturated() throws Exception {
+        final PluginExecutor pluginExecutor = new PluginExecutor("saturated", 1, 1, 0, 0L);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Callable<PluginDispatcherReturnType<Void>> blockingCall = new Callable<PluginDispatcherReturnType<Void>>() {
+            @Override
+            public PluginDispatcherReturnType<Void> call() throws Exception {
+                latch.await();
+                return null;
+            }
+        };
+        try {
+            // One call in flight, one queued
+            pluginExecutor.submit(blockingCall);
+            pluginExecutor.submit(blockingCall);
+
+            try {
+                voidPluginDispatcher.dispatchWithTimeout(blockingCall, pluginExecutor, 100, TimeUnit.MILLISECONDS);
+                Assert.fail("Failed : should have been rejected");
+            } catch (final ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            Assert.assertEquals(pluginExecutor.getRejectedCount(), 1L);
+            Assert.assertEquals(pluginExecutor.getQueueDepth(), 1);
+        } finally {
+            latch.countDown();
+            pluginExecutor.shutdownNow();
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testTimeoutStartsOnceTheLockIsAcquired() throws Exception {
+        final PluginExecutor pluginExecutor = new PluginExecutor("locked", 2, 10, 1, 60000L);
+        try {
+            // Waiting for the lock longer than the timeout is fine, as long as the plugin answers in time
+            final String result = stringPluginDispatcher.dispatchWithTimeout(new LockedCall(300, 50), pluginExecutor, 200, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(result, "done");
+            Assert.assertFalse(pluginExecutor.isOpen());
+
+            // Never getting the lock times out, but isn't held against the plugin
+            try {
+                stringPluginDispatcher.dispatchWithTimeout(new LockedCall(500, 0), pluginExecutor, 100, TimeUnit.MILLISECONDS);
+                Assert.fail("Failed : should have had Timeout exception");
+            } catch (final TimeoutException e) {
+                // Expected
+            }
+            Assert.assertFalse(pluginExecutor.isOpen());
+
+            // A slow plugin is
+            try {
+                stringPluginDispatcher.dispatchWithTimeout(new LockedCall(0, 500), pluginExecutor, 100, TimeUnit.MILLISECONDS);
+                Assert.fail("Failed : should have had Timeout exception");
+            } catch (final TimeoutException e) {
+                // Expected
+            }
+            Assert.assertTrue(pluginExecutor.isOpen());
+        } finally {
+            pluginExecutor.shutdownNow();
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testCircuitBreakerOpensAfterConsecutiveTimeouts() throws Exception {
+        final PluginExecutor pluginExecutor = new PluginExecutor("slow", 2, 10, 2, 60000L);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Callable<PluginDispatcherReturnType<Void>> blockingCall = new Callable<PluginDispatcherReturnType<Void>>() {
+            @Override
+            public PluginDispatcherReturnType<Void> call() throws Exception {
+                latch.await();
+                return null;
+            }
+        };
+        try {
+            for (int i = 0; i < 2; i++) {
+                try {
+                    voidPluginDispatcher.dispatchWithTimeout(blockingCall, pluginExecutor, 10, TimeUnit.MILLISECONDS);
+                    Assert.fail("Failed : should have had Timeout exception");
+                } catch (final TimeoutException e) {
+                    // Expected
+                }
+            }
+            Assert.assertTrue(pluginExecutor.isOpen());
+
+            try {
+                voidPluginDispatcher.dispatchWithTimeout(blockingCall, pluginExecutor, 10, TimeUnit.MILLISECONDS);
+                Assert.fail("Failed : circuit should be open");
+            } catch (final ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        } finally {
+            latch.countDown();
+            pluginExecutor.shutdownNow();
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testTrialSlotReleasedWhenLockFailsWhileHalfOpen() throws Exception {
+        final PluginExecutor pluginExecutor = new PluginExecutor("half-open", 4, 10, 1, 50L);
+        try {
+            // Open the circuit
+            try {
+                stringPluginDispatcher.dispatchWithTimeout(new LockedCall(0, 500), pluginExecutor, 100, TimeUnit.MILLISECONDS);
+                Assert.fail("Failed : should have had Timeout exception");
+            } catch (final TimeoutException e) {
+                // Expected
+            }
+            Assert.assertTrue(pluginExecutor.isOpen());
+            Thread.sleep(100);
+            Assert.assertFalse(pluginExecutor.isOpen());
+
+            // Half-open: the trial call fails to get the lock
+            try {
+                stringPluginDispatcher.dispatchWithTimeout(new LockFailedCall(), pluginExecutor, 100, TimeUnit.MILLISECONDS);
+                Assert.fail("Failed : should have had ExecutionException");
+            } catch (final ExecutionException e) {
+                Assert.assertFalse(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            // Half-open: the trial call doesn't get the lock in time
+            try {
+                stringPluginDispatcher.dispatchWithTimeout(new LockedCall(300, 0), pluginExecutor, 100, TimeUnit.MILLISECONDS);
+                Assert.fail("Failed : should have had Timeout exception");
+            } catch (final TimeoutException e) {
+                // Expected
+            }
+
+            // Neither was held against the plugin, nor kept the trial slot: the next trial call goes through and closes the circuit
+            Assert.assertEquals(stringPluginDispatcher.dispatchWithTimeout(new LockedCall(0, 0), pluginExecutor, 100, TimeUnit.MILLISECONDS), "done");
+            Assert.assertEquals(stringPluginDispatcher.dispatchWithTimeout(new LockedCall(0, 0), pluginExecutor, 100, TimeUnit.MILLISECONDS), "done");
+            Assert.assertEquals(pluginExecutor.getRejectedCount(), 0L);
+        } finally {
+            pluginExecutor.shutdownNow();
+        }
+    }
+
+    // Like CallableWithAccountLock when the account lock can't be acquired: the plugin is never called
+    private static final class LockFailedCall implements Callable<PluginDispatcherReturnType<String>>, PluginDispatcher.PluginCallStartAware {
+
+        @Override
+        public void setPluginCallStartListener(final Runnable listener) {
+        }
+
+        @Override
+        public PluginDispatcherReturnType<String> call() throws Exception {
+            throw new IllegalStateException("Failed to acquire the account lock");
+        }
+    }
+
+    private static final class LockedCall implements Callable<PluginDispatcherReturnType<String>>, PluginDispatcher.PluginCallStartAware {
+
+        private final long lockWaitMillis;
+        private final long pluginCallMillis;
+
+        private Runnable pluginCallStartListener;
+
+        private LockedCall(final long lockWaitMillis, final long pluginCallMillis) {
+            this.lockWaitMillis = lockWaitMillis;
+            this.pluginCallMillis = pluginCallMillis;
+        }
+
+        @Override
+        public void setPluginCallStartListener(final Runnable listener) {
+            this.pluginCallStartListener = listener;
+        }
+
+        @Override
+        public PluginDispatcherReturnType<String> call() throws Exception {
+            Thread.sleep(lockWaitMillis);
+            pluginCallStartListener.run();
+            Thread.sleep(pluginCallMillis);
+            return PluginDispatcher.createPluginDispatcherReturnType("done");
+        }
+    }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.config;
+
+import java.util.List;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+import org.skife.config.TimeSpan;
+
+//
+// Server side settings for the push notifications, which are only delivered by the killbill server: they complement KillbillServerConfig,
+// provided by the platform, and use the same org.killbill.billing.server namespace.
+//
+public interface PushNotificationConfig {
+
+    @Config("org.killbill.billing.server.notifications.timeout")
+    @Default("15s")
+    @Description("Timeout for a push notification callback")
+    TimeSpan getPushNotificationTimeout();
+
+    @Config("org.killbill.billing.server.notifications.concurrency")
+    @Default("5")
+    @Description("Maximum number of concurrent push notifications for a given tenant and callback url: additional ones are deferred through the retry queue")
+    int getPushNotificationMaxConcurrentCalls();
+
+    @Config("org.killbill.billing.server.notifications.retries")
+    @Default("15s,1m,5m,30m,2h,12h,24h")
+    @Description("Delays before which failed push notifications should be retried")
+    List<TimeSpan> getPushNotificationsRetries();
+}
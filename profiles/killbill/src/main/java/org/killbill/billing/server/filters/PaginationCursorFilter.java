@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.filters;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.killbill.billing.jaxrs.resources.JaxrsResource;
+import org.killbill.billing.util.entity.dao.PaginationCursor;
+
+import com.google.inject.Singleton;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+
+// Expose the position (and counts) carried by the next page URIs (see JaxrsUriBuilder#nextPage) to the DAO layer, for the duration of the request
+@Singleton
+public class PaginationCursorFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    @Override
+    public ContainerRequest filter(final ContainerRequest request) {
+        // Always reset first, in case a previous request on that thread didn't go through the response filter
+        PaginationCursor.resetPerThreadCursor();
+
+        final MultivaluedMap<String, String> queryParameters = request.getQueryParameters();
+        final Long offset = toLong(queryParameters.getFirst(JaxrsResource.QUERY_SEARCH_OFFSET));
+        final Long lastRecordId = toLong(queryParameters.getFirst(JaxrsResource.QUERY_SEARCH_LAST_RECORD_ID));
+        if (offset != null && lastRecordId != null) {
+            PaginationCursor.setPerThreadCursor(offset,
+                                                lastRecordId,
+                                                toLong(queryParameters.getFirst(JaxrsResource.QUERY_SEARCH_TOTAL_NB_RECORDS)),
+                                                toLong(queryParameters.getFirst(JaxrsResource.QUERY_SEARCH_MAX_NB_RECORDS)));
+        }
+        return request;
+    }
+
+    @Override
+    public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response) {
+        PaginationCursor.resetPerThreadCursor();
+        return response;
+    }
+
+    private Long toLong(final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (final NumberFormatException e) {
+            // Ignore the cursor, the offset will be used
+            return null;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.killbill.billing.jaxrs.resources.JaxRsResourceBase;
 import org.killbill.billing.jaxrs.util.KillbillEventHandler;
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.platform.config.DefaultKillbillConfigSource;
+import org.killbill.billing.server.filters.PaginationCursorFilter;
 import org.killbill.billing.server.filters.ProfilingContainerResponseFilter;
 import org.killbill.billing.server.filters.RequestDataFilter;
 import org.killbill.billing.server.filters.ResponseCorsFilter;
@@ -80,6 +81,7 @@ public class KillbillGuiceListener extends KillbillPlatformGuiceListener {
         }
         builder.addJerseyFilter(ProfilingContainerResponseFilter.class.getName());
         builder.addJerseyFilter(RequestDataFilter.class.getName());
+        builder.addJerseyFilter(PaginationCursorFilter.class.getName());
 
         // Broader, to support the "Try it out!" feature
         //builder.addFilter("/" + SWAGGER_PATH + "*", ResponseCorsFilter.class);
@@ -58,7 +58,9 @@ import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.server.DefaultServerService;
 import org.killbill.billing.server.ServerService;
 import org.killbill.billing.server.config.KillbillServerConfig;
+import org.killbill.billing.server.config.PushNotificationConfig;
 import org.killbill.billing.server.filters.ResponseCorsFilter;
+import org.killbill.billing.server.notifications.PushNotificationDispatcher;
 import org.killbill.billing.server.notifications.PushNotificationListener;
 import org.killbill.billing.subscription.glue.DefaultSubscriptionModule;
 import org.killbill.billing.tenant.glue.DefaultTenantModule;
@@ -87,6 +89,7 @@ import org.killbill.clock.Clock;
 import org.killbill.clock.ClockMock;
 import org.killbill.commons.embeddeddb.EmbeddedDB;
 import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
+import org.skife.config.ConfigurationObjectFactory;
 import org.skife.jdbi.v2.ResultSetMapperFactory;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
 
@@ -204,6 +207,8 @@ public class KillbillServerModule extends KillbillPlatformModule {
 
     protected void configurePushNotification() {
         bind(ServerService.class).to(DefaultServerService.class).asEagerSingleton();
+        bind(PushNotificationConfig.class).toInstance(new ConfigurationObjectFactory(skifeConfigSource).build(PushNotificationConfig.class));
+        bind(PushNotificationDispatcher.class).asEagerSingleton();
         bind(PushNotificationListener.class).asEagerSingleton();
     }
 }
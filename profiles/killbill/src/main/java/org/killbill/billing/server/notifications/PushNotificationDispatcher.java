@@ -0,0 +1,272 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.notifications;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.server.config.PushNotificationConfig;
+import org.killbill.billing.util.callcontext.CallContextFactory;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.clock.Clock;
+import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueHandler;
+import org.skife.config.TimeSpan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
+import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.Response;
+
+//
+// Delivery of the push notifications, through a notification queue.
+//
+// The notifications are recorded in the queue before the bus listener returns, and the callbacks are called from the queue: an entry is only
+// completed once its callback has succeeded, or once its retry has been recorded (with increasing delays). A notification is therefore
+// delivered at least once, even if the node goes down in the meantime. The order of the notifications isn't guaranteed.
+//
+// Each (tenant, callback url) pair gets its own lane, with at most a configurable number of concurrent HTTP calls: the other notifications
+// of that lane are deferred, so that a slow callback only holds a bounded number of queue threads (for at most the callback timeout).
+//
+public class PushNotificationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(PushNotificationDispatcher.class);
+
+    public static final String QUEUE_NAME = "push-notification-queue";
+    private static final String SERVICE_NAME = "server-service";
+    private static final String METRICS_PREFIX = "org.killbill.billing.server.notifications";
+
+    private final PushNotificationConfig pushNotificationConfig;
+    private final NotificationQueueService notificationQueueService;
+    private final InternalCallContextFactory internalCallContextFactory;
+    private final CallContextFactory contextFactory;
+    private final Clock clock;
+
+    private final ConcurrentMap<String, CallbackLane> lanes = new ConcurrentHashMap<String, CallbackLane>();
+
+    private final Timer deliveryLag;
+    private final Meter deliveryFailures;
+    private final Meter deliveriesAbandoned;
+    private final Meter retriesScheduled;
+
+    private NotificationQueue retryQueue;
+    private volatile AsyncHttpClient httpClient;
+
+    @Inject
+    public PushNotificationDispatcher(final PushNotificationConfig pushNotificationConfig,
+                                      final NotificationQueueService notificationQueueService,
+                                      final InternalCallContextFactory internalCallContextFactory,
+                                      final CallContextFactory contextFactory,
+                                      final Clock clock,
+                                      final MetricRegistry metricRegistry) {
+        this.pushNotificationConfig = pushNotificationConfig;
+        this.notificationQueueService = notificationQueueService;
+        this.internalCallContextFactory = internalCallContextFactory;
+        this.contextFactory = contextFactory;
+        this.clock = clock;
+
+        this.deliveryLag = metricRegistry.timer(MetricRegistry.name(METRICS_PREFIX, "deliveryLag"));
+        this.deliveryFailures = metricRegistry.meter(MetricRegistry.name(METRICS_PREFIX, "deliveryFailures"));
+        this.deliveriesAbandoned = metricRegistry.meter(MetricRegistry.name(METRICS_PREFIX, "deliveriesAbandoned"));
+        this.retriesScheduled = metricRegistry.meter(MetricRegistry.name(METRICS_PREFIX, "retriesScheduled"));
+        metricRegistry.remove(MetricRegistry.name(METRICS_PREFIX, "inFlightCalls"));
+        metricRegistry.register(MetricRegistry.name(METRICS_PREFIX, "inFlightCalls"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                int inFlightCalls = 0;
+                for (final CallbackLane lane : lanes.values()) {
+                    inFlightCalls += lane.getInFlight();
+                }
+                return inFlightCalls;
+            }
+        });
+    }
+
+    // Called before the bus listener is registered: notifications can be dispatched from that point
+    public void initialize() throws NotificationQueueAlreadyExists {
+        httpClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setRequestTimeout((int) pushNotificationConfig.getPushNotificationTimeout().getMillis()).build());
+        retryQueue = notificationQueueService.createNotificationQueue(SERVICE_NAME,
+                                                                      QUEUE_NAME,
+                                                                      new NotificationQueueHandler() {
+                                                                          @Override
+                                                                          public void handleReadyNotification(final NotificationEvent notificationKey, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+                                                                              if (!(notificationKey instanceof PushNotificationKey)) {
+                                                                                  log.error("Push notification service received an unexpected event type {}", notificationKey.getClass().getName());
+                                                                                  return;
+                                                                              }
+                                                                              deliver((PushNotificationKey) notificationKey, accountRecordId, tenantRecordId);
+                                                                          }
+                                                                      });
+    }
+
+    public void start() {
+        retryQueue.startQueue();
+    }
+
+    public void stop() throws NoSuchNotificationQueue {
+        // Entries being delivered are completed (or retried) before the queue stops: the others stay in the queue
+        if (retryQueue != null) {
+            retryQueue.stopQueue();
+        }
+        lanes.clear();
+
+        if (httpClient != null) {
+            httpClient.close();
+        }
+
+        if (retryQueue != null) {
+            notificationQueueService.deleteNotificationQueue(SERVICE_NAME, QUEUE_NAME);
+        }
+    }
+
+    // Records the notifications: the callbacks are called from the queue
+    public void dispatch(final UUID tenantId, @Nullable final UUID accountId, final String body, final Iterable<String> callbacks) throws IOException {
+        final DateTime now = clock.getUTCNow();
+        final InternalTenantContext internalTenantContext = createInternalTenantContext(tenantId, accountId);
+        for (final String url : callbacks) {
+            retryQueue.recordFutureNotification(now, new PushNotificationKey(tenantId, accountId, url, body, 0, now.getMillis()), null, internalTenantContext.getAccountRecordId(), internalTenantContext.getTenantRecordId());
+        }
+    }
+
+    // Invoked from the queue: the entry is completed when this method returns
+    private void deliver(final PushNotificationKey key, final Long accountRecordId, final Long tenantRecordId) {
+        final String laneKey = key.getTenantId() + "::" + key.getUrl();
+        CallbackLane lane = lanes.get(laneKey);
+        if (lane == null) {
+            lanes.putIfAbsent(laneKey, new CallbackLane());
+            lane = lanes.get(laneKey);
+        }
+
+        if (!lane.tryAcquire()) {
+            log.info("Too many concurrent push notifications for tenant {} and url {}, deferring notification", key.getTenantId(), key.getUrl());
+            // The callback was never called, but this still counts as an attempt: a lane which stays busy eventually gives up
+            scheduleRetry(key, key.getAttemptNumber() + 1, true, accountRecordId, tenantRecordId);
+            return;
+        }
+
+        try {
+            final String failure = doPost(key);
+            if (failure == null) {
+                deliveryLag.update(clock.getUTCNow().getMillis() - key.getDispatchedTime(), TimeUnit.MILLISECONDS);
+            } else {
+                deliveryFailures.mark();
+                log.warn("Failed to push notification {} for the tenant {} (attempt {}): {}", key.getUrl(), key.getTenantId(), key.getAttemptNumber() + 1, failure);
+                scheduleRetry(key, key.getAttemptNumber() + 1, false, accountRecordId, tenantRecordId);
+            }
+        } finally {
+            lane.release();
+        }
+    }
+
+    // Returns the reason of the failure, null if the callback succeeded (bounded by the callback timeout)
+    private String doPost(final PushNotificationKey key) {
+        final BoundRequestBuilder builder = httpClient.preparePost(key.getUrl());
+        builder.setBody(key.getBody() == null ? "{}" : key.getBody());
+        builder.addHeader(PushNotificationListener.HTTP_HEADER_CONTENT_TYPE, PushNotificationListener.CONTENT_TYPE_JSON);
+
+        try {
+            final Response response = builder.execute().get();
+            if (response.getStatusCode() >= 200 && response.getStatusCode() < 300) {
+                return null;
+            }
+            return String.format("status code %s", response.getStatusCode());
+        } catch (final ExecutionException e) {
+            return e.getCause() == null ? e.toString() : e.getCause().toString();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return e.toString();
+        } catch (final Exception e) {
+            return e.toString();
+        }
+    }
+
+    private void scheduleRetry(final PushNotificationKey key, final int attemptNumber, final boolean deferred, final Long accountRecordId, final Long tenantRecordId) {
+        final List<TimeSpan> retries = pushNotificationConfig.getPushNotificationsRetries();
+        if (retries.isEmpty() || attemptNumber > retries.size()) {
+            deliveriesAbandoned.mark();
+            log.warn("Giving up push notification {} for the tenant {} after {} attempts", key.getUrl(), key.getTenantId(), attemptNumber);
+            return;
+        }
+
+        // Deferred notifications always use the first delay: they come back as soon as possible
+        final TimeSpan nextDelay = deferred ? retries.get(0) : retries.get(attemptNumber - 1);
+        final DateTime nextAttempt = clock.getUTCNow().plusMillis((int) nextDelay.getMillis());
+        try {
+            retryQueue.recordFutureNotification(nextAttempt, new PushNotificationKey(key, attemptNumber, deferred), null, accountRecordId, tenantRecordId);
+            retriesScheduled.mark();
+        } catch (final IOException e) {
+            deliveriesAbandoned.mark();
+            log.warn("Failed to schedule retry of push notification {} for the tenant {}: {}", key.getUrl(), key.getTenantId(), e.getMessage());
+        }
+    }
+
+    private InternalTenantContext createInternalTenantContext(final UUID tenantId, @Nullable final UUID accountId) {
+        final TenantContext tenantContext = contextFactory.createTenantContext(tenantId);
+        return accountId != null ?
+               internalCallContextFactory.createInternalTenantContext(accountId, tenantContext) :
+               internalCallContextFactory.createInternalTenantContext(tenantContext);
+    }
+
+    private final class CallbackLane {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        // Returns false if the notification needs to be deferred
+        private boolean tryAcquire() {
+            while (true) {
+                final int current = inFlight.get();
+                if (current >= pushNotificationConfig.getPushNotificationMaxConcurrentCalls()) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            inFlight.decrementAndGet();
+        }
+
+        private int getInFlight() {
+            return inFlight.get();
+        }
+    }
+}
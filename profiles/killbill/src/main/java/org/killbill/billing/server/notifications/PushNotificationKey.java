@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.notifications;
+
+import java.util.UUID;
+
+import org.killbill.notificationq.api.NotificationEvent;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class PushNotificationKey implements NotificationEvent {
+
+    private final UUID tenantId;
+    private final UUID accountId;
+    private final String url;
+    private final String body;
+    private final Integer attemptNumber;
+    // Time (in millis) the event was first handed to the dispatcher, to track the delivery lag across retries
+    private final Long dispatchedTime;
+    // Whether the notification went through the retry queue because its lane was full (see PushNotificationDispatcher)
+    private final Boolean deferred;
+
+    public PushNotificationKey(final UUID tenantId, final UUID accountId, final String url, final String body, final Integer attemptNumber, final Long dispatchedTime) {
+        this(tenantId, accountId, url, body, attemptNumber, dispatchedTime, false);
+    }
+
+    @JsonCreator
+    public PushNotificationKey(@JsonProperty("tenantId") final UUID tenantId,
+                               @JsonProperty("accountId") final UUID accountId,
+                               @JsonProperty("url") final String url,
+                               @JsonProperty("body") final String body,
+                               @JsonProperty("attemptNumber") final Integer attemptNumber,
+                               @JsonProperty("dispatchedTime") final Long dispatchedTime,
+                               @JsonProperty("deferred") final Boolean deferred) {
+        this.tenantId = tenantId;
+        this.accountId = accountId;
+        this.url = url;
+        this.body = body;
+        this.attemptNumber = attemptNumber;
+        this.dispatchedTime = dispatchedTime;
+        this.deferred = deferred;
+    }
+
+    public PushNotificationKey(final PushNotificationKey key, final Integer attemptNumber, final boolean deferred) {
+        this(key.getTenantId(), key.getAccountId(), key.getUrl(), key.getBody(), attemptNumber, key.getDispatchedTime(), deferred);
+    }
+
+    public UUID getTenantId() {
+        return tenantId;
+    }
+
+    public UUID getAccountId() {
+        return accountId;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public Integer getAttemptNumber() {
+        return attemptNumber;
+    }
+
+    public Long getDispatchedTime() {
+        return dispatchedTime;
+    }
+
+    public Boolean getDeferred() {
+        return deferred;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("PushNotificationKey{");
+        sb.append("tenantId=").append(tenantId);
+        sb.append(", accountId=").append(accountId);
+        sb.append(", url='").append(url).append('\'');
+        sb.append(", attemptNumber=").append(attemptNumber);
+        sb.append(", dispatchedTime=").append(dispatchedTime);
+        sb.append(", deferred=").append(deferred);
+        sb.append('}');
+        return sb.toString();
+    }
+}
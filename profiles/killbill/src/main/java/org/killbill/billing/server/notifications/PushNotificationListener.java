@@ -21,7 +21,6 @@ package org.killbill.billing.server.notifications;
 import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
@@ -35,13 +34,6 @@ import org.killbill.billing.util.callcontext.TenantContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.ning.http.client.AsyncCompletionHandler;
-import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
-import com.ning.http.client.AsyncHttpClientConfig;
-import com.ning.http.client.ListenableFuture;
-import com.ning.http.client.Response;
-
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.eventbus.AllowConcurrentEvents;
@@ -56,18 +48,16 @@ public class PushNotificationListener {
     @VisibleForTesting
     public static final String CONTENT_TYPE_JSON = "application/json; charset=UTF-8";
 
-    private static final int TIMEOUT_NOTIFICATION = 15; // 15 seconds
-
     private final TenantUserApi tenantApi;
     private final CallContextFactory contextFactory;
-    private final AsyncHttpClient httpClient;
+    private final PushNotificationDispatcher pushNotificationDispatcher;
     private final ObjectMapper mapper;
 
     @Inject
-    public PushNotificationListener(final ObjectMapper mapper, final TenantUserApi tenantApi, final CallContextFactory contextFactory) {
-        this.httpClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setRequestTimeout(TIMEOUT_NOTIFICATION * 1000).build());
+    public PushNotificationListener(final ObjectMapper mapper, final TenantUserApi tenantApi, final CallContextFactory contextFactory, final PushNotificationDispatcher pushNotificationDispatcher) {
         this.tenantApi = tenantApi;
         this.contextFactory = contextFactory;
+        this.pushNotificationDispatcher = pushNotificationDispatcher;
         this.mapper = mapper;
     }
 
@@ -76,6 +66,7 @@ public class PushNotificationListener {
     public void triggerPushNotifications(final ExtBusEvent event) {
         final TenantContext context = contextFactory.createTenantContext(event.getTenantId());
         try {
+            // Served from the tenant KV cache, which is invalidated through the tenant broadcasts
             final List<String> callbacks = getCallbacksForTenant(context);
             if (callbacks.isEmpty()) {
                 // Optimization - see https://github.com/killbill/killbill/issues/297
@@ -85,38 +76,16 @@ public class PushNotificationListener {
         } catch (final TenantApiException e) {
             log.warn("Failed to retrieve push notification callback for tenant {}", event.getTenantId());
         } catch (final IOException e) {
-            log.warn("Failed to retrieve push notification callback for tenant {}", event.getTenantId());
+            // Let the bus retry the event
+            throw new RuntimeException(String.format("Failed to record push notifications for tenant %s", event.getTenantId()), e);
         }
     }
 
     private void dispatchCallback(final UUID tenantId, final ExtBusEvent event, final Iterable<String> callbacks) throws IOException {
         final NotificationJson notification = new NotificationJson(event);
         final String body = mapper.writeValueAsString(notification);
-        for (final String cur : callbacks) {
-            doPost(tenantId, cur, body, TIMEOUT_NOTIFICATION);
-        }
-    }
-
-    private boolean doPost(final UUID tenantId, final String url, final String body, final int timeoutSec) {
-        final BoundRequestBuilder builder = httpClient.preparePost(url);
-        builder.setBody(body == null ? "{}" : body);
-        builder.addHeader(HTTP_HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON);
-
-        final Response response;
-        try {
-            final ListenableFuture<Response> futureStatus =
-                    builder.execute(new AsyncCompletionHandler<Response>() {
-                        @Override
-                        public Response onCompleted(final Response response) throws Exception {
-                            return response;
-                        }
-                    });
-            response = futureStatus.get(timeoutSec, TimeUnit.SECONDS);
-        } catch (final Exception e) {
-            log.warn(String.format("Failed to push notification %s for the tenant %s", url, tenantId), e);
-            return false;
-        }
-        return response.getStatusCode() >= 200 && response.getStatusCode() < 300;
+        // Doesn't block: the notifications are recorded, and the calls are made (and retried) from the push notification queue
+        pushNotificationDispatcher.dispatch(tenantId, event.getAccountId(), body, callbacks);
     }
 
     private List<String> getCallbacksForTenant(final TenantContext context) throws TenantApiException {
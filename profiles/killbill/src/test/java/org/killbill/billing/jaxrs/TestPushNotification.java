@@ -21,8 +21,11 @@ package org.killbill.billing.jaxrs;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.inject.Inject;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -42,11 +45,18 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.io.CharStreams;
 
+import static com.jayway.awaitility.Awaitility.await;
+
 public class TestPushNotification extends TestJaxrsBase {
 
+    @Inject
+    protected MetricRegistry metricRegistry;
+
     private CallbackServer callbackServer;
 
     private static final int SERVER_PORT = 8087;
@@ -59,15 +69,20 @@ public class TestPushNotification extends TestJaxrsBase {
     @BeforeMethod(groups = "slow")
     public void beforeMethod() throws Exception {
         super.beforeMethod();
-        callbackServer = new CallbackServer(this, SERVER_PORT, CALLBACK_ENDPOINT);
         callbackCompleted = false;
         callbackCompletedWithError = false;
+    }
+
+    private void startCallbackServer(final int nbFailures) throws Exception {
+        callbackServer = new CallbackServer(this, SERVER_PORT, CALLBACK_ENDPOINT, nbFailures);
         callbackServer.startServer();
     }
 
     @AfterMethod(groups = "slow")
     public void afterMethod() throws Exception {
-        callbackServer.stopServer();
+        if (callbackServer != null) {
+            callbackServer.stopServer();
+        }
     }
 
     private boolean waitForCallbacksToComplete() throws InterruptedException {
@@ -93,6 +108,8 @@ public class TestPushNotification extends TestJaxrsBase {
 
     @Test(groups = "slow")
     public void testPushNotification() throws Exception {
+        startCallbackServer(0);
+
         // Register tenant for callback
         final String callback = "http://127.0.0.1:" + SERVER_PORT + CALLBACK_ENDPOINT;
         final TenantKey result0 = killBillClient.registerCallbackNotificationForTenant(callback, createdBy, reason, comment);
@@ -123,6 +140,40 @@ public class TestPushNotification extends TestJaxrsBase {
         Assert.assertEquals(result2.getValues().size(), 0);
     }
 
+    @Test(groups = "slow")
+    public void testPushNotificationRetries() throws Exception {
+        // The first call fails
+        startCallbackServer(1);
+
+        final String callback = "http://127.0.0.1:" + SERVER_PORT + CALLBACK_ENDPOINT;
+        killBillClient.registerCallbackNotificationForTenant(callback, createdBy, reason, comment);
+
+        createAccount();
+
+        // Wait for the retry of the failed call to be recorded, then move the clock for it to kick in
+        final Meter retriesScheduled = metricRegistry.meter(MetricRegistry.name("org.killbill.billing.server.notifications", "retriesScheduled"));
+        final long initialRetriesScheduled = retriesScheduled.getCount();
+        await().atMost(30, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return retriesScheduled.getCount() > initialRetriesScheduled;
+            }
+        });
+        Assert.assertFalse(callbackCompleted);
+        clock.addDeltaFromReality(60 * 1000);
+
+        final boolean success = waitForCallbacksToComplete();
+        if (!success) {
+            Assert.fail("Fail to see push notification retry");
+        }
+
+        if (callbackCompletedWithError) {
+            Assert.fail("Assertion during callback failed...");
+        }
+
+        killBillClient.unregisterCallbackNotificationForTenant(createdBy, reason, comment);
+    }
+
     public void setCompleted(final boolean withError) {
         callbackCompleted = true;
         callbackCompletedWithError = withError;
@@ -134,9 +185,12 @@ public class TestPushNotification extends TestJaxrsBase {
         private final String callbackEndpoint;
         private final TestPushNotification test;
 
-        public CallbackServer(final TestPushNotification test, final int port, final String callbackEndpoint) {
+        private final int nbFailures;
+
+        public CallbackServer(final TestPushNotification test, final int port, final String callbackEndpoint, final int nbFailures) {
             this.callbackEndpoint = callbackEndpoint;
             this.test = test;
+            this.nbFailures = nbFailures;
             this.server = new Server(port);
         }
 
@@ -144,7 +198,7 @@ public class TestPushNotification extends TestJaxrsBase {
             final ServletContextHandler context = new ServletContextHandler();
             context.setContextPath("/");
             server.setHandler(context);
-            context.addServlet(new ServletHolder(new CallmebackServlet(test, 1)), callbackEndpoint);
+            context.addServlet(new ServletHolder(new CallmebackServlet(test, 1, nbFailures)), callbackEndpoint);
             server.start();
         }
 
@@ -160,14 +214,16 @@ public class TestPushNotification extends TestJaxrsBase {
         private static final Logger log = LoggerFactory.getLogger(CallmebackServlet.class);
 
         private final int expectedNbCalls;
+        private final int nbFailures;
         private final AtomicInteger receivedCalls;
         private final TestPushNotification test;
         private final ObjectMapper objectMapper = new ObjectMapper();
 
         private boolean withError;
 
-        public CallmebackServlet(final TestPushNotification test, final int expectedNbCalls) {
+        public CallmebackServlet(final TestPushNotification test, final int expectedNbCalls, final int nbFailures) {
             this.expectedNbCalls = expectedNbCalls;
+            this.nbFailures = nbFailures;
             this.test = test;
             this.receivedCalls = new AtomicInteger(0);
             this.withError = false;
@@ -175,7 +231,11 @@ public class TestPushNotification extends TestJaxrsBase {
 
         @Override
         protected void doPost(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
-            final int current = receivedCalls.incrementAndGet();
+            final int current = receivedCalls.incrementAndGet() - nbFailures;
+            if (current <= 0) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                return;
+            }
 
             final String body = CharStreams.toString(new InputStreamReader(request.getInputStream(), "UTF-8"));
             response.setStatus(HttpServletResponse.SC_OK);
@@ -78,13 +78,17 @@ import org.killbill.billing.subscription.events.user.ApiEventType;
 import org.killbill.billing.subscription.exceptions.SubscriptionBaseError;
 import org.killbill.billing.util.UUIDs;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.config.CacheConfig;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Pagination;
-import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
+import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.KeysetPaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntityDaoBase;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.entity.dao.SearchTokens;
+import org.killbill.billing.util.entity.dao.SearchTokensBackfillService;
 import org.killbill.bus.api.BusEvent;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
@@ -114,17 +118,21 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
     private final AddonUtils addonUtils;
     private final PersistentBus eventBus;
     private final CatalogService catalogService;
+    private final boolean searchTokensEnabled;
 
     @Inject
     public DefaultSubscriptionDao(final IDBI dbi, final Clock clock, final AddonUtils addonUtils,
                                   final NotificationQueueService notificationQueueService, final PersistentBus eventBus, final CatalogService catalogService,
-                                  final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao), BundleSqlDao.class);
+                                  final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao,
+                                  final CacheConfig cacheConfig, final SearchTokensBackfillService searchTokensBackfillService) {
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, cacheConfig.isSearchTokensEnabled()), BundleSqlDao.class);
         this.clock = clock;
         this.notificationQueueService = notificationQueueService;
         this.addonUtils = addonUtils;
         this.eventBus = eventBus;
         this.catalogService = catalogService;
+        this.searchTokensEnabled = cacheConfig.isSearchTokensEnabled();
+        searchTokensBackfillService.registerSearchableTable(TableName.BUNDLES, SubscriptionBundleModelDao.class);
     }
 
     @Override
@@ -194,16 +202,27 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
 
     @Override
     public Pagination<SubscriptionBundleModelDao> searchSubscriptionBundles(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
+        final List<String> searchTokens = searchTokensEnabled ? SearchTokens.toSearchTokens(searchKey) : ImmutableList.<String>of();
         return paginationHelper.getPagination(BundleSqlDao.class,
-                                              new PaginationIteratorBuilder<SubscriptionBundleModelDao, SubscriptionBaseBundle, BundleSqlDao>() {
+                                              new KeysetPaginationIteratorBuilder<SubscriptionBundleModelDao, SubscriptionBaseBundle, BundleSqlDao>() {
                                                   @Override
                                                   public Long getCount(final BundleSqlDao bundleSqlDao, final InternalTenantContext context) {
-                                                      return bundleSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return bundleSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchTokens, context);
                                                   }
 
                                                   @Override
                                                   public Iterator<SubscriptionBundleModelDao> build(final BundleSqlDao bundleSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return bundleSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return bundleSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Long getRecordIdAtOffset(final BundleSqlDao bundleSqlDao, final Long offset, final InternalTenantContext context) {
+                                                      return bundleSqlDao.searchRecordIdAtOffset(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<SubscriptionBundleModelDao> buildAfterRecordId(final BundleSqlDao bundleSqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return bundleSqlDao.searchAfterRecordId(searchKey, String.format("%%%s%%", searchKey), searchTokens, lastRecordId, limit, context);
                                                   }
                                               },
                                               offset,
@@ -334,29 +353,15 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
 
         final List<SubscriptionBaseEvent> eventsForAccount = getEventsForAccountId(context);
 
+        // Index the events once (in their original order), instead of scanning all account events for each subscription
+        final Multimap<UUID, SubscriptionBaseEvent> eventsForSubscriptions = ArrayListMultimap.create();
+        for (final SubscriptionBaseEvent event : eventsForAccount) {
+            eventsForSubscriptions.put(event.getSubscriptionId(), event);
+        }
+
         final Map<UUID, List<SubscriptionBase>> result = new HashMap<UUID, List<SubscriptionBase>>();
         for (final UUID bundleId : subscriptionsFromAccountId.keySet()) {
-
             final List<SubscriptionBase> subscriptionsForBundle = subscriptionsFromAccountId.get(bundleId);
-            final Collection<UUID> subscriptionIdsForBundle = Collections2.transform(subscriptionsForBundle, new Function<SubscriptionBase, UUID>() {
-                @Override
-                public UUID apply(final SubscriptionBase input) {
-                    return input.getId();
-                }
-            });
-            final Multimap<UUID, SubscriptionBaseEvent> eventsForSubscriptions = ArrayListMultimap.create();
-
-            for (final SubscriptionBase cur : subscriptionsForBundle) {
-                final Collection<SubscriptionBaseEvent> events = Collections2.filter(eventsForAccount, new Predicate<SubscriptionBaseEvent>() {
-                    @Override
-                    public boolean apply(final SubscriptionBaseEvent input) {
-                        return input.getSubscriptionId().equals(cur.getId());
-
-                    }
-                });
-                eventsForSubscriptions.putAll(cur.getId(), ImmutableList.copyOf(events));
-            }
-
             result.put(bundleId, buildBundleSubscriptions(subscriptionsForBundle, eventsForSubscriptions, null, context));
         }
         return result;
@@ -494,9 +499,8 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 transactional.create(new SubscriptionModelDao(subscription), context);
 
                 final SubscriptionEventSqlDao eventsDaoFromSameTransaction = entitySqlDaoWrapperFactory.become(SubscriptionEventSqlDao.class);
+                createEventsFromTransaction(eventsDaoFromSameTransaction, initialEvents, context);
                 for (final SubscriptionBaseEvent cur : initialEvents) {
-                    eventsDaoFromSameTransaction.create(new SubscriptionEventModelDao(cur), context);
-
                     final boolean isBusEvent = cur.getEffectiveDate().compareTo(clock.getUTCNow()) <= 0 && (cur.getType() == EventType.API_USER);
                     recordBusOrFutureNotificationFromTransaction(subscription, cur, entitySqlDaoWrapperFactory, isBusEvent, 0, context);
 
@@ -518,13 +522,21 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 final SubscriptionSqlDao transactional = entitySqlDaoWrapperFactory.become(SubscriptionSqlDao.class);
                 final SubscriptionEventSqlDao eventsDaoFromSameTransaction = entitySqlDaoWrapperFactory.become(SubscriptionEventSqlDao.class);
 
-                for (DefaultSubscriptionBase subscription : subscriptions) {
-                    transactional.create(new SubscriptionModelDao(subscription), context);
+                // Insert the subscriptions and all their events in two JDBC batches
+                final List<SubscriptionModelDao> subscriptionModelDaos = new LinkedList<SubscriptionModelDao>();
+                final List<SubscriptionBaseEvent> allInitialEvents = new LinkedList<SubscriptionBaseEvent>();
+                for (final DefaultSubscriptionBase subscription : subscriptions) {
+                    subscriptionModelDaos.add(new SubscriptionModelDao(subscription));
+                    allInitialEvents.addAll(initialEventsMap.get(subscription.getId()));
+                }
+                if (!subscriptionModelDaos.isEmpty()) {
+                    transactional.createAll(subscriptionModelDaos, context);
+                }
+                createEventsFromTransaction(eventsDaoFromSameTransaction, allInitialEvents, context);
 
+                for (final DefaultSubscriptionBase subscription : subscriptions) {
                     final List<SubscriptionBaseEvent> initialEvents = initialEventsMap.get(subscription.getId());
                     for (final SubscriptionBaseEvent cur : initialEvents) {
-                        eventsDaoFromSameTransaction.create(new SubscriptionEventModelDao(cur), context);
-
                         final boolean isBusEvent = cur.getEffectiveDate().compareTo(clock.getUTCNow()) <= 0 && (cur.getType() == EventType.API_USER);
                         recordBusOrFutureNotificationFromTransaction(subscription, cur, entitySqlDaoWrapperFactory, isBusEvent, 0, context);
 
@@ -546,9 +558,8 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
             public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
                 final SubscriptionEventSqlDao transactional = entitySqlDaoWrapperFactory.become(SubscriptionEventSqlDao.class);
 
+                createEventsFromTransaction(transactional, recreateEvents, context);
                 for (final SubscriptionBaseEvent cur : recreateEvents) {
-                    transactional.create(new SubscriptionEventModelDao(cur), context);
-
                     final boolean isBusEvent = cur.getEffectiveDate().compareTo(clock.getUTCNow()) <= 0 && (cur.getType() == EventType.API_USER);
                     recordBusOrFutureNotificationFromTransaction(subscription, cur, entitySqlDaoWrapperFactory, isBusEvent, 0, context);
                 }
@@ -648,9 +659,8 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                                                                                                                                                    context);
                 cancelFutureEventsFromTransaction(subscriptionId, changeEvents.get(0).getEffectiveDate(), entitySqlDaoWrapperFactory, context);
 
+                createEventsFromTransaction(transactional, changeEventsTweakedWithMigrateBilling, context);
                 for (final SubscriptionBaseEvent cur : changeEventsTweakedWithMigrateBilling) {
-                    transactional.create(new SubscriptionEventModelDao(cur), context);
-
                     final boolean isBusEvent = cur.getEffectiveDate().compareTo(clock.getUTCNow()) <= 0 && (cur.getType() == EventType.API_USER);
                     recordBusOrFutureNotificationFromTransaction(subscription, cur, entitySqlDaoWrapperFactory, isBusEvent, 0, context);
                 }
@@ -1156,6 +1166,19 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
         transBundleDao.create(new SubscriptionBundleModelDao(bundleData), context);
     }
 
+    // Single JDBC batch for all the events (inserted in order)
+    private void createEventsFromTransaction(final SubscriptionEventSqlDao transactional, final List<SubscriptionBaseEvent> events, final InternalCallContext context) throws EntityPersistenceException {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        final List<SubscriptionEventModelDao> eventModelDaos = new LinkedList<SubscriptionEventModelDao>();
+        for (final SubscriptionBaseEvent cur : events) {
+            eventModelDaos.add(new SubscriptionEventModelDao(cur));
+        }
+        transactional.createAll(eventModelDaos, context);
+    }
+
     //
     // Creates a copy of the existing subscriptions whose 'transitions' will reflect the new event
     //
@@ -16,6 +16,7 @@
 
 package org.killbill.billing.subscription.engine.dao.model;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -24,10 +25,11 @@ import org.killbill.billing.subscription.api.user.SubscriptionBaseBundle;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableEntityModelDao;
 
 import com.google.common.base.Objects;
 
-public class SubscriptionBundleModelDao extends EntityModelDaoBase implements EntityModelDao<SubscriptionBaseBundle> {
+public class SubscriptionBundleModelDao extends EntityModelDaoBase implements EntityModelDao<SubscriptionBaseBundle>, SearchableEntityModelDao {
 
     private String externalKey;
     private UUID accountId;
@@ -149,4 +151,8 @@ public class SubscriptionBundleModelDao extends EntityModelDaoBase implements En
         return null;
     }
 
+    @Override
+    public Iterable<?> getSearchableValues() {
+        return Arrays.<Object>asList(getId(), externalKey, accountId);
+    }
 }
@@ -110,7 +110,7 @@ public class SubscriptionTestSuiteNoDB extends GuicyKillbillTestSuiteNoDB {
         return getConfigSource("/subscription.properties");
     }
 
-    @BeforeClass(groups = "fast")
+    @BeforeClass(groups = {"fast", "load"})
     public void beforeClass() throws Exception {
         final Injector g = Guice.createInjector(Stage.PRODUCTION, new TestDefaultSubscriptionModuleNoDB(configSource));
         g.injectMembers(this);
@@ -119,7 +119,7 @@ public class SubscriptionTestSuiteNoDB extends GuicyKillbillTestSuiteNoDB {
         Mockito.doReturn(0L).when(idbi).withHandle(Mockito.<HandleCallback<Long>>any());
     }
 
-    @BeforeMethod(groups = "fast")
+    @BeforeMethod(groups = {"fast", "load"})
     public void beforeMethod() throws Exception {
 
         // CLEANUP ALL DB TABLES OR IN MEMORY STRUCTURES
@@ -134,7 +134,7 @@ public class SubscriptionTestSuiteNoDB extends GuicyKillbillTestSuiteNoDB {
         this.bundle = subscriptionTestInitializer.initBundle(accountId, subscriptionInternalApi, internalCallContext);
     }
 
-    @AfterMethod(groups = "fast")
+    @AfterMethod(groups = {"fast", "load"})
     public void afterMethod() throws Exception {
         subscriptionTestInitializer.stopTestFramework(testListener, busService, subscriptionBaseService);
     }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.subscription.api.user;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.catalog.api.Catalog;
+import org.killbill.billing.catalog.api.PriceListSet;
+import org.killbill.billing.subscription.SubscriptionTestSuiteNoDB;
+import org.killbill.billing.subscription.events.SubscriptionBaseEvent;
+import org.killbill.billing.subscription.events.phase.PhaseEventData;
+import org.killbill.billing.subscription.events.user.ApiEventBase;
+import org.killbill.billing.subscription.events.user.ApiEventBuilder;
+import org.killbill.billing.subscription.events.user.ApiEventType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestRebuildTransitions extends SubscriptionTestSuiteNoDB {
+
+    private static final int NB_SUBSCRIPTIONS = 10;
+
+    // Looks like an account with a lot of per-seat subscriptions
+    private static final int NB_SUBSCRIPTIONS_LARGE_ACCOUNT = 5000;
+
+    @Test(groups = "fast")
+    public void testRebuildTransitionsWithSharedCatalog() throws Exception {
+        final Catalog fullCatalog = catalogService.getFullCatalog(internalCallContext);
+        final DateTime startDate = clock.getUTCNow().minusMonths(2);
+
+        final List<DefaultSubscriptionBase> subscriptions = new ArrayList<DefaultSubscriptionBase>(NB_SUBSCRIPTIONS);
+        final List<List<SubscriptionBaseEvent>> eventsPerSubscription = new ArrayList<List<SubscriptionBaseEvent>>(NB_SUBSCRIPTIONS);
+        createSubscriptions(NB_SUBSCRIPTIONS, startDate, subscriptions, eventsPerSubscription);
+
+        // Rebuild twice: the second time, the plan and phases are resolved from the catalog memo
+        for (int run = 0; run < 2; run++) {
+            for (int i = 0; i < NB_SUBSCRIPTIONS; i++) {
+                subscriptions.get(i).rebuildTransitions(eventsPerSubscription.get(i), fullCatalog);
+            }
+        }
+
+        // All subscriptions share the same resolved plan and phases
+        final SubscriptionBaseTransition firstTransition = subscriptions.get(0).getAllTransitions().get(0);
+        final SubscriptionBaseTransition lastTransition = subscriptions.get(0).getAllTransitions().get(1);
+        Assert.assertEquals(firstTransition.getNextPlan().getName(), "pistol-monthly");
+        Assert.assertEquals(firstTransition.getNextPhase().getName(), "pistol-monthly-trial");
+        Assert.assertTrue(firstTransition.getEffectiveTransitionTime().isEqual(startDate));
+        Assert.assertEquals(lastTransition.getNextPhase().getName(), "pistol-monthly-evergreen");
+        Assert.assertTrue(lastTransition.getEffectiveTransitionTime().isEqual(startDate.plusDays(30)));
+        for (final DefaultSubscriptionBase subscription : subscriptions) {
+            Assert.assertEquals(subscription.getAllTransitions().size(), 2);
+            Assert.assertSame(subscription.getAllTransitions().get(0).getNextPlan(), firstTransition.getNextPlan());
+            Assert.assertSame(subscription.getAllTransitions().get(1).getNextPhase(), lastTransition.getNextPhase());
+        }
+    }
+
+    // Rough timing of the reconstruction of a large account (not part of the default groups, numbers are logged)
+    @Test(groups = "load")
+    public void testRebuildTransitionsOnLargeAccount() throws Exception {
+        final Catalog fullCatalog = catalogService.getFullCatalog(internalCallContext);
+        final DateTime startDate = clock.getUTCNow().minusMonths(2);
+
+        final List<DefaultSubscriptionBase> subscriptions = new ArrayList<DefaultSubscriptionBase>(NB_SUBSCRIPTIONS_LARGE_ACCOUNT);
+        final List<List<SubscriptionBaseEvent>> eventsPerSubscription = new ArrayList<List<SubscriptionBaseEvent>>(NB_SUBSCRIPTIONS_LARGE_ACCOUNT);
+        createSubscriptions(NB_SUBSCRIPTIONS_LARGE_ACCOUNT, startDate, subscriptions, eventsPerSubscription);
+
+        for (int run = 0; run < 3; run++) {
+            final long ini = System.nanoTime();
+            for (int i = 0; i < NB_SUBSCRIPTIONS_LARGE_ACCOUNT; i++) {
+                subscriptions.get(i).rebuildTransitions(eventsPerSubscription.get(i), fullCatalog);
+            }
+            log.info("Run {}: rebuildTransitions for {} subscriptions: {} ms", run, NB_SUBSCRIPTIONS_LARGE_ACCOUNT, (System.nanoTime() - ini) / 1000000);
+        }
+
+        for (final DefaultSubscriptionBase subscription : subscriptions) {
+            Assert.assertEquals(subscription.getAllTransitions().size(), 2);
+        }
+    }
+
+    private void createSubscriptions(final int nbSubscriptions,
+                                     final DateTime startDate,
+                                     final List<DefaultSubscriptionBase> subscriptions,
+                                     final List<List<SubscriptionBaseEvent>> eventsPerSubscription) {
+        for (int i = 0; i < nbSubscriptions; i++) {
+            final DefaultSubscriptionBase subscription = new DefaultSubscriptionBase(new SubscriptionBuilder().setId(UUID.randomUUID())
+                                                                                                             .setBundleStartDate(startDate)
+                                                                                                             .setAlignStartDate(startDate),
+                                                                                     null,
+                                                                                     clock);
+            final SubscriptionBaseEvent creation = new ApiEventBase(new ApiEventBuilder().setApiEventType(ApiEventType.CREATE)
+                                                                                         .setSubscriptionId(subscription.getId())
+                                                                                         .setEffectiveDate(startDate)
+                                                                                         .setEventPlan("pistol-monthly")
+                                                                                         .setEventPlanPhase("pistol-monthly-trial")
+                                                                                         .setEventPriceList(PriceListSet.DEFAULT_PRICELIST_NAME)
+                                                                                         .setFromDisk(true)
+                                                                                         .setActiveVersion(subscription.getActiveVersion()));
+            final SubscriptionBaseEvent phase = PhaseEventData.createNextPhaseEvent(subscription.getId(), subscription.getActiveVersion(), "pistol-monthly-evergreen", startDate.plusDays(30));
+            subscriptions.add(subscription);
+            eventsPerSubscription.add(ImmutableList.<SubscriptionBaseEvent>of(creation, phase));
+        }
+    }
+}
@@ -20,8 +20,10 @@ package org.killbill.billing.tenant.api;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
@@ -38,10 +40,13 @@ import org.killbill.billing.tenant.dao.TenantBroadcastModelDao;
 import org.killbill.billing.tenant.dao.TenantDao;
 import org.killbill.billing.tenant.dao.TenantKVModelDao;
 import org.killbill.billing.tenant.glue.DefaultTenantModule;
+import org.killbill.billing.util.broadcast.BroadcastTransport;
+import org.killbill.billing.util.broadcast.BroadcastTransport.BroadcastTransportListener;
 import org.killbill.billing.util.config.TenantConfig;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.commons.concurrent.Executors;
+import org.skife.config.TimeSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,8 +61,9 @@ import com.google.common.collect.Iterables;
  * 2. If cache is empty, TenantCacheLoader is invoked and uses TenantInternalApi is load the data; at that time, the invalidation callback
  * is registered
  * <p/>
- * When this class initializes, it reads the current entry in the tenant_broadcasts table and from then on, keeps polling for new entries; when new
- * entries are found, it invokes the callback to invalidate the current caching and force the TenantCacheLoader to be invoked again.
+ * When this class initializes, it reads the current entry in the tenant_broadcasts table and from then on, reads the new entries as soon as the
+ * BroadcastTransport announces them (and keeps polling as a safety net); when new entries are found, it invokes the callback to invalidate the
+ * current caching and force the TenantCacheLoader to be invoked again.
  */
 public class TenantCacheInvalidation {
 
@@ -70,21 +76,28 @@ public class TenantCacheInvalidation {
     private final TenantConfig tenantConfig;
     private final PersistentBus eventBus;
     private final TenantDao tenantDao;
+    private final BroadcastTransport broadcastTransport;
+    private final AtomicBoolean catchUpPending;
     private AtomicLong latestRecordIdProcessed;
     private volatile boolean isStopped;
 
     private ScheduledExecutorService tenantExecutor;
+    private TenantCacheInvalidationRunnable tenantCacheInvalidationRunnable;
+    private BroadcastTransportListener broadcastTransportListener;
 
     @Inject
     public TenantCacheInvalidation(@Named(DefaultTenantModule.NO_CACHING_TENANT) final TenantBroadcastDao broadcastDao,
                                    @Named(DefaultTenantModule.NO_CACHING_TENANT) final TenantDao tenantDao,
                                    final PersistentBus eventBus,
-                                   final TenantConfig tenantConfig) {
+                                   final TenantConfig tenantConfig,
+                                   final BroadcastTransport broadcastTransport) {
         this.cache = new HashMap<TenantKey, CacheInvalidationCallback>();
         this.broadcastDao = broadcastDao;
         this.tenantConfig = tenantConfig;
         this.tenantDao = tenantDao;
         this.eventBus = eventBus;
+        this.broadcastTransport = broadcastTransport;
+        this.catchUpPending = new AtomicBoolean(false);
         this.isStopped = false;
     }
 
@@ -96,10 +109,30 @@ public class TenantCacheInvalidation {
     }
 
     public void start() {
-        final TimeUnit pendingRateUnit = tenantConfig.getTenantBroadcastServiceRunningRate().getUnit();
-        final long pendingPeriod = tenantConfig.getTenantBroadcastServiceRunningRate().getPeriod();
-        tenantExecutor.scheduleAtFixedRate(new TenantCacheInvalidationRunnable(this, broadcastDao, tenantDao), pendingPeriod, pendingPeriod, pendingRateUnit);
-
+        tenantCacheInvalidationRunnable = new TenantCacheInvalidationRunnable(this, broadcastDao, tenantDao);
+
+        // New entries are read as soon as they are announced: polling is only a safety net for lost notifications
+        broadcastTransportListener = new BroadcastTransportListener() {
+            @Override
+            public void onNewEntries(final String channel) {
+                // Coalesce notifications received while a read is already queued
+                if (isStopped || !catchUpPending.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    tenantExecutor.submit(tenantCacheInvalidationRunnable);
+                } catch (final RejectedExecutionException e) {
+                    catchUpPending.set(false);
+                }
+            }
+        };
+        broadcastTransport.subscribe(TenantBroadcastDao.BROADCAST_CHANNEL, broadcastTransportListener);
+        broadcastTransport.start();
+
+        final TimeSpan rate = broadcastTransport.isClusterWide() ? tenantConfig.getTenantBroadcastServiceCatchUpRate() : tenantConfig.getTenantBroadcastServiceRunningRate();
+        final TimeUnit pendingRateUnit = rate.getUnit();
+        final long pendingPeriod = rate.getPeriod();
+        tenantExecutor.scheduleAtFixedRate(tenantCacheInvalidationRunnable, pendingPeriod, pendingPeriod, pendingRateUnit);
     }
 
     public void stop() {
@@ -107,6 +140,10 @@ public class TenantCacheInvalidation {
             logger.warn("TenantExecutor is already in a stopped state");
             return;
         }
+        if (broadcastTransportListener != null) {
+            broadcastTransport.unsubscribe(TenantBroadcastDao.BROADCAST_CHANNEL, broadcastTransportListener);
+            broadcastTransport.stop();
+        }
         try {
             tenantExecutor.shutdown();
             boolean success = tenantExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
@@ -147,6 +184,11 @@ public class TenantCacheInvalidation {
         return eventBus;
     }
 
+    // Any notification received from now on needs a new read
+    public void resetCatchUpPending() {
+        catchUpPending.set(false);
+    }
+
     public static class TenantCacheInvalidationRunnable implements Runnable {
 
         private final TenantCacheInvalidation parent;
@@ -163,6 +205,7 @@ public class TenantCacheInvalidation {
 
         @Override
         public void run() {
+            parent.resetCatchUpPending();
             if (parent.isStopped) {
                 return;
             }
@@ -36,6 +36,7 @@ import org.killbill.billing.tenant.api.Tenant;
 import org.killbill.billing.tenant.api.TenantApiException;
 import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.util.UUIDs;
+import org.killbill.billing.util.broadcast.BroadcastTransport;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.config.SecurityConfig;
 import org.killbill.billing.util.dao.NonEntityDao;
@@ -60,11 +61,14 @@ public class DefaultTenantDao extends EntityDaoBase<TenantModelDao, Tenant, Tena
     private final RandomNumberGenerator rng = new SecureRandomNumberGenerator();
 
     private final SecurityConfig securityConfig;
+    private final BroadcastTransport broadcastTransport;
 
     @Inject
-    public DefaultTenantDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final SecurityConfig securityConfig) {
+    public DefaultTenantDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final SecurityConfig securityConfig,
+                            final BroadcastTransport broadcastTransport) {
         super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao), TenantSqlDao.class);
         this.securityConfig = securityConfig;
+        this.broadcastTransport = broadcastTransport;
     }
 
     @Override
@@ -149,6 +153,7 @@ public class DefaultTenantDao extends EntityDaoBase<TenantModelDao, Tenant, Tena
                 return null;
             }
         });
+        announceConfigurationChange(key);
     }
 
     @Override
@@ -161,6 +166,7 @@ public class DefaultTenantDao extends EntityDaoBase<TenantModelDao, Tenant, Tena
                 return null;
             }
         });
+        announceConfigurationChange(key);
     }
 
     @Override
@@ -194,6 +200,13 @@ public class DefaultTenantDao extends EntityDaoBase<TenantModelDao, Tenant, Tena
     //
     // For now we restrict the caching to the (system) TenantKey keys
     //
+    // Called once the tenant_broadcasts entry has been committed
+    private void announceConfigurationChange(final String key) {
+        if (isSystemKey(key)) {
+            broadcastTransport.publish(TenantBroadcastDao.BROADCAST_CHANNEL);
+        }
+    }
+
     private boolean isSystemKey(final String key) {
         return Iterables.tryFind(ImmutableList.copyOf(TenantKey.values()), new Predicate<TenantKey>() {
             @Override
@@ -26,6 +26,9 @@ import org.killbill.billing.util.entity.dao.EntityDao;
 
 public interface TenantBroadcastDao extends EntityDao<TenantBroadcastModelDao, Entity, TenantApiException> {
 
+    // Transport channel notified once new entries are committed
+    public static final String BROADCAST_CHANNEL = "tenant_broadcasts";
+
     public List<TenantBroadcastModelDao> getLatestEntriesFrom(final Long recordId);
 
     public TenantBroadcastModelDao getLatestEntry();
@@ -17,17 +17,35 @@
 
 package org.killbill.billing.usage.api.svcs;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.joda.time.LocalDate;
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.usage.InternalUserApi;
 import org.killbill.billing.usage.RawUsage;
+import org.killbill.billing.usage.RejectedUsageRecord;
+import org.killbill.billing.usage.api.SubscriptionUsageRecord;
+import org.killbill.billing.usage.api.UnitUsageRecord;
+import org.killbill.billing.usage.api.UsageRecord;
 import org.killbill.billing.usage.dao.RolledUpUsageDao;
 import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
+import org.killbill.billing.usage.dao.RolledUpUsageTotalModelDao;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
@@ -35,22 +53,103 @@ import com.google.common.collect.Iterables;
 
 public class DefaultInternalUserApi implements InternalUserApi {
 
+    private static final Logger log = LoggerFactory.getLogger(DefaultInternalUserApi.class);
+
     private final RolledUpUsageDao rolledUpUsageDao;
+    private final InternalCallContextFactory internalCallContextFactory;
 
     @Inject
-    public DefaultInternalUserApi(final RolledUpUsageDao rolledUpUsageDao) {
+    public DefaultInternalUserApi(final RolledUpUsageDao rolledUpUsageDao,
+                                  final InternalCallContextFactory internalCallContextFactory) {
         this.rolledUpUsageDao = rolledUpUsageDao;
+        this.internalCallContextFactory = internalCallContextFactory;
     }
 
     @Override
     public List<RawUsage> getRawUsageForAccount(final LocalDate stateDate, final LocalDate endDate, final InternalTenantContext internalTenantContext) {
-        final List<RolledUpUsageModelDao> usage = rolledUpUsageDao.getRawUsageForAccount(stateDate, endDate, internalTenantContext);
-        return ImmutableList.copyOf(Iterables.transform(usage, new Function<RolledUpUsageModelDao, RawUsage>() {
+        // Daily totals, sorted by date: one entry per subscription, unit type and day, regardless of the number of raw records
+        final List<RolledUpUsageTotalModelDao> usage = rolledUpUsageDao.getDailyUsageTotalsForAccount(stateDate, endDate, internalTenantContext);
+        return toRawUsage(usage);
+    }
+
+    @Override
+    public List<RawUsage> getRawUsageForAccount(final LocalDate startDate, final LocalDate endDate, final Collection<LocalDate> periodStartDates, final InternalTenantContext internalTenantContext) {
+        // Monthly totals for the calendar months not split by a billing period, daily totals otherwise
+        final List<RolledUpUsageTotalModelDao> usage = rolledUpUsageDao.getUsageTotalsForAccount(startDate, endDate, periodStartDates, internalTenantContext);
+        return toRawUsage(usage);
+    }
+
+    @Override
+    public List<RejectedUsageRecord> recordRolledUpUsage(final Iterable<SubscriptionUsageRecord> records, final CallContext context) {
+        final List<RejectedUsageRecord> rejectedRecords = new LinkedList<RejectedUsageRecord>();
+        final List<RolledUpUsageModelDao> rolledUpUsages = new LinkedList<RolledUpUsageModelDao>();
+        // Batches typically contain many records for the same subscriptions: resolve each of them (and its account) only once
+        final Map<UUID, InternalCallContext> internalCallContextPerSubscriptionId = new HashMap<UUID, InternalCallContext>();
+        final Set<UUID> unknownSubscriptionIds = new HashSet<UUID>();
+        for (final SubscriptionUsageRecord record : records) {
+            final UUID subscriptionId = record.getSubscriptionId();
+            if (subscriptionId == null) {
+                rejectedRecords.add(new DefaultRejectedUsageRecord(null, null, null, null, "subscriptionId needs to be set"));
+                continue;
+            }
+
+            InternalCallContext internalCallContext = internalCallContextPerSubscriptionId.get(subscriptionId);
+            if (internalCallContext == null && !unknownSubscriptionIds.contains(subscriptionId)) {
+                try {
+                    internalCallContext = internalCallContextFactory.createInternalCallContext(subscriptionId, ObjectType.SUBSCRIPTION, context);
+                    internalCallContextPerSubscriptionId.put(subscriptionId, internalCallContext);
+                } catch (final IllegalStateException e) {
+                    log.warn("Rejecting usage for subscriptionId " + subscriptionId, e);
+                    unknownSubscriptionIds.add(subscriptionId);
+                }
+            }
+            if (internalCallContext == null) {
+                rejectedRecords.add(new DefaultRejectedUsageRecord(subscriptionId, null, null, null, "Unknown subscription"));
+                continue;
+            }
+
+            for (final UnitUsageRecord unitUsageRecord : record.getUnitUsageRecord()) {
+                for (final UsageRecord usageRecord : unitUsageRecord.getDailyAmount()) {
+                    final String rejectionReason = validateUsageRecord(unitUsageRecord.getUnitType(), usageRecord);
+                    if (rejectionReason != null) {
+                        rejectedRecords.add(new DefaultRejectedUsageRecord(subscriptionId, unitUsageRecord.getUnitType(), usageRecord.getDate(), usageRecord.getAmount(), rejectionReason));
+                        continue;
+                    }
+
+                    final RolledUpUsageModelDao rolledUpUsage = new RolledUpUsageModelDao(subscriptionId, unitUsageRecord.getUnitType(), usageRecord.getDate(), usageRecord.getAmount());
+                    rolledUpUsage.setAccountRecordId(internalCallContext.getAccountRecordId());
+                    rolledUpUsage.setTenantRecordId(internalCallContext.getTenantRecordId());
+                    rolledUpUsage.setCreatedDate(internalCallContext.getCreatedDate());
+                    rolledUpUsages.add(rolledUpUsage);
+                }
+            }
+        }
+
+        if (!rolledUpUsages.isEmpty()) {
+            rolledUpUsageDao.record(rolledUpUsages, internalCallContextFactory.createInternalCallContext(context));
+        }
+        return rejectedRecords;
+    }
+
+    private List<RawUsage> toRawUsage(final Iterable<RolledUpUsageTotalModelDao> usage) {
+        return ImmutableList.copyOf(Iterables.transform(usage, new Function<RolledUpUsageTotalModelDao, RawUsage>() {
             @Nullable
             @Override
-            public RawUsage apply(final RolledUpUsageModelDao input) {
-                return new DefaultRawUsage(input.getSubscriptionId(), input.getRecordDate(), input.getUnitType(), input.getAmount());
+            public RawUsage apply(final RolledUpUsageTotalModelDao input) {
+                return new DefaultRawUsage(input.getSubscriptionId(), input.getPeriodStart(), input.getUnitType(), input.getAmount());
             }
         }));
     }
+
+    private String validateUsageRecord(final String unitType, final UsageRecord usageRecord) {
+        if (unitType == null || unitType.isEmpty()) {
+            return "unitType needs to be set";
+        } else if (usageRecord.getDate() == null) {
+            return "recordDate needs to be set";
+        } else if (usageRecord.getAmount() == null || usageRecord.getAmount() < 0) {
+            return "amount needs to be positive";
+        } else {
+            return null;
+        }
+    }
 }
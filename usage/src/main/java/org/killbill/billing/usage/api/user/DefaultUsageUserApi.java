@@ -36,6 +36,7 @@ import org.killbill.billing.usage.api.UsageRecord;
 import org.killbill.billing.usage.api.UsageUserApi;
 import org.killbill.billing.usage.dao.RolledUpUsageDao;
 import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
+import org.killbill.billing.usage.dao.RolledUpUsageTotalModelDao;
 import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
@@ -55,16 +56,20 @@ public class DefaultUsageUserApi implements UsageUserApi {
     @Override
     public void recordRolledUpUsage(final SubscriptionUsageRecord record, final CallContext callContext) {
         final InternalCallContext internalCallContext = internalCallContextFactory.createInternalCallContext(record.getSubscriptionId(), ObjectType.SUBSCRIPTION, callContext);
+        final List<RolledUpUsageModelDao> rolledUpUsages = new ArrayList<RolledUpUsageModelDao>();
         for (UnitUsageRecord unitUsageRecord : record.getUnitUsageRecord()) {
             for (UsageRecord usageRecord : unitUsageRecord.getDailyAmount()) {
-                rolledUpUsageDao.record(record.getSubscriptionId(), unitUsageRecord.getUnitType(), usageRecord.getDate(), usageRecord.getAmount(), internalCallContext);
+                rolledUpUsages.add(new RolledUpUsageModelDao(record.getSubscriptionId(), unitUsageRecord.getUnitType(), usageRecord.getDate(), usageRecord.getAmount()));
             }
         }
+        if (!rolledUpUsages.isEmpty()) {
+            rolledUpUsageDao.record(rolledUpUsages, internalCallContext);
+        }
     }
 
     @Override
     public RolledUpUsage getUsageForSubscription(final UUID subscriptionId, final String unitType, final LocalDate startDate, final LocalDate endDate, final TenantContext tenantContext) {
-        final List<RolledUpUsageModelDao> usageForSubscription = rolledUpUsageDao.getUsageForSubscription(subscriptionId, startDate, endDate, unitType, internalCallContextFactory.createInternalTenantContext(tenantContext));
+        final List<RolledUpUsageTotalModelDao> usageForSubscription = rolledUpUsageDao.getUsageTotalsForSubscription(subscriptionId, startDate, endDate, unitType, internalCallContextFactory.createInternalTenantContext(tenantContext));
         final List<RolledUpUnit> rolledUpAmount = getRolledUpUnits(usageForSubscription);
         return new DefaultRolledUpUsage(subscriptionId, startDate, endDate, rolledUpAmount);
     }
@@ -76,7 +81,7 @@ public class DefaultUsageUserApi implements UsageUserApi {
         LocalDate prevDate = null;
         for (LocalDate curDate : transitionTimes) {
             if (prevDate != null) {
-                final List<RolledUpUsageModelDao> usageForSubscription = rolledUpUsageDao.getAllUsageForSubscription(subscriptionId, prevDate, curDate, internalCallContext);
+                final List<RolledUpUsageTotalModelDao> usageForSubscription = rolledUpUsageDao.getUsageTotalsForSubscription(subscriptionId, prevDate, curDate, null, internalCallContext);
                 final List<RolledUpUnit> rolledUpAmount = getRolledUpUnits(usageForSubscription);
                 result.add(new DefaultRolledUpUsage(subscriptionId, prevDate, curDate, rolledUpAmount));
             }
@@ -85,9 +90,9 @@ public class DefaultUsageUserApi implements UsageUserApi {
         return result;
     }
 
-    private List<RolledUpUnit> getRolledUpUnits(final List<RolledUpUsageModelDao> usageForSubscription) {
+    private List<RolledUpUnit> getRolledUpUnits(final List<RolledUpUsageTotalModelDao> usageForSubscription) {
         final Map<String, Long> tmp = new HashMap<String, Long>();
-        for (RolledUpUsageModelDao cur : usageForSubscription) {
+        for (RolledUpUsageTotalModelDao cur : usageForSubscription) {
             Long currentAmount = tmp.get(cur.getUnitType());
             Long updatedAmount = (currentAmount != null) ? currentAmount + cur.getAmount() : cur.getAmount();
             tmp.put(cur.getUnitType(), updatedAmount);
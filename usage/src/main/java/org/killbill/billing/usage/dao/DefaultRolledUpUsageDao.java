@@ -14,32 +14,124 @@
  * under the License.
  */
 
+
 package org.killbill.billing.usage.dao;
 
-import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.usage.dao.RolledUpUsageTotalModelDao.PeriodType;
+import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
 
 public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
 
+    private static final Logger log = LoggerFactory.getLogger(DefaultRolledUpUsageDao.class);
+
+    private static final int MAX_RECORD_ATTEMPTS = 3;
+
+    private final IDBI dbi;
     private final RolledUpUsageSqlDao rolledUpUsageSqlDao;
+    private final RolledUpUsageTotalSqlDao rolledUpUsageTotalSqlDao;
 
     @Inject
     public DefaultRolledUpUsageDao(final IDBI dbi) {
+        this.dbi = dbi;
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(RolledUpUsageTotalModelDao.class));
         this.rolledUpUsageSqlDao = dbi.onDemand(RolledUpUsageSqlDao.class);
+        this.rolledUpUsageTotalSqlDao = dbi.onDemand(RolledUpUsageTotalSqlDao.class);
     }
 
     @Override
     public void record(final UUID subscriptionId, final String unitType, final LocalDate date, final Long amount, final InternalCallContext context) {
         final RolledUpUsageModelDao rolledUpUsageModelDao = new RolledUpUsageModelDao(subscriptionId, unitType, date, amount);
-        rolledUpUsageSqlDao.create(rolledUpUsageModelDao, context);
+        record(ImmutableList.<RolledUpUsageModelDao>of(rolledUpUsageModelDao), context);
+    }
+
+    @Override
+    public void record(final Iterable<RolledUpUsageModelDao> rolledUpUsages, final InternalCallContext context) {
+        // Entries may belong to different accounts: only default the values not already set by the caller
+        for (final RolledUpUsageModelDao rolledUpUsage : rolledUpUsages) {
+            if (rolledUpUsage.getAccountRecordId() == null) {
+                rolledUpUsage.setAccountRecordId(context.getAccountRecordId());
+            }
+            if (rolledUpUsage.getTenantRecordId() == null) {
+                rolledUpUsage.setTenantRecordId(context.getTenantRecordId());
+            }
+            if (rolledUpUsage.getCreatedDate() == null) {
+                rolledUpUsage.setCreatedDate(context.getCreatedDate());
+            }
+        }
+        final List<RolledUpUsageTotalModelDao> totals = computeTotals(rolledUpUsages);
+
+        // Raw usage and totals are updated in the same transaction, each using a single JDBC batch. Two concurrent batches may
+        // both try to create the same total: the loser fails on the unique index and is retried, at which point it updates the row.
+        for (int attempt = 1; ; attempt++) {
+            try {
+                recordInTransaction(rolledUpUsages, totals, context);
+                return;
+            } catch (final RuntimeException e) {
+                if (attempt >= MAX_RECORD_ATTEMPTS || !isIntegrityConstraintViolation(e)) {
+                    throw e;
+                }
+                log.info("Concurrent creation of usage totals, retrying (attempt {})", attempt);
+            }
+        }
+    }
+
+    private void recordInTransaction(final Iterable<RolledUpUsageModelDao> rolledUpUsages, final List<RolledUpUsageTotalModelDao> totals, final InternalCallContext context) {
+        dbi.inTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                handle.attach(RolledUpUsageSqlDao.class).batchCreate(rolledUpUsages, context.getCreatedBy());
+
+                final RolledUpUsageTotalSqlDao totalSqlDao = handle.attach(RolledUpUsageTotalSqlDao.class);
+                final int[] updatedRows = totalSqlDao.addToAmounts(totals);
+                final List<RolledUpUsageTotalModelDao> newTotals = new LinkedList<RolledUpUsageTotalModelDao>();
+                for (int i = 0; i < updatedRows.length; i++) {
+                    if (updatedRows[i] == 0) {
+                        newTotals.add(totals.get(i));
+                    }
+                }
+                if (!newTotals.isEmpty()) {
+                    totalSqlDao.create(newTotals);
+                }
+                return null;
+            }
+        });
+    }
+
+    private boolean isIntegrityConstraintViolation(final Throwable e) {
+        // SQL state class 23 (integrity constraint violation) is common to MySQL, PostgreSQL and H2
+        Throwable cur = e;
+        while (cur != null) {
+            if (cur instanceof SQLException && ((SQLException) cur).getSQLState() != null && ((SQLException) cur).getSQLState().startsWith("23")) {
+                return true;
+            }
+            cur = cur.getCause() == cur ? null : cur.getCause();
+        }
+        return false;
     }
 
     @Override
@@ -56,4 +148,87 @@ public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
     public List<RolledUpUsageModelDao> getRawUsageForAccount(final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
         return rolledUpUsageSqlDao.getRawUsageForAccount(startDate.toDate(), endDate.toDate(), context);
     }
+
+    @Override
+    public List<RolledUpUsageTotalModelDao> getUsageTotalsForSubscription(final UUID subscriptionId, final LocalDate startDate, final LocalDate endDate,
+                                                                          @Nullable final String unitType, final InternalTenantContext context) {
+        // Use the monthly totals for the months fully contained in [startDate, endDate), and the daily totals for the remaining days
+        LocalDate monthsStartDate = startDate.getDayOfMonth() == 1 ? startDate : startDate.plusMonths(1).withDayOfMonth(1);
+        LocalDate monthsEndDate = endDate.withDayOfMonth(1);
+        if (!monthsStartDate.isBefore(monthsEndDate)) {
+            monthsStartDate = endDate;
+            monthsEndDate = endDate;
+        }
+
+        if (unitType == null) {
+            return rolledUpUsageTotalSqlDao.getTotalsForSubscription(subscriptionId, startDate.toDate(), monthsStartDate.toDate(), monthsEndDate.toDate(), endDate.toDate(), context);
+        } else {
+            return rolledUpUsageTotalSqlDao.getTotalsForSubscriptionAndUnitType(subscriptionId, unitType, startDate.toDate(), monthsStartDate.toDate(), monthsEndDate.toDate(), endDate.toDate(), context);
+        }
+    }
+
+    @Override
+    public List<RolledUpUsageTotalModelDao> getDailyUsageTotalsForAccount(final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+        return rolledUpUsageTotalSqlDao.getTotalsForAccount(PeriodType.DAY.toString(), startDate.toDate(), endDate.toDate(), context);
+    }
+
+    @Override
+    public List<RolledUpUsageTotalModelDao> getUsageTotalsForAccount(final LocalDate startDate, final LocalDate endDate, final Collection<LocalDate> periodStartDates, final InternalTenantContext context) {
+        final NavigableSet<LocalDate> sortedPeriodStartDates = new TreeSet<LocalDate>(periodStartDates);
+        final List<RolledUpUsageTotalModelDao> result = new LinkedList<RolledUpUsageTotalModelDao>();
+
+        // Walk the calendar months fully contained in [startDate, endDate): contiguous months not split by a billing period are read
+        // as monthly totals, everything else as daily totals (one query per segment, in date order)
+        LocalDate daysStartDate = startDate;
+        LocalDate monthStartDate = startDate.getDayOfMonth() == 1 ? startDate : startDate.plusMonths(1).withDayOfMonth(1);
+        while (!monthStartDate.plusMonths(1).isAfter(endDate)) {
+            if (isSplitByPeriodStartDate(monthStartDate, sortedPeriodStartDates)) {
+                monthStartDate = monthStartDate.plusMonths(1);
+                continue;
+            }
+
+            LocalDate monthsEndDate = monthStartDate.plusMonths(1);
+            while (!monthsEndDate.plusMonths(1).isAfter(endDate) && !isSplitByPeriodStartDate(monthsEndDate, sortedPeriodStartDates)) {
+                monthsEndDate = monthsEndDate.plusMonths(1);
+            }
+            addTotals(result, PeriodType.DAY, daysStartDate, monthStartDate, context);
+            addTotals(result, PeriodType.MONTH, monthStartDate, monthsEndDate, context);
+
+            daysStartDate = monthsEndDate;
+            monthStartDate = monthsEndDate;
+        }
+        addTotals(result, PeriodType.DAY, daysStartDate, endDate, context);
+        return result;
+    }
+
+    private boolean isSplitByPeriodStartDate(final LocalDate monthStartDate, final NavigableSet<LocalDate> sortedPeriodStartDates) {
+        final LocalDate firstPeriodStartDateInMonth = sortedPeriodStartDates.higher(monthStartDate);
+        return firstPeriodStartDateInMonth != null && firstPeriodStartDateInMonth.isBefore(monthStartDate.plusMonths(1));
+    }
+
+    private void addTotals(final List<RolledUpUsageTotalModelDao> result, final PeriodType periodType, final LocalDate startDate, final LocalDate endDate, final InternalTenantContext context) {
+        if (startDate.isBefore(endDate)) {
+            result.addAll(rolledUpUsageTotalSqlDao.getTotalsForAccount(periodType.toString(), startDate.toDate(), endDate.toDate(), context));
+        }
+    }
+
+    private List<RolledUpUsageTotalModelDao> computeTotals(final Iterable<RolledUpUsageModelDao> rolledUpUsages) {
+        final Map<String, RolledUpUsageTotalModelDao> totals = new LinkedHashMap<String, RolledUpUsageTotalModelDao>();
+        for (final RolledUpUsageModelDao rolledUpUsage : rolledUpUsages) {
+            addToTotal(totals, rolledUpUsage, PeriodType.DAY, rolledUpUsage.getRecordDate());
+            addToTotal(totals, rolledUpUsage, PeriodType.MONTH, rolledUpUsage.getRecordDate().withDayOfMonth(1));
+        }
+        return ImmutableList.<RolledUpUsageTotalModelDao>copyOf(totals.values());
+    }
+
+    private void addToTotal(final Map<String, RolledUpUsageTotalModelDao> totals, final RolledUpUsageModelDao rolledUpUsage, final PeriodType periodType, final LocalDate periodStart) {
+        final String key = rolledUpUsage.getSubscriptionId() + "/" + rolledUpUsage.getUnitType() + "/" + periodType + "/" + periodStart;
+        final RolledUpUsageTotalModelDao total = totals.get(key);
+        if (total == null) {
+            totals.put(key, new RolledUpUsageTotalModelDao(rolledUpUsage.getSubscriptionId(), rolledUpUsage.getUnitType(), periodType, periodStart, rolledUpUsage.getAmount(),
+                                                           rolledUpUsage.getCreatedDate(), rolledUpUsage.getAccountRecordId(), rolledUpUsage.getTenantRecordId()));
+        } else {
+            total.setAmount(total.getAmount() + rolledUpUsage.getAmount());
+        }
+    }
 }
@@ -16,9 +16,12 @@
 
 package org.killbill.billing.usage.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -28,10 +31,20 @@ public interface RolledUpUsageDao {
     void record(UUID subscriptionId, String unitType, LocalDate date,
                 Long amount, InternalCallContext context);
 
+    void record(Iterable<RolledUpUsageModelDao> rolledUpUsages, InternalCallContext context);
+
     List<RolledUpUsageModelDao> getUsageForSubscription(UUID subscriptionId, LocalDate startDate, LocalDate endDate, String unitType, InternalTenantContext context);
 
     List<RolledUpUsageModelDao> getAllUsageForSubscription(UUID subscriptionId, LocalDate startDate, LocalDate endDate, InternalTenantContext context);
 
 
     List<RolledUpUsageModelDao> getRawUsageForAccount(LocalDate startDate, LocalDate endDate, InternalTenantContext context);
+
+    // Mix of daily and monthly totals covering exactly [startDate, endDate), all unit types if unitType is null
+    List<RolledUpUsageTotalModelDao> getUsageTotalsForSubscription(UUID subscriptionId, LocalDate startDate, LocalDate endDate, @Nullable String unitType, InternalTenantContext context);
+
+    List<RolledUpUsageTotalModelDao> getDailyUsageTotalsForAccount(LocalDate startDate, LocalDate endDate, InternalTenantContext context);
+
+    // Monthly totals for the calendar months fully contained in [startDate, endDate) without any of the periodStartDates, daily totals otherwise
+    List<RolledUpUsageTotalModelDao> getUsageTotalsForAccount(LocalDate startDate, LocalDate endDate, Collection<LocalDate> periodStartDates, InternalTenantContext context);
 }
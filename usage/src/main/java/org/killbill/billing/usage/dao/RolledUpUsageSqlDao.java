@@ -30,6 +30,8 @@ import org.killbill.billing.util.entity.dao.EntitySqlDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.GetGeneratedKeys;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 
@@ -37,9 +39,15 @@ import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 public interface RolledUpUsageSqlDao extends EntitySqlDao<RolledUpUsageModelDao, Entity> {
 
     @SqlUpdate
-    public void create(@BindBean RolledUpUsageModelDao rolledUpUsage,
+    @GetGeneratedKeys
+    public Long create(@BindBean RolledUpUsageModelDao rolledUpUsage,
                        @InternalTenantContextBinder final InternalCallContext context);
 
+    // Account and tenant record ids, as well as the created date, are read from each entry
+    @SqlBatch
+    public void batchCreate(@BindBean Iterable<RolledUpUsageModelDao> rolledUpUsages,
+                            @Bind("userName") final String userName);
+
     @SqlQuery
     public List<RolledUpUsageModelDao> getUsageForSubscription(@Bind("subscriptionId") final UUID subscriptionId,
                                                                @Bind("startDate") final Date startDate,
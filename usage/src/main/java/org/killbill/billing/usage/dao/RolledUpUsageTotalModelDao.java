@@ -0,0 +1,190 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.dao;
+
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+/**
+ * Pre-aggregated usage: total amount for a subscription and unit type over a day, or over a calendar month.
+ * Totals are maintained on record, in the same transaction as the raw rolled_up_usage rows.
+ */
+public class RolledUpUsageTotalModelDao {
+
+    public enum PeriodType {
+        DAY,
+        MONTH
+    }
+
+    private Long recordId;
+    private UUID subscriptionId;
+    private String unitType;
+    private PeriodType periodType;
+    private LocalDate periodStart;
+    private Long amount;
+    private DateTime createdDate;
+    private DateTime updatedDate;
+    private Long accountRecordId;
+    private Long tenantRecordId;
+
+    public RolledUpUsageTotalModelDao() { /* For the DAO mapper */ }
+
+    public RolledUpUsageTotalModelDao(final UUID subscriptionId, final String unitType, final PeriodType periodType, final LocalDate periodStart, final Long amount,
+                                      final DateTime createdDate, final Long accountRecordId, final Long tenantRecordId) {
+        this.subscriptionId = subscriptionId;
+        this.unitType = unitType;
+        this.periodType = periodType;
+        this.periodStart = periodStart;
+        this.amount = amount;
+        this.createdDate = createdDate;
+        this.updatedDate = createdDate;
+        this.accountRecordId = accountRecordId;
+        this.tenantRecordId = tenantRecordId;
+    }
+
+    public Long getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(final Long recordId) {
+        this.recordId = recordId;
+    }
+
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public void setSubscriptionId(final UUID subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    public String getUnitType() {
+        return unitType;
+    }
+
+    public void setUnitType(final String unitType) {
+        this.unitType = unitType;
+    }
+
+    public PeriodType getPeriodType() {
+        return periodType;
+    }
+
+    public void setPeriodType(final PeriodType periodType) {
+        this.periodType = periodType;
+    }
+
+    public LocalDate getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(final LocalDate periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(final Long amount) {
+        this.amount = amount;
+    }
+
+    public DateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(final DateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public DateTime getUpdatedDate() {
+        return updatedDate;
+    }
+
+    public void setUpdatedDate(final DateTime updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+
+    public Long getAccountRecordId() {
+        return accountRecordId;
+    }
+
+    public void setAccountRecordId(final Long accountRecordId) {
+        this.accountRecordId = accountRecordId;
+    }
+
+    public Long getTenantRecordId() {
+        return tenantRecordId;
+    }
+
+    public void setTenantRecordId(final Long tenantRecordId) {
+        this.tenantRecordId = tenantRecordId;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RolledUpUsageTotalModelDao{");
+        sb.append("recordId=").append(recordId);
+        sb.append(", subscriptionId=").append(subscriptionId);
+        sb.append(", unitType='").append(unitType).append('\'');
+        sb.append(", periodType=").append(periodType);
+        sb.append(", periodStart=").append(periodStart);
+        sb.append(", amount=").append(amount);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final RolledUpUsageTotalModelDao that = (RolledUpUsageTotalModelDao) o;
+
+        if (subscriptionId != null ? !subscriptionId.equals(that.subscriptionId) : that.subscriptionId != null) {
+            return false;
+        }
+        if (unitType != null ? !unitType.equals(that.unitType) : that.unitType != null) {
+            return false;
+        }
+        if (periodType != that.periodType) {
+            return false;
+        }
+        if (periodStart != null ? periodStart.compareTo(that.periodStart) != 0 : that.periodStart != null) {
+            return false;
+        }
+        return amount != null ? amount.equals(that.amount) : that.amount == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = subscriptionId != null ? subscriptionId.hashCode() : 0;
+        result = 31 * result + (unitType != null ? unitType.hashCode() : 0);
+        result = 31 * result + (periodType != null ? periodType.hashCode() : 0);
+        result = 31 * result + (periodStart != null ? periodStart.hashCode() : 0);
+        result = 31 * result + (amount != null ? amount.hashCode() : 0);
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.usage.dao;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
+import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+
+@EntitySqlDaoStringTemplate
+public interface RolledUpUsageTotalSqlDao extends Transactional<RolledUpUsageTotalSqlDao>, CloseMe {
+
+    // Returns, for each entry, the number of updated rows (0 if the total doesn't exist yet)
+    @SqlBatch
+    public int[] addToAmounts(@BindBean final Iterable<RolledUpUsageTotalModelDao> totals);
+
+    @SqlBatch
+    public void create(@BindBean final Iterable<RolledUpUsageTotalModelDao> totals);
+
+    /**
+     * Daily totals in [startDate, monthsStartDate) and [monthsEndDate, endDate), monthly totals in [monthsStartDate, monthsEndDate)
+     */
+    @SqlQuery
+    public List<RolledUpUsageTotalModelDao> getTotalsForSubscription(@Bind("subscriptionId") final UUID subscriptionId,
+                                                                     @Bind("startDate") final Date startDate,
+                                                                     @Bind("monthsStartDate") final Date monthsStartDate,
+                                                                     @Bind("monthsEndDate") final Date monthsEndDate,
+                                                                     @Bind("endDate") final Date endDate,
+                                                                     @BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public List<RolledUpUsageTotalModelDao> getTotalsForSubscriptionAndUnitType(@Bind("subscriptionId") final UUID subscriptionId,
+                                                                                @Bind("unitType") final String unitType,
+                                                                                @Bind("startDate") final Date startDate,
+                                                                                @Bind("monthsStartDate") final Date monthsStartDate,
+                                                                                @Bind("monthsEndDate") final Date monthsEndDate,
+                                                                                @Bind("endDate") final Date endDate,
+                                                                                @BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public List<RolledUpUsageTotalModelDao> getTotalsForAccount(@Bind("periodType") final String periodType,
+                                                                @Bind("startDate") final Date startDate,
+                                                                @Bind("endDate") final Date endDate,
+                                                                @BindBean final InternalTenantContext context);
+}
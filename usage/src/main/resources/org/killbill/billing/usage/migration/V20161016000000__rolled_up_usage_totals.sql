@@ -0,0 +1,27 @@
+/* Pre-aggregated usage totals (see ddl.sql), backfilled from the existing raw usage */
+CREATE TABLE rolled_up_usage_totals (
+    record_id serial unique,
+    subscription_id varchar(36) NOT NULL,
+    unit_type varchar(50) NOT NULL,
+    period_type varchar(10) NOT NULL,
+    period_start date NOT NULL,
+    amount bigint NOT NULL,
+    created_date datetime NOT NULL,
+    updated_date datetime NOT NULL,
+    account_record_id bigint /*! unsigned */ not null,
+    tenant_record_id bigint /*! unsigned */ not null default 0,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE UNIQUE INDEX rolled_up_usage_totals_subscription_unit_period ON rolled_up_usage_totals(subscription_id, unit_type, period_type, period_start);
+CREATE INDEX rolled_up_usage_totals_tenant_account_record_id ON rolled_up_usage_totals(tenant_record_id, account_record_id);
+
+/* Must run while usage isn't being recorded, otherwise new records may be counted twice */
+INSERT INTO rolled_up_usage_totals (subscription_id, unit_type, period_type, period_start, amount, created_date, updated_date, account_record_id, tenant_record_id)
+SELECT subscription_id, unit_type, 'DAY', record_date, SUM(amount), UTC_TIMESTAMP(), UTC_TIMESTAMP(), account_record_id, tenant_record_id
+FROM rolled_up_usage
+GROUP BY subscription_id, unit_type, record_date, account_record_id, tenant_record_id;
+
+INSERT INTO rolled_up_usage_totals (subscription_id, unit_type, period_type, period_start, amount, created_date, updated_date, account_record_id, tenant_record_id)
+SELECT subscription_id, unit_type, 'MONTH', DATE_SUB(record_date, INTERVAL DAYOFMONTH(record_date) - 1 DAY), SUM(amount), UTC_TIMESTAMP(), UTC_TIMESTAMP(), account_record_id, tenant_record_id
+FROM rolled_up_usage
+GROUP BY subscription_id, unit_type, DATE_SUB(record_date, INTERVAL DAYOFMONTH(record_date) - 1 DAY), account_record_id, tenant_record_id;
@@ -33,7 +33,7 @@ public class UsageTestSuiteWithEmbeddedDB extends GuicyKillbillTestSuiteWithEmbe
     @Inject
     protected RolledUpUsageDao rolledUpUsageDao;
 
-    @BeforeClass(groups = "slow")
+    @BeforeClass(groups = {"slow", "load"})
     protected void beforeClass() throws Exception {
         final Injector injector = Guice.createInjector(new TestUsageModuleWithEmbeddedDB(configSource));
         injector.injectMembers(this);
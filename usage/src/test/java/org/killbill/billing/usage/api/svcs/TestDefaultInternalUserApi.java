@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.usage.api.svcs;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.usage.RejectedUsageRecord;
+import org.killbill.billing.usage.UsageTestSuiteWithEmbeddedDB;
+import org.killbill.billing.usage.api.SubscriptionUsageRecord;
+import org.killbill.billing.usage.api.UnitUsageRecord;
+import org.killbill.billing.usage.api.UsageRecord;
+import org.killbill.billing.usage.dao.RolledUpUsageModelDao;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class TestDefaultInternalUserApi extends UsageTestSuiteWithEmbeddedDB {
+
+    @Test(groups = "slow")
+    public void testRecordRolledUpUsage() {
+        final UUID subscriptionId1 = UUID.randomUUID();
+        final UUID subscriptionId2 = UUID.randomUUID();
+        final UUID unknownSubscriptionId = UUID.randomUUID();
+        final LocalDate startDate = new LocalDate(2013, 1, 1);
+
+        final InternalCallContextFactory internalCallContextFactory = Mockito.mock(InternalCallContextFactory.class);
+        Mockito.when(internalCallContextFactory.createInternalCallContext(Mockito.<UUID>any(), Mockito.eq(ObjectType.SUBSCRIPTION), Mockito.<CallContext>any())).thenReturn(internalCallContext);
+        Mockito.when(internalCallContextFactory.createInternalCallContext(Mockito.eq(unknownSubscriptionId), Mockito.eq(ObjectType.SUBSCRIPTION), Mockito.<CallContext>any())).thenThrow(new IllegalStateException("Unknown subscription"));
+        Mockito.when(internalCallContextFactory.createInternalCallContext(Mockito.<CallContext>any())).thenReturn(internalCallContext);
+        final DefaultInternalUserApi internalUserApi = new DefaultInternalUserApi(rolledUpUsageDao, internalCallContextFactory);
+
+        final List<SubscriptionUsageRecord> records = ImmutableList.<SubscriptionUsageRecord>of(createRecord(subscriptionId1, "foo", startDate, 1L),
+                                                                                                createRecord(subscriptionId1, "foo", startDate.plusDays(1), 2L),
+                                                                                                createRecord(subscriptionId1, "foo", startDate.plusDays(2), -3L),
+                                                                                                createRecord(subscriptionId2, "bar", startDate, 4L),
+                                                                                                createRecord(unknownSubscriptionId, "foo", startDate, 5L),
+                                                                                                createRecord(unknownSubscriptionId, "foo", startDate.plusDays(1), 6L));
+        final List<RejectedUsageRecord> rejectedRecords = internalUserApi.recordRolledUpUsage(records, callContext);
+
+        // Each distinct subscription is resolved once, even when it fails
+        Mockito.verify(internalCallContextFactory, Mockito.times(1)).createInternalCallContext(Mockito.eq(subscriptionId1), Mockito.eq(ObjectType.SUBSCRIPTION), Mockito.<CallContext>any());
+        Mockito.verify(internalCallContextFactory, Mockito.times(1)).createInternalCallContext(Mockito.eq(subscriptionId2), Mockito.eq(ObjectType.SUBSCRIPTION), Mockito.<CallContext>any());
+        Mockito.verify(internalCallContextFactory, Mockito.times(1)).createInternalCallContext(Mockito.eq(unknownSubscriptionId), Mockito.eq(ObjectType.SUBSCRIPTION), Mockito.<CallContext>any());
+
+        assertEquals(rejectedRecords.size(), 3);
+        assertEquals(rejectedRecords.get(0).getSubscriptionId(), subscriptionId1);
+        assertEquals(rejectedRecords.get(0).getAmount(), (Long) (-3L));
+        assertEquals(rejectedRecords.get(0).getReason(), "amount needs to be positive");
+        for (final RejectedUsageRecord rejectedRecord : rejectedRecords.subList(1, 3)) {
+            assertEquals(rejectedRecord.getSubscriptionId(), unknownSubscriptionId);
+            assertNull(rejectedRecord.getUnitType());
+            assertEquals(rejectedRecord.getReason(), "Unknown subscription");
+        }
+
+        final LocalDate endDate = startDate.plusDays(10);
+        final List<RolledUpUsageModelDao> usage1 = rolledUpUsageDao.getUsageForSubscription(subscriptionId1, startDate, endDate, "foo", internalCallContext);
+        assertEquals(usage1.size(), 2);
+        assertEquals(usage1.get(0).getAmount(), (Long) 1L);
+        assertEquals(usage1.get(1).getAmount(), (Long) 2L);
+        assertEquals(rolledUpUsageDao.getUsageForSubscription(subscriptionId2, startDate, endDate, "bar", internalCallContext).size(), 1);
+        assertEquals(rolledUpUsageDao.getAllUsageForSubscription(unknownSubscriptionId, startDate, endDate, internalCallContext).size(), 0);
+    }
+
+    private SubscriptionUsageRecord createRecord(final UUID subscriptionId, final String unitType, final LocalDate recordDate, final Long amount) {
+        final UnitUsageRecord unitUsageRecord = new UnitUsageRecord(unitType, ImmutableList.<UsageRecord>of(new UsageRecord(recordDate, amount)));
+        return new SubscriptionUsageRecord(subscriptionId, ImmutableList.<UnitUsageRecord>of(unitUsageRecord));
+    }
+}
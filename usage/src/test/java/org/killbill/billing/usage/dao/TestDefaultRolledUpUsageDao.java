@@ -17,17 +17,24 @@
 
 package org.killbill.billing.usage.dao;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import org.joda.time.LocalDate;
 import org.killbill.billing.usage.UsageTestSuiteWithEmbeddedDB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
+
 import static org.testng.Assert.assertEquals;
 
 public class TestDefaultRolledUpUsageDao extends UsageTestSuiteWithEmbeddedDB {
 
+    private static final Logger log = LoggerFactory.getLogger(TestDefaultRolledUpUsageDao.class);
+
     @Test(groups = "slow")
     public void testSimple() {
         final UUID subscriptionId = UUID.randomUUID();
@@ -96,4 +103,139 @@ public class TestDefaultRolledUpUsageDao extends UsageTestSuiteWithEmbeddedDB {
         final List<RolledUpUsageModelDao> result = rolledUpUsageDao.getUsageForSubscription(subscriptionId, startDate, endDate, unitType, internalCallContext);
         assertEquals(result.size(), 0);
     }
+
+    @Test(groups = "slow")
+    public void testBatchRecord() {
+        final UUID subscriptionId1 = UUID.randomUUID();
+        final UUID subscriptionId2 = UUID.randomUUID();
+        final String unitType = "foo";
+        final LocalDate startDate = new LocalDate(2013, 1, 1);
+        final LocalDate endDate = new LocalDate(2013, 2, 1);
+
+        rolledUpUsageDao.record(ImmutableList.<RolledUpUsageModelDao>of(new RolledUpUsageModelDao(subscriptionId1, unitType, startDate, 10L),
+                                                                        new RolledUpUsageModelDao(subscriptionId1, unitType, startDate.plusDays(1), 5L),
+                                                                        new RolledUpUsageModelDao(subscriptionId2, unitType, startDate, 7L)),
+                                internalCallContext);
+
+        final List<RolledUpUsageModelDao> result1 = rolledUpUsageDao.getUsageForSubscription(subscriptionId1, startDate, endDate, unitType, internalCallContext);
+        assertEquals(result1.size(), 2);
+        assertEquals(result1.get(0).getRecordDate().compareTo(startDate), 0);
+        assertEquals(result1.get(0).getAmount().compareTo(10L), 0);
+        assertEquals(result1.get(1).getRecordDate().compareTo(startDate.plusDays(1)), 0);
+        assertEquals(result1.get(1).getAmount().compareTo(5L), 0);
+
+        final List<RolledUpUsageModelDao> result2 = rolledUpUsageDao.getUsageForSubscription(subscriptionId2, startDate, endDate, unitType, internalCallContext);
+        assertEquals(result2.size(), 1);
+        assertEquals(result2.get(0).getAmount().compareTo(7L), 0);
+    }
+
+    // Throughput of the single-row and batch ingestion paths: not part of the default groups, numbers are logged
+    @Test(groups = "load")
+    public void testBatchRecordThroughput() {
+        final int nbRecords = 2000;
+        final LocalDate startDate = new LocalDate(2013, 1, 1);
+
+        final UUID subscriptionId1 = UUID.randomUUID();
+        long ini = System.nanoTime();
+        for (int i = 0; i < nbRecords; i++) {
+            rolledUpUsageDao.record(subscriptionId1, "foo", startDate.plusDays(i), 1L, internalCallContext);
+        }
+        final long singleRowNanos = System.nanoTime() - ini;
+
+        final UUID subscriptionId2 = UUID.randomUUID();
+        final List<RolledUpUsageModelDao> rolledUpUsages = new ArrayList<RolledUpUsageModelDao>(nbRecords);
+        for (int i = 0; i < nbRecords; i++) {
+            rolledUpUsages.add(new RolledUpUsageModelDao(subscriptionId2, "foo", startDate.plusDays(i), 1L));
+        }
+        ini = System.nanoTime();
+        rolledUpUsageDao.record(rolledUpUsages, internalCallContext);
+        final long batchNanos = System.nanoTime() - ini;
+
+        log.info("Recorded {} usage records: single-row={} records/s, batch={} records/s",
+                 new Object[]{nbRecords, nbRecords * 1000000000L / Math.max(singleRowNanos, 1), nbRecords * 1000000000L / Math.max(batchNanos, 1)});
+
+        final LocalDate endDate = startDate.plusDays(nbRecords);
+        assertEquals(rolledUpUsageDao.getAllUsageForSubscription(subscriptionId1, startDate, endDate, internalCallContext).size(), nbRecords);
+        assertEquals(rolledUpUsageDao.getAllUsageForSubscription(subscriptionId2, startDate, endDate, internalCallContext).size(), nbRecords);
+    }
+
+    @Test(groups = "slow")
+    public void testUsageTotals() {
+        final UUID subscriptionId = UUID.randomUUID();
+        final String unitType1 = "foo";
+        final String unitType2 = "bar";
+
+        rolledUpUsageDao.record(subscriptionId, unitType1, new LocalDate(2013, 1, 14), 1L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType1, new LocalDate(2013, 1, 15), 2L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType1, new LocalDate(2013, 1, 15), 3L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType1, new LocalDate(2013, 2, 10), 4L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType1, new LocalDate(2013, 3, 1), 5L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType1, new LocalDate(2013, 3, 15), 6L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType2, new LocalDate(2013, 2, 20), 7L, internalCallContext);
+
+        // Partial months only: daily totals
+        final List<RolledUpUsageTotalModelDao> january = rolledUpUsageDao.getUsageTotalsForSubscription(subscriptionId, new LocalDate(2013, 1, 15), new LocalDate(2013, 2, 1), unitType1, internalCallContext);
+        assertEquals(january.size(), 1);
+        assertEquals(january.get(0).getPeriodType(), RolledUpUsageTotalModelDao.PeriodType.DAY);
+        assertEquals(january.get(0).getAmount(), (Long) 5L);
+
+        // February is fully contained: monthly total for February, daily totals for January and March
+        final List<RolledUpUsageTotalModelDao> billingPeriod = rolledUpUsageDao.getUsageTotalsForSubscription(subscriptionId, new LocalDate(2013, 1, 15), new LocalDate(2013, 3, 15), null, internalCallContext);
+        assertEquals(sumAmounts(billingPeriod, unitType1), 2L + 3L + 4L + 5L);
+        assertEquals(sumAmounts(billingPeriod, unitType2), 7L);
+
+        final List<RolledUpUsageTotalModelDao> dailyTotals = rolledUpUsageDao.getDailyUsageTotalsForAccount(new LocalDate(2013, 1, 1), new LocalDate(2013, 4, 1), internalCallContext);
+        assertEquals(dailyTotals.size(), 6);
+        assertEquals(dailyTotals.get(1).getPeriodStart().compareTo(new LocalDate(2013, 1, 15)), 0);
+        assertEquals(dailyTotals.get(1).getAmount(), (Long) 5L);
+    }
+
+    @Test(groups = "slow")
+    public void testUsageTotalsForAccount() {
+        final UUID subscriptionId = UUID.randomUUID();
+        final String unitType = "foo";
+
+        rolledUpUsageDao.record(subscriptionId, unitType, new LocalDate(2013, 1, 14), 1L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType, new LocalDate(2013, 1, 15), 2L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType, new LocalDate(2013, 1, 15), 3L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType, new LocalDate(2013, 2, 10), 4L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType, new LocalDate(2013, 2, 20), 5L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType, new LocalDate(2013, 3, 1), 6L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType, new LocalDate(2013, 3, 20), 7L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType, new LocalDate(2013, 4, 5), 8L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType, new LocalDate(2013, 4, 25), 9L, internalCallContext);
+        rolledUpUsageDao.record(subscriptionId, unitType, new LocalDate(2013, 5, 1), 10L, internalCallContext);
+
+        // January is partial, a billing period starts in the middle of March, April starts with a billing period
+        final List<LocalDate> periodStartDates = ImmutableList.<LocalDate>of(new LocalDate(2013, 1, 15), new LocalDate(2013, 3, 15), new LocalDate(2013, 4, 1));
+        final List<RolledUpUsageTotalModelDao> totals = rolledUpUsageDao.getUsageTotalsForAccount(new LocalDate(2013, 1, 15), new LocalDate(2013, 5, 1), periodStartDates, internalCallContext);
+        assertEquals(totals.size(), 5);
+        checkTotal(totals.get(0), RolledUpUsageTotalModelDao.PeriodType.DAY, new LocalDate(2013, 1, 15), 5L);
+        checkTotal(totals.get(1), RolledUpUsageTotalModelDao.PeriodType.MONTH, new LocalDate(2013, 2, 1), 9L);
+        checkTotal(totals.get(2), RolledUpUsageTotalModelDao.PeriodType.DAY, new LocalDate(2013, 3, 1), 6L);
+        checkTotal(totals.get(3), RolledUpUsageTotalModelDao.PeriodType.DAY, new LocalDate(2013, 3, 20), 7L);
+        checkTotal(totals.get(4), RolledUpUsageTotalModelDao.PeriodType.MONTH, new LocalDate(2013, 4, 1), 17L);
+
+        // Billing periods starting on the 10th: every month is split, daily totals only
+        final List<LocalDate> midMonthPeriodStartDates = ImmutableList.<LocalDate>of(new LocalDate(2013, 1, 10), new LocalDate(2013, 2, 10), new LocalDate(2013, 3, 10), new LocalDate(2013, 4, 10));
+        final List<RolledUpUsageTotalModelDao> dailyTotals = rolledUpUsageDao.getUsageTotalsForAccount(new LocalDate(2013, 1, 15), new LocalDate(2013, 5, 1), midMonthPeriodStartDates, internalCallContext);
+        assertEquals(dailyTotals, rolledUpUsageDao.getDailyUsageTotalsForAccount(new LocalDate(2013, 1, 15), new LocalDate(2013, 5, 1), internalCallContext));
+        assertEquals(dailyTotals.size(), 7);
+    }
+
+    private void checkTotal(final RolledUpUsageTotalModelDao total, final RolledUpUsageTotalModelDao.PeriodType periodType, final LocalDate periodStart, final Long amount) {
+        assertEquals(total.getPeriodType(), periodType);
+        assertEquals(total.getPeriodStart().compareTo(periodStart), 0);
+        assertEquals(total.getAmount(), amount);
+    }
+
+    private long sumAmounts(final Iterable<RolledUpUsageTotalModelDao> totals, final String unitType) {
+        long result = 0;
+        for (final RolledUpUsageTotalModelDao total : totals) {
+            if (unitType.equals(total.getUnitType())) {
+                result += total.getAmount();
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.broadcast;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * Notifies the nodes that new entries were appended to a broadcast log (broadcasts or tenant_broadcasts tables).
+ * <p/>
+ * Notifications don't carry any data: the tables remain the source of truth, subscribers simply read the new entries right away instead of
+ * waiting for the next polling cycle. A lost notification only delays the propagation until the next (catch-up) poll.
+ */
+@ImplementedBy(LocalBroadcastTransport.class)
+public interface BroadcastTransport {
+
+    public interface BroadcastTransportListener {
+
+        // Should return quickly (e.g. schedule the read of the new entries)
+        public void onNewEntries(String channel);
+    }
+
+    /**
+     * Called by each service using the transport when it starts. The transport should accept (and process locally) publications before that.
+     */
+    public void start();
+
+    /**
+     * Called by each service using the transport when it stops: resources are released once all of them stopped.
+     */
+    public void stop();
+
+    /**
+     * Notify all the subscribers of that channel, including the local ones. Should be called once the new entries have been committed.
+     *
+     * @param channel the broadcast log name
+     */
+    public void publish(String channel);
+
+    public void subscribe(String channel, BroadcastTransportListener listener);
+
+    public void unsubscribe(String channel, BroadcastTransportListener listener);
+
+    /**
+     * @return true if the notifications reach the other nodes, in which case polling is only needed as a safety net
+     */
+    public boolean isClusterWide();
+}
@@ -18,8 +18,10 @@
 package org.killbill.billing.util.broadcast;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
@@ -27,17 +29,17 @@ import javax.inject.Inject;
 import org.killbill.billing.events.BroadcastInternalEvent;
 import org.killbill.billing.platform.api.LifecycleHandlerType;
 import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.util.broadcast.BroadcastTransport.BroadcastTransportListener;
 import org.killbill.billing.util.broadcast.dao.BroadcastDao;
 import org.killbill.billing.util.broadcast.dao.BroadcastModelDao;
 import org.killbill.billing.util.config.BroadcastConfig;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.commons.concurrent.Executors;
+import org.skife.config.TimeSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.eventbus.EventBus;
-
 public class DefaultBroadcastService implements BroadcastService {
 
     private final static int TERMINATION_TIMEOUT_SEC = 5;
@@ -49,16 +51,22 @@ public class DefaultBroadcastService implements BroadcastService {
     private final BroadcastConfig broadcastConfig;
     private final BroadcastDao broadcastDao;
     private final PersistentBus eventBus;
+    private final BroadcastTransport broadcastTransport;
+    private final AtomicBoolean catchUpPending;
 
     private AtomicLong latestRecordIdProcessed;
     private ScheduledExecutorService broadcastExecutor;
+    private BroadcastServiceRunnable broadcastServiceRunnable;
+    private BroadcastTransportListener broadcastTransportListener;
     private volatile boolean isStopped;
 
     @Inject
-    public DefaultBroadcastService(final BroadcastDao broadcastDao, final BroadcastConfig broadcastConfig, final PersistentBus eventBus) {
+    public DefaultBroadcastService(final BroadcastDao broadcastDao, final BroadcastConfig broadcastConfig, final PersistentBus eventBus, final BroadcastTransport broadcastTransport) {
         this.broadcastDao = broadcastDao;
         this.broadcastConfig = broadcastConfig;
         this.eventBus = eventBus;
+        this.broadcastTransport = broadcastTransport;
+        this.catchUpPending = new AtomicBoolean(false);
         this.isStopped = false;
     }
 
@@ -77,10 +85,30 @@ public class DefaultBroadcastService implements BroadcastService {
 
     @LifecycleHandlerType(LifecycleHandlerType.LifecycleLevel.START_SERVICE)
     public void start() {
-        final TimeUnit pendingRateUnit = broadcastConfig.getBroadcastServiceRunningRate().getUnit();
-        final long pendingPeriod = broadcastConfig.getBroadcastServiceRunningRate().getPeriod();
-        broadcastExecutor.scheduleAtFixedRate(new BroadcastServiceRunnable(this, broadcastDao, eventBus), pendingPeriod, pendingPeriod, pendingRateUnit);
-
+        broadcastServiceRunnable = new BroadcastServiceRunnable(this, broadcastDao, eventBus);
+
+        // New entries are read as soon as they are announced: polling is only a safety net for lost notifications
+        broadcastTransportListener = new BroadcastTransportListener() {
+            @Override
+            public void onNewEntries(final String channel) {
+                // Coalesce notifications received while a read is already queued
+                if (isStopped || !catchUpPending.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    broadcastExecutor.submit(broadcastServiceRunnable);
+                } catch (final RejectedExecutionException e) {
+                    catchUpPending.set(false);
+                }
+            }
+        };
+        broadcastTransport.subscribe(BroadcastDao.BROADCAST_CHANNEL, broadcastTransportListener);
+        broadcastTransport.start();
+
+        final TimeSpan rate = broadcastTransport.isClusterWide() ? broadcastConfig.getBroadcastServiceCatchUpRate() : broadcastConfig.getBroadcastServiceRunningRate();
+        final TimeUnit pendingRateUnit = rate.getUnit();
+        final long pendingPeriod = rate.getPeriod();
+        broadcastExecutor.scheduleAtFixedRate(broadcastServiceRunnable, pendingPeriod, pendingPeriod, pendingRateUnit);
     }
 
     @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
@@ -89,6 +117,10 @@ public class DefaultBroadcastService implements BroadcastService {
             logger.warn("BroadcastExecutor is already in a stopped state");
             return;
         }
+        if (broadcastTransportListener != null) {
+            broadcastTransport.unsubscribe(BroadcastDao.BROADCAST_CHANNEL, broadcastTransportListener);
+            broadcastTransport.stop();
+        }
         try {
             broadcastExecutor.shutdown();
             boolean success = broadcastExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
@@ -129,6 +161,8 @@ public class DefaultBroadcastService implements BroadcastService {
 
         @Override
         public void run() {
+            // Any notification received from now on needs a new read
+            parent.catchUpPending.set(false);
             if (parent.isStopped) {
                 return;
             }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.broadcast;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//
+// In-JVM transport: only the subscribers of this node are notified, other nodes still rely on polling.
+//
+@Singleton
+public class LocalBroadcastTransport implements BroadcastTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalBroadcastTransport.class);
+
+    private final ConcurrentMap<String, List<BroadcastTransportListener>> listeners = new ConcurrentHashMap<String, List<BroadcastTransportListener>>();
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void publish(final String channel) {
+        final List<BroadcastTransportListener> channelListeners = listeners.get(channel);
+        if (channelListeners == null) {
+            return;
+        }
+
+        for (final BroadcastTransportListener listener : channelListeners) {
+            try {
+                listener.onNewEntries(channel);
+            } catch (final RuntimeException e) {
+                logger.warn("Failed to notify listener for channel " + channel, e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(final String channel, final BroadcastTransportListener listener) {
+        List<BroadcastTransportListener> channelListeners = listeners.get(channel);
+        if (channelListeners == null) {
+            listeners.putIfAbsent(channel, new CopyOnWriteArrayList<BroadcastTransportListener>());
+            channelListeners = listeners.get(channel);
+        }
+        channelListeners.add(listener);
+    }
+
+    @Override
+    public void unsubscribe(final String channel, final BroadcastTransportListener listener) {
+        final List<BroadcastTransportListener> channelListeners = listeners.get(channel);
+        if (channelListeners != null) {
+            channelListeners.remove(listener);
+        }
+    }
+
+    @Override
+    public boolean isClusterWide() {
+        return false;
+    }
+}
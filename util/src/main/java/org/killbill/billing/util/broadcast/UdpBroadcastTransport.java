@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.broadcast;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.util.config.BroadcastConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+//
+// Best effort cluster-wide transport: the channel name is sent in a datagram to each configured peer.
+// Datagrams can be lost, the catch-up polling will pick up the new entries in that case.
+//
+// The socket is bound to the configured interface only, and datagrams which don't come from a configured peer are dropped.
+// The socket is opened by the first service which starts (TenantCacheInvalidation or DefaultBroadcastService) and closed
+// when the last one stops.
+//
+public class UdpBroadcastTransport implements BroadcastTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(UdpBroadcastTransport.class);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_CHANNEL_LENGTH = 512;
+    private static final int TERMINATION_TIMEOUT_MSEC = 5000;
+
+    private final LocalBroadcastTransport localTransport = new LocalBroadcastTransport();
+    private final InetSocketAddress bindAddress;
+    private final List<InetSocketAddress> peers;
+    private final Set<InetSocketAddress> allowedSenders;
+
+    private volatile DatagramSocket socket;
+    private Thread receiver;
+    private int nbStarts;
+
+    @Inject
+    public UdpBroadcastTransport(final BroadcastConfig broadcastConfig) {
+        this(new InetSocketAddress(broadcastConfig.getBroadcastTransportHost(), broadcastConfig.getBroadcastTransportPort()),
+             toPeers(broadcastConfig.getBroadcastTransportPeers()));
+    }
+
+    public UdpBroadcastTransport(final InetSocketAddress bindAddress, final List<InetSocketAddress> peers) {
+        this.bindAddress = bindAddress;
+        this.peers = ImmutableList.<InetSocketAddress>copyOf(peers);
+        // Peers send from the socket they listen on
+        this.allowedSenders = ImmutableSet.<InetSocketAddress>copyOf(peers);
+        this.nbStarts = 0;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (nbStarts++ > 0) {
+            return;
+        }
+
+        final DatagramSocket newSocket;
+        try {
+            newSocket = new DatagramSocket(bindAddress);
+        } catch (final SocketException e) {
+            nbStarts = 0;
+            throw new RuntimeException("Unable to bind the broadcast transport to " + bindAddress, e);
+        }
+        socket = newSocket;
+        receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive(newSocket);
+            }
+        }, "broadcast-transport-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (nbStarts == 0 || --nbStarts > 0) {
+            return;
+        }
+
+        final DatagramSocket oldSocket = socket;
+        socket = null;
+        // Unblocks the receiver
+        oldSocket.close();
+        try {
+            receiver.join(TERMINATION_TIMEOUT_MSEC);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Broadcast transport stop sequence got interrupted");
+        } finally {
+            receiver = null;
+        }
+    }
+
+    @Override
+    public void publish(final String channel) {
+        localTransport.publish(channel);
+
+        final DatagramSocket currentSocket = socket;
+        if (currentSocket == null) {
+            // Not started (or stopped): the peers will pick up the new entries on their next catch-up poll
+            return;
+        }
+
+        final byte[] data = channel.getBytes(UTF_8);
+        for (final InetSocketAddress peer : peers) {
+            try {
+                currentSocket.send(new DatagramPacket(data, data.length, peer));
+            } catch (final IOException e) {
+                logger.warn("Failed to notify peer " + peer + " for channel " + channel, e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(final String channel, final BroadcastTransportListener listener) {
+        localTransport.subscribe(channel, listener);
+    }
+
+    @Override
+    public void unsubscribe(final String channel, final BroadcastTransportListener listener) {
+        localTransport.unsubscribe(channel, listener);
+    }
+
+    @Override
+    public boolean isClusterWide() {
+        return true;
+    }
+
+    public int getLocalPort() {
+        final DatagramSocket currentSocket = socket;
+        return currentSocket == null ? -1 : currentSocket.getLocalPort();
+    }
+
+    private void receive(final DatagramSocket receiverSocket) {
+        final byte[] buffer = new byte[MAX_CHANNEL_LENGTH];
+        while (!receiverSocket.isClosed()) {
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                receiverSocket.receive(packet);
+            } catch (final IOException e) {
+                if (!receiverSocket.isClosed()) {
+                    logger.warn("Failed to receive broadcast notification", e);
+                }
+                continue;
+            }
+
+            if (!allowedSenders.contains(packet.getSocketAddress())) {
+                logger.debug("Ignoring broadcast notification from unknown sender {}", packet.getSocketAddress());
+                continue;
+            }
+            localTransport.publish(new String(packet.getData(), packet.getOffset(), packet.getLength(), UTF_8));
+        }
+    }
+
+    private static List<InetSocketAddress> toPeers(final List<String> hostAndPorts) {
+        final List<InetSocketAddress> result = new LinkedList<InetSocketAddress>();
+        for (final String hostAndPort : hostAndPorts) {
+            if (hostAndPort == null || hostAndPort.trim().isEmpty()) {
+                continue;
+            }
+            final int separator = hostAndPort.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid broadcast peer (expected host:port): " + hostAndPort);
+            }
+            result.add(new InetSocketAddress(hostAndPort.substring(0, separator).trim(), Integer.valueOf(hostAndPort.substring(separator + 1).trim())));
+        }
+        return result;
+    }
+}
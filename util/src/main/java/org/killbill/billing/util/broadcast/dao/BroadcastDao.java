@@ -21,6 +21,9 @@ import java.util.List;
 
 public interface BroadcastDao {
 
+    // Transport channel notified once new entries are committed
+    public static final String BROADCAST_CHANNEL = "broadcasts";
+
     public void create(final BroadcastModelDao broadcastModelDao);
 
     public List<BroadcastModelDao> getLatestEntriesFrom(final Long recordId);
@@ -21,6 +21,7 @@ import java.util.List;
 
 import javax.inject.Inject;
 
+import org.killbill.billing.util.broadcast.BroadcastTransport;
 import org.killbill.clock.Clock;
 import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
 import org.skife.jdbi.v2.DBI;
@@ -34,11 +35,13 @@ public class DefaultBroadcastDao implements BroadcastDao {
 
     private final IDBI dbi;
     private final Clock clock;
+    private final BroadcastTransport broadcastTransport;
 
     @Inject
-    public DefaultBroadcastDao(final IDBI dbi, final Clock clock) {
+    public DefaultBroadcastDao(final IDBI dbi, final Clock clock, final BroadcastTransport broadcastTransport) {
         this.dbi = dbi;
         this.clock = clock;
+        this.broadcastTransport = broadcastTransport;
         ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(BroadcastModelDao.class));
 
     }
@@ -53,6 +56,8 @@ public class DefaultBroadcastDao implements BroadcastDao {
                 return null;
             }
         });
+        // Only announce committed entries
+        broadcastTransport.publish(BROADCAST_CHANNEL);
     }
 
 
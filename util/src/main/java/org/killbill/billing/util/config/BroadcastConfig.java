@@ -17,6 +17,8 @@
 
 package org.killbill.billing.util.config;
 
+import java.util.List;
+
 import org.skife.config.Config;
 import org.skife.config.Default;
 import org.skife.config.Description;
@@ -29,4 +31,24 @@ public interface BroadcastConfig extends KillbillConfig {
     @Description("Rate at which broadcast service task is scheduled")
     public TimeSpan getBroadcastServiceRunningRate();
 
+    @Config("org.killbill.billing.util.broadcast.catchup.rate")
+    @Default("10s")
+    @Description("Rate at which broadcast service task is scheduled when a cluster-wide transport is configured (safety net for lost notifications, i.e. the maximum propagation delay when one is lost)")
+    public TimeSpan getBroadcastServiceCatchUpRate();
+
+    @Config("org.killbill.billing.util.broadcast.transport.host")
+    @Default("127.0.0.1")
+    @Description("Address of the interface on which broadcast notifications are received (only used if peers are configured, must be reachable by the peers)")
+    public String getBroadcastTransportHost();
+
+    @Config("org.killbill.billing.util.broadcast.transport.port")
+    @Default("9493")
+    @Description("UDP port on which broadcast notifications are received (only used if peers are configured)")
+    public int getBroadcastTransportPort();
+
+    @Config("org.killbill.billing.util.broadcast.transport.peers")
+    @Default("")
+    @Description("List of host:port of the other nodes to notify of new broadcasts (empty means polling only). Notifications from other addresses are ignored")
+    public List<String> getBroadcastTransportPeers();
+
 }
@@ -27,4 +27,9 @@ public interface CacheConfig extends KillbillConfig {
     @Description("Path to Ehcache XML configuration")
     public String getCacheConfigLocation();
 
+    @Config("org.killbill.dao.searchTokens.enabled")
+    @Default("false")
+    @Description("Whether to maintain the search_tokens lookup table, and use it to narrow down the search queries")
+    public boolean isSearchTokensEnabled();
+
 }
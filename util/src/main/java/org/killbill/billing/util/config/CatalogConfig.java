@@ -19,6 +19,7 @@ package org.killbill.billing.util.config;
 import org.skife.config.Config;
 import org.skife.config.Default;
 import org.skife.config.Description;
+import org.skife.config.TimeSpan;
 
 public interface CatalogConfig extends KillbillConfig {
 
@@ -26,4 +27,9 @@ public interface CatalogConfig extends KillbillConfig {
     @Default("SpyCarBasic.xml")
     @Description("Default Catalog location, either in the classpath or in the filesystem. For multi-tenancy, one should use APIs to load per-tenant catalog")
     String getCatalogURI();
+
+    @Config("org.killbill.catalog.plugin.cache.ttl")
+    @Default("60s")
+    @Description("How long catalogs returned by the plugins are used before asking the plugins again (0s to ask them on each call)")
+    TimeSpan getPluginCatalogCacheTtl();
 }
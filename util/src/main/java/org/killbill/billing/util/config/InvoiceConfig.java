@@ -49,4 +49,9 @@ public interface InvoiceConfig extends KillbillConfig {
     @Default("50")
     @Description("Maximum number of times the system will retry to grab global lock (with a 100ms wait each time)")
     int getMaxGlobalLockRetries();
+
+    @Config("org.killbill.invoice.incrementalGeneration")
+    @Default("false")
+    @Description("Whether invoice generation should only load and merge items past the per-subscription billed-through watermarks (full rebuild when disabled)")
+    boolean isIncrementalInvoiceGenerationEnabled();
 }
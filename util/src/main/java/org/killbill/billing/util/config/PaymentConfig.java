@@ -61,6 +61,46 @@ public interface PaymentConfig extends KillbillConfig {
     @Description("Number of threads for plugin executor dispatcher")
     int getPaymentPluginThreadNb();
 
+    @Config("org.killbill.payment.plugin.bulkhead.threads.nb")
+    @Default("20")
+    @Description("Maximum number of concurrent calls to a given payment plugin")
+    int getPaymentPluginMaxConcurrentCalls();
+
+    @Config("org.killbill.payment.plugin.bulkhead.queue.size")
+    @Default("100")
+    @Description("Maximum number of calls to a given payment plugin waiting for a thread: additional calls are rejected right away")
+    int getPaymentPluginQueueSize();
+
+    @Config("org.killbill.payment.plugin.circuitBreaker.timeouts")
+    @Default("10")
+    @Description("Number of consecutive timeouts after which calls to a given payment plugin are rejected right away (0 to disable)")
+    int getPaymentPluginCircuitBreakerTimeouts();
+
+    @Config("org.killbill.payment.plugin.circuitBreaker.delay")
+    @Default("30s")
+    @Description("Delay during which calls to a payment plugin are rejected once its circuit breaker opened, before a trial call is let through")
+    TimeSpan getPaymentPluginCircuitBreakerDelay();
+
+    @Config("org.killbill.payment.plugin.paymentInfo.timeout")
+    @Default("10s")
+    @Description("Deadline to retrieve the plugin info of multiple payments (e.g. all payments of an account): payments whose plugin info isn't available by then are returned without it")
+    TimeSpan getPaymentInfoPluginTimeout();
+
+    @Config("org.killbill.payment.plugin.paymentInfo.parallelism")
+    @Default("10")
+    @Description("Maximum number of concurrent plugin calls per request when retrieving the plugin info of multiple payments")
+    int getPaymentInfoPluginParallelism();
+
+    @Config("org.killbill.payment.plugin.paymentInfo.threads.nb")
+    @Default("20")
+    @Description("Number of threads, shared by all requests, to retrieve the plugin info of multiple payments")
+    int getPaymentInfoPluginThreadNb();
+
+    @Config("org.killbill.payment.plugin.paymentInfo.queue.size")
+    @Default("100")
+    @Description("Maximum number of plugin info calls waiting for a thread: payments whose call is rejected are returned without their plugin info")
+    int getPaymentInfoPluginQueueSize();
+
     @Config("org.killbill.payment.janitor.attempts.delay")
     @Default("12h")
     @Description("Delay before which unresolved attempt should be retried")
@@ -76,6 +116,31 @@ public interface PaymentConfig extends KillbillConfig {
     @Description("Rate at which janitor tasks are scheduled")
     TimeSpan getJanitorRunningRate();
 
+    @Config("org.killbill.payment.janitor.workers.nb")
+    @Default("0")
+    @Description("Number of janitor worker threads, notifications for a given account always being handled by the same worker (0 to process notifications in the notification queue thread)")
+    int getJanitorWorkersNb();
+
+    @Config("org.killbill.payment.janitor.workers.queue.size")
+    @Default("1000")
+    @Description("Maximum number of notifications waiting for a given janitor worker: the notification queue blocks once it is reached")
+    int getJanitorWorkersQueueSize();
+
+    @Config("org.killbill.payment.janitor.workers.submit.timeout")
+    @Default("1m")
+    @Description("Maximum time the notification queue waits for room in a saturated janitor worker: the notification is then left to its safety copy (see org.killbill.payment.janitor.workers.guard.delay)")
+    TimeSpan getJanitorWorkersSubmitTimeout();
+
+    @Config("org.killbill.payment.janitor.workers.guard.delay")
+    @Default("10m")
+    @Description("Delay of the safety copy recorded for each notification handed to a janitor worker, removed once the worker is done with it: it is processed again if the node stops before that")
+    TimeSpan getJanitorWorkersGuardDelay();
+
+    @Config("org.killbill.payment.janitor.plugin.rate")
+    @Default("0")
+    @Description("Maximum number of calls per second the janitor makes to a given payment plugin (0 for no limit)")
+    double getJanitorPluginCallsPerSecond();
+
     @Config("org.killbill.payment.invoice.plugin")
     @Default("")
     @Description("Default payment control plugin names")
@@ -20,6 +20,7 @@ import org.skife.config.Config;
 import org.skife.config.Default;
 import org.skife.config.DefaultNull;
 import org.skife.config.Description;
+import org.skife.config.TimeSpan;
 
 public interface SecurityConfig extends KillbillConfig {
 
@@ -33,6 +34,26 @@ public interface SecurityConfig extends KillbillConfig {
     @Description("Sets the number of times submitted credentials will be hashed before comparing to the credentials stored in the system")
     public Integer getShiroNbHashIterations();
 
+    @Config("org.killbill.security.shiroAuthenticationCacheMaxEntries")
+    @Default("10000")
+    @Description("Maximum number of successful authentications (stored as keyed hashes) to remember, to avoid re-hashing the credentials on each request")
+    public long getShiroAuthenticationCacheMaxEntries();
+
+    @Config("org.killbill.security.shiroAuthenticationCacheTtl")
+    @Default("1m")
+    @Description("Time to remember a successful authentication (0 to disable). Password changes and invalidations are propagated to the other nodes through the broadcast service: this is the maximum delay if that propagation fails")
+    public TimeSpan getShiroAuthenticationCacheTtl();
+
+    @Config("org.killbill.security.shiroAuthorizationCacheMaxEntries")
+    @Default("10000")
+    @Description("Maximum number of users roles and roles permissions to cache")
+    public long getShiroAuthorizationCacheMaxEntries();
+
+    @Config("org.killbill.security.shiroAuthorizationCacheTtl")
+    @Default("5m")
+    @Description("Time to cache the users roles and roles permissions (0 to disable). Role changes are propagated to the other nodes through the broadcast service: this is the maximum delay if that propagation fails")
+    public TimeSpan getShiroAuthorizationCacheTtl();
+
     // LDAP Realm
 
     @Config("org.killbill.security.ldap.userDnTemplate")
@@ -29,4 +29,9 @@ public interface TenantConfig extends KillbillConfig {
     @Description("Rate at which tenant broadcast task is scheduled")
     public TimeSpan getTenantBroadcastServiceRunningRate();
 
+    @Config("org.killbill.tenant.broadcast.catchup.rate")
+    @Default("10s")
+    @Description("Rate at which tenant broadcast task is scheduled when a cluster-wide transport is configured (safety net for lost notifications, i.e. the maximum propagation delay when one is lost)")
+    public TimeSpan getTenantBroadcastServiceCatchUpRate();
+
 }
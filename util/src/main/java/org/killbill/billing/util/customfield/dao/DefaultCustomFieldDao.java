@@ -42,7 +42,7 @@ import org.killbill.billing.util.customfield.api.DefaultCustomFieldCreationEvent
 import org.killbill.billing.util.customfield.api.DefaultCustomFieldDeletionEvent;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.entity.Pagination;
-import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
+import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.KeysetPaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntityDaoBase;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
@@ -150,15 +150,25 @@ public class DefaultCustomFieldDao extends EntityDaoBase<CustomFieldModelDao, Cu
     @Override
     public Pagination<CustomFieldModelDao> searchCustomFields(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
         return paginationHelper.getPagination(CustomFieldSqlDao.class,
-                                              new PaginationIteratorBuilder<CustomFieldModelDao, CustomField, CustomFieldSqlDao>() {
+                                              new KeysetPaginationIteratorBuilder<CustomFieldModelDao, CustomField, CustomFieldSqlDao>() {
                                                   @Override
                                                   public Long getCount(final CustomFieldSqlDao customFieldSqlDao, final InternalTenantContext context) {
-                                                      return customFieldSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return customFieldSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), ImmutableList.<String>of(), context);
                                                   }
 
                                                   @Override
                                                   public Iterator<CustomFieldModelDao> build(final CustomFieldSqlDao customFieldSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return customFieldSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return customFieldSqlDao.search(searchKey, String.format("%%%s%%", searchKey), ImmutableList.<String>of(), offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Long getRecordIdAtOffset(final CustomFieldSqlDao customFieldSqlDao, final Long offset, final InternalTenantContext context) {
+                                                      return customFieldSqlDao.searchRecordIdAtOffset(searchKey, String.format("%%%s%%", searchKey), ImmutableList.<String>of(), offset, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<CustomFieldModelDao> buildAfterRecordId(final CustomFieldSqlDao customFieldSqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return customFieldSqlDao.searchAfterRecordId(searchKey, String.format("%%%s%%", searchKey), ImmutableList.<String>of(), lastRecordId, limit, context);
                                                   }
                                               },
                                               offset,
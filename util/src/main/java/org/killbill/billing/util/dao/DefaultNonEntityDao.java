@@ -24,6 +24,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
@@ -35,7 +36,10 @@ import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
 import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
 
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 
 public class DefaultNonEntityDao implements NonEntityDao {
 
@@ -165,6 +169,18 @@ public class DefaultNonEntityDao implements NonEntityDao {
         return nonEntitySqlDao.getHistoryTargetRecordId(recordId, tableName.getTableName());
     }
 
+    @Override
+    public Long retrieveLatestAuditRecordIdForAccount(final Iterable<TableName> tableNames, final InternalTenantContext context) {
+        // audit_log.table_name is the TableName constant of the audited (history) table
+        final Iterable<String> quotedTableNames = Iterables.transform(tableNames, new Function<TableName, String>() {
+            @Override
+            public String apply(final TableName tableName) {
+                return "'" + tableName.name() + "'";
+            }
+        });
+        return nonEntitySqlDao.getLatestAuditRecordIdForAccount(Joiner.on(", ").join(quotedTableNames), context);
+    }
+
     private interface OperationRetrieval<TypeIn, TypeOut> {
 
         public TypeOut doRetrieve(final TypeIn objectOrRecordId, final ObjectType objectType);
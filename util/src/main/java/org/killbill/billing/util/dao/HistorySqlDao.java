@@ -16,16 +16,35 @@
 
 package org.killbill.billing.util.dao;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.GetGeneratedKeys;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 
 import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
+import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
 
 public interface HistorySqlDao<M extends EntityModelDao<E>, E extends Entity> {
 
+    // Returns the record_id of the new history row (audit entries point to it)
     @SqlUpdate
-    public void addHistoryFromTransaction(@EntityHistoryBinder EntityHistoryModelDao<M, E> history,
+    @GetGeneratedKeys
+    public Long addHistoryFromTransaction(@EntityHistoryBinder EntityHistoryModelDao<M, E> history,
                                           @BindBean InternalCallContext context);
+
+    @SqlBatch
+    public void addHistoriesFromTransaction(@EntityHistoryBinder Iterable<EntityHistoryModelDao<M, E>> histories,
+                                            @BindBean InternalCallContext context);
+
+    // Mappings between the history record_id and the history id (not the entity id), to link the audits of a batch
+    @SqlQuery
+    public List<RecordIdIdMappings> getHistoryRecordIdIdMappingsForIds(@UUIDCollectionBinder Collection<String> ids,
+                                                                       @BindBean InternalTenantContext context);
 }
@@ -23,6 +23,7 @@ import java.util.UUID;
 import javax.annotation.Nullable;
 
 import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.cache.CacheController;
 import org.skife.jdbi.v2.Handle;
 
@@ -50,4 +51,7 @@ public interface NonEntityDao {
 
     // This is the reverse from retrieveLastHistoryRecordIdFromTransaction; this retrieves the record_id of the object matching a given history row
     public Long retrieveHistoryTargetRecordId(final Long recordId, final TableName tableName);
+
+    // This retrieves the latest audit log entry for the account across these tables: it changes whenever one of their rows for that account is modified, on any node
+    public Long retrieveLatestAuditRecordIdForAccount(final Iterable<TableName> tableNames, final InternalTenantContext context);
 }
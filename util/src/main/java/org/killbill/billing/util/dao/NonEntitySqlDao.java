@@ -59,6 +59,10 @@ public interface NonEntitySqlDao extends Transactional<NonEntitySqlDao>, CloseMe
     @SqlQuery
     public Long getHistoryTargetRecordId(@Bind("recordId") Long recordId, @Define("tableName") final String tableName);
 
+    @SqlQuery
+    public Long getLatestAuditRecordIdForAccount(@Define("tableNames") final String tableNames,
+                                                 @BindBean final InternalTenantContext context);
+
     @SqlQuery
     public Iterable<RecordIdIdMappings> getHistoryRecordIdIdMappings(@Define("tableName") String tableName,
                                                                      @Define("historyTableName") String historyTableName,
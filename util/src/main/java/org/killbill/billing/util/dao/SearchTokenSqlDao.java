@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.dao;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+
+/**
+ * Maintenance of the search_tokens table (see SearchableEntityModelDao).
+ * <p/>
+ * Note: in the queries below, tableName always refers to the actual table name (TableName.getTableName()).
+ */
+@EntitySqlDaoStringTemplate("/org/killbill/billing/util/entity/dao/EntitySqlDao.sql.stg")
+public interface SearchTokenSqlDao {
+
+    @SqlBatch
+    public void insertSearchTokensFromTransaction(@Bind("tableName") final String tableName,
+                                                  @Bind("targetRecordId") final Long targetRecordId,
+                                                  @Bind("token") final Iterable<String> tokens,
+                                                  @BindBean final InternalCallContext context);
+
+    @SqlUpdate
+    public void deleteSearchTokensFromTransaction(@Bind("tableName") final String tableName,
+                                                  @Bind("targetRecordId") final Long targetRecordId,
+                                                  @BindBean final InternalCallContext context);
+}
@@ -16,10 +16,20 @@
 
 package org.killbill.billing.util.email.templates;
 
+import java.io.Writer;
 import java.util.Map;
 
 public interface TemplateEngine {
 
     public String executeTemplateText(final String templateText, final Map<String, Object> data);
 
+    // Compiled templates are immutable and can be cached and shared across threads
+    public CompiledTemplate compileTemplateText(final String templateText);
+
+    public interface CompiledTemplate {
+
+        public String execute(final Map<String, Object> data);
+
+        public void execute(final Map<String, Object> data, final Writer writer);
+    }
 }
@@ -19,6 +19,7 @@ package org.killbill.billing.util.entity;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 
@@ -32,6 +33,8 @@ public class DefaultPagination<T> implements Pagination<T> {
     private final Long totalNbRecords;
     private final Long maxNbRecords;
     private final Iterator<T> delegateIterator;
+    // record_id of the last row streamed out by the DAO (keyset paginations only)
+    private final AtomicReference<Long> lastRecordId;
 
     // Builders when the streaming API can't be used (should only be used for tests)
     // Notes: elements should be the entire records set (regardless of filtering) otherwise maxNbRecords won't be accurate
@@ -55,7 +58,8 @@ public class DefaultPagination<T> implements Pagination<T> {
 
     // Constructor for DAO -> API bridge
     public DefaultPagination(final Pagination original, final Long limit, final Iterator<T> delegate) {
-        this(original.getCurrentOffset(), limit, original.getTotalNbRecords(), original.getMaxNbRecords(), delegate);
+        this(original.getCurrentOffset(), limit, original.getTotalNbRecords(), original.getMaxNbRecords(), delegate,
+             original instanceof DefaultPagination ? ((DefaultPagination<?>) original).lastRecordId : new AtomicReference<Long>());
     }
 
     // Constructor for DAO getAll calls
@@ -66,11 +70,18 @@ public class DefaultPagination<T> implements Pagination<T> {
     public DefaultPagination(final Long currentOffset, final Long limit,
                              @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords,
                              final Iterator<T> delegateIterator) {
+        this(currentOffset, limit, totalNbRecords, maxNbRecords, delegateIterator, new AtomicReference<Long>());
+    }
+
+    public DefaultPagination(final Long currentOffset, final Long limit,
+                             @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords,
+                             final Iterator<T> delegateIterator, final AtomicReference<Long> lastRecordId) {
         this.currentOffset = currentOffset;
         this.limit = limit;
         this.totalNbRecords = totalNbRecords;
         this.maxNbRecords = maxNbRecords;
         this.delegateIterator = delegateIterator;
+        this.lastRecordId = lastRecordId;
     }
 
     @Override
@@ -98,6 +109,12 @@ public class DefaultPagination<T> implements Pagination<T> {
         }
     }
 
+    // Once the iterator has been consumed, position to resume the next page from (null if unknown)
+    @Nullable
+    public Long getLastRecordId() {
+        return lastRecordId.get();
+    }
+
     @Override
     public Long getMaxNbRecords() {
         return maxNbRecords;
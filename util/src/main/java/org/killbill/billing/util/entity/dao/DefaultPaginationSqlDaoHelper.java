@@ -19,6 +19,7 @@
 package org.killbill.billing.util.entity.dao;
 
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 
@@ -27,6 +28,9 @@ import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+
 public class DefaultPaginationSqlDaoHelper {
 
     private final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao;
@@ -40,25 +44,77 @@ public class DefaultPaginationSqlDaoHelper {
                                                                                                                      final Long offset,
                                                                                                                      final Long limit,
                                                                                                                      @Nullable final InternalTenantContext context) {
-        // Note: the connection will be busy as we stream the results out: hence we cannot use
-        // SQL_CALC_FOUND_ROWS / FOUND_ROWS on the actual query.
-        // We still need to know the actual number of results, mainly for the UI so that it knows if it needs to fetch
-        // more pages.
-        final Long count = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Long>() {
-            @Override
-            public Long inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                final EntitySqlDao<M, E> sqlDao = entitySqlDaoWrapperFactory.become(sqlDaoClazz);
-                return paginationIteratorBuilder.getCount((S) sqlDao, context);
-            }
-        });
+        final boolean isKeysetPagination = paginationIteratorBuilder instanceof KeysetPaginationIteratorBuilder && ((KeysetPaginationIteratorBuilder) paginationIteratorBuilder).isOrderedByRecordId();
+        // Set when the previous page was returned by this method (see DefaultPagination#getLastRecordId)
+        final PaginationCursor cursor = isKeysetPagination && offset > 0 ? PaginationCursor.consumePerThreadCursor(offset) : null;
+
+        final Long count;
+        if (cursor == null) {
+            // Note: the connection will be busy as we stream the results out: hence we cannot use
+            // SQL_CALC_FOUND_ROWS / FOUND_ROWS on the actual query.
+            // We still need to know the actual number of results, mainly for the UI so that it knows if it needs to fetch
+            // more pages.
+            count = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Long>() {
+                @Override
+                public Long inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                    final EntitySqlDao<M, E> sqlDao = entitySqlDaoWrapperFactory.become(sqlDaoClazz);
+                    return paginationIteratorBuilder.getCount((S) sqlDao, context);
+                }
+            });
+        } else {
+            // Counts computed for the first page
+            count = cursor.getTotalNbRecords();
+        }
 
         // We usually always want to wrap our queries in an EntitySqlDaoTransactionWrapper... except here.
         // Since we want to stream the results out, we don't want to auto-commit when this method returns.
         final EntitySqlDao<M, E> sqlDao = transactionalSqlDao.onDemandForStreamingResults(sqlDaoClazz);
-        final Long totalCount = context !=  null ? sqlDao.getCount(context) : null;
-        final Iterator<M> results = paginationIteratorBuilder.build((S) sqlDao, limit, context);
+        final Long totalCount;
+        if (cursor == null) {
+            totalCount = context != null ? sqlDao.getCount(context) : null;
+        } else {
+            totalCount = cursor.getMaxNbRecords();
+        }
+
+        final Iterator<M> results;
+        if (cursor != null) {
+            results = ((KeysetPaginationIteratorBuilder<M, E, S>) paginationIteratorBuilder).buildAfterRecordId((S) sqlDao, cursor.getLastRecordId(), limit, context);
+        } else if (offset > 0 && isKeysetPagination) {
+            results = buildAfterPreviousPage((KeysetPaginationIteratorBuilder<M, E, S>) paginationIteratorBuilder, (S) sqlDao, offset, limit, context);
+        } else {
+            results = paginationIteratorBuilder.build((S) sqlDao, limit, context);
+        }
+
+        if (!isKeysetPagination) {
+            return new DefaultPagination<M>(offset, limit, count, totalCount, results);
+        }
+
+        // Keep track of the last row streamed out, to resume the next page after it
+        final AtomicReference<Long> lastRecordId = new AtomicReference<Long>();
+        final Iterator<M> trackedResults = Iterators.<M, M>transform(results,
+                                                                     new Function<M, M>() {
+                                                                         @Override
+                                                                         public M apply(final M input) {
+                                                                             lastRecordId.set(input.getRecordId());
+                                                                             return input;
+                                                                         }
+                                                                     });
+        return new DefaultPagination<M>(offset, limit, count, totalCount, trackedResults, lastRecordId);
+    }
 
-        return new DefaultPagination<M>(offset, limit, count, totalCount, results);
+    // Same rows as OFFSET paging (on any node), but only the record_id of the skipped rows is read (from the index for gets):
+    // the full rows are then fetched by seeking past the last record of the previous page
+    private <E extends Entity, M extends EntityModelDao<E>, S extends EntitySqlDao<M, E>> Iterator<M> buildAfterPreviousPage(final KeysetPaginationIteratorBuilder<M, E, S> paginationIteratorBuilder,
+                                                                                                                              final S sqlDao,
+                                                                                                                              final Long offset,
+                                                                                                                              final Long limit,
+                                                                                                                              @Nullable final InternalTenantContext context) {
+        final Long lastRecordId = paginationIteratorBuilder.getRecordIdAtOffset(sqlDao, offset - 1, context);
+        if (lastRecordId == null) {
+            // Past the last page
+            return Iterators.<M>emptyIterator();
+        }
+        return paginationIteratorBuilder.buildAfterRecordId(sqlDao, lastRecordId, limit, context);
     }
 
     public abstract static class PaginationIteratorBuilder<M extends EntityModelDao<E>, E extends Entity, S extends EntitySqlDao<M, E>> {
@@ -70,4 +126,18 @@ public class DefaultPaginationSqlDaoHelper {
 
         public abstract Iterator<M> build(final S sqlDao, final Long limit, final InternalTenantContext context);
     }
+
+    // For queries ordered by record_id, which can be resumed after the last record of the previous page (keyset pagination)
+    public abstract static class KeysetPaginationIteratorBuilder<M extends EntityModelDao<E>, E extends Entity, S extends EntitySqlDao<M, E>> extends PaginationIteratorBuilder<M, E, S> {
+
+        // Whether the results of build are ordered by record_id: if not, OFFSET paging is used
+        public boolean isOrderedByRecordId() {
+            return true;
+        }
+
+        // record_id of the row at that (0-based) offset, for the same query as build, null if there are less rows
+        public abstract Long getRecordIdAtOffset(final S sqlDao, final Long offset, final InternalTenantContext context);
+
+        public abstract Iterator<M> buildAfterRecordId(final S sqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context);
+    }
 }
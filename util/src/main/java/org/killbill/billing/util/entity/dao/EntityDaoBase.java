@@ -26,10 +26,12 @@ import org.killbill.billing.util.audit.ChangeType;
 import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
-import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
+import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.KeysetPaginationIteratorBuilder;
 
 public abstract class EntityDaoBase<M extends EntityModelDao<E>, E extends Entity, U extends BillingExceptionBase> implements EntityDao<M, E, U> {
 
+    private static final String RECORD_ID_ORDERING = "record_id";
+
     protected final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao;
     protected final DefaultPaginationSqlDaoHelper paginationHelper;
 
@@ -77,7 +79,7 @@ public abstract class EntityDaoBase<M extends EntityModelDao<E>, E extends Entit
     protected abstract U generateAlreadyExistsException(final M entity, final InternalCallContext context);
 
     protected String getNaturalOrderingColumns() {
-        return "record_id";
+        return RECORD_ID_ORDERING;
     }
 
     @Override
@@ -134,7 +136,7 @@ public abstract class EntityDaoBase<M extends EntityModelDao<E>, E extends Entit
     @Override
     public Pagination<M> get(final Long offset, final Long limit, final InternalTenantContext context) {
         return paginationHelper.getPagination(realSqlDao,
-                                              new PaginationIteratorBuilder<M, E, EntitySqlDao<M, E>>() {
+                                              new KeysetPaginationIteratorBuilder<M, E, EntitySqlDao<M, E>>() {
                                                   @Override
                                                   public Long getCount(final EntitySqlDao<M, E> sqlDao, final InternalTenantContext context) {
                                                       return sqlDao.getCount(context);
@@ -144,6 +146,21 @@ public abstract class EntityDaoBase<M extends EntityModelDao<E>, E extends Entit
                                                   public Iterator<M> build(final EntitySqlDao<M, E> sqlDao, final Long limit, final InternalTenantContext context) {
                                                       return sqlDao.get(offset, limit, getNaturalOrderingColumns(), context);
                                                   }
+
+                                                  @Override
+                                                  public boolean isOrderedByRecordId() {
+                                                      return RECORD_ID_ORDERING.equals(getNaturalOrderingColumns());
+                                                  }
+
+                                                  @Override
+                                                  public Long getRecordIdAtOffset(final EntitySqlDao<M, E> sqlDao, final Long offset, final InternalTenantContext context) {
+                                                      return sqlDao.getRecordIdAtOffset(offset, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<M> buildAfterRecordId(final EntitySqlDao<M, E> sqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return sqlDao.getAfterRecordId(lastRecordId, limit, context);
+                                                  }
                                               },
                                               offset,
                                               limit,
@@ -18,6 +18,7 @@
 
 package org.killbill.billing.util.entity.dao;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -30,10 +31,15 @@ import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CachableKey;
 import org.killbill.billing.util.dao.AuditSqlDao;
 import org.killbill.billing.util.dao.HistorySqlDao;
+import org.killbill.billing.util.dao.RecordIdIdMappings;
+import org.killbill.billing.util.dao.SearchTokenSqlDao;
 import org.killbill.billing.util.entity.Entity;
+import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
 import org.killbill.commons.jdbi.statement.SmartFetchSize;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.GetGeneratedKeys;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.customizers.Define;
@@ -41,12 +47,25 @@ import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
 
 @EntitySqlDaoStringTemplate
-public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> extends AuditSqlDao, HistorySqlDao<M, E>, Transactional<EntitySqlDao<M, E>>, CloseMe {
+public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> extends AuditSqlDao, HistorySqlDao<M, E>, SearchTokenSqlDao, Transactional<EntitySqlDao<M, E>>, CloseMe {
 
+    // Returns the generated record_id, which saves a round trip when recording history and audits
     @SqlUpdate
+    @GetGeneratedKeys
     @Audited(ChangeType.INSERT)
-    public void create(@BindBean final M entity,
-                       @BindBean final InternalCallContext context) throws EntityPersistenceException;
+    public Long create(@BindBean final M entity,
+                     @BindBean final InternalCallContext context) throws EntityPersistenceException;
+
+    // JDBC batched flavor of create: rows are inserted in order, history and audit rows are batched as well
+    @SqlBatch
+    @Audited(ChangeType.INSERT)
+    public void createAll(@BindBean final Iterable<M> entities,
+                          @BindBean final InternalCallContext context) throws EntityPersistenceException;
+
+    // Used to retrieve the record ids of the rows inserted by createAll
+    @SqlQuery
+    public List<RecordIdIdMappings> getRecordIdIdMappingsForIds(@UUIDCollectionBinder final Collection<String> ids,
+                                                                @BindBean final InternalTenantContext context);
 
     @SqlQuery
     public M getById(@Bind("id") final String id,
@@ -67,17 +86,38 @@ public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> ext
     public Long getRecordId(@CachableKey(1) @Bind("id") final String id,
                             @BindBean final InternalTenantContext context);
 
+    // See SearchTokens for the searchTokens (only used by SearchableEntityModelDao entities)
     @SqlQuery
     @SmartFetchSize(shouldStream = true)
     public Iterator<M> search(@Bind("searchKey") final String searchKey,
                               @Bind("likeSearchKey") final String likeSearchKey,
+                              @SearchTokensBinder final Collection<String> searchTokens,
                               @Bind("offset") final Long offset,
                               @Bind("rowCount") final Long rowCount,
                               @BindBean final InternalTenantContext context);
 
+    // Keyset flavor of search: deep pages cost the same as the first one
+    @SqlQuery
+    @SmartFetchSize(shouldStream = true)
+    public Iterator<M> searchAfterRecordId(@Bind("searchKey") final String searchKey,
+                                           @Bind("likeSearchKey") final String likeSearchKey,
+                                           @SearchTokensBinder final Collection<String> searchTokens,
+                                           @Bind("lastRecordId") final Long lastRecordId,
+                                           @Bind("rowCount") final Long rowCount,
+                                           @BindBean final InternalTenantContext context);
+
+    // record_id of the search result at that offset, to resume the search after it
+    @SqlQuery
+    public Long searchRecordIdAtOffset(@Bind("searchKey") final String searchKey,
+                                       @Bind("likeSearchKey") final String likeSearchKey,
+                                       @SearchTokensBinder final Collection<String> searchTokens,
+                                       @Bind("offset") final Long offset,
+                                       @BindBean final InternalTenantContext context);
+
     @SqlQuery
     public Long getSearchCount(@Bind("searchKey") final String searchKey,
                                @Bind("likeSearchKey") final String likeSearchKey,
+                               @SearchTokensBinder final Collection<String> searchTokens,
                                @BindBean final InternalTenantContext context);
 
     @SqlQuery
@@ -91,6 +131,18 @@ public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> ext
                            @Define("orderBy") final String orderBy,
                            @BindBean final InternalTenantContext context);
 
+    // Keyset flavor of get, ordered by record_id
+    @SqlQuery
+    @SmartFetchSize(shouldStream = true)
+    public Iterator<M> getAfterRecordId(@Bind("lastRecordId") final Long lastRecordId,
+                                        @Bind("rowCount") final Long rowCount,
+                                        @BindBean final InternalTenantContext context);
+
+    // record_id of the row at that offset (ordered by record_id), to resume after it
+    @SqlQuery
+    public Long getRecordIdAtOffset(@Bind("offset") final Long offset,
+                                    @BindBean final InternalTenantContext context);
+
     @SqlQuery
     public Long getCount(@BindBean final InternalTenantContext context);
 
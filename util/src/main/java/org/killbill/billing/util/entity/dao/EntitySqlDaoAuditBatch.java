@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.dao.AuditSqlDao;
+import org.killbill.billing.util.dao.EntityAudit;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Audit entries recorded during a transaction. They are written in one JDBC batch per EntitySqlDao
+ * type when the transaction completes (or before any audit log is read from the same transaction),
+ * instead of one insert per audited statement.
+ * <p/>
+ * Entries are grouped per EntitySqlDao class, as the audit insert template can be overridden
+ * (e.g. for tables which aren't tied to an account).
+ */
+public class EntitySqlDaoAuditBatch {
+
+    private final Map<Class<?>, PendingAudits> pendingAuditsPerSqlDao = Maps.<Class<?>, PendingAudits>newLinkedHashMap();
+
+    public void add(final Class<?> sqlDaoClass, final AuditSqlDao sqlDao, final EntityAudit audit, final InternalCallContext context) {
+        PendingAudits pendingAudits = pendingAuditsPerSqlDao.get(sqlDaoClass);
+        if (pendingAudits == null) {
+            pendingAudits = new PendingAudits(sqlDao);
+            pendingAuditsPerSqlDao.put(sqlDaoClass, pendingAudits);
+        }
+        pendingAudits.audits.add(audit);
+        pendingAudits.contexts.add(context);
+    }
+
+    public boolean isEmpty() {
+        return pendingAuditsPerSqlDao.isEmpty();
+    }
+
+    public void flush() {
+        for (final PendingAudits pendingAudits : pendingAuditsPerSqlDao.values()) {
+            pendingAudits.sqlDao.insertAuditsFromTransaction(pendingAudits.audits, pendingAudits.contexts);
+        }
+        pendingAuditsPerSqlDao.clear();
+    }
+
+    private static final class PendingAudits {
+
+        private final AuditSqlDao sqlDao;
+        private final List<EntityAudit> audits = new LinkedList<EntityAudit>();
+        private final List<InternalCallContext> contexts = new LinkedList<InternalCallContext>();
+
+        private PendingAudits(final AuditSqlDao sqlDao) {
+            this.sqlDao = sqlDao;
+        }
+    }
+}
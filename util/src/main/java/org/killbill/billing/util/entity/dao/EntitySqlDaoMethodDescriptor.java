@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.cache.Cachable;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CachableKey;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.Ints;
+
+/**
+ * Reflective metadata needed by EntitySqlDaoWrapperInvocationHandler for a given (EntitySqlDao class, method) pair.
+ * <p/>
+ * Descriptors are computed the first time a method is invoked and shared across all proxies afterwards.
+ */
+final class EntitySqlDaoMethodDescriptor {
+
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<Method, EntitySqlDaoMethodDescriptor>> DESCRIPTORS = new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, EntitySqlDaoMethodDescriptor>>();
+
+    private final ObjectType objectType;
+    private final ChangeType auditedChangeType;
+    private final CacheType cacheType;
+    private final int[] cachableKeyPositions;
+    private final int[] contextPositions;
+
+    static EntitySqlDaoMethodDescriptor get(final Class<?> sqlDaoClass, final Method method) throws InstantiationException, IllegalAccessException, ClassNotFoundException {
+        ConcurrentMap<Method, EntitySqlDaoMethodDescriptor> descriptorsForSqlDao = DESCRIPTORS.get(sqlDaoClass);
+        if (descriptorsForSqlDao == null) {
+            descriptorsForSqlDao = new ConcurrentHashMap<Method, EntitySqlDaoMethodDescriptor>();
+            final ConcurrentMap<Method, EntitySqlDaoMethodDescriptor> existing = DESCRIPTORS.putIfAbsent(sqlDaoClass, descriptorsForSqlDao);
+            if (existing != null) {
+                descriptorsForSqlDao = existing;
+            }
+        }
+
+        EntitySqlDaoMethodDescriptor descriptor = descriptorsForSqlDao.get(method);
+        if (descriptor == null) {
+            // Computing it twice in case of a race is harmless
+            descriptor = new EntitySqlDaoMethodDescriptor(sqlDaoClass, method);
+            descriptorsForSqlDao.putIfAbsent(method, descriptor);
+        }
+        return descriptor;
+    }
+
+    @VisibleForTesting
+    EntitySqlDaoMethodDescriptor(final Class<?> sqlDaoClass, final Method method) throws InstantiationException, IllegalAccessException, ClassNotFoundException {
+        final Audited auditedAnnotation = method.getAnnotation(Audited.class);
+        this.auditedChangeType = auditedAnnotation != null ? auditedAnnotation.value() : null;
+
+        final Cachable cachableAnnotation = method.getAnnotation(Cachable.class);
+        this.cacheType = cachableAnnotation != null ? cachableAnnotation.value() : null;
+
+        // Only needed to build cache loader arguments
+        this.objectType = cachableAnnotation != null ? getObjectType(sqlDaoClass) : null;
+
+        // Find all arguments marked with @CachableKey, ordered by key position (CachableKey position starts at 1)
+        final Map<Integer, Integer> keyPositions = new TreeMap<Integer, Integer>();
+        final Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (int j = 0; j < annotations[i].length; j++) {
+                final Annotation annotation = annotations[i][j];
+                if (CachableKey.class.equals(annotation.annotationType())) {
+                    keyPositions.put(((CachableKey) annotation).value() - 1, i);
+                    break;
+                }
+            }
+        }
+        this.cachableKeyPositions = Ints.toArray(keyPositions.values());
+
+        // Find all arguments which may hold a context at runtime (the actual context type is only known at invocation time)
+        final List<Integer> contextPositions = new LinkedList<Integer>();
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (InternalTenantContext.class.isAssignableFrom(parameterTypes[i]) || parameterTypes[i].isAssignableFrom(InternalTenantContext.class)) {
+                contextPositions.add(i);
+            }
+        }
+        this.contextPositions = Ints.toArray(contextPositions);
+    }
+
+    /**
+     * @return the object type associated with the EntitySqlDao, if the method is @Cachable
+     */
+    @Nullable
+    public ObjectType getObjectType() {
+        return objectType;
+    }
+
+    /**
+     * @return the change type if the method is @Audited, null otherwise
+     */
+    @Nullable
+    public ChangeType getAuditedChangeType() {
+        return auditedChangeType;
+    }
+
+    /**
+     * @return the cache type if the method is @Cachable, null otherwise
+     */
+    @Nullable
+    public CacheType getCacheType() {
+        return cacheType;
+    }
+
+    /**
+     * @return the positions of the @CachableKey arguments, in key order
+     */
+    public int[] getCachableKeyPositions() {
+        return cachableKeyPositions;
+    }
+
+    /**
+     * @return the positions of the arguments which may hold a context, in argument order
+     */
+    public int[] getContextPositions() {
+        return contextPositions;
+    }
+
+    /**
+     * Extract object from sqlDaoClass by looking at first parameter type (EntityModelDao) and
+     * constructing an empty object so we can call the getObjectType method on it.
+     *
+     * @return the objectType associated to that sqlDaoClass
+     */
+    private static ObjectType getObjectType(final Class<?> sqlDaoClass) throws InstantiationException, IllegalAccessException, ClassNotFoundException {
+        int foundIndexForEntitySqlDao = -1;
+        // If the sqlDaoClass implements multiple interfaces, first figure out which one is the EntitySqlDao
+        for (int i = 0; i < sqlDaoClass.getGenericInterfaces().length; i++) {
+            final Type type = sqlDaoClass.getGenericInterfaces()[0];
+            if (!(type instanceof ParameterizedType)) {
+                // AuditSqlDao for example won't extend EntitySqlDao
+                return null;
+            }
+
+            if (EntitySqlDao.class.getName().equals(((Class) ((ParameterizedType) type).getRawType()).getName())) {
+                foundIndexForEntitySqlDao = i;
+                break;
+            }
+        }
+        // Find out from the parameters of the EntitySqlDao which one is the EntityModelDao, and extract his (sub)type to finally return the ObjectType
+        if (foundIndexForEntitySqlDao >= 0) {
+            final Type[] types = ((ParameterizedType) sqlDaoClass.getGenericInterfaces()[foundIndexForEntitySqlDao]).getActualTypeArguments();
+            int foundIndexForEntityModelDao = -1;
+            for (int i = 0; i < types.length; i++) {
+                final Class clz = ((Class) types[i]);
+                if (EntityModelDao.class.getName().equals(((Class) ((ParameterizedType) clz.getGenericInterfaces()[0]).getRawType()).getName())) {
+                    foundIndexForEntityModelDao = i;
+                    break;
+                }
+            }
+
+            if (foundIndexForEntityModelDao >= 0) {
+                final String modelClassName = ((Class) types[foundIndexForEntityModelDao]).getName();
+
+                final Class<? extends EntityModelDao<?>> clz = (Class<? extends EntityModelDao<?>>) Class.forName(modelClassName);
+
+                final EntityModelDao<?> modelDao = (EntityModelDao<?>) clz.newInstance();
+                return modelDao.getTableName().getObjectType();
+            }
+        }
+        return null;
+    }
+}
@@ -37,12 +37,19 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
     private final Clock clock;
     private final CacheControllerDispatcher cacheControllerDispatcher;
     private final NonEntityDao nonEntityDao;
+    private final boolean searchTokensEnabled;
 
     public EntitySqlDaoTransactionalJdbiWrapper(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao) {
+        this(dbi, clock, cacheControllerDispatcher, nonEntityDao, false);
+    }
+
+    // Only the DAOs writing SearchableEntityModelDao entities need to maintain the search tokens (see CacheConfig#isSearchTokensEnabled)
+    public EntitySqlDaoTransactionalJdbiWrapper(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final boolean searchTokensEnabled) {
         this.dbi = dbi;
         this.clock = clock;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.nonEntityDao = nonEntityDao;
+        this.searchTokensEnabled = searchTokensEnabled;
     }
 
     class JdbiTransaction<ReturnType, M extends EntityModelDao<E>, E extends Entity> implements Transaction<ReturnType, EntitySqlDao<M, E>> {
@@ -57,8 +64,11 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
 
         @Override
         public ReturnType inTransaction(final EntitySqlDao<M, E> transactionalSqlDao, final TransactionStatus status) throws Exception {
-            final EntitySqlDaoWrapperFactory factoryEntitySqlDao = new EntitySqlDaoWrapperFactory(h, clock, cacheControllerDispatcher, nonEntityDao);
-            return entitySqlDaoTransactionWrapper.inTransaction(factoryEntitySqlDao);
+            final EntitySqlDaoWrapperFactory factoryEntitySqlDao = new EntitySqlDaoWrapperFactory(h, clock, cacheControllerDispatcher, nonEntityDao, searchTokensEnabled);
+            final ReturnType result = entitySqlDaoTransactionWrapper.inTransaction(factoryEntitySqlDao);
+            // Audit entries are written in batch, at the end of the transaction
+            factoryEntitySqlDao.flushAudits();
+            return result;
         }
     }
 
@@ -21,32 +21,31 @@ package org.killbill.billing.util.entity.dao;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Type;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import javax.annotation.Nullable;
 
-import org.killbill.billing.ObjectType;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.audit.ChangeType;
-import org.killbill.billing.util.cache.Cachable;
 import org.killbill.billing.util.cache.Cachable.CacheType;
-import org.killbill.billing.util.cache.CachableKey;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
+import org.killbill.billing.util.dao.AuditSqlDao;
 import org.killbill.billing.util.dao.EntityAudit;
 import org.killbill.billing.util.dao.EntityHistoryModelDao;
 import org.killbill.billing.util.dao.NonEntityDao;
-import org.killbill.billing.util.dao.NonEntitySqlDao;
+import org.killbill.billing.util.dao.RecordIdIdMappings;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
@@ -60,16 +59,13 @@ import org.skife.jdbi.v2.StatementContext;
 import org.skife.jdbi.v2.exceptions.DBIException;
 import org.skife.jdbi.v2.exceptions.StatementException;
 import org.skife.jdbi.v2.sqlobject.Bind;
-import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 
 /**
  * Wraps an instance of EntitySqlDao, performing extra work around each method (Sql query)
@@ -80,6 +76,9 @@ import com.google.common.collect.Iterables;
  */
 public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>, M extends EntityModelDao<E>, E extends Entity> implements InvocationHandler {
 
+    // Keep the IN clauses used to retrieve the record ids of batched inserts reasonably sized
+    private static final int MAX_IDS_PER_QUERY = 500;
+
     private final Logger logger = LoggerFactory.getLogger(EntitySqlDaoWrapperInvocationHandler.class);
 
     private final Class<S> sqlDaoClass;
@@ -89,6 +88,8 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
     private final CacheControllerDispatcher cacheControllerDispatcher;
     private final Clock clock;
     private final NonEntityDao nonEntityDao;
+    private final EntitySqlDaoAuditBatch auditBatch;
+    private final boolean searchTokensEnabled;
     private final Profiling prof;
 
     public EntitySqlDaoWrapperInvocationHandler(final Class<S> sqlDaoClass,
@@ -97,13 +98,17 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                                                 final Clock clock,
                                                 // Special DAO that don't require caching can invoke EntitySqlDaoWrapperInvocationHandler with no caching (e.g NoCachingTenantDao)
                                                 @Nullable final CacheControllerDispatcher cacheControllerDispatcher,
-                                                @Nullable final NonEntityDao nonEntityDao) {
+                                                @Nullable final NonEntityDao nonEntityDao,
+                                                final EntitySqlDaoAuditBatch auditBatch,
+                                                final boolean searchTokensEnabled) {
         this.sqlDaoClass = sqlDaoClass;
         this.sqlDao = sqlDao;
         this.handle = handle;
         this.clock = clock;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.nonEntityDao = nonEntityDao;
+        this.auditBatch = auditBatch;
+        this.searchTokensEnabled = searchTokensEnabled;
         this.prof = new Profiling<Object, Throwable>();
     }
 
@@ -183,14 +188,18 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
 
     private Object invokeSafely(final Object proxy, final Method method, final Object[] args) throws Throwable {
 
-        final Audited auditedAnnotation = method.getAnnotation(Audited.class);
-        final Cachable cachableAnnotation = method.getAnnotation(Cachable.class);
+        final EntitySqlDaoMethodDescriptor descriptor = EntitySqlDaoMethodDescriptor.get(sqlDaoClass, method);
+
+        // Make sure audit logs read from this transaction are up-to-date
+        if (AuditSqlDao.class.equals(method.getDeclaringClass()) && !auditBatch.isEmpty()) {
+            auditBatch.flush();
+        }
 
         // This can't be AUDIT'ed and CACHABLE'd at the same time as we only cache 'get'
-        if (auditedAnnotation != null) {
-            return invokeWithAuditAndHistory(auditedAnnotation, method, args);
-        } else if (cachableAnnotation != null && cacheControllerDispatcher != null) {
-            return invokeWithCaching(cachableAnnotation, method, args);
+        if (descriptor.getAuditedChangeType() != null) {
+            return invokeWithAuditAndHistory(descriptor, method, args);
+        } else if (descriptor.getCacheType() != null && cacheControllerDispatcher != null) {
+            return invokeWithCaching(descriptor, method, args);
         } else {
             return invokeRaw(method, args);
         }
@@ -213,37 +222,21 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         });
     }
 
-    private Object invokeWithCaching(final Cachable cachableAnnotation, final Method method, final Object[] args)
+    private Object invokeWithCaching(final EntitySqlDaoMethodDescriptor descriptor, final Method method, final Object[] args)
             throws Throwable {
-        final ObjectType objectType = getObjectType();
-        final CacheType cacheType = cachableAnnotation.value();
-        final CacheController<Object, Object> cache = cacheControllerDispatcher.getCacheController(cacheType);
+        final CacheController<Object, Object> cache = cacheControllerDispatcher.getCacheController(descriptor.getCacheType());
         Object result = null;
         if (cache != null) {
-            // Find all arguments marked with @CachableKey
-            final Map<Integer, Object> keyPieces = new LinkedHashMap<Integer, Object>();
-            final Annotation[][] annotations = method.getParameterAnnotations();
-            for (int i = 0; i < annotations.length; i++) {
-                for (int j = 0; j < annotations[i].length; j++) {
-                    final Annotation annotation = annotations[i][j];
-                    if (CachableKey.class.equals(annotation.annotationType())) {
-                        // CachableKey position starts at 1
-                        keyPieces.put(((CachableKey) annotation).value() - 1, args[i]);
-                        break;
-                    }
-                }
+            // Build the Cache key from all arguments marked with @CachableKey
+            final int[] cachableKeyPositions = descriptor.getCachableKeyPositions();
+            final Object[] keyPieces = new Object[cachableKeyPositions.length];
+            for (int i = 0; i < cachableKeyPositions.length; i++) {
+                keyPieces[i] = args[cachableKeyPositions[i]];
             }
-
-            // Build the Cache key
             final String cacheKey = buildCacheKey(keyPieces);
 
-            final InternalTenantContext internalTenantContext = (InternalTenantContext) Iterables.find(ImmutableList.copyOf(args), new Predicate<Object>() {
-                @Override
-                public boolean apply(final Object input) {
-                    return input instanceof InternalTenantContext;
-                }
-            }, null);
-            final CacheLoaderArgument cacheLoaderArgument = new CacheLoaderArgument(objectType, args, internalTenantContext, handle);
+            final InternalTenantContext internalTenantContext = retrieveContextFromArguments(descriptor, args, InternalTenantContext.class);
+            final CacheLoaderArgument cacheLoaderArgument = new CacheLoaderArgument(descriptor.getObjectType(), args, internalTenantContext, handle);
             return cache.get(cacheKey, cacheLoaderArgument);
         }
         if (result == null) {
@@ -257,68 +250,17 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         return result;
     }
 
-    /**
-     * Extract object from sqlDaoClass by looking at first parameter type (EntityModelDao) and
-     * constructing an empty object so we can call the getObjectType method on it.
-     *
-     * @return the objectType associated to that handler
-     * @throws InstantiationException
-     * @throws IllegalAccessException
-     * @throws ClassNotFoundException
-     */
-    private ObjectType getObjectType() throws InstantiationException, IllegalAccessException, ClassNotFoundException {
-
-        int foundIndexForEntitySqlDao = -1;
-        // If the sqlDaoClass implements multiple interfaces, first figure out which one is the EntitySqlDao
-        for (int i = 0; i < sqlDaoClass.getGenericInterfaces().length; i++) {
-            final Type type = sqlDaoClass.getGenericInterfaces()[0];
-            if (!(type instanceof java.lang.reflect.ParameterizedType)) {
-                // AuditSqlDao for example won't extend EntitySqlDao
-                return null;
-            }
+    private Object invokeWithAuditAndHistory(final EntitySqlDaoMethodDescriptor descriptor, final Method method, final Object[] args) throws Throwable {
+        final ChangeType changeType = descriptor.getAuditedChangeType();
+        final InternalCallContext context = retrieveContextFromArguments(descriptor, args, InternalCallContext.class);
+        final List<String> entityIds = retrieveEntityIdsFromArguments(method, args);
 
-            if (EntitySqlDao.class.getName().equals(((Class) ((java.lang.reflect.ParameterizedType) type).getRawType()).getName())) {
-                foundIndexForEntitySqlDao = i;
-                break;
-            }
-        }
-        // Find out from the parameters of the EntitySqlDao which one is the EntityModelDao, and extract his (sub)type to finally return the ObjectType
-        if (foundIndexForEntitySqlDao >= 0) {
-            final Type[] types = ((java.lang.reflect.ParameterizedType) sqlDaoClass.getGenericInterfaces()[foundIndexForEntitySqlDao]).getActualTypeArguments();
-            int foundIndexForEntityModelDao = -1;
-            for (int i = 0; i < types.length; i++) {
-                final Class clz = ((Class) types[i]);
-                if (EntityModelDao.class.getName().equals(((Class) ((java.lang.reflect.ParameterizedType) clz.getGenericInterfaces()[0]).getRawType()).getName())) {
-                    foundIndexForEntityModelDao = i;
-                    break;
-                }
-            }
-
-            if (foundIndexForEntityModelDao >= 0) {
-                final String modelClassName = ((Class) types[foundIndexForEntityModelDao]).getName();
-
-                final Class<? extends EntityModelDao<?>> clz = (Class<? extends EntityModelDao<?>>) Class.forName(modelClassName);
-
-                final EntityModelDao<?> modelDao = (EntityModelDao<?>) clz.newInstance();
-                return modelDao.getTableName().getObjectType();
-            }
-        }
-        return null;
-    }
-
-    private Object invokeWithAuditAndHistory(final Audited auditedAnnotation, final Method method, final Object[] args) throws Throwable {
-        InternalCallContext context = null;
-        List<String> entityIds = null;
+        // There will be some work required after the statement is executed,
+        // get the entities before in case the change is a delete (there is nothing to fetch for inserts)
         final Map<String, M> entities = new HashMap<String, M>();
-        final Map<String, Long> entityRecordIds = new HashMap<String, Long>();
-        if (auditedAnnotation != null) {
-            // There will be some work required after the statement is executed,
-            // get the id before in case the change is a delete
-            context = retrieveContextFromArguments(args);
-            entityIds = retrieveEntityIdsFromArguments(method, args);
+        if (!ChangeType.INSERT.equals(changeType)) {
             for (final String entityId : entityIds) {
                 entities.put(entityId, sqlDao.getById(entityId, context));
-                entityRecordIds.put(entityId, sqlDao.getRecordId(entityId, context));
             }
         }
 
@@ -330,10 +272,28 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
             }
         });
 
-        final ChangeType changeType = auditedAnnotation.value();
+        // For create calls, the statement returns the generated record id: the history can be built from the model passed in,
+        // as it is what was just inserted (createdDate, updatedDate, etc. are bound from the context in both cases)
+        final M createdEntity = ChangeType.INSERT.equals(changeType) && obj instanceof Long ? retrieveModelFromArguments(args) : null;
+        if (createdEntity != null) {
+            updateHistoryAndAudit(createdEntity, (Long) obj, changeType, context);
+            updateSearchTokens(createdEntity, null, (Long) obj, changeType, context);
+            return obj;
+        }
+
+        // For batched create calls (createAll), history and audits are batched as well
+        final List<M> createdEntities = ChangeType.INSERT.equals(changeType) ? retrieveModelsFromArguments(args) : null;
+        if (createdEntities != null) {
+            updateHistoryAndAuditForBatch(createdEntities, context);
+            return obj;
+        }
 
         for (final String entityId : entityIds) {
-            updateHistoryAndAudit(entityId, entities, entityRecordIds, changeType, context);
+            // Make sure to re-hydrate the object (the statement may have modified it)
+            final M reHydratedEntity = sqlDao.getById(entityId, context);
+            final M entity = Objects.firstNonNull(reHydratedEntity, entities.get(entityId));
+            updateHistoryAndAudit(entity, entity.getRecordId(), changeType, context);
+            updateSearchTokens(entity, entities.get(entityId), entity.getRecordId(), changeType, context);
         }
         return obj;
     }
@@ -363,16 +323,10 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                rawKey;
     }
 
-    private void updateHistoryAndAudit(final String entityId, final Map<String, M> entities, final Map<String, Long> entityRecordIds,
-                                       final ChangeType changeType, final InternalCallContext context) throws Throwable {
-
+    private void updateHistoryAndAudit(final M entity, final Long entityRecordId, final ChangeType changeType, final InternalCallContext context) throws Throwable {
         prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, sqlDaoClass.getSimpleName() + " (history/audit) :", new WithProfilingCallback() {
             @Override
             public Object execute() {
-                final M reHydratedEntity = sqlDao.getById(entityId, context);
-                final Long reHydratedEntityRecordId = sqlDao.getRecordId(entityId, context);
-                final M entity = Objects.firstNonNull(reHydratedEntity, entities.get(entityId));
-                final Long entityRecordId = Objects.firstNonNull(reHydratedEntityRecordId, entityRecordIds.get(entityId));
                 final TableName tableName = entity.getTableName();
 
                 // Note: audit entries point to the history record id
@@ -383,13 +337,95 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                     historyRecordId = entityRecordId;
                 }
 
-                // Make sure to re-hydrate the object (especially needed for create calls)
                 insertAudits(tableName, entityRecordId, historyRecordId, changeType, context);
                 return null;
             }
         });
     }
 
+    private void updateHistoryAndAuditForBatch(final List<M> entities, final InternalCallContext context) throws Throwable {
+        if (entities.isEmpty()) {
+            return;
+        }
+
+        final Map<UUID, Long> recordIds = (Map<UUID, Long>) prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, sqlDaoClass.getSimpleName() + " (batch history/audit) :", new WithProfilingCallback() {
+            @Override
+            public Map<UUID, Long> execute() {
+                final TableName tableName = entities.get(0).getTableName();
+
+                // One query per chunk to retrieve the record ids generated by the batch
+                final List<String> entityIds = new ArrayList<String>(entities.size());
+                for (final M entity : entities) {
+                    entityIds.add(entity.getId().toString());
+                }
+                final Map<UUID, Long> entityRecordIds = retrieveRecordIds(entityIds, false, context);
+
+                // Note: audit entries point to the history record id
+                final Map<UUID, Long> historyRecordIds;
+                final List<EntityHistoryModelDao<M, E>> histories = new ArrayList<EntityHistoryModelDao<M, E>>(entities.size());
+                if (tableName.getHistoryTableName() != null) {
+                    final List<String> historyIds = new ArrayList<String>(entities.size());
+                    for (final M entity : entities) {
+                        final EntityHistoryModelDao<M, E> history = new EntityHistoryModelDao<M, E>(entity, entityRecordIds.get(entity.getId()), ChangeType.INSERT, clock.getUTCNow());
+                        histories.add(history);
+                        historyIds.add(history.getId().toString());
+                    }
+                    sqlDao.addHistoriesFromTransaction(histories, context);
+                    historyRecordIds = retrieveRecordIds(historyIds, true, context);
+                } else {
+                    historyRecordIds = null;
+                }
+
+                int i = 0;
+                for (final M entity : entities) {
+                    final Long entityRecordId = entityRecordIds.get(entity.getId());
+                    final Long historyRecordId = historyRecordIds != null ? historyRecordIds.get(histories.get(i).getId()) : entityRecordId;
+                    insertAudits(tableName, entityRecordId, historyRecordId, ChangeType.INSERT, context);
+                    i++;
+                }
+                return entityRecordIds;
+            }
+        });
+
+        for (final M entity : entities) {
+            updateSearchTokens(entity, null, recordIds.get(entity.getId()), ChangeType.INSERT, context);
+        }
+    }
+
+    private Map<UUID, Long> retrieveRecordIds(final List<String> ids, final boolean isHistoryTable, final InternalCallContext context) {
+        final Map<UUID, Long> recordIds = new HashMap<UUID, Long>();
+        for (final List<String> chunk : Lists.partition(ids, MAX_IDS_PER_QUERY)) {
+            final List<RecordIdIdMappings> mappings = isHistoryTable ?
+                                                      sqlDao.getHistoryRecordIdIdMappingsForIds(chunk, context) :
+                                                      sqlDao.getRecordIdIdMappingsForIds(chunk, context);
+            for (final RecordIdIdMappings mapping : mappings) {
+                recordIds.put(mapping.getId(), mapping.getRecordId());
+            }
+        }
+        return recordIds;
+    }
+
+    // Deleted entities keep their tokens: the search queries filter them out anyways
+    private void updateSearchTokens(final M entity, @Nullable final M previousEntity, final Long entityRecordId, final ChangeType changeType, final InternalCallContext context) {
+        if (!searchTokensEnabled || !(entity instanceof SearchableEntityModelDao) || ChangeType.DELETE.equals(changeType)) {
+            return;
+        }
+
+        final Set<String> tokens = SearchTokens.tokenize(((SearchableEntityModelDao) entity).getSearchableValues());
+        final String tableName = entity.getTableName().getTableName();
+        if (ChangeType.UPDATE.equals(changeType)) {
+            // Most updates (state changes, etc.) don't touch the searchable values
+            if (previousEntity != null && tokens.equals(SearchTokens.tokenize(((SearchableEntityModelDao) previousEntity).getSearchableValues()))) {
+                return;
+            }
+            sqlDao.deleteSearchTokensFromTransaction(tableName, entityRecordId, context);
+        }
+
+        if (!tokens.isEmpty()) {
+            sqlDao.insertSearchTokensFromTransaction(tableName, entityRecordId, tokens, context);
+        }
+    }
+
     private List<String> retrieveEntityIdsFromArguments(final Method method, final Object[] args) {
         final Annotation[][] parameterAnnotations = method.getParameterAnnotations();
         int i = -1;
@@ -437,25 +473,45 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         return entityIds;
     }
 
-    private InternalCallContext retrieveContextFromArguments(final Object[] args) {
+    private M retrieveModelFromArguments(final Object[] args) {
         for (final Object arg : args) {
-            if (!(arg instanceof InternalCallContext)) {
-                continue;
+            if (arg instanceof EntityModelDao) {
+                return (M) arg;
             }
-            return (InternalCallContext) arg;
         }
         return null;
     }
 
-    private Long insertHistory(final Long entityRecordId, final M entityModelDao, final ChangeType changeType, final InternalCallContext context) {
-        final EntityHistoryModelDao<M, E> history = new EntityHistoryModelDao<M, E>(entityModelDao, entityRecordId, changeType, clock.getUTCNow());
+    private List<M> retrieveModelsFromArguments(final Object[] args) {
+        for (final Object arg : args) {
+            if (arg instanceof Iterable) {
+                final List<M> models = new ArrayList<M>();
+                for (final Object object : (Iterable) arg) {
+                    if (!(object instanceof EntityModelDao)) {
+                        return null;
+                    }
+                    models.add((M) object);
+                }
+                return models;
+            }
+        }
+        return null;
+    }
 
-        sqlDao.addHistoryFromTransaction(history, context);
+    private <C extends InternalTenantContext> C retrieveContextFromArguments(final EntitySqlDaoMethodDescriptor descriptor, final Object[] args, final Class<C> contextClass) {
+        // Only look at the arguments which can hold a context, but check the actual type (a tenant context isn't a call context)
+        for (final int contextPosition : descriptor.getContextPositions()) {
+            if (contextClass.isInstance(args[contextPosition])) {
+                return contextClass.cast(args[contextPosition]);
+            }
+        }
+        return null;
+    }
 
-        final NonEntitySqlDao transactional = SqlObjectBuilder.attach(handle, NonEntitySqlDao.class);
+    private Long insertHistory(final Long entityRecordId, final M entityModelDao, final ChangeType changeType, final InternalCallContext context) {
+        final EntityHistoryModelDao<M, E> history = new EntityHistoryModelDao<M, E>(entityModelDao, entityRecordId, changeType, clock.getUTCNow());
 
-        /* return transactional.getLastHistoryRecordId(entityRecordId, entityModelDao.getHistoryTableName().getTableName()); */
-        return nonEntityDao.retrieveLastHistoryRecordIdFromTransaction(entityRecordId, entityModelDao.getHistoryTableName(), transactional);
+        return sqlDao.addHistoryFromTransaction(history, context);
     }
 
     private void insertAudits(final TableName tableName, final Long entityRecordId, final Long historyRecordId, final ChangeType changeType, final InternalCallContext contextMaybeWithoutAccountRecordId) {
@@ -469,34 +525,35 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         } else {
             context = contextMaybeWithoutAccountRecordId;
         }
-        sqlDao.insertAuditFromTransaction(audit, context);
+        // Written at the end of the transaction
+        auditBatch.add(sqlDaoClass, sqlDao, audit, context);
 
         // We need to invalidate the caches. There is a small window of doom here where caches will be stale.
         // TODO Knowledge on how the key is constructed is also in AuditSqlDao
         if (tableName.getHistoryTableName() != null) {
             final CacheController<Object, Object> cacheController = cacheControllerDispatcher.getCacheController(CacheType.AUDIT_LOG_VIA_HISTORY);
             if (cacheController != null) {
-                final String key = buildCacheKey(ImmutableMap.<Integer, Object>of(0, tableName.getHistoryTableName(), 1, tableName.getHistoryTableName(), 2, entityRecordId));
+                final String key = buildCacheKey(tableName.getHistoryTableName(), tableName.getHistoryTableName(), entityRecordId);
                 cacheController.remove(key);
             }
         } else {
             final CacheController<Object, Object> cacheController = cacheControllerDispatcher.getCacheController(CacheType.AUDIT_LOG);
             if (cacheController != null) {
-                final String key = buildCacheKey(ImmutableMap.<Integer, Object>of(0, tableName, 1, entityRecordId));
+                final String key = buildCacheKey(tableName, entityRecordId);
                 cacheController.remove(key);
             }
         }
     }
 
-    private String buildCacheKey(final Map<Integer, Object> keyPieces) {
+    private String buildCacheKey(final Object... keyPieces) {
         final StringBuilder cacheKey = new StringBuilder();
-        for (int i = 0; i < keyPieces.size(); i++) {
+        for (int i = 0; i < keyPieces.length; i++) {
             // To normalize the arguments and avoid casing issues, we make all pieces of the key uppercase.
             // Since the database engine may be case insensitive and we use arguments of the SQL method call
             // to build the key, the key has to be case insensitive as well.
-            final String str = String.valueOf(keyPieces.get(i)).toUpperCase();
+            final String str = String.valueOf(keyPieces[i]).toUpperCase();
             cacheKey.append(str);
-            if (i < keyPieces.size() - 1) {
+            if (i < keyPieces.length - 1) {
                 cacheKey.append(CacheControllerDispatcher.CACHE_KEY_SEPARATOR);
             }
         }
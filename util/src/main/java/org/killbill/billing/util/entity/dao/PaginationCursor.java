@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import javax.annotation.Nullable;
+
+// Position of the previous page (record_id of its last row) and counts returned with the first page, for the paginated call made by the current thread.
+// The user APIs only take an offset: the JAX-RS layer sets the cursor found in the next page URI around the request,
+// and DefaultPaginationSqlDaoHelper seeks past it instead of resolving the offset and recomputing the counts.
+public class PaginationCursor {
+
+    private static final ThreadLocal<PaginationCursor> perThreadCursor = new ThreadLocal<PaginationCursor>();
+
+    private final Long offset;
+    private final Long lastRecordId;
+    private final Long totalNbRecords;
+    private final Long maxNbRecords;
+
+    private PaginationCursor(final Long offset, final Long lastRecordId, @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords) {
+        this.offset = offset;
+        this.lastRecordId = lastRecordId;
+        this.totalNbRecords = totalNbRecords;
+        this.maxNbRecords = maxNbRecords;
+    }
+
+    public static void setPerThreadCursor(final Long offset, final Long lastRecordId, @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords) {
+        perThreadCursor.set(new PaginationCursor(offset, lastRecordId, totalNbRecords, maxNbRecords));
+    }
+
+    public static void resetPerThreadCursor() {
+        perThreadCursor.remove();
+    }
+
+    // The cursor is only valid for the first page requested at that offset
+    @Nullable
+    static PaginationCursor consumePerThreadCursor(final Long offset) {
+        final PaginationCursor cursor = perThreadCursor.get();
+        if (cursor == null || !cursor.offset.equals(offset)) {
+            return null;
+        }
+        perThreadCursor.remove();
+        return cursor;
+    }
+
+    public Long getLastRecordId() {
+        return lastRecordId;
+    }
+
+    @Nullable
+    public Long getTotalNbRecords() {
+        return totalNbRecords;
+    }
+
+    @Nullable
+    public Long getMaxNbRecords() {
+        return maxNbRecords;
+    }
+}
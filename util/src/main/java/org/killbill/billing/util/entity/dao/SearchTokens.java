@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.util.entity.dao;
+
+import java.text.Normalizer;
+import java.text.Normalizer.Form;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+/**
+ * Tokenization shared by the writes (see EntitySqlDaoWrapperInvocationHandler) and the search queries.
+ * <p/>
+ * The tokens are the trigrams (3 consecutive characters) of the lowercased and accent-free values, so that the index
+ * keeps the LIKE '%key%' semantics of the search queries: any substring of at least 3 characters of a value
+ * shares all of its trigrams with that value. The index only narrows down the candidates, the original
+ * predicates (see searchQuery()) are still applied to them, and keys without any trigram (shorter than 3 characters)
+ * don't use the index at all.
+ * <p/>
+ * Both the maintenance and the use of the index are controlled by org.killbill.dao.searchTokens.enabled (see CacheConfig).
+ * Rows created while it was off are indexed by SearchTokensBackfillService on the next start, but rows updated while it
+ * was off keep their previous tokens: truncate search_tokens before turning it back on.
+ */
+public class SearchTokens {
+
+    public static final int TOKEN_LENGTH = 3;
+
+    // Bounds the size of the search queries: more trigrams than that barely narrow down the candidates further
+    public static final int MAX_SEARCH_TOKENS = 8;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    // Wildcards in the search key (it is used as-is in the LIKE predicates)
+    private static final Pattern LIKE_WILDCARDS = Pattern.compile("[%_\\\\]+");
+
+    private SearchTokens() {}
+
+    public static Set<String> tokenize(final Iterable<?> values) {
+        final ImmutableSet.Builder<String> tokens = ImmutableSet.<String>builder();
+        for (final Object value : values) {
+            if (value != null) {
+                addTrigrams(normalize(value.toString()), tokens);
+            }
+        }
+        return tokens.build();
+    }
+
+    /**
+     * @param searchKey the raw search key
+     * @return the tokens that the matching rows need to have (all of them), empty if the index can't be used for that key
+     */
+    public static List<String> toSearchTokens(@Nullable final String searchKey) {
+        if (searchKey == null) {
+            return ImmutableList.<String>of();
+        }
+
+        final ImmutableSet.Builder<String> tokens = ImmutableSet.<String>builder();
+        for (final String segment : LIKE_WILDCARDS.split(normalize(searchKey))) {
+            addTrigrams(segment, tokens);
+        }
+        return ImmutableList.<String>copyOf(Iterables.limit(tokens.build(), MAX_SEARCH_TOKENS));
+    }
+
+    private static String normalize(final String value) {
+        return COMBINING_MARKS.matcher(Normalizer.normalize(value, Form.NFD)).replaceAll("").toLowerCase(Locale.ENGLISH);
+    }
+
+    // Trigrams are computed on code points, to never split a surrogate pair
+    private static void addTrigrams(final String value, final ImmutableSet.Builder<String> tokens) {
+        final int nbCodePoints = value.codePointCount(0, value.length());
+        int start = 0;
+        for (int i = 0; i + TOKEN_LENGTH <= nbCodePoints; i++) {
+            final int end = value.offsetByCodePoints(start, TOKEN_LENGTH);
+            tokens.add(value.substring(start, end));
+            start = value.offsetByCodePoints(start, 1);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.platform.api.KillbillService;
+import org.killbill.billing.platform.api.LifecycleHandlerType;
+import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.util.config.CacheConfig;
+import org.killbill.billing.util.dao.TableName;
+import org.killbill.commons.concurrent.Executors;
+import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.PreparedBatch;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Indexes the rows which don't have any search token yet, i.e. the ones created before search_tokens existed
+ * (or while it was disabled).
+ * <p/>
+ * The backfill only runs when the index is enabled (see SearchTokens), in the background, and is resumable: rows
+ * indexed by a previous run (or by the regular writes) are skipped. The rows are loaded as their model dao, so the
+ * tokens are the same as the ones maintained by the regular writes (see SearchableEntityModelDao#getSearchableValues).
+ */
+public class SearchTokensBackfillService implements KillbillService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchTokensBackfillService.class);
+
+    public static final String SEARCH_TOKENS_BACKFILL_SERVICE_NAME = "search-tokens-backfill-service";
+
+    private static final int TERMINATION_TIMEOUT_SEC = 5;
+    private static final int BATCH_SIZE = 1000;
+
+    private final IDBI dbi;
+    private final CacheConfig cacheConfig;
+    // Registered by the DAOs of the SearchableEntityModelDao entities
+    private final Map<TableName, Class<? extends EntityModelDao>> searchableTables = new ConcurrentHashMap<TableName, Class<? extends EntityModelDao>>();
+
+    private ScheduledExecutorService backfillExecutor;
+    private volatile boolean isStopped;
+
+    @Inject
+    public SearchTokensBackfillService(final IDBI dbi, final CacheConfig cacheConfig) {
+        this.dbi = dbi;
+        this.cacheConfig = cacheConfig;
+    }
+
+    @Override
+    public String getName() {
+        return SEARCH_TOKENS_BACKFILL_SERVICE_NAME;
+    }
+
+    public <M extends EntityModelDao & SearchableEntityModelDao> void registerSearchableTable(final TableName tableName, final Class<M> modelDaoClass) {
+        searchableTables.put(tableName, modelDaoClass);
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
+    public void start() {
+        if (!cacheConfig.isSearchTokensEnabled()) {
+            return;
+        }
+
+        isStopped = false;
+        backfillExecutor = Executors.newSingleThreadScheduledExecutor("SearchTokensBackfill");
+        backfillExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    backfill();
+                } catch (final RuntimeException e) {
+                    logger.warn("Failed to backfill search_tokens, it will be resumed on the next restart", e);
+                }
+            }
+        });
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
+    public void stop() {
+        isStopped = true;
+        if (backfillExecutor == null) {
+            return;
+        }
+
+        try {
+            backfillExecutor.shutdown();
+            final boolean success = backfillExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+            if (!success) {
+                logger.warn("SearchTokensBackfill failed to complete termination within " + TERMINATION_TIMEOUT_SEC + "sec");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("SearchTokensBackfill stop sequence got interrupted");
+        } finally {
+            backfillExecutor = null;
+        }
+    }
+
+    public void backfill() {
+        for (final TableName tableName : ImmutableSet.<TableName>copyOf(searchableTables.keySet())) {
+            backfill(tableName);
+        }
+    }
+
+    public int backfill(final TableName tableName) {
+        final Class<? extends EntityModelDao> modelDaoClass = searchableTables.get(tableName);
+        if (modelDaoClass == null) {
+            return 0;
+        }
+        final String query = buildQuery(tableName.getTableName());
+
+        int nbRows = 0;
+        long fromRecordId = 0L;
+        while (!isStopped) {
+            final List<? extends EntityModelDao> rows = getRowsWithoutTokens(query, modelDaoClass, fromRecordId);
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            insertTokens(tableName.getTableName(), rows);
+            nbRows += rows.size();
+            fromRecordId = rows.get(rows.size() - 1).getRecordId();
+        }
+
+        if (nbRows > 0) {
+            logger.info("Backfilled search_tokens for {} rows of table {}", nbRows, tableName.getTableName());
+        }
+        return nbRows;
+    }
+
+    private <M extends EntityModelDao> List<M> getRowsWithoutTokens(final String query, final Class<M> modelDaoClass, final long fromRecordId) {
+        return dbi.withHandle(new HandleCallback<List<M>>() {
+            @Override
+            public List<M> withHandle(final Handle handle) throws Exception {
+                handle.registerMapper(new LowerToCamelBeanMapperFactory(modelDaoClass));
+                return handle.createQuery(query)
+                             .bind("fromRecordId", fromRecordId)
+                             .bind("limit", BATCH_SIZE)
+                             .map(modelDaoClass)
+                             .list();
+            }
+        });
+    }
+
+    private void insertTokens(final String tableName, final Iterable<? extends EntityModelDao> rows) {
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                final PreparedBatch batch = handle.prepareBatch("insert into search_tokens (table_name, target_record_id, token, tenant_record_id) " +
+                                                                "values (:tableName, :targetRecordId, :token, :tenantRecordId)");
+                for (final EntityModelDao row : rows) {
+                    for (final String token : SearchTokens.tokenize(((SearchableEntityModelDao) row).getSearchableValues())) {
+                        batch.add()
+                             .bind("tableName", tableName)
+                             .bind("targetRecordId", row.getRecordId())
+                             .bind("token", token)
+                             .bind("tenantRecordId", row.getTenantRecordId());
+                    }
+                }
+
+                if (batch.size() > 0) {
+                    batch.execute();
+                }
+                return null;
+            }
+        });
+    }
+
+    private static String buildQuery(final String tableName) {
+        return "select t.* from " + tableName + " t" +
+               " where t.record_id > :fromRecordId" +
+               " and not exists (select 1 from search_tokens st where st.target_record_id = t.record_id and st.table_name = '" + tableName + "' and st.tenant_record_id = t.tenant_record_id)" +
+               " order by t.record_id" +
+               " limit :limit";
+    }
+}
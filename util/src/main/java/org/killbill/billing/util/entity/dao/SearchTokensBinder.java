@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Collection;
+
+import org.skife.jdbi.v2.SQLStatement;
+import org.skife.jdbi.v2.sqlobject.Binder;
+import org.skife.jdbi.v2.sqlobject.BinderFactory;
+import org.skife.jdbi.v2.sqlobject.BindingAnnotation;
+
+// See SearchTokens#toSearchTokens and indexedSearchCandidates() in EntitySqlDao.sql.stg
+@BindingAnnotation(SearchTokensBinder.SearchTokensBinderFactory.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.PARAMETER})
+public @interface SearchTokensBinder {
+
+    public static class SearchTokensBinderFactory implements BinderFactory {
+
+        @Override
+        public Binder build(final Annotation annotation) {
+            return new Binder<SearchTokensBinder, Collection<String>>() {
+
+                @Override
+                public void bind(final SQLStatement<?> query, final SearchTokensBinder bind, final Collection<String> searchTokens) {
+                    if (searchTokens == null || searchTokens.isEmpty()) {
+                        // The template falls back to a scan of the table
+                        return;
+                    }
+
+                    query.define("searchTokens", searchTokens);
+                    query.bind("nbSearchTokens", searchTokens.size());
+
+                    int idx = 0;
+                    for (final String searchToken : searchTokens) {
+                        query.bind("searchToken_" + idx, searchToken);
+                        idx++;
+                    }
+                }
+            };
+        }
+    }
+}
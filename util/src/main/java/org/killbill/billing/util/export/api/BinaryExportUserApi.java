@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.api;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.export.dao.ExportCheckpoint;
+
+/**
+ * Parallel export (and matching bulk import) using the binary format, for account migrations.
+ */
+public interface BinaryExportUserApi {
+
+    /**
+     * @param accountId  the account to export
+     * @param out        the stream to write to (closed once the export completes)
+     * @param resumeFrom the position returned by an interrupted export (empty to export everything)
+     * @param context    the call context
+     * @return the position reached
+     */
+    public ExportCheckpoint exportDataAsBinaryForAccount(UUID accountId, OutputStream out, ExportCheckpoint resumeFrom, CallContext context);
+
+    /**
+     * @param in      the binary export (possibly truncated) of a single account
+     * @param context the call context: the rows are imported in its tenant
+     * @return the position reached, from which the export can be resumed
+     */
+    public ExportCheckpoint importBinaryData(InputStream in, CallContext context);
+}
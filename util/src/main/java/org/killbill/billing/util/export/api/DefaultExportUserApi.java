@@ -16,8 +16,15 @@
 
 package org.killbill.billing.util.export.api;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
@@ -26,19 +33,32 @@ import org.killbill.billing.util.api.ExportUserApi;
 import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.config.ExportConfig;
+import org.killbill.billing.util.export.dao.BinaryExportOutputStream;
 import org.killbill.billing.util.export.dao.CSVExportOutputStream;
 import org.killbill.billing.util.export.dao.DatabaseExportDao;
+import org.killbill.billing.util.export.dao.DatabaseImportDao;
+import org.killbill.billing.util.export.dao.ExportCheckpoint;
 
-public class DefaultExportUserApi implements ExportUserApi {
+public class DefaultExportUserApi implements ExportUserApi, BinaryExportUserApi {
 
     private final DatabaseExportDao exportDao;
+    private final DatabaseImportDao importDao;
+    private final ExportConfig exportConfig;
     private final InternalCallContextFactory internalCallContextFactory;
+    // Shared by all binary exports, to bound the number of connections they use
+    private final ExecutorService exportExecutor;
 
     @Inject
     public DefaultExportUserApi(final DatabaseExportDao exportDao,
+                                final DatabaseImportDao importDao,
+                                final ExportConfig exportConfig,
                                 final InternalCallContextFactory internalCallContextFactory) {
         this.exportDao = exportDao;
+        this.importDao = importDao;
+        this.exportConfig = exportConfig;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.exportExecutor = createExportExecutor(exportConfig.getExportThreadNb());
     }
 
     @Override
@@ -51,4 +71,44 @@ public class DefaultExportUserApi implements ExportUserApi {
     public void exportDataAsCSVForAccount(final UUID accountId, final OutputStream out, final CallContext context) {
         exportDataForAccount(accountId, new CSVExportOutputStream(out), context);
     }
+
+    @Override
+    public ExportCheckpoint exportDataAsBinaryForAccount(final UUID accountId, final OutputStream out, final ExportCheckpoint resumeFrom, final CallContext context) {
+        final InternalCallContext internalContext = internalCallContextFactory.createInternalCallContext(accountId, context);
+        try {
+            final BinaryExportOutputStream binaryOut = new BinaryExportOutputStream(out);
+            final ExportCheckpoint checkpoint = exportDao.exportDataForAccount(binaryOut, resumeFrom, exportExecutor, internalContext);
+            binaryOut.close();
+            return checkpoint;
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public ExportCheckpoint importBinaryData(final InputStream in, final CallContext context) {
+        // The account doesn't exist yet in this tenant
+        final InternalCallContext internalContext = internalCallContextFactory.createInternalCallContext(context);
+        return importDao.importData(in, exportConfig.getImportBatchSize(), internalContext);
+    }
+
+    private static ExecutorService createExportExecutor(final int threadNb) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(Math.max(1, threadNb),
+                                                                   Math.max(1, threadNb),
+                                                                   10,
+                                                                   TimeUnit.MINUTES,
+                                                                   new LinkedBlockingQueue<Runnable>(),
+                                                                   new ThreadFactory() {
+                                                                       @Override
+                                                                       public Thread newThread(final Runnable r) {
+                                                                           final Thread th = new Thread(r);
+                                                                           th.setName("export-th-" + th.getId());
+                                                                           th.setDaemon(true);
+                                                                           return th;
+                                                                       }
+                                                                   });
+        // Idle threads don't need to be kept around between exports
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 }
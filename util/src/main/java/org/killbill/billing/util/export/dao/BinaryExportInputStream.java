@@ -0,0 +1,194 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.dao;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.FRAME_END_OF_STREAM;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.FRAME_END_OF_TABLE;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.FRAME_ROW;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.FRAME_TABLE;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.MAGIC;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.UTF_8;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.VALUE_BOOLEAN;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.VALUE_BYTES;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.VALUE_DATE;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.VALUE_DECIMAL;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.VALUE_DOUBLE;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.VALUE_LONG;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.VALUE_NULL;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.VALUE_STRING;
+import static org.killbill.billing.util.export.dao.BinaryExportOutputStream.VALUE_TIMESTAMP;
+
+//
+// Reader for the format written by BinaryExportOutputStream. A truncated stream (e.g. interrupted export) isn't an error:
+// the rows fully read are handed over and the returned checkpoint can be used to resume the export.
+//
+public class BinaryExportInputStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryExportInputStream.class);
+
+    private static final String RECORD_ID_COLUMN = "record_id";
+
+    public interface BinaryExportHandler {
+
+        public void onNewTable(String tableName, List<String> columnNames) throws IOException;
+
+        public void onRow(String tableName, Object[] values) throws IOException;
+
+        public void onEndOfTable(String tableName) throws IOException;
+    }
+
+    private final InputStream in;
+
+    public BinaryExportInputStream(final InputStream in) {
+        this.in = in;
+    }
+
+    public ExportCheckpoint read(final BinaryExportHandler handler) throws IOException {
+        final ExportCheckpoint checkpoint = new ExportCheckpoint();
+        final Map<Integer, TableHeader> tables = new HashMap<Integer, TableHeader>();
+
+        final DataInputStream data;
+        try {
+            data = new DataInputStream(new GZIPInputStream(in, 64 * 1024));
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not a binary export stream");
+            }
+        } catch (final EOFException e) {
+            logger.warn("Empty export stream");
+            return checkpoint;
+        }
+
+        try {
+            while (true) {
+                final byte frameType = data.readByte();
+                if (frameType == FRAME_END_OF_STREAM) {
+                    return checkpoint;
+                }
+
+                final int tableId = data.readInt();
+                if (frameType == FRAME_TABLE) {
+                    final TableHeader tableHeader = readTableHeader(data);
+                    tables.put(tableId, tableHeader);
+                    handler.onNewTable(tableHeader.tableName, tableHeader.columnNames);
+                } else if (frameType == FRAME_ROW) {
+                    final TableHeader tableHeader = getTableHeader(tables, tableId);
+                    final Object[] values = new Object[tableHeader.columnNames.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = readValue(data);
+                    }
+                    handler.onRow(tableHeader.tableName, values);
+                    if (tableHeader.recordIdIndex >= 0 && values[tableHeader.recordIdIndex] instanceof Long) {
+                        checkpoint.recordRow(tableHeader.tableName, (Long) values[tableHeader.recordIdIndex]);
+                    }
+                } else if (frameType == FRAME_END_OF_TABLE) {
+                    final TableHeader tableHeader = getTableHeader(tables, tableId);
+                    tables.remove(tableId);
+                    handler.onEndOfTable(tableHeader.tableName);
+                    checkpoint.markCompleted(tableHeader.tableName);
+                } else {
+                    throw new IOException("Unexpected frame type " + frameType);
+                }
+            }
+        } catch (final EOFException e) {
+            logger.warn("Truncated export stream, resume from {}", checkpoint);
+            return checkpoint;
+        }
+    }
+
+    private TableHeader getTableHeader(final Map<Integer, TableHeader> tables, final int tableId) throws IOException {
+        final TableHeader tableHeader = tables.get(tableId);
+        if (tableHeader == null) {
+            throw new IOException("Unknown table id " + tableId);
+        }
+        return tableHeader;
+    }
+
+    private TableHeader readTableHeader(final DataInputStream data) throws IOException {
+        final String tableName = data.readUTF();
+        final int nbColumns = data.readInt();
+        final List<String> columnNames = new ArrayList<String>(nbColumns);
+        for (int i = 0; i < nbColumns; i++) {
+            columnNames.add(data.readUTF());
+            // Data type, informational only
+            data.readUTF();
+        }
+        return new TableHeader(tableName, columnNames);
+    }
+
+    private Object readValue(final DataInputStream data) throws IOException {
+        final byte type = data.readByte();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_LONG:
+                return data.readLong();
+            case VALUE_STRING:
+                return new String(readBytes(data), UTF_8);
+            case VALUE_DECIMAL:
+                return new BigDecimal(new String(readBytes(data), UTF_8));
+            case VALUE_TIMESTAMP:
+                return new Timestamp(data.readLong());
+            case VALUE_DATE:
+                return java.sql.Date.valueOf(new String(readBytes(data), UTF_8));
+            case VALUE_BYTES:
+                return readBytes(data);
+            case VALUE_BOOLEAN:
+                return data.readBoolean();
+            case VALUE_DOUBLE:
+                return data.readDouble();
+            default:
+                throw new IOException("Unexpected value type " + type);
+        }
+    }
+
+    private byte[] readBytes(final DataInputStream data) throws IOException {
+        final byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return bytes;
+    }
+
+    private static final class TableHeader {
+
+        private final String tableName;
+        private final List<String> columnNames;
+        private final int recordIdIndex;
+
+        private TableHeader(final String tableName, final List<String> columnNames) {
+            this.tableName = tableName;
+            this.columnNames = ImmutableList.<String>copyOf(columnNames);
+            this.recordIdIndex = columnNames.indexOf(RECORD_ID_COLUMN);
+        }
+    }
+}
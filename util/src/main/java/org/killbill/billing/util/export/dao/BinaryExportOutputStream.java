@@ -0,0 +1,231 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.killbill.billing.util.api.ColumnInfo;
+import org.killbill.billing.util.api.DatabaseExportOutputStream;
+
+//
+// Compact export format: a gzip stream of length-prefixed frames, each one tagged with the table it belongs to,
+// so that several tables can be streamed concurrently. See BinaryExportInputStream for the reader.
+//
+// Values are typed (null, integral, decimal, timestamp, etc.) instead of being rendered as text.
+//
+public class BinaryExportOutputStream implements DatabaseExportOutputStream, ConcurrentDatabaseExportOutputStream, Closeable {
+
+    static final int MAGIC = 0x4b425831; // KBX1
+
+    static final byte FRAME_TABLE = 1;
+    static final byte FRAME_ROW = 2;
+    static final byte FRAME_END_OF_TABLE = 3;
+    static final byte FRAME_END_OF_STREAM = 4;
+
+    static final byte VALUE_NULL = 0;
+    static final byte VALUE_LONG = 1;
+    static final byte VALUE_STRING = 2;
+    static final byte VALUE_DECIMAL = 3;
+    static final byte VALUE_TIMESTAMP = 4;
+    static final byte VALUE_DATE = 5;
+    static final byte VALUE_BYTES = 6;
+    static final byte VALUE_BOOLEAN = 7;
+    static final byte VALUE_DOUBLE = 8;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final GZIPOutputStream compressed;
+    private final DataOutputStream delegate;
+    private final AtomicInteger nextTableId = new AtomicInteger(0);
+    private final ConcurrentMap<Integer, List<String>> columnNamesPerTable = new ConcurrentHashMap<Integer, List<String>>();
+
+    // Used by the sequential (DatabaseExportOutputStream) API only
+    private Integer currentTableId;
+    private boolean closed = false;
+
+    public BinaryExportOutputStream(final OutputStream out) throws IOException {
+        this.compressed = new GZIPOutputStream(out, 64 * 1024);
+        this.delegate = new DataOutputStream(compressed);
+        delegate.writeInt(MAGIC);
+    }
+
+    @Override
+    public int startTable(final String tableName, final List<ColumnInfo> columnsForTable) throws IOException {
+        final int tableId = nextTableId.incrementAndGet();
+
+        final List<String> columnNames = new ArrayList<String>(columnsForTable.size());
+        final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        final DataOutputStream frameOut = new DataOutputStream(frame);
+        frameOut.writeByte(FRAME_TABLE);
+        frameOut.writeInt(tableId);
+        frameOut.writeUTF(tableName);
+        frameOut.writeInt(columnsForTable.size());
+        for (final ColumnInfo columnInfo : columnsForTable) {
+            columnNames.add(columnInfo.getColumnName());
+            frameOut.writeUTF(columnInfo.getColumnName());
+            frameOut.writeUTF(columnInfo.getDataType() == null ? "" : columnInfo.getDataType());
+        }
+        columnNamesPerTable.put(tableId, columnNames);
+
+        writeFrame(frame);
+        return tableId;
+    }
+
+    @Override
+    public void write(final int tableId, final Map<String, Object> row) throws IOException {
+        final List<String> columnNames = columnNamesPerTable.get(tableId);
+        if (columnNames == null) {
+            throw new IllegalStateException("Unknown table id " + tableId);
+        }
+
+        // Encode outside of the lock, so that concurrent writers only contend on the copy
+        final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        final DataOutputStream frameOut = new DataOutputStream(frame);
+        frameOut.writeByte(FRAME_ROW);
+        frameOut.writeInt(tableId);
+        for (final String columnName : columnNames) {
+            writeValue(frameOut, row.get(columnName));
+        }
+
+        writeFrame(frame);
+    }
+
+    @Override
+    public void endTable(final int tableId) throws IOException {
+        columnNamesPerTable.remove(tableId);
+
+        final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        final DataOutputStream frameOut = new DataOutputStream(frame);
+        frameOut.writeByte(FRAME_END_OF_TABLE);
+        frameOut.writeInt(tableId);
+        writeFrame(frame);
+    }
+
+    @Override
+    public void newTable(final String tableName, final List<ColumnInfo> columnsForTable) {
+        try {
+            if (currentTableId != null) {
+                endTable(currentTableId);
+            }
+            currentTableId = startTable(tableName, columnsForTable);
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void write(final Map<String, Object> row) throws IOException {
+        if (currentTableId == null) {
+            throw new IllegalStateException("newTable should be invoked first");
+        }
+        write(currentTableId, row);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        if (currentTableId != null) {
+            endTable(currentTableId);
+            currentTableId = null;
+        }
+        delegate.writeByte(FRAME_END_OF_STREAM);
+        compressed.finish();
+        delegate.flush();
+        closed = true;
+    }
+
+    private synchronized void writeFrame(final ByteArrayOutputStream frame) throws IOException {
+        if (closed) {
+            throw new IOException("Stream already closed");
+        }
+        frame.writeTo(delegate);
+    }
+
+    private static void writeValue(final DataOutputStream out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+            // Unsigned bigint columns (e.g. record_id on MySQL)
+            out.writeByte(VALUE_LONG);
+            out.writeLong(((BigInteger) value).longValue());
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            out.writeByte(VALUE_DECIMAL);
+            writeBytes(out, value.toString().getBytes(UTF_8));
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(VALUE_DATE);
+            writeBytes(out, value.toString().getBytes(UTF_8));
+        } else if (value instanceof java.sql.Timestamp || (value instanceof java.util.Date && !(value instanceof java.sql.Time))) {
+            out.writeByte(VALUE_TIMESTAMP);
+            out.writeLong(((java.util.Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            out.writeByte(VALUE_BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof Blob) {
+            out.writeByte(VALUE_BYTES);
+            try {
+                writeBytes(out, ((Blob) value).getBytes(1, (int) ((Blob) value).length()));
+            } catch (final SQLException e) {
+                throw new IOException(e);
+            }
+        } else if (value instanceof Clob) {
+            out.writeByte(VALUE_STRING);
+            try {
+                writeBytes(out, ((Clob) value).getSubString(1, (int) ((Clob) value).length()).getBytes(UTF_8));
+            } catch (final SQLException e) {
+                throw new IOException(e);
+            }
+        } else {
+            out.writeByte(VALUE_STRING);
+            writeBytes(out, value.toString().getBytes(UTF_8));
+        }
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.dao;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.killbill.billing.util.api.ColumnInfo;
+
+/**
+ * Output stream which can receive rows for several tables concurrently (one writer thread per table).
+ */
+public interface ConcurrentDatabaseExportOutputStream {
+
+    /**
+     * @return the identifier to use to write the rows of that table
+     */
+    public int startTable(String tableName, List<ColumnInfo> columnsForTable) throws IOException;
+
+    public void write(int tableId, Map<String, Object> row) throws IOException;
+
+    public void endTable(int tableId) throws IOException;
+}
@@ -17,16 +17,28 @@
 package org.killbill.billing.util.export.dao;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.Query;
 import org.skife.jdbi.v2.ResultIterator;
 import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.killbill.billing.util.api.ColumnInfo;
 import org.killbill.billing.util.api.DatabaseExportOutputStream;
@@ -38,6 +50,10 @@ import org.killbill.billing.util.validation.dao.DatabaseSchemaDao;
 @Singleton
 public class DatabaseExportDao {
 
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseExportDao.class);
+
+    private static final String RECORD_ID_COLUMN = "record_id";
+
     private final DatabaseSchemaDao databaseSchemaDao;
     private final IDBI dbi;
 
@@ -53,39 +69,160 @@ public class DatabaseExportDao {
             return;
         }
 
+        for (final TableToExport table : getTablesToExport()) {
+            // Notify the stream that we're about to write data for a different table
+            out.newTable(table.tableName, table.columns);
+
+            dbi.withHandle(new HandleCallback<Void>() {
+                @Override
+                public Void withHandle(final Handle handle) throws Exception {
+                    final ResultIterator<Map<String, Object>> iterator = table.createQuery(handle, null, context);
+                    try {
+                        while (iterator.hasNext()) {
+                            final Map<String, Object> row = iterator.next();
+                            out.write(row);
+                        }
+                    } finally {
+                        iterator.close();
+                    }
+
+                    return null;
+                }
+            });
+        }
+    }
+
+    /**
+     * Export the tables concurrently, each one over its own connection and in record_id order.
+     *
+     * @param out        the stream, shared by all tables
+     * @param resumeFrom the position reached by a previous (interrupted) export - completed tables are skipped and
+     *                   the other ones restart after their last exported record_id
+     * @param executor   the executor running the table exports - its size bounds the number of connections used by all exports
+     * @param context    the account context
+     * @return the position reached (all tables completed unless an exception is thrown)
+     */
+    public ExportCheckpoint exportDataForAccount(final ConcurrentDatabaseExportOutputStream out,
+                                                 final ExportCheckpoint resumeFrom,
+                                                 final ExecutorService executor,
+                                                 final InternalTenantContext context) {
+        final ExportCheckpoint checkpoint = new ExportCheckpoint(resumeFrom);
+        if (context.getAccountRecordId() == null || context.getTenantRecordId() == null) {
+            return checkpoint;
+        }
+
+        final List<TableToExport> tables = new LinkedList<TableToExport>();
+        for (final TableToExport table : getTablesToExport()) {
+            if (!checkpoint.isCompleted(table.tableName)) {
+                tables.add(table);
+            }
+        }
+        if (tables.isEmpty()) {
+            return checkpoint;
+        }
+
+        final List<Future<Void>> futures = new LinkedList<Future<Void>>();
+        try {
+            for (final TableToExport table : tables) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        exportTable(out, table, checkpoint, context);
+                        return null;
+                    }
+                }));
+            }
+
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Export interrupted, resume from " + checkpoint, e);
+        } catch (final ExecutionException e) {
+            logger.warn("Export failed, resume from {}", checkpoint);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // The executor is shared: only stop our own tables (no-op if they all completed)
+            for (final Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        return checkpoint;
+    }
+
+    private void exportTable(final ConcurrentDatabaseExportOutputStream out, final TableToExport table, final ExportCheckpoint checkpoint, final InternalTenantContext context) {
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                final int tableId = out.startTable(table.tableName, table.columns);
+                final ResultIterator<Map<String, Object>> iterator = table.createQuery(handle, checkpoint.getLastRecordId(table.tableName), context);
+                try {
+                    while (iterator.hasNext()) {
+                        final Map<String, Object> row = iterator.next();
+                        out.write(tableId, row);
+                        checkpoint.recordRow(table.tableName, table.getRecordId(row));
+                    }
+                } finally {
+                    iterator.close();
+                }
+                out.endTable(tableId);
+                checkpoint.markCompleted(table.tableName);
+
+                return null;
+            }
+        });
+    }
+
+    // Tables (and their columns) exported for an account: the import only accepts those
+    Map<String, Set<String>> getExportedColumnsByTable() {
+        final Map<String, Set<String>> exportedColumnsByTable = new HashMap<String, Set<String>>();
+        for (final TableToExport table : getTablesToExport()) {
+            final Set<String> columnNames = new HashSet<String>();
+            for (final ColumnInfo column : table.columns) {
+                columnNames.add(column.getColumnName());
+            }
+            exportedColumnsByTable.put(table.tableName, columnNames);
+        }
+        return exportedColumnsByTable;
+    }
+
+    private List<TableToExport> getTablesToExport() {
+        final List<TableToExport> tables = new LinkedList<TableToExport>();
+
         final List<DefaultColumnInfo> columns = databaseSchemaDao.getColumnInfoList();
         if (columns.size() == 0) {
-            return;
+            return tables;
         }
 
-        final List<ColumnInfo> columnsForTable = new ArrayList<ColumnInfo>();
+        List<ColumnInfo> columnsForTable = new ArrayList<ColumnInfo>();
         // The list of columns is ordered by table name first
         String lastSeenTableName = columns.get(0).getTableName();
         for (final ColumnInfo column : columns) {
             if (!column.getTableName().equals(lastSeenTableName)) {
-                exportDataForAccountAndTable(out, columnsForTable, context);
+                addTableToExport(tables, columnsForTable);
                 lastSeenTableName = column.getTableName();
-                columnsForTable.clear();
+                columnsForTable = new ArrayList<ColumnInfo>();
             }
             columnsForTable.add(column);
         }
-        exportDataForAccountAndTable(out, columnsForTable, context);
+        addTableToExport(tables, columnsForTable);
+
+        return tables;
     }
 
-    private void exportDataForAccountAndTable(final DatabaseExportOutputStream out, final List<ColumnInfo> columnsForTable, final InternalTenantContext context) {
+    private void addTableToExport(final List<TableToExport> tables, final List<ColumnInfo> columnsForTable) {
         boolean hasAccountRecordIdColumn = false;
-        boolean firstColumn = true;
-        final StringBuilder queryBuilder = new StringBuilder("select ");
+        boolean hasRecordIdColumn = false;
         for (final ColumnInfo column : columnsForTable) {
-            if (!firstColumn) {
-                queryBuilder.append(", ");
-            } else {
-                firstColumn = false;
-            }
-
-            queryBuilder.append(column.getColumnName());
             if (column.getColumnName().equals("account_record_id")) {
                 hasAccountRecordIdColumn = true;
+            } else if (column.getColumnName().equals(RECORD_ID_COLUMN)) {
+                hasRecordIdColumn = true;
             }
         }
 
@@ -97,36 +234,66 @@ public class DatabaseExportDao {
             return;
         }
 
-        // Build the query - make sure to filter by account and tenant!
-        queryBuilder.append(" from ")
-                    .append(tableName);
-        if (isAccountTable) {
-            queryBuilder.append(" where record_id = :accountRecordId and tenant_record_id = :tenantRecordId");
-        } else {
-            queryBuilder.append(" where account_record_id = :accountRecordId and tenant_record_id = :tenantRecordId");
-        }
+        tables.add(new TableToExport(tableName, columnsForTable, isAccountTable, hasRecordIdColumn));
+    }
 
-        // Notify the stream that we're about to write data for a different table
-        out.newTable(tableName, columnsForTable);
+    private static final class TableToExport {
 
-        dbi.withHandle(new HandleCallback<Void>() {
-            @Override
-            public Void withHandle(final Handle handle) throws Exception {
-                final ResultIterator<Map<String, Object>> iterator = handle.createQuery(queryBuilder.toString())
-                                                                           .bind("accountRecordId", context.getAccountRecordId())
-                                                                           .bind("tenantRecordId", context.getTenantRecordId())
-                                                                           .iterator();
-                try {
-                    while (iterator.hasNext()) {
-                        final Map<String, Object> row = iterator.next();
-                        out.write(row);
-                    }
-                } finally {
-                    iterator.close();
+        private final String tableName;
+        private final List<ColumnInfo> columns;
+        private final boolean hasRecordIdColumn;
+        private final String query;
+
+        private TableToExport(final String tableName, final List<ColumnInfo> columns, final boolean isAccountTable, final boolean hasRecordIdColumn) {
+            this.tableName = tableName;
+            this.columns = columns;
+            this.hasRecordIdColumn = hasRecordIdColumn;
+
+            boolean firstColumn = true;
+            final StringBuilder queryBuilder = new StringBuilder("select ");
+            for (final ColumnInfo column : columns) {
+                if (!firstColumn) {
+                    queryBuilder.append(", ");
+                } else {
+                    firstColumn = false;
                 }
+                queryBuilder.append(column.getColumnName());
+            }
 
-                return null;
+            // Build the query - make sure to filter by account and tenant!
+            queryBuilder.append(" from ")
+                        .append(tableName);
+            if (isAccountTable) {
+                queryBuilder.append(" where record_id = :accountRecordId and tenant_record_id = :tenantRecordId");
+            } else {
+                queryBuilder.append(" where account_record_id = :accountRecordId and tenant_record_id = :tenantRecordId");
             }
-        });
+            this.query = queryBuilder.toString();
+        }
+
+        private ResultIterator<Map<String, Object>> createQuery(final Handle handle, @Nullable final Long fromRecordId, final InternalTenantContext context) {
+            final StringBuilder queryBuilder = new StringBuilder(query);
+            if (fromRecordId != null && hasRecordIdColumn) {
+                queryBuilder.append(" and record_id > :fromRecordId");
+            }
+            if (hasRecordIdColumn) {
+                // Needed to resume an interrupted export
+                queryBuilder.append(" order by record_id");
+            }
+
+            final Query<Map<String, Object>> sqlQuery = handle.createQuery(queryBuilder.toString())
+                                                              .bind("accountRecordId", context.getAccountRecordId())
+                                                              .bind("tenantRecordId", context.getTenantRecordId());
+            if (fromRecordId != null && hasRecordIdColumn) {
+                sqlQuery.bind("fromRecordId", fromRecordId);
+            }
+            return sqlQuery.iterator();
+        }
+
+        @Nullable
+        private Long getRecordId(final Map<String, Object> row) {
+            final Object recordId = hasRecordIdColumn ? row.get(RECORD_ID_COLUMN) : null;
+            return recordId instanceof Number ? ((Number) recordId).longValue() : null;
+        }
     }
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.export.dao.BinaryExportInputStream.BinaryExportHandler;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.PreparedBatch;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.skife.jdbi.v2.util.LongMapper;
+
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Collections2;
+
+/**
+ * Bulk import of the data exported by DatabaseExportDao in binary format: rows are inserted as-is (same record_id, ids, etc.),
+ * table by table, in JDBC batches (one transaction per batch).
+ * <p/>
+ * Only the tables and columns of the account exports are accepted, the rows are moved to the tenant of the caller, and they
+ * must all belong to the same account, which cannot already exist in another tenant.
+ */
+@Singleton
+public class DatabaseImportDao {
+
+    private static final String RECORD_ID_COLUMN = "record_id";
+    private static final String ACCOUNT_RECORD_ID_COLUMN = "account_record_id";
+    private static final String TENANT_RECORD_ID_COLUMN = "tenant_record_id";
+
+    private final DatabaseExportDao databaseExportDao;
+    private final IDBI dbi;
+
+    @Inject
+    public DatabaseImportDao(final DatabaseExportDao databaseExportDao, final IDBI dbi) {
+        this.databaseExportDao = databaseExportDao;
+        this.dbi = dbi;
+    }
+
+    /**
+     * @param in        the binary export
+     * @param batchSize number of rows per batch
+     * @param context   the tenant to import the rows into
+     * @return the position reached: if the export was truncated, the export can be resumed from there and the resulting stream imported
+     */
+    public ExportCheckpoint importData(final InputStream in, final int batchSize, final InternalTenantContext context) {
+        final Map<String, Set<String>> exportedColumnsByTable = databaseExportDao.getExportedColumnsByTable();
+        return dbi.withHandle(new HandleCallback<ExportCheckpoint>() {
+            @Override
+            public ExportCheckpoint withHandle(final Handle handle) throws Exception {
+                final ImportHandler importHandler = new ImportHandler(handle, batchSize, exportedColumnsByTable, context.getTenantRecordId());
+                new BinaryExportInputStream(in).read(importHandler);
+                // Rows from a truncated stream are still valid
+                importHandler.flushAll();
+                return importHandler.checkpoint;
+            }
+        });
+    }
+
+    private static final class ImportHandler implements BinaryExportHandler {
+
+        private final Handle handle;
+        private final int batchSize;
+        private final Map<String, Set<String>> exportedColumnsByTable;
+        private final Long tenantRecordId;
+        private final Map<String, TableBatch> batches = new HashMap<String, TableBatch>();
+        // Only reflects committed rows
+        private final ExportCheckpoint checkpoint = new ExportCheckpoint();
+
+        // Account of the rows imported so far
+        private Long accountRecordId;
+
+        private ImportHandler(final Handle handle, final int batchSize, final Map<String, Set<String>> exportedColumnsByTable, final Long tenantRecordId) {
+            this.handle = handle;
+            this.batchSize = batchSize;
+            this.exportedColumnsByTable = exportedColumnsByTable;
+            this.tenantRecordId = tenantRecordId;
+        }
+
+        @Override
+        public void onNewTable(final String tableName, final List<String> columnNames) throws IOException {
+            // The names are concatenated in the statement below
+            final Set<String> exportedColumns = exportedColumnsByTable.get(tableName);
+            if (exportedColumns == null) {
+                throw new IOException("Table " + tableName + " isn't part of the account exports");
+            }
+            for (final String columnName : columnNames) {
+                if (!exportedColumns.contains(columnName)) {
+                    throw new IOException("Unexpected column " + columnName + " for table " + tableName);
+                }
+            }
+
+            final String insert = "insert into " + tableName + " (" + Joiner.on(", ").join(columnNames) + ") values (" +
+                                  Joiner.on(", ").join(Collections2.transform(columnNames, new Function<String, String>() {
+                                      @Override
+                                      public String apply(final String input) {
+                                          return "?";
+                                      }
+                                  })) + ")";
+            final int recordIdIndex = columnNames.indexOf(RECORD_ID_COLUMN);
+            final int accountRecordIdIndex = TableName.ACCOUNT.getTableName().equals(tableName) ? recordIdIndex : columnNames.indexOf(ACCOUNT_RECORD_ID_COLUMN);
+            batches.put(tableName, new TableBatch(insert, recordIdIndex, accountRecordIdIndex, columnNames.indexOf(TENANT_RECORD_ID_COLUMN)));
+        }
+
+        @Override
+        public void onRow(final String tableName, final Object[] values) throws IOException {
+            final TableBatch tableBatch = batches.get(tableName);
+            if (tableBatch == null) {
+                throw new IOException("Unexpected row for table " + tableName);
+            }
+
+            if (tableBatch.accountRecordIdIndex >= 0) {
+                checkAccountRecordId(values[tableBatch.accountRecordIdIndex]);
+            }
+            if (tableBatch.tenantRecordIdIndex >= 0) {
+                values[tableBatch.tenantRecordIdIndex] = tenantRecordId;
+            }
+
+            if (tableBatch.batch == null) {
+                tableBatch.batch = handle.prepareBatch(tableBatch.insert);
+            }
+            tableBatch.batch.add(values);
+            if (tableBatch.recordIdIndex >= 0 && values[tableBatch.recordIdIndex] instanceof Long) {
+                tableBatch.lastRecordId = (Long) values[tableBatch.recordIdIndex];
+            }
+
+            if (tableBatch.batch.getSize() >= batchSize) {
+                flush(tableName, tableBatch);
+            }
+        }
+
+        @Override
+        public void onEndOfTable(final String tableName) {
+            final TableBatch tableBatch = batches.remove(tableName);
+            if (tableBatch != null) {
+                flush(tableName, tableBatch);
+            }
+            checkpoint.markCompleted(tableName);
+        }
+
+        private void checkAccountRecordId(final Object value) throws IOException {
+            if (!(value instanceof Number)) {
+                throw new IOException("Invalid account record id " + value);
+            }
+
+            final Long rowAccountRecordId = ((Number) value).longValue();
+            if (accountRecordId == null) {
+                final Long existingTenantRecordId = handle.createQuery("select tenant_record_id from " + TableName.ACCOUNT.getTableName() + " where record_id = :recordId")
+                                                          .bind("recordId", rowAccountRecordId)
+                                                          .map(LongMapper.FIRST)
+                                                          .first();
+                if (existingTenantRecordId != null && !existingTenantRecordId.equals(tenantRecordId)) {
+                    throw new IOException("Account record id " + rowAccountRecordId + " already exists in another tenant");
+                }
+                accountRecordId = rowAccountRecordId;
+            } else if (!accountRecordId.equals(rowAccountRecordId)) {
+                throw new IOException("The export contains the rows of several accounts");
+            }
+        }
+
+        private void flushAll() {
+            for (final Map.Entry<String, TableBatch> entry : batches.entrySet()) {
+                flush(entry.getKey(), entry.getValue());
+            }
+        }
+
+        private void flush(final String tableName, final TableBatch tableBatch) {
+            if (tableBatch.batch == null || tableBatch.batch.getSize() == 0) {
+                return;
+            }
+
+            handle.begin();
+            try {
+                tableBatch.batch.execute();
+                handle.commit();
+            } catch (final RuntimeException e) {
+                handle.rollback();
+                throw e;
+            }
+            tableBatch.batch = null;
+            checkpoint.recordRow(tableName, tableBatch.lastRecordId);
+        }
+    }
+
+    private static final class TableBatch {
+
+        private final String insert;
+        private final int recordIdIndex;
+        private final int accountRecordIdIndex;
+        private final int tenantRecordIdIndex;
+        private PreparedBatch batch;
+        private Long lastRecordId;
+
+        private TableBatch(final String insert, final int recordIdIndex, final int accountRecordIdIndex, final int tenantRecordIdIndex) {
+            this.insert = insert;
+            this.recordIdIndex = recordIdIndex;
+            this.accountRecordIdIndex = accountRecordIdIndex;
+            this.tenantRecordIdIndex = tenantRecordIdIndex;
+        }
+    }
+}
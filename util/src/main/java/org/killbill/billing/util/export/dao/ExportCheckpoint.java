@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.dao;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+
+/**
+ * Position reached by a (possibly interrupted) export or import: the tables fully processed and, for the other ones,
+ * the last record_id processed (rows are exported by increasing record_id).
+ * <p/>
+ * The string representation (e.g. accounts=done;invoices=1234) can be passed back to resume an export.
+ */
+public class ExportCheckpoint {
+
+    private static final String COMPLETED = "done";
+
+    private final Set<String> completedTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ConcurrentMap<String, Long> lastRecordIds = new ConcurrentHashMap<String, Long>();
+
+    public ExportCheckpoint() {
+    }
+
+    public ExportCheckpoint(final ExportCheckpoint other) {
+        completedTables.addAll(other.completedTables);
+        lastRecordIds.putAll(other.lastRecordIds);
+    }
+
+    public boolean isCompleted(final String tableName) {
+        return completedTables.contains(tableName);
+    }
+
+    @Nullable
+    public Long getLastRecordId(final String tableName) {
+        return lastRecordIds.get(tableName);
+    }
+
+    // Each table is processed by a single thread at a time
+    public void recordRow(final String tableName, @Nullable final Long recordId) {
+        if (recordId != null) {
+            lastRecordIds.put(tableName, recordId);
+        }
+    }
+
+    public void markCompleted(final String tableName) {
+        completedTables.add(tableName);
+        lastRecordIds.remove(tableName);
+    }
+
+    public static ExportCheckpoint fromString(@Nullable final String checkpoint) {
+        final ExportCheckpoint result = new ExportCheckpoint();
+        if (checkpoint == null || checkpoint.trim().isEmpty()) {
+            return result;
+        }
+
+        for (final Map.Entry<String, String> entry : Splitter.on(';').omitEmptyStrings().trimResults().withKeyValueSeparator("=").split(checkpoint).entrySet()) {
+            if (COMPLETED.equals(entry.getValue())) {
+                result.markCompleted(entry.getKey());
+            } else {
+                result.recordRow(entry.getKey(), Long.valueOf(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final Map<String, Object> sorted = new TreeMap<String, Object>(lastRecordIds);
+        for (final String tableName : completedTables) {
+            sorted.put(tableName, COMPLETED);
+        }
+        return Joiner.on(';').withKeyValueSeparator("=").join(sorted);
+    }
+}
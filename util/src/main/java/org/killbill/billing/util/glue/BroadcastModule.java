@@ -20,11 +20,15 @@ package org.killbill.billing.util.glue;
 import org.killbill.billing.broadcast.BroadcastApi;
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.util.broadcast.BroadcastService;
+import org.killbill.billing.util.broadcast.BroadcastTransport;
 import org.killbill.billing.util.broadcast.DefaultBroadcastApi;
 import org.killbill.billing.util.broadcast.DefaultBroadcastService;
+import org.killbill.billing.util.broadcast.UdpBroadcastTransport;
 import org.killbill.billing.util.broadcast.dao.BroadcastDao;
 import org.killbill.billing.util.broadcast.dao.DefaultBroadcastDao;
 import org.killbill.billing.util.config.BroadcastConfig;
+import org.killbill.billing.util.security.api.BroadcastSecurityCacheInvalidation;
+import org.killbill.billing.util.security.api.SecurityCacheInvalidation;
 import org.skife.config.ConfigurationObjectFactory;
 
 public class BroadcastModule extends KillBillModule {
@@ -41,6 +45,8 @@ public class BroadcastModule extends KillBillModule {
 
         bind(BroadcastService.class).to(DefaultBroadcastService.class).asEagerSingleton();
         bind(BroadcastApi.class).to(DefaultBroadcastApi.class).asEagerSingleton();
+        // Security caches changes are propagated to the other nodes through the broadcast log
+        bind(SecurityCacheInvalidation.class).to(BroadcastSecurityCacheInvalidation.class).asEagerSingleton();
     }
 
     @Override
@@ -48,7 +54,21 @@ public class BroadcastModule extends KillBillModule {
         final ConfigurationObjectFactory factory = new ConfigurationObjectFactory(skifeConfigSource);
         final BroadcastConfig broadcastConfig = factory.build(BroadcastConfig.class);
         bind(BroadcastConfig.class).toInstance(broadcastConfig);
+        // Without peers, the default (in-JVM) transport is used and the other nodes rely on polling
+        if (hasPeers(broadcastConfig.getBroadcastTransportPeers())) {
+            bind(BroadcastTransport.class).to(UdpBroadcastTransport.class).asEagerSingleton();
+        }
         installDaos();
         installUserApi();
     }
+
+    // The default (empty) value may be parsed as a single blank entry
+    private static boolean hasPeers(final Iterable<String> peers) {
+        for (final String peer : peers) {
+            if (peer != null && !peer.trim().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
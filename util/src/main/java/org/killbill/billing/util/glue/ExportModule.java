@@ -20,7 +20,10 @@ package org.killbill.billing.util.glue;
 
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.util.api.ExportUserApi;
+import org.killbill.billing.util.config.ExportConfig;
+import org.killbill.billing.util.export.api.BinaryExportUserApi;
 import org.killbill.billing.util.export.api.DefaultExportUserApi;
+import org.skife.config.ConfigurationObjectFactory;
 
 public class ExportModule extends KillBillModule {
 
@@ -29,11 +32,17 @@ public class ExportModule extends KillBillModule {
     }
 
     protected void installUserApi() {
-        bind(ExportUserApi.class).to(DefaultExportUserApi.class).asEagerSingleton();
+        bind(DefaultExportUserApi.class).asEagerSingleton();
+        bind(ExportUserApi.class).to(DefaultExportUserApi.class);
+        bind(BinaryExportUserApi.class).to(DefaultExportUserApi.class);
     }
 
     @Override
     protected void configure() {
+        final ConfigurationObjectFactory factory = new ConfigurationObjectFactory(skifeConfigSource);
+        final ExportConfig exportConfig = factory.build(ExportConfig.class);
+        bind(ExportConfig.class).toInstance(exportConfig);
+
         installUserApi();
     }
 }
@@ -21,6 +21,7 @@ package org.killbill.billing.util.glue;
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.util.dao.DefaultNonEntityDao;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.entity.dao.SearchTokensBackfillService;
 
 public class NonEntityDaoModule extends KillBillModule {
 
@@ -31,5 +32,6 @@ public class NonEntityDaoModule extends KillBillModule {
     @Override
     protected void configure() {
         bind(NonEntityDao.class).to(DefaultNonEntityDao.class).asEagerSingleton();
+        bind(SearchTokensBackfillService.class).asEagerSingleton();
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.security.api;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.broadcast.BroadcastApi;
+import org.killbill.billing.events.BroadcastInternalEvent;
+import org.killbill.billing.util.jackson.ObjectMapper;
+import org.killbill.bus.api.PersistentBus;
+import org.killbill.bus.api.PersistentBus.EventBusException;
+import org.killbill.clock.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Invalidates the caches of all the nodes through the broadcast log: the local caches are invalidated right away, the other nodes
+ * invalidate theirs when the broadcast service delivers the entry (as soon as it is announced by the BroadcastTransport, or on the next poll).
+ */
+public class BroadcastSecurityCacheInvalidation implements SecurityCacheInvalidation {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastSecurityCacheInvalidation.class);
+
+    static final String INVALIDATE_CREDENTIALS = "INVALIDATE_CREDENTIALS";
+    static final String INVALIDATE_ROLES = "INVALIDATE_ROLES";
+    static final String INVALIDATE_PERMISSIONS = "INVALIDATE_PERMISSIONS";
+
+    private static final String NAME_FIELD = "name";
+
+    private final LocalSecurityCacheInvalidation localSecurityCacheInvalidation;
+    private final BroadcastApi broadcastApi;
+    private final PersistentBus eventBus;
+    private final Clock clock;
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public BroadcastSecurityCacheInvalidation(final LocalSecurityCacheInvalidation localSecurityCacheInvalidation, final BroadcastApi broadcastApi, final PersistentBus eventBus, final Clock clock) {
+        this.localSecurityCacheInvalidation = localSecurityCacheInvalidation;
+        this.broadcastApi = broadcastApi;
+        this.eventBus = eventBus;
+        this.clock = clock;
+        this.objectMapper = new ObjectMapper();
+    }
+
+    @Override
+    public void start() {
+        try {
+            eventBus.register(this);
+        } catch (final EventBusException e) {
+            throw new RuntimeException("Unable to register to the EventBus!", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            eventBus.unregister(this);
+        } catch (final EventBusException e) {
+            throw new RuntimeException("Unable to unregister to the EventBus!", e);
+        }
+    }
+
+    @Override
+    public void invalidateCredentials(final String username, final String createdBy) {
+        localSecurityCacheInvalidation.invalidateCredentials(username, createdBy);
+        broadcast(INVALIDATE_CREDENTIALS, username, createdBy);
+    }
+
+    @Override
+    public void invalidateRoles(final String username, final String createdBy) {
+        localSecurityCacheInvalidation.invalidateRoles(username, createdBy);
+        broadcast(INVALIDATE_ROLES, username, createdBy);
+    }
+
+    @Override
+    public void invalidatePermissions(final String role, final String createdBy) {
+        localSecurityCacheInvalidation.invalidatePermissions(role, createdBy);
+        broadcast(INVALIDATE_PERMISSIONS, role, createdBy);
+    }
+
+    // Also received for the entries written by this node, in which case the caches are simply invalidated a second time
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleBroadcastEvent(final BroadcastInternalEvent event) {
+        if (!DefaultSecurityService.SECURITY_SERVICE_NAME.equals(event.getServiceName())) {
+            return;
+        }
+
+        final String name;
+        try {
+            final JsonNode node = objectMapper.readTree(event.getJsonEvent());
+            name = node.get(NAME_FIELD).asText();
+        } catch (final IOException e) {
+            logger.warn("Ignoring malformed security broadcast event " + event.getJsonEvent(), e);
+            return;
+        }
+
+        if (INVALIDATE_CREDENTIALS.equals(event.getType())) {
+            localSecurityCacheInvalidation.invalidateCredentials(name, null);
+        } else if (INVALIDATE_ROLES.equals(event.getType())) {
+            localSecurityCacheInvalidation.invalidateRoles(name, null);
+        } else if (INVALIDATE_PERMISSIONS.equals(event.getType())) {
+            localSecurityCacheInvalidation.invalidatePermissions(name, null);
+        } else {
+            logger.warn("Ignoring unknown security broadcast event type " + event.getType());
+        }
+    }
+
+    private void broadcast(final String type, final String name, final String createdBy) {
+        final String event;
+        try {
+            event = objectMapper.writeValueAsString(ImmutableMap.<String, String>of(NAME_FIELD, name));
+        } catch (final JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            broadcastApi.broadcast(DefaultSecurityService.SECURITY_SERVICE_NAME, type, event, clock.getUTCNow(), createdBy, false);
+        } catch (final RuntimeException e) {
+            // The change is already committed: the other nodes keep their entries until they expire (see SecurityConfig)
+            logger.warn("Failed to broadcast security cache invalidation " + type + " for " + name, e);
+        }
+    }
+}
@@ -17,7 +17,6 @@
 package org.killbill.billing.util.security.api;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -30,11 +29,7 @@ import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.authz.AuthorizationException;
-import org.apache.shiro.mgt.DefaultSecurityManager;
-import org.apache.shiro.realm.Realm;
 import org.apache.shiro.realm.jdbc.JdbcRealm;
-import org.apache.shiro.subject.PrincipalCollection;
-import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.apache.shiro.subject.Subject;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.security.Logical;
@@ -46,11 +41,9 @@ import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.security.shiro.dao.RolesPermissionsModelDao;
 import org.killbill.billing.util.security.shiro.dao.UserDao;
 import org.killbill.billing.util.security.shiro.dao.UserRolesModelDao;
-import org.killbill.billing.util.security.shiro.realm.KillBillJdbcRealm;
 
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -60,10 +53,12 @@ public class DefaultSecurityApi implements SecurityApi {
     private static final String[] allPermissions = new String[Permission.values().length];
 
     private final UserDao userDao;
+    private final SecurityCacheInvalidation securityCacheInvalidation;
 
     @Inject
-    public DefaultSecurityApi(final UserDao userDao) {
+    public DefaultSecurityApi(final UserDao userDao, final SecurityCacheInvalidation securityCacheInvalidation) {
         this.userDao = userDao;
+        this.securityCacheInvalidation = securityCacheInvalidation;
     }
 
     @Override
@@ -165,23 +160,28 @@ public class DefaultSecurityApi implements SecurityApi {
     @Override
     public void addUserRoles(final String username, final String password, final List<String> roles, final CallContext callContext) throws SecurityApiException {
         userDao.insertUser(username, password, roles, callContext.getUserName());
+        securityCacheInvalidation.invalidateCredentials(username, callContext.getUserName());
+        securityCacheInvalidation.invalidateRoles(username, callContext.getUserName());
     }
 
     @Override
     public void updateUserPassword(final String username, final String password, final CallContext callContext) throws SecurityApiException {
         userDao.updateUserPassword(username, password, callContext.getUserName());
+        securityCacheInvalidation.invalidateCredentials(username, callContext.getUserName());
     }
 
     @Override
     public void updateUserRoles(final String username, final List<String> roles, final CallContext callContext) throws SecurityApiException {
         userDao.updateUserRoles(username, roles, callContext.getUserName());
-        invalidateJDBCAuthorizationCache(username);
+        securityCacheInvalidation.invalidateRoles(username, callContext.getUserName());
     }
 
 
     @Override
     public void invalidateUser(final String username, final CallContext callContext) throws SecurityApiException {
         userDao.invalidateUser(username, callContext.getUserName());
+        securityCacheInvalidation.invalidateCredentials(username, callContext.getUserName());
+        securityCacheInvalidation.invalidateRoles(username, callContext.getUserName());
     }
 
     @Override
@@ -200,6 +200,7 @@ public class DefaultSecurityApi implements SecurityApi {
     public void addRoleDefinition(final String role, final List<String> permissions, final CallContext callContext) throws SecurityApiException {
         final List<String> sanitizedPermissions = sanitizeAndValidatePermissions(permissions);
         userDao.addRoleDefinition(role, sanitizedPermissions, callContext.getUserName());
+        securityCacheInvalidation.invalidatePermissions(role, callContext.getUserName());
     }
 
     @Override
@@ -287,20 +288,4 @@ public class DefaultSecurityApi implements SecurityApi {
         }
         return allPermissions;
     }
-
-    private void invalidateJDBCAuthorizationCache(final String username) {
-        final Collection<Realm> realms = ((DefaultSecurityManager) SecurityUtils.getSecurityManager()).getRealms();
-        final KillBillJdbcRealm killBillJdbcRealm = (KillBillJdbcRealm) Iterables.tryFind(realms, new Predicate<Realm>() {
-            @Override
-            public boolean apply(@Nullable final Realm input) {
-                return (input instanceof KillBillJdbcRealm);
-            }
-        }).orNull();
-
-        if (killBillJdbcRealm != null) {
-            SimplePrincipalCollection principals = new SimplePrincipalCollection();
-            principals.add(username, killBillJdbcRealm.getName());
-            killBillJdbcRealm.clearCachedAuthorizationInfo(principals);
-        }
-    }
 }
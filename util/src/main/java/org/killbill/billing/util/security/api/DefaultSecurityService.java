@@ -30,10 +30,12 @@ public class DefaultSecurityService implements SecurityService {
     public static final String SECURITY_SERVICE_NAME = "security-service";
 
     private final SecurityManager securityManager;
+    private final SecurityCacheInvalidation securityCacheInvalidation;
 
     @Inject
-    public DefaultSecurityService(final SecurityManager securityManager) {
+    public DefaultSecurityService(final SecurityManager securityManager, final SecurityCacheInvalidation securityCacheInvalidation) {
         this.securityManager = securityManager;
+        this.securityCacheInvalidation = securityCacheInvalidation;
     }
 
     @Override
@@ -44,10 +46,12 @@ public class DefaultSecurityService implements SecurityService {
     @LifecycleHandlerType(LifecycleHandlerType.LifecycleLevel.INIT_SERVICE)
     public void initialize() {
         SecurityUtils.setSecurityManager(securityManager);
+        securityCacheInvalidation.start();
     }
 
     @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
     public void stop() {
+        securityCacheInvalidation.stop();
         SecurityUtils.setSecurityManager(null);
     }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.security.api;
+
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.UnavailableSecurityManagerException;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.realm.Realm;
+import org.killbill.billing.util.security.shiro.realm.KillBillJdbcRealm;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+
+public class LocalSecurityCacheInvalidation implements SecurityCacheInvalidation {
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void invalidateCredentials(final String username, final String createdBy) {
+        final KillBillJdbcRealm killBillJdbcRealm = getKillBillJdbcRealm();
+        if (killBillJdbcRealm != null) {
+            killBillJdbcRealm.invalidateCachedCredentials(username);
+        }
+    }
+
+    @Override
+    public void invalidateRoles(final String username, final String createdBy) {
+        final KillBillJdbcRealm killBillJdbcRealm = getKillBillJdbcRealm();
+        if (killBillJdbcRealm != null) {
+            killBillJdbcRealm.invalidateCachedRoles(username);
+        }
+    }
+
+    @Override
+    public void invalidatePermissions(final String role, final String createdBy) {
+        final KillBillJdbcRealm killBillJdbcRealm = getKillBillJdbcRealm();
+        if (killBillJdbcRealm != null) {
+            killBillJdbcRealm.invalidateCachedPermissions(role);
+        }
+    }
+
+    private KillBillJdbcRealm getKillBillJdbcRealm() {
+        final Collection<Realm> realms;
+        try {
+            realms = ((DefaultSecurityManager) SecurityUtils.getSecurityManager()).getRealms();
+        } catch (final UnavailableSecurityManagerException e) {
+            // Broadcast received before the security service initialized (or after it stopped): nothing is cached
+            return null;
+        }
+        return (KillBillJdbcRealm) Iterables.tryFind(realms, new Predicate<Realm>() {
+            @Override
+            public boolean apply(@Nullable final Realm input) {
+                return (input instanceof KillBillJdbcRealm);
+            }
+        }).orNull();
+    }
+}
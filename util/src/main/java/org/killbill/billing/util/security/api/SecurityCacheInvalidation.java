@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.security.api;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * Invalidates the credentials and authorization caches of the JDBC realm when users or roles change.
+ * <p/>
+ * By default, only the caches of the local node are invalidated: BroadcastModule binds an implementation which also invalidates them on the other nodes.
+ */
+@ImplementedBy(LocalSecurityCacheInvalidation.class)
+public interface SecurityCacheInvalidation {
+
+    public void start();
+
+    public void stop();
+
+    public void invalidateCredentials(String username, String createdBy);
+
+    public void invalidateRoles(String username, String createdBy);
+
+    public void invalidatePermissions(String role, String createdBy);
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.util.security.shiro;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.shiro.util.ByteSource;
+import org.skife.config.TimeSpan;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+//
+// Remembers successful authentications, to avoid re-hashing the credentials (see KillbillCredentialsMatcher) on each request.
+// Only a keyed hash (HMAC with a random key generated at startup, never persisted) of the username and password is kept:
+// the cache content can neither be reversed nor be verified outside of this JVM.
+//
+public class VerifiedCredentialsCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+
+    private final SecretKeySpec key;
+    // Null if disabled
+    private final Cache<String, byte[]> verifiedCredentials;
+
+    public VerifiedCredentialsCache(final long maxEntries, final TimeSpan ttl) {
+        final byte[] keyBytes = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(keyBytes);
+        this.key = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+
+        if (maxEntries > 0 && ttl.getMillis() > 0) {
+            this.verifiedCredentials = CacheBuilder.newBuilder()
+                                                   .maximumSize(maxEntries)
+                                                   .expireAfterWrite(ttl.getMillis(), TimeUnit.MILLISECONDS)
+                                                   .build();
+        } else {
+            this.verifiedCredentials = null;
+        }
+    }
+
+    public boolean isVerified(final String username, final Object credentials) {
+        if (verifiedCredentials == null || username == null || !ByteSource.Util.isCompatible(credentials)) {
+            return false;
+        }
+
+        final byte[] expected = verifiedCredentials.getIfPresent(username);
+        // Constant time comparison
+        return expected != null && MessageDigest.isEqual(expected, keyedHash(username, credentials));
+    }
+
+    public void markVerified(final String username, final Object credentials) {
+        if (verifiedCredentials == null || username == null || !ByteSource.Util.isCompatible(credentials)) {
+            return;
+        }
+        verifiedCredentials.put(username, keyedHash(username, credentials));
+    }
+
+    public void invalidate(final String username) {
+        if (verifiedCredentials != null) {
+            verifiedCredentials.invalidate(username);
+        }
+    }
+
+    public void invalidateAll() {
+        if (verifiedCredentials != null) {
+            verifiedCredentials.invalidateAll();
+        }
+    }
+
+    private byte[] keyedHash(final String username, final Object credentials) {
+        final byte[] credentialsBytes = ByteSource.Util.bytes(credentials).getBytes();
+        try {
+            final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(ByteSource.Util.bytes(username).getBytes());
+            // Separator, so that (ab, c) and (a, bc) don't collide
+            mac.update((byte) 0);
+            mac.update(credentialsBytes);
+            return mac.doFinal();
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Arrays.fill(credentialsBytes, (byte) 0);
+        }
+    }
+}
@@ -20,41 +20,163 @@ package org.killbill.billing.util.security.shiro.dao;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.SimpleSession;
 import org.apache.shiro.session.mgt.eis.CachingSessionDAO;
+import org.apache.shiro.util.Destroyable;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.killbill.billing.util.config.RbacConfig;
+import org.skife.config.TimeSpan;
 import org.skife.jdbi.v2.IDBI;
 import org.skife.jdbi.v2.Transaction;
 import org.skife.jdbi.v2.TransactionStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class JDBCSessionDao extends CachingSessionDAO {
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+//
+// Last access time updates (one per API call) are written behind: they are coalesced in memory and flushed in batches every flushInterval.
+// To keep expiry checks correct on the other nodes (which only see the database), an update is only deferred if the last access time
+// already persisted keeps the session alive until the update is guaranteed to have been flushed; otherwise, it is written right away.
+//
+public class JDBCSessionDao extends CachingSessionDAO implements Destroyable {
 
     private static final Logger log = LoggerFactory.getLogger(JDBCSessionDao.class);
 
     private final JDBCSessionSqlDao jdbcSessionSqlDao;
+    private final long flushIntervalMillis;
+    // Latest last access time (in millis) not yet written, per session id
+    private final ConcurrentMap<Long, Long> pendingLastAccessTimes;
+    // Last access time (in millis) known to be in the database (or older than the one in the database), per session id. Null if disabled
+    private final Cache<Long, Long> persistedLastAccessTimes;
+    private final ScheduledExecutorService flushExecutor;
 
-    @Inject
     public JDBCSessionDao(final IDBI dbi) {
+        this(dbi, new TimeSpan("0s"), new TimeSpan("0s"));
+    }
+
+    @Inject
+    public JDBCSessionDao(final IDBI dbi, final RbacConfig rbacConfig) {
+        this(dbi, rbacConfig.getSessionLastAccessTimeFlushInterval(), rbacConfig.getGlobalSessionTimeout());
+    }
+
+    public JDBCSessionDao(final IDBI dbi, final TimeSpan flushInterval, final TimeSpan globalSessionTimeout) {
         this.jdbcSessionSqlDao = dbi.onDemand(JDBCSessionSqlDao.class);
+        this.flushIntervalMillis = flushInterval.getMillis();
+        this.pendingLastAccessTimes = new ConcurrentHashMap<Long, Long>();
+
+        if (flushIntervalMillis > 0) {
+            // Unknown sessions are simply written right away, so forgetting idle ones is safe
+            this.persistedLastAccessTimes = CacheBuilder.newBuilder()
+                                                        .expireAfterAccess(Math.max(globalSessionTimeout.getMillis(), flushIntervalMillis), TimeUnit.MILLISECONDS)
+                                                        .<Long, Long>build();
+            this.flushExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "SessionLastAccessTimeFlusher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.flushExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushLastAccessTimes();
+                }
+            }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.persistedLastAccessTimes = null;
+            this.flushExecutor = null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+        }
+        flushLastAccessTimes();
+    }
+
+    public void flushLastAccessTimes() {
+        if (pendingLastAccessTimes.isEmpty()) {
+            return;
+        }
+
+        final List<Long> sessionIds = new ArrayList<Long>();
+        final List<Long> lastAccessTimes = new ArrayList<Long>();
+        for (final Long sessionId : ImmutableList.<Long>copyOf(pendingLastAccessTimes.keySet())) {
+            final Long lastAccessTime = pendingLastAccessTimes.remove(sessionId);
+            if (lastAccessTime != null) {
+                sessionIds.add(sessionId);
+                lastAccessTimes.add(lastAccessTime);
+            }
+        }
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+
+        final List<DateTime> lastAccessDateTimes = new ArrayList<DateTime>(lastAccessTimes.size());
+        for (final Long lastAccessTime : lastAccessTimes) {
+            lastAccessDateTimes.add(new DateTime(lastAccessTime, DateTimeZone.UTC));
+        }
+
+        try {
+            jdbcSessionSqlDao.updateLastAccessTimes(lastAccessDateTimes, sessionIds);
+        } catch (final RuntimeException e) {
+            log.warn("Failed to flush the last access time of " + sessionIds.size() + " sessions, will retry", e);
+            for (int i = 0; i < sessionIds.size(); i++) {
+                recordPendingLastAccessTime(sessionIds.get(i), lastAccessTimes.get(i));
+            }
+            return;
+        }
+
+        for (int i = 0; i < sessionIds.size(); i++) {
+            recordPersistedLastAccessTime(sessionIds.get(i), lastAccessTimes.get(i));
+        }
     }
 
     @Override
     protected void doUpdate(final Session session) {
         // Assume only the last access time attribute was updated (see https://github.com/killbill/killbill/issues/326)
-        final DateTime lastAccessTime = new DateTime(session.getLastAccessTime(), DateTimeZone.UTC);
+        final long lastAccessTime = session.getLastAccessTime().getTime();
         final Long sessionId = Long.valueOf(session.getId().toString());
-        jdbcSessionSqlDao.updateLastAccessTime(lastAccessTime, sessionId);
+
+        if (canDeferLastAccessTimeUpdate(sessionId, lastAccessTime, session.getTimeout())) {
+            recordPendingLastAccessTime(sessionId, lastAccessTime);
+        } else {
+            pendingLastAccessTimes.remove(sessionId);
+            jdbcSessionSqlDao.updateLastAccessTime(new DateTime(lastAccessTime, DateTimeZone.UTC), sessionId);
+            recordPersistedLastAccessTime(sessionId, lastAccessTime);
+        }
     }
 
     @Override
     protected void doDelete(final Session session) {
-        jdbcSessionSqlDao.delete(new SessionModelDao(session));
+        final SessionModelDao sessionModelDao = new SessionModelDao(session);
+        if (sessionModelDao.getRecordId() != null) {
+            pendingLastAccessTimes.remove(sessionModelDao.getRecordId());
+            if (persistedLastAccessTimes != null) {
+                persistedLastAccessTimes.invalidate(sessionModelDao.getRecordId());
+            }
+        }
+        jdbcSessionSqlDao.delete(sessionModelDao);
     }
 
     @Override
@@ -68,6 +190,7 @@ public class JDBCSessionDao extends CachingSessionDAO {
         });
         // See SessionModelDao#toSimpleSession for why we use toString()
         assignSessionId(session, sessionId.toString());
+        recordPersistedLastAccessTime((Long) sessionId, session.getLastAccessTime().getTime());
         return sessionId;
     }
 
@@ -91,11 +214,56 @@ public class JDBCSessionDao extends CachingSessionDAO {
             return null;
         }
 
+        final Session session;
         try {
-            return sessionModelDao.toSimpleSession();
+            session = sessionModelDao.toSimpleSession();
         } catch (final IOException e) {
             log.warn("Corrupted cookie", e);
             return null;
         }
+
+        recordPersistedLastAccessTime(recordId, sessionModelDao.getLastAccessTime().getMillis());
+        // Don't lose the accesses not yet flushed
+        final Long pendingLastAccessTime = pendingLastAccessTimes.get(recordId);
+        if (pendingLastAccessTime != null && session instanceof SimpleSession && pendingLastAccessTime > session.getLastAccessTime().getTime()) {
+            ((SimpleSession) session).setLastAccessTime(new Date(pendingLastAccessTime));
+        }
+        return session;
+    }
+
+    private boolean canDeferLastAccessTimeUpdate(final Long sessionId, final long lastAccessTime, final long timeout) {
+        if (persistedLastAccessTimes == null) {
+            return false;
+        }
+
+        final Long persistedLastAccessTime = persistedLastAccessTimes.getIfPresent(sessionId);
+        if (persistedLastAccessTime == null) {
+            return false;
+        }
+
+        // Negative timeouts never expire. Otherwise, the session must not appear expired to the other nodes before the next flush
+        // (twice the interval, to account for the time the flush itself takes)
+        return timeout < 0 || persistedLastAccessTime + timeout > lastAccessTime + 2 * flushIntervalMillis;
+    }
+
+    private void recordPendingLastAccessTime(final Long sessionId, final Long lastAccessTime) {
+        // Coalesce the updates, keeping the latest access time
+        Long previousLastAccessTime;
+        do {
+            previousLastAccessTime = pendingLastAccessTimes.putIfAbsent(sessionId, lastAccessTime);
+        } while (previousLastAccessTime != null &&
+                 previousLastAccessTime < lastAccessTime &&
+                 !pendingLastAccessTimes.replace(sessionId, previousLastAccessTime, lastAccessTime));
+    }
+
+    private void recordPersistedLastAccessTime(final Long sessionId, final long lastAccessTime) {
+        if (persistedLastAccessTimes == null) {
+            return;
+        }
+
+        final Long previousLastAccessTime = persistedLastAccessTimes.getIfPresent(sessionId);
+        if (previousLastAccessTime == null || previousLastAccessTime < lastAccessTime) {
+            persistedLastAccessTimes.put(sessionId, lastAccessTime);
+        }
     }
 }
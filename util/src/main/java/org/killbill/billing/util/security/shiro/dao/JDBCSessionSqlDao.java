@@ -22,6 +22,7 @@ import org.joda.time.DateTime;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
 import org.killbill.commons.jdbi.binder.SmartBindBean;
 import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
@@ -41,6 +42,9 @@ public interface JDBCSessionSqlDao extends Transactional<JDBCSessionSqlDao> {
     @SqlUpdate
     public void updateLastAccessTime(@Bind("lastAccessTime") final DateTime lastAccessTime, @Bind("recordId") final Long sessionId);
 
+    @SqlBatch
+    public void updateLastAccessTimes(@Bind("lastAccessTime") final Iterable<DateTime> lastAccessTimes, @Bind("recordId") final Iterable<Long> sessionIds);
+
     @SqlUpdate
     public void delete(@SmartBindBean final SessionModelDao sessionModelDao);
 
@@ -17,15 +17,36 @@
 
 package org.killbill.billing.util.security.shiro.realm;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.sql.DataSource;
 
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.realm.jdbc.JdbcRealm;
 import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.killbill.billing.platform.glue.KillBillPlatformModuleBase;
 import org.killbill.billing.util.config.SecurityConfig;
 import org.killbill.billing.util.security.shiro.KillbillCredentialsMatcher;
+import org.killbill.billing.util.security.shiro.VerifiedCredentialsCache;
+import org.skife.config.TimeSpan;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 public class KillBillJdbcRealm extends JdbcRealm {
 
@@ -35,6 +56,10 @@ public class KillBillJdbcRealm extends JdbcRealm {
 
     private final DataSource dataSource;
     private final SecurityConfig securityConfig;
+    private final VerifiedCredentialsCache verifiedCredentialsCache;
+    // Null if disabled
+    private final Cache<String, Set<String>> rolesPerUser;
+    private final Cache<String, Set<String>> permissionsPerRole;
 
     @Inject
     public KillBillJdbcRealm(@Named(KillBillPlatformModuleBase.SHIRO_DATA_SOURCE_ID_NAMED) final DataSource dataSource, final SecurityConfig securityConfig) {
@@ -42,9 +67,13 @@ public class KillBillJdbcRealm extends JdbcRealm {
         this.dataSource = dataSource;
         this.securityConfig = securityConfig;
 
-        // TODO Enable when we add support for cache invalidation
+        // Shiro's authentication cache stays disabled, as it would keep the AuthenticationInfo (salted hashes) around:
+        // see VerifiedCredentialsCache instead (only keyed hashes of the successful attempts are kept)
         // See JavaDoc warning: https://shiro.apache.org/static/1.2.3/apidocs/org/apache/shiro/realm/AuthenticatingRealm.html
         //setAuthenticationCachingEnabled(true);
+        this.verifiedCredentialsCache = new VerifiedCredentialsCache(securityConfig.getShiroAuthenticationCacheMaxEntries(), securityConfig.getShiroAuthenticationCacheTtl());
+        this.rolesPerUser = buildCache(securityConfig.getShiroAuthorizationCacheMaxEntries(), securityConfig.getShiroAuthorizationCacheTtl());
+        this.permissionsPerRole = buildCache(securityConfig.getShiroAuthorizationCacheMaxEntries(), securityConfig.getShiroAuthorizationCacheTtl());
 
         // Tweak JdbcRealm defaults
         setPermissionsLookupEnabled(true);
@@ -61,6 +90,95 @@ public class KillBillJdbcRealm extends JdbcRealm {
         super.clearCachedAuthorizationInfo(principals);
     }
 
+    // Should be called when the user password changes or when the user is invalidated
+    public void invalidateCachedCredentials(final String username) {
+        verifiedCredentialsCache.invalidate(username);
+    }
+
+    // Should be called when the user roles change or when the user is invalidated
+    public void invalidateCachedRoles(final String username) {
+        if (rolesPerUser != null) {
+            rolesPerUser.invalidate(username);
+        }
+
+        final SimplePrincipalCollection principals = new SimplePrincipalCollection();
+        principals.add(username, getName());
+        clearCachedAuthorizationInfo(principals);
+    }
+
+    // Should be called when the role definition changes
+    public void invalidateCachedPermissions(final String roleName) {
+        if (permissionsPerRole != null) {
+            permissionsPerRole.invalidate(roleName);
+        }
+
+        // We don't know which users have that role
+        final org.apache.shiro.cache.Cache<Object, AuthorizationInfo> authorizationCache = getAuthorizationCache();
+        if (authorizationCache != null) {
+            authorizationCache.clear();
+        }
+    }
+
+    @Override
+    protected AuthenticationInfo doGetAuthenticationInfo(final AuthenticationToken token) throws AuthenticationException {
+        if (token instanceof UsernamePasswordToken) {
+            final UsernamePasswordToken upToken = (UsernamePasswordToken) token;
+            if (verifiedCredentialsCache.isVerified(upToken.getUsername(), upToken.getPassword())) {
+                // Skip both the database lookup and the (expensive) hashing
+                return new VerifiedAuthenticationInfo(upToken.getUsername(), getName());
+            }
+        }
+        return super.doGetAuthenticationInfo(token);
+    }
+
+    @Override
+    protected void assertCredentialsMatch(final AuthenticationToken token, final AuthenticationInfo info) throws AuthenticationException {
+        if (info instanceof VerifiedAuthenticationInfo) {
+            return;
+        }
+
+        super.assertCredentialsMatch(token, info);
+
+        // The credentials matched at this point
+        if (token instanceof UsernamePasswordToken) {
+            final UsernamePasswordToken upToken = (UsernamePasswordToken) token;
+            verifiedCredentialsCache.markVerified(upToken.getUsername(), upToken.getPassword());
+        }
+    }
+
+    @Override
+    protected Set<String> getRoleNamesForUser(final Connection conn, final String username) throws SQLException {
+        if (rolesPerUser == null) {
+            return super.getRoleNamesForUser(conn, username);
+        }
+
+        Set<String> roleNames = rolesPerUser.getIfPresent(username);
+        if (roleNames == null) {
+            roleNames = ImmutableSet.<String>copyOf(super.getRoleNamesForUser(conn, username));
+            rolesPerUser.put(username, roleNames);
+        }
+        return new LinkedHashSet<String>(roleNames);
+    }
+
+    @Override
+    protected Set<String> getPermissions(final Connection conn, final String username, final Collection<String> roleNames) throws SQLException {
+        if (permissionsPerRole == null) {
+            return super.getPermissions(conn, username, roleNames);
+        }
+
+        // Permissions are cached per role, as they are shared across users
+        final Set<String> permissions = new LinkedHashSet<String>();
+        for (final String roleName : roleNames) {
+            Set<String> rolePermissions = permissionsPerRole.getIfPresent(roleName);
+            if (rolePermissions == null) {
+                rolePermissions = ImmutableSet.<String>copyOf(super.getPermissions(conn, username, ImmutableList.<String>of(roleName)));
+                permissionsPerRole.put(roleName, rolePermissions);
+            }
+            permissions.addAll(rolePermissions);
+        }
+        return permissions;
+    }
+
     private void configureSecurity() {
         setSaltStyle(SaltStyle.COLUMN);
         setCredentialsMatcher(KillbillCredentialsMatcher.getCredentialsMatcher(securityConfig));
@@ -69,4 +187,21 @@ public class KillBillJdbcRealm extends JdbcRealm {
     private void configureDataSource() {
         setDataSource(dataSource);
     }
+
+    private static Cache<String, Set<String>> buildCache(final long maxEntries, final TimeSpan ttl) {
+        if (maxEntries <= 0 || ttl.getMillis() <= 0) {
+            return null;
+        }
+        return CacheBuilder.newBuilder()
+                           .maximumSize(maxEntries)
+                           .expireAfterWrite(ttl.getMillis(), TimeUnit.MILLISECONDS)
+                           .<String, Set<String>>build();
+    }
+
+    private static final class VerifiedAuthenticationInfo extends SimpleAuthenticationInfo {
+
+        private VerifiedAuthenticationInfo(final String username, final String realmName) {
+            super(username, null, realmName);
+        }
+    }
 }
@@ -24,6 +24,7 @@ import javax.inject.Inject;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.tag.AccountTags;
 import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.billing.util.api.TagApiException;
 import org.killbill.billing.util.tag.dao.TagDao;
@@ -70,6 +71,16 @@ public class DefaultTagInternalApi implements TagInternalApi {
         return toTagList(tagDao.getTagsForAccountType(objectType, includedDeleted, internalTenantContext));
     }
 
+    @Override
+    public List<Tag> getTagsForAccount(final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
+        return toTagList(tagDao.getTagsForAccount(includedDeleted, internalTenantContext));
+    }
+
+    @Override
+    public AccountTags getAccountTags(final InternalTenantContext internalTenantContext) {
+        return new AccountTags(getTagsForAccount(false, internalTenantContext));
+    }
+
     @Override
     public void addTag(final UUID objectId, final ObjectType objectType, final UUID tagDefinitionId, final InternalCallContext context)
             throws TagApiException {
@@ -35,14 +35,18 @@ import org.killbill.billing.events.TagInternalEvent;
 import org.killbill.billing.util.api.TagApiException;
 import org.killbill.billing.util.audit.ChangeType;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.config.CacheConfig;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Pagination;
-import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
+import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.KeysetPaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntityDaoBase;
 import org.killbill.billing.util.entity.dao.EntitySqlDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.entity.dao.SearchTokens;
+import org.killbill.billing.util.entity.dao.SearchTokensBackfillService;
 import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.api.user.TagEventBuilder;
@@ -59,13 +63,17 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
 
     private final TagEventBuilder tagEventBuilder;
     private final PersistentBus bus;
+    private final boolean searchTokensEnabled;
 
     @Inject
     public DefaultTagDao(final IDBI dbi, final TagEventBuilder tagEventBuilder, final PersistentBus bus, final Clock clock,
-                         final CacheControllerDispatcher controllerDispatcher, final NonEntityDao nonEntityDao) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controllerDispatcher, nonEntityDao), TagSqlDao.class);
+                         final CacheControllerDispatcher controllerDispatcher, final NonEntityDao nonEntityDao,
+                         final CacheConfig cacheConfig, final SearchTokensBackfillService searchTokensBackfillService) {
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controllerDispatcher, nonEntityDao, cacheConfig.isSearchTokensEnabled()), TagSqlDao.class);
         this.tagEventBuilder = tagEventBuilder;
         this.bus = bus;
+        this.searchTokensEnabled = cacheConfig.isSearchTokensEnabled();
+        searchTokensBackfillService.registerSearchableTable(TableName.TAG, TagModelDao.class);
     }
 
     @Override
@@ -219,16 +227,27 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
 
     @Override
     public Pagination<TagModelDao> searchTags(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
+        final List<String> searchTokens = searchTokensEnabled ? SearchTokens.toSearchTokens(searchKey) : ImmutableList.<String>of();
         return paginationHelper.getPagination(TagSqlDao.class,
-                                              new PaginationIteratorBuilder<TagModelDao, Tag, TagSqlDao>() {
+                                              new KeysetPaginationIteratorBuilder<TagModelDao, Tag, TagSqlDao>() {
                                                   @Override
                                                   public Long getCount(final TagSqlDao tagSqlDao, final InternalTenantContext context) {
-                                                      return tagSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return tagSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchTokens, context);
                                                   }
 
                                                   @Override
                                                   public Iterator<TagModelDao> build(final TagSqlDao tagSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return tagSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return tagSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Long getRecordIdAtOffset(final TagSqlDao tagSqlDao, final Long offset, final InternalTenantContext context) {
+                                                      return tagSqlDao.searchRecordIdAtOffset(searchKey, String.format("%%%s%%", searchKey), searchTokens, offset, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<TagModelDao> buildAfterRecordId(final TagSqlDao tagSqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return tagSqlDao.searchAfterRecordId(searchKey, String.format("%%%s%%", searchKey), searchTokens, lastRecordId, limit, context);
                                                   }
                                               },
                                               offset,
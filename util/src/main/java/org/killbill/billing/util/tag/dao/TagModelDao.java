@@ -16,6 +16,7 @@
 
 package org.killbill.billing.util.tag.dao;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -25,9 +26,10 @@ import org.killbill.billing.util.UUIDs;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableEntityModelDao;
 import org.killbill.billing.util.tag.Tag;
 
-public class TagModelDao extends EntityModelDaoBase implements EntityModelDao<Tag> {
+public class TagModelDao extends EntityModelDaoBase implements EntityModelDao<Tag>, SearchableEntityModelDao {
 
     private UUID tagDefinitionId;
     private UUID objectId;
@@ -152,4 +154,8 @@ public class TagModelDao extends EntityModelDaoBase implements EntityModelDao<Ta
         return TableName.TAG_HISTORY;
     }
 
+    @Override
+    public Iterable<?> getSearchableValues() {
+        return Arrays.<Object>asList(getId(), objectType);
+    }
 }
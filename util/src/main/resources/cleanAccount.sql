@@ -54,6 +54,8 @@ BEGIN
     DELETE FROM invoice_payments WHERE account_record_id = v_account_record_id;
     DELETE FROM invoices WHERE account_record_id = v_account_record_id;
     DELETE FROM invoice_items WHERE account_record_id = v_account_record_id;
+    DELETE FROM invoice_billing_watermarks WHERE account_record_id = v_account_record_id;
+    DELETE FROM invoice_balances WHERE account_record_id = v_account_record_id;
     DELETE FROM payment_attempt_history WHERE account_record_id = v_account_record_id;
     DELETE FROM payment_attempts WHERE account_record_id = v_account_record_id;
     DELETE FROM payment_methods WHERE account_record_id = v_account_record_id;
@@ -103,6 +103,7 @@ CREATE TABLE tags (
 CREATE UNIQUE INDEX tags_id ON tags(id);
 CREATE INDEX tags_by_object ON tags(object_id);
 CREATE INDEX tags_tenant_account_record_id ON tags(tenant_record_id, account_record_id);
+CREATE INDEX tags_tenant_tag_definition_id ON tags(tenant_record_id, tag_definition_id);
 
 DROP TABLE IF EXISTS tag_history;
 CREATE TABLE tag_history (
@@ -148,6 +149,18 @@ CREATE INDEX audit_log_user_name ON audit_log(created_by);
 CREATE INDEX audit_log_tenant_account_record_id ON audit_log(tenant_record_id, account_record_id);
 CREATE INDEX audit_log_via_history ON audit_log(target_record_id, table_name, tenant_record_id);
 
+DROP TABLE IF EXISTS search_tokens;
+CREATE TABLE search_tokens (
+    record_id serial unique,
+    table_name varchar(50) NOT NULL,
+    target_record_id bigint /*! unsigned */ not null,
+    token varchar(64) NOT NULL,
+    tenant_record_id bigint /*! unsigned */ not null default 0,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE INDEX search_tokens_lookup ON search_tokens(tenant_record_id, table_name, token, target_record_id);
+CREATE INDEX search_tokens_target_record_id ON search_tokens(target_record_id, table_name, tenant_record_id);
+
 
 
 DROP TABLE IF EXISTS notifications;
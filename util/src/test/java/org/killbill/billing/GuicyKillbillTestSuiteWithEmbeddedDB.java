@@ -45,12 +45,12 @@ public class GuicyKillbillTestSuiteWithEmbeddedDB extends GuicyKillbillTestSuite
     protected CacheControllerDispatcher controlCacheDispatcher;
 
 
-    @BeforeSuite(groups = "slow")
+    @BeforeSuite(groups = {"slow", "load"})
     public void beforeSuite() throws Exception {
         DBTestingHelper.get().start();
     }
 
-    @BeforeMethod(groups = "slow")
+    @BeforeMethod(groups = {"slow", "load"})
     public void beforeMethod() throws Exception {
         try {
             DBTestingHelper.get().getInstance().cleanupAllTables();
@@ -59,7 +59,7 @@ public class GuicyKillbillTestSuiteWithEmbeddedDB extends GuicyKillbillTestSuite
         controlCacheDispatcher.clearAll();
     }
 
-    @AfterSuite(groups = "slow")
+    @AfterSuite(groups = {"slow", "load"})
     public void afterSuite() throws Exception {
         if (hasFailed()) {
             log.error("**********************************************************************************************");
@@ -94,4 +94,9 @@ public class MockNonEntityDao implements NonEntityDao {
     public Long retrieveHistoryTargetRecordId(final Long recordId, final TableName tableName) {
         return null;
     }
+
+    @Override
+    public Long retrieveLatestAuditRecordIdForAccount(final Iterable<TableName> tableNames, final InternalTenantContext context) {
+        return null;
+    }
 }
@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.UUID;
 
 import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -33,11 +34,18 @@ import org.killbill.billing.util.audit.AccountAuditLogs;
 import org.killbill.billing.util.audit.AccountAuditLogsForObjectType;
 import org.killbill.billing.util.audit.AuditLog;
 import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.dao.NonEntitySqlDao;
 import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 import org.killbill.billing.util.tag.DescriptiveTag;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
 import org.killbill.billing.util.tag.dao.TagModelDao;
+import org.killbill.billing.util.tag.dao.TagSqlDao;
+
+import com.google.common.collect.ImmutableList;
 
 public class TestDefaultAuditDao extends UtilTestSuiteWithEmbeddedDB {
 
@@ -91,6 +99,38 @@ public class TestDefaultAuditDao extends UtilTestSuiteWithEmbeddedDB {
         Assert.assertEquals(secondAuditLogs.get(1).getChangeType(), ChangeType.DELETE);
     }
 
+    @Test(groups = "slow")
+    public void testAuditsForEntitiesCreatedInTheSameTransaction() throws Exception {
+        final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao);
+        final List<TagModelDao> tags = ImmutableList.<TagModelDao>of(new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.ACCOUNT),
+                                                                     new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.ACCOUNT),
+                                                                     new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.ACCOUNT));
+
+        final List<Long> recordIds = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<Long>>() {
+            @Override
+            public List<Long> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final TagSqlDao tagSqlDao = entitySqlDaoWrapperFactory.become(TagSqlDao.class);
+                final ImmutableList.Builder<Long> recordIds = ImmutableList.<Long>builder();
+                for (final TagModelDao tag : tags) {
+                    recordIds.add(tagSqlDao.create(tag, internalCallContext));
+                }
+
+                // Audit logs recorded in the transaction should be visible from it
+                final NonEntitySqlDao nonEntitySqlDao = SqlObjectBuilder.attach(entitySqlDaoWrapperFactory.getHandle(), NonEntitySqlDao.class);
+                final Long historyRecordId = nonEntityDao.retrieveLastHistoryRecordIdFromTransaction(recordIds.build().get(0), TableName.TAG_HISTORY, nonEntitySqlDao);
+                Assert.assertEquals(tagSqlDao.getAuditLogsForTargetRecordId(TableName.TAG_HISTORY.name(), historyRecordId, internalCallContext).size(), 1);
+                return recordIds.build();
+            }
+        });
+
+        for (int i = 0; i < tags.size(); i++) {
+            Assert.assertEquals(nonEntityDao.retrieveRecordIdFromObject(tags.get(i).getId(), ObjectType.TAG, null), recordIds.get(i));
+
+            final List<AuditLog> auditLogs = auditDao.getAuditLogsForId(TableName.TAG, tags.get(i).getId(), AuditLevel.FULL, internalCallContext);
+            verifyAuditLogsForTag(auditLogs, AuditLevel.FULL);
+        }
+    }
+
     private void addTag() throws TagDefinitionApiException, TagApiException {
         // Create a tag definition
         eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
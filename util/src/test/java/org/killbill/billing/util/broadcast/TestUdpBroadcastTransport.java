@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.broadcast;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.broadcast.BroadcastTransport.BroadcastTransportListener;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestUdpBroadcastTransport extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testNotificationReachesPeer() throws Exception {
+        final InetSocketAddress receiverAddress = new InetSocketAddress("127.0.0.1", getFreePort());
+        final InetSocketAddress senderAddress = new InetSocketAddress("127.0.0.1", getFreePort());
+        final UdpBroadcastTransport receiver = new UdpBroadcastTransport(receiverAddress, ImmutableList.<InetSocketAddress>of(senderAddress));
+        final UdpBroadcastTransport sender = new UdpBroadcastTransport(senderAddress, ImmutableList.<InetSocketAddress>of(receiverAddress));
+        receiver.start();
+        sender.start();
+        try {
+            final RecordingListener remoteListener = new RecordingListener();
+            receiver.subscribe("tenant_broadcasts", remoteListener);
+            final RecordingListener localListener = new RecordingListener();
+            sender.subscribe("tenant_broadcasts", localListener);
+
+            sender.publish("tenant_broadcasts");
+
+            Assert.assertEquals(localListener.channels.poll(5, TimeUnit.SECONDS), "tenant_broadcasts");
+            Assert.assertEquals(remoteListener.channels.poll(5, TimeUnit.SECONDS), "tenant_broadcasts");
+
+            // Other channels aren't dispatched to that listener
+            sender.publish("broadcasts");
+            Assert.assertNull(remoteListener.channels.poll(500, TimeUnit.MILLISECONDS));
+
+            // Datagrams from unknown senders are ignored
+            final DatagramSocket unknownSender = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0));
+            try {
+                final byte[] data = "tenant_broadcasts".getBytes(Charset.forName("UTF-8"));
+                unknownSender.send(new DatagramPacket(data, data.length, receiverAddress));
+            } finally {
+                unknownSender.close();
+            }
+            Assert.assertNull(remoteListener.channels.poll(500, TimeUnit.MILLISECONDS));
+
+            receiver.unsubscribe("tenant_broadcasts", remoteListener);
+            sender.publish("tenant_broadcasts");
+            Assert.assertNull(remoteListener.channels.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            sender.stop();
+            receiver.stop();
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testSocketIsReleasedWhenAllServicesStopped() throws Exception {
+        final UdpBroadcastTransport transport = new UdpBroadcastTransport(new InetSocketAddress("127.0.0.1", 0), ImmutableList.<InetSocketAddress>of());
+        Assert.assertEquals(transport.getLocalPort(), -1);
+
+        // Tenant and broadcast services
+        transport.start();
+        transport.start();
+        Assert.assertNotEquals(transport.getLocalPort(), -1);
+
+        transport.stop();
+        Assert.assertNotEquals(transport.getLocalPort(), -1);
+        transport.stop();
+        Assert.assertEquals(transport.getLocalPort(), -1);
+
+        // Local subscribers are still notified
+        final RecordingListener localListener = new RecordingListener();
+        transport.subscribe("broadcasts", localListener);
+        transport.publish("broadcasts");
+        Assert.assertEquals(localListener.channels.poll(5, TimeUnit.SECONDS), "broadcasts");
+    }
+
+    private static int getFreePort() throws Exception {
+        final DatagramSocket socket = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0));
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static final class RecordingListener implements BroadcastTransportListener {
+
+        private final BlockingQueue<String> channels = new LinkedBlockingQueue<String>();
+
+        @Override
+        public void onNewEntries(final String channel) {
+            channels.add(channel);
+        }
+    }
+}
@@ -16,13 +16,23 @@
 
 package org.killbill.billing.util.dao;
 
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import org.killbill.billing.api.TestApiListener.NextEvent;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.tag.TagDefinition;
+import org.killbill.billing.util.entity.DefaultPagination;
+import org.killbill.billing.util.entity.Pagination;
+import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper;
+import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.KeysetPaginationIteratorBuilder;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.PaginationCursor;
 import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
 import org.killbill.billing.util.tag.dao.TagDefinitionSqlDao;
 
@@ -74,4 +84,129 @@ public class TestPagination extends UtilTestSuiteWithEmbeddedDB {
             }
         }
     }
+
+    @Test(groups = "slow", description = "Test Pagination: next pages are resumed after the record_id at the offset")
+    public void testKeysetPagination() throws Exception {
+        final List<TagDefinitionModelDao> tagDefinitions = new LinkedList<TagDefinitionModelDao>();
+        for (int i = 0; i < 10; i++) {
+            eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+            tagDefinitions.add(tagDefinitionDao.create("keyset-" + i, "description-" + i, internalCallContext));
+            assertListenerStatus();
+        }
+
+        final DefaultPaginationSqlDaoHelper paginationHelper = new DefaultPaginationSqlDaoHelper(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao));
+
+        final Pagination<TagDefinitionModelDao> firstPage = getTagDefinitions(paginationHelper, 0L, 3L);
+        Assert.assertEquals(firstPage.getTotalNbRecords(), (Long) 10L);
+        Assert.assertEquals(firstPage.getNextOffset(), (Long) 3L);
+        checkNames(ImmutableList.<TagDefinitionModelDao>copyOf(firstPage), "keyset-0", "keyset-1", "keyset-2");
+
+        // Pages don't depend on the pages previously served (e.g. by another node)
+        final DefaultPaginationSqlDaoHelper otherPaginationHelper = new DefaultPaginationSqlDaoHelper(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao));
+        checkNames(ImmutableList.<TagDefinitionModelDao>copyOf(getTagDefinitions(otherPaginationHelper, 3L, 3L)), "keyset-3", "keyset-4", "keyset-5");
+        checkNames(ImmutableList.<TagDefinitionModelDao>copyOf(getTagDefinitions(otherPaginationHelper, 4L, 2L)), "keyset-4", "keyset-5");
+
+        eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+        tagDefinitionDao.deleteById(tagDefinitions.get(1).getId(), internalCallContext);
+        assertListenerStatus();
+
+        // Same rows and counts as OFFSET paging, on the current data
+        final Pagination<TagDefinitionModelDao> secondPage = getTagDefinitions(paginationHelper, 3L, 3L);
+        Assert.assertEquals(secondPage.getTotalNbRecords(), (Long) 9L);
+        Assert.assertEquals(secondPage.getMaxNbRecords(), (Long) 9L);
+        checkNames(ImmutableList.<TagDefinitionModelDao>copyOf(secondPage), "keyset-4", "keyset-5", "keyset-6");
+
+        final Pagination<TagDefinitionModelDao> lastPage = getTagDefinitions(paginationHelper, 6L, 3L);
+        Assert.assertNull(lastPage.getNextOffset());
+        checkNames(ImmutableList.<TagDefinitionModelDao>copyOf(lastPage), "keyset-7", "keyset-8", "keyset-9");
+
+        // Past the last page
+        checkNames(ImmutableList.<TagDefinitionModelDao>copyOf(getTagDefinitions(paginationHelper, 9L, 3L)));
+        checkNames(ImmutableList.<TagDefinitionModelDao>copyOf(getTagDefinitions(paginationHelper, 20L, 3L)));
+    }
+
+    @Test(groups = "slow", description = "Test Pagination: next pages are resumed after the last record of the previous page, with the counts of the first page")
+    public void testPaginationCursor() throws Exception {
+        final List<TagDefinitionModelDao> tagDefinitions = new LinkedList<TagDefinitionModelDao>();
+        for (int i = 0; i < 8; i++) {
+            eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+            tagDefinitions.add(tagDefinitionDao.create("cursor-" + i, "description-" + i, internalCallContext));
+            assertListenerStatus();
+        }
+
+        final DefaultPaginationSqlDaoHelper paginationHelper = new DefaultPaginationSqlDaoHelper(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao));
+
+        final DefaultPagination<TagDefinitionModelDao> firstPage = (DefaultPagination<TagDefinitionModelDao>) getTagDefinitions(paginationHelper, 0L, 3L);
+        Assert.assertNull(firstPage.getLastRecordId());
+        final List<TagDefinitionModelDao> firstPageResults = ImmutableList.<TagDefinitionModelDao>copyOf(firstPage);
+        checkNames(firstPageResults, "cursor-0", "cursor-1", "cursor-2");
+        Assert.assertEquals(firstPage.getTotalNbRecords(), (Long) 8L);
+        Assert.assertEquals(firstPage.getLastRecordId(), firstPageResults.get(2).getRecordId());
+
+        // A row of the first page goes away: the next page doesn't shift
+        eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+        tagDefinitionDao.deleteById(tagDefinitions.get(0).getId(), internalCallContext);
+        assertListenerStatus();
+
+        PaginationCursor.setPerThreadCursor(3L, firstPage.getLastRecordId(), firstPage.getTotalNbRecords(), firstPage.getMaxNbRecords());
+        final DefaultPagination<TagDefinitionModelDao> secondPage;
+        try {
+            secondPage = (DefaultPagination<TagDefinitionModelDao>) getTagDefinitions(paginationHelper, 3L, 3L);
+        } finally {
+            PaginationCursor.resetPerThreadCursor();
+        }
+        final List<TagDefinitionModelDao> secondPageResults = ImmutableList.<TagDefinitionModelDao>copyOf(secondPage);
+        checkNames(secondPageResults, "cursor-3", "cursor-4", "cursor-5");
+        // The counts of the first page are reused
+        Assert.assertEquals(secondPage.getTotalNbRecords(), (Long) 8L);
+        Assert.assertEquals(secondPage.getMaxNbRecords(), (Long) 8L);
+        Assert.assertEquals(secondPage.getNextOffset(), (Long) 6L);
+        Assert.assertEquals(secondPage.getLastRecordId(), secondPageResults.get(2).getRecordId());
+
+        // The cursor only applies to the offset it was set for
+        PaginationCursor.setPerThreadCursor(6L, secondPage.getLastRecordId(), secondPage.getTotalNbRecords(), secondPage.getMaxNbRecords());
+        final Pagination<TagDefinitionModelDao> otherPage;
+        try {
+            otherPage = getTagDefinitions(paginationHelper, 3L, 3L);
+        } finally {
+            PaginationCursor.resetPerThreadCursor();
+        }
+        checkNames(ImmutableList.<TagDefinitionModelDao>copyOf(otherPage), "cursor-4", "cursor-5", "cursor-6");
+        Assert.assertEquals(otherPage.getTotalNbRecords(), (Long) 7L);
+    }
+
+    private Pagination<TagDefinitionModelDao> getTagDefinitions(final DefaultPaginationSqlDaoHelper paginationHelper, final Long offset, final Long limit) {
+        return paginationHelper.getPagination(TagDefinitionSqlDao.class,
+                                              new KeysetPaginationIteratorBuilder<TagDefinitionModelDao, TagDefinition, TagDefinitionSqlDao>() {
+                                                  @Override
+                                                  public Long getCount(final TagDefinitionSqlDao sqlDao, final InternalTenantContext context) {
+                                                      return sqlDao.getCount(context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<TagDefinitionModelDao> build(final TagDefinitionSqlDao sqlDao, final Long limit, final InternalTenantContext context) {
+                                                      return sqlDao.get(offset, limit, "record_id", context);
+                                                  }
+
+                                                  @Override
+                                                  public Long getRecordIdAtOffset(final TagDefinitionSqlDao sqlDao, final Long offset, final InternalTenantContext context) {
+                                                      return sqlDao.getRecordIdAtOffset(offset, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<TagDefinitionModelDao> buildAfterRecordId(final TagDefinitionSqlDao sqlDao, final Long lastRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return sqlDao.getAfterRecordId(lastRecordId, limit, context);
+                                                  }
+                                              },
+                                              offset,
+                                              limit,
+                                              internalCallContext);
+    }
+
+    private void checkNames(final List<TagDefinitionModelDao> tagDefinitions, final String... names) {
+        Assert.assertEquals(tagDefinitions.size(), names.length);
+        for (int i = 0; i < names.length; i++) {
+            Assert.assertEquals(tagDefinitions.get(i).getName(), names[i]);
+        }
+    }
 }
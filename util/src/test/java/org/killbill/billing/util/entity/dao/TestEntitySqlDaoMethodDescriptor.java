@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.lang.reflect.Method;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.tag.dao.TagSqlDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestEntitySqlDaoMethodDescriptor extends UtilTestSuiteNoDB {
+
+    private static final Logger log = LoggerFactory.getLogger(TestEntitySqlDaoMethodDescriptor.class);
+
+    @Test(groups = "fast")
+    public void testCachableMethod() throws Exception {
+        final Method method = TagSqlDao.class.getMethod("getRecordId", String.class, InternalTenantContext.class);
+        final EntitySqlDaoMethodDescriptor descriptor = EntitySqlDaoMethodDescriptor.get(TagSqlDao.class, method);
+
+        Assert.assertEquals(descriptor.getCacheType(), CacheType.RECORD_ID);
+        Assert.assertEquals(descriptor.getObjectType(), ObjectType.TAG);
+        Assert.assertEquals(descriptor.getCachableKeyPositions(), new int[]{0});
+        Assert.assertEquals(descriptor.getContextPositions(), new int[]{1});
+        Assert.assertNull(descriptor.getAuditedChangeType());
+
+        // Computed only once
+        Assert.assertSame(EntitySqlDaoMethodDescriptor.get(TagSqlDao.class, method), descriptor);
+    }
+
+    @Test(groups = "fast")
+    public void testAuditedMethods() throws Exception {
+        final EntitySqlDaoMethodDescriptor createDescriptor = EntitySqlDaoMethodDescriptor.get(TagSqlDao.class, TagSqlDao.class.getMethod("create", EntityModelDao.class, InternalCallContext.class));
+        Assert.assertEquals(createDescriptor.getAuditedChangeType(), ChangeType.INSERT);
+        Assert.assertEquals(createDescriptor.getContextPositions(), new int[]{1});
+        Assert.assertNull(createDescriptor.getCacheType());
+        Assert.assertNull(createDescriptor.getObjectType());
+
+        final EntitySqlDaoMethodDescriptor deleteDescriptor = EntitySqlDaoMethodDescriptor.get(TagSqlDao.class, TagSqlDao.class.getMethod("markTagAsDeleted", String.class, InternalCallContext.class));
+        Assert.assertEquals(deleteDescriptor.getAuditedChangeType(), ChangeType.DELETE);
+        Assert.assertEquals(deleteDescriptor.getContextPositions(), new int[]{1});
+        Assert.assertEquals(deleteDescriptor.getCachableKeyPositions().length, 0);
+    }
+
+    @Test(groups = "fast")
+    public void testContextPositions() throws Exception {
+        // Arguments which can't hold a context are skipped, the others are kept in order
+        final Method method = ContextSqlDao.class.getMethod("find", String.class, Object.class, InternalTenantContext.class, InternalCallContext.class);
+        final EntitySqlDaoMethodDescriptor descriptor = EntitySqlDaoMethodDescriptor.get(ContextSqlDao.class, method);
+        Assert.assertEquals(descriptor.getContextPositions(), new int[]{1, 2, 3});
+        Assert.assertNull(descriptor.getObjectType());
+
+        final Method noContextMethod = ContextSqlDao.class.getMethod("count", String.class);
+        Assert.assertEquals(EntitySqlDaoMethodDescriptor.get(ContextSqlDao.class, noContextMethod).getContextPositions().length, 0);
+    }
+
+    // Per-call metadata overhead of the proxy, before (recomputed) and after (cached): not part of the default groups, numbers are logged
+    @Test(groups = "load")
+    public void testDescriptorOverhead() throws Exception {
+        final Method method = TagSqlDao.class.getMethod("getRecordId", String.class, InternalTenantContext.class);
+        final int nbCalls = 1000000;
+
+        for (int run = 0; run < 3; run++) {
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < nbCalls; i++) {
+                new EntitySqlDaoMethodDescriptor(TagSqlDao.class, method);
+            }
+            final long recomputedNanos = System.nanoTime() - startNanos;
+
+            startNanos = System.nanoTime();
+            for (int i = 0; i < nbCalls; i++) {
+                EntitySqlDaoMethodDescriptor.get(TagSqlDao.class, method);
+            }
+            final long cachedNanos = System.nanoTime() - startNanos;
+
+            // The first run is the warm-up
+            log.info("Run {}: metadata overhead per call: recomputed={} ns, cached={} ns", run, recomputedNanos / nbCalls, cachedNanos / nbCalls);
+        }
+    }
+
+    private interface ContextSqlDao {
+
+        Object find(String id, Object arg, InternalTenantContext tenantContext, InternalCallContext callContext);
+
+        Long count(String id);
+    }
+}
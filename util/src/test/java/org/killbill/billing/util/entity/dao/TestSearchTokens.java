@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class TestSearchTokens extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testTokenize() throws Exception {
+        Assert.assertEquals(SearchTokens.tokenize(Arrays.<Object>asList("John Doe", null, ObjectType.TAG, "  ", "Jo")),
+                            ImmutableSet.<String>of("joh", "ohn", "hn ", "n d", " do", "doe", "tag"));
+
+        // Case and accents are ignored, as by most LIKE collations
+        Assert.assertEquals(SearchTokens.tokenize(ImmutableList.<Object>of("ÉCOLE")), ImmutableSet.<String>of("eco", "col", "ole"));
+    }
+
+    @Test(groups = "fast")
+    public void testSearchTokensMatchSubstrings() throws Exception {
+        final UUID id = UUID.randomUUID();
+        final Set<String> tokens = SearchTokens.tokenize(Arrays.<Object>asList(id, "John Doe", "john.doe@example.com"));
+
+        // Any substring of a value is found, not only the words starting with the key
+        for (final String searchKey : ImmutableList.<String>of(id.toString().toUpperCase(), id.toString().substring(10, 20), "ohn", "n Do", "DOE@EXAMPLE", "éxample")) {
+            final List<String> searchTokens = SearchTokens.toSearchTokens(searchKey);
+            Assert.assertFalse(searchTokens.isEmpty(), searchKey);
+            Assert.assertTrue(tokens.containsAll(searchTokens), searchKey);
+        }
+        Assert.assertFalse(tokens.containsAll(SearchTokens.toSearchTokens("Jane")));
+    }
+
+    @Test(groups = "fast")
+    public void testSearchTokens() throws Exception {
+        // The LIKE wildcards in the key split it
+        Assert.assertEquals(SearchTokens.toSearchTokens("doe%exa_mple"), ImmutableList.<String>of("doe", "exa", "mpl", "ple"));
+
+        // Too short for the index: the LIKE predicates are evaluated against all the rows
+        Assert.assertEquals(SearchTokens.toSearchTokens("jo"), ImmutableList.<String>of());
+        Assert.assertEquals(SearchTokens.toSearchTokens("%_%"), ImmutableList.<String>of());
+        Assert.assertEquals(SearchTokens.toSearchTokens(null), ImmutableList.<String>of());
+
+        // Long keys only need a few of their trigrams
+        Assert.assertEquals(SearchTokens.toSearchTokens(Strings.repeat("abcdefghij", 10)).size(), SearchTokens.MAX_SEARCH_TOKENS);
+    }
+}
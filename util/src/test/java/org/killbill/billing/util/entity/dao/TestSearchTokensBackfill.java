@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.api.TestApiListener.NextEvent;
+import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.tag.ControlTagType;
+import org.killbill.billing.util.tag.DescriptiveTag;
+import org.killbill.billing.util.tag.Tag;
+import org.killbill.billing.util.tag.dao.TagModelDao;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class TestSearchTokensBackfill extends UtilTestSuiteWithEmbeddedDB {
+
+    @Inject
+    protected SearchTokensBackfillService searchTokensBackfillService;
+
+    @Override
+    protected KillbillConfigSource getConfigSource() {
+        return getConfigSource(null, ImmutableMap.<String, String>of("org.killbill.dao.searchTokens.enabled", "true"));
+    }
+
+    @Test(groups = "slow")
+    public void testSearchTokensBackfill() throws Exception {
+        final UUID objectId = UUID.randomUUID();
+
+        eventsListener.pushExpectedEvent(NextEvent.TAG);
+        final Tag tag = new DescriptiveTag(ControlTagType.AUTO_INVOICING_OFF.getId(), ObjectType.INVOICE_ITEM, objectId, internalCallContext.getCreatedDate());
+        tagDao.create(new TagModelDao(tag), internalCallContext);
+        assertListenerStatus();
+
+        final long nbTokens = SearchTokens.tokenize(ImmutableList.<Object>of(tag.getId(), ObjectType.INVOICE_ITEM)).size();
+        Assert.assertEquals(getNbSearchTokens(), nbTokens);
+        // Substrings are found through the index
+        Assert.assertEquals(tagDao.searchTags("NVOICE_IT", 0L, 10L, internalCallContext).getTotalNbRecords(), (Long) 1L);
+
+        // Simulate a tag created before search_tokens existed
+        idbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.execute("delete from search_tokens");
+                return null;
+            }
+        });
+        Assert.assertEquals(tagDao.searchTags(tag.getId().toString(), 0L, 10L, internalCallContext).getTotalNbRecords(), (Long) 0L);
+
+        // The tokens are rebuilt from the TagModelDao
+        Assert.assertEquals(searchTokensBackfillService.backfill(TableName.TAG), 1);
+        Assert.assertEquals(getNbSearchTokens(), nbTokens);
+        Assert.assertEquals(tagDao.searchTags(tag.getId().toString(), 0L, 10L, internalCallContext).getTotalNbRecords(), (Long) 1L);
+
+        // Already indexed rows are skipped
+        Assert.assertEquals(searchTokensBackfillService.backfill(TableName.TAG), 0);
+        Assert.assertEquals(getNbSearchTokens(), nbTokens);
+
+        // Keys too short for the index still match
+        Assert.assertEquals(tagDao.searchTags("IT", 0L, 10L, internalCallContext).getTotalNbRecords(), (Long) 1L);
+    }
+
+    private long getNbSearchTokens() {
+        return idbi.withHandle(new HandleCallback<Long>() {
+            @Override
+            public Long withHandle(final Handle handle) throws Exception {
+                return ((Number) handle.select("select count(1) as count from search_tokens").get(0).get("count")).longValue();
+            }
+        });
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.api.ColumnInfo;
+import org.killbill.billing.util.export.dao.BinaryExportInputStream.BinaryExportHandler;
+import org.killbill.billing.util.validation.DefaultColumnInfo;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestBinaryExportOutputStream extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testInterleavedTables() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BinaryExportOutputStream out = new BinaryExportOutputStream(bytes);
+
+        final int invoicesId = out.startTable("invoices", ImmutableList.<ColumnInfo>of(new DefaultColumnInfo("invoices", "record_id", 0, 0, false, 0, "bigint"),
+                                                                                       new DefaultColumnInfo("invoices", "created_date", 0, 0, false, 0, "datetime")));
+        final int itemsId = out.startTable("invoice_items", ImmutableList.<ColumnInfo>of(new DefaultColumnInfo("invoice_items", "record_id", 0, 0, false, 0, "bigint"),
+                                                                                         new DefaultColumnInfo("invoice_items", "amount", 0, 0, false, 0, "decimal"),
+                                                                                         new DefaultColumnInfo("invoice_items", "description", 0, 0, true, 0, "varchar")));
+
+        out.write(itemsId, row("record_id", 3L, "amount", new BigDecimal("12.50"), "description", "desc"));
+        out.write(invoicesId, row("record_id", 1L, "created_date", new Timestamp(1000L)));
+        out.write(itemsId, row("record_id", 4L, "amount", BigDecimal.ZERO, "description", null));
+        out.endTable(itemsId);
+        out.close();
+
+        final RecordingHandler handler = new RecordingHandler();
+        final ExportCheckpoint checkpoint = new BinaryExportInputStream(new ByteArrayInputStream(bytes.toByteArray())).read(handler);
+
+        Assert.assertEquals(handler.rows.get("invoice_items").size(), 2);
+        Assert.assertEquals(handler.rows.get("invoice_items").get(0), ImmutableList.<Object>of(3L, new BigDecimal("12.50"), "desc"));
+        Assert.assertEquals(handler.rows.get("invoice_items").get(1), Arrays.<Object>asList(4L, BigDecimal.ZERO, null));
+        Assert.assertEquals(handler.rows.get("invoices").get(0), ImmutableList.<Object>of(1L, new Timestamp(1000L)));
+
+        Assert.assertTrue(checkpoint.isCompleted("invoice_items"));
+        Assert.assertFalse(checkpoint.isCompleted("invoices"));
+        Assert.assertEquals(checkpoint.getLastRecordId("invoices"), (Long) 1L);
+        Assert.assertEquals(ExportCheckpoint.fromString(checkpoint.toString()).toString(), "invoice_items=done;invoices=1");
+    }
+
+    @Test(groups = "fast")
+    public void testTruncatedStream() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BinaryExportOutputStream out = new BinaryExportOutputStream(bytes);
+        out.newTable("tags", ImmutableList.<ColumnInfo>of(new DefaultColumnInfo("tags", "record_id", 0, 0, false, 0, "bigint")));
+        for (long i = 1; i <= 1000; i++) {
+            out.write(row("record_id", i));
+        }
+        out.close();
+
+        final byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() / 2);
+        final RecordingHandler handler = new RecordingHandler();
+        final ExportCheckpoint checkpoint = new BinaryExportInputStream(new ByteArrayInputStream(truncated)).read(handler);
+
+        Assert.assertFalse(checkpoint.isCompleted("tags"));
+        final int nbRowsRead = handler.rows.get("tags").size();
+        Assert.assertTrue(nbRowsRead < 1000);
+        if (nbRowsRead > 0) {
+            Assert.assertEquals(checkpoint.getLastRecordId("tags"), (Long) (long) nbRowsRead);
+        }
+    }
+
+    private static Map<String, Object> row(final Object... keyValues) {
+        final Map<String, Object> row = new HashMap<String, Object>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            row.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return row;
+    }
+
+    private static final class RecordingHandler implements BinaryExportHandler {
+
+        private final Map<String, List<List<Object>>> rows = new HashMap<String, List<List<Object>>>();
+
+        @Override
+        public void onNewTable(final String tableName, final List<String> columnNames) throws IOException {
+            rows.put(tableName, new ArrayList<List<Object>>());
+        }
+
+        @Override
+        public void onRow(final String tableName, final Object[] values) throws IOException {
+            rows.get(tableName).add(Arrays.asList(values));
+        }
+
+        @Override
+        public void onEndOfTable(final String tableName) throws IOException {
+        }
+    }
+}
@@ -16,22 +16,48 @@
 
 package org.killbill.billing.util.export.dao;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
 
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.tweak.HandleCallback;
 import org.testng.Assert;
-import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.Test;
 
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.api.ColumnInfo;
 import org.killbill.billing.util.api.DatabaseExportOutputStream;
+import org.killbill.billing.util.export.dao.BinaryExportInputStream.BinaryExportHandler;
+import org.killbill.billing.util.validation.DefaultColumnInfo;
 import org.killbill.billing.util.validation.dao.DatabaseSchemaDao;
 
+import com.google.common.collect.ImmutableList;
+
 public class TestDatabaseExportDao extends UtilTestSuiteWithEmbeddedDB {
 
+    @Inject
+    protected DatabaseImportDao importDao;
+
+    private final ExecutorService exportExecutor = Executors.newFixedThreadPool(2);
+
+    @AfterClass(groups = "slow")
+    public void tearDownExportExecutor() {
+        exportExecutor.shutdownNow();
+    }
+
     @Test(groups = "slow")
     public void testExportSimpleData() throws Exception {
         // Empty database
@@ -87,6 +113,125 @@ public class TestDatabaseExportDao extends UtilTestSuiteWithEmbeddedDB {
                                      "1,a," + internalCallContext.getAccountRecordId() + "," + internalCallContext.getTenantRecordId() + "\n" +
                                      "-- " + tableNameB + " record_id,b_column,account_record_id,tenant_record_id\n" +
                                      "1,b," + internalCallContext.getAccountRecordId() + "," + internalCallContext.getTenantRecordId() + "\n");
+
+        // Verify the parallel binary export
+        final Map<String, List<Object[]>> rows = new HashMap<String, List<Object[]>>();
+        final ExportCheckpoint checkpoint = getBinaryDump(new ExportCheckpoint(), rows);
+        Assert.assertTrue(checkpoint.isCompleted("accounts"));
+        Assert.assertTrue(checkpoint.isCompleted(tableNameA));
+        Assert.assertTrue(checkpoint.isCompleted(tableNameB));
+        Assert.assertEquals(rows.get("accounts").size(), 1);
+        Assert.assertEquals(rows.get(tableNameA).size(), 1);
+        Assert.assertEquals(rows.get(tableNameA).get(0)[1], "a");
+        Assert.assertEquals(rows.get(tableNameB).size(), 1);
+
+        // Resume an export interrupted after the first row of table B
+        final Map<String, List<Object[]>> resumedRows = new HashMap<String, List<Object[]>>();
+        getBinaryDump(ExportCheckpoint.fromString("accounts=done;" + tableNameA + "=done;" + tableNameB + "=1"), resumedRows);
+        Assert.assertFalse(resumedRows.containsKey("accounts"));
+        Assert.assertFalse(resumedRows.containsKey(tableNameA));
+        Assert.assertEquals(resumedRows.get(tableNameB).size(), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testBinaryExportImportRoundTrip() throws Exception {
+        final String tableName = "test_database_export_dao_c";
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.execute("drop table if exists " + tableName);
+                handle.execute("create table " + tableName + "(record_id serial unique," +
+                               "c_column varchar(10)," +
+                               "account_record_id bigint /*! unsigned */ not null," +
+                               "tenant_record_id bigint /*! unsigned */ not null default 0," +
+                               "primary key(record_id));");
+                for (int i = 0; i < 5; i++) {
+                    handle.execute("insert into " + tableName + " (c_column, account_record_id, tenant_record_id) values (?, ?, ?)",
+                                   "c" + i, internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId());
+                }
+                handle.execute("insert into accounts (record_id, id, email, name, first_name_length, is_notified_for_invoices, created_date, created_by, updated_date, updated_by, tenant_record_id) " +
+                               "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                               internalCallContext.getAccountRecordId(), UUID.randomUUID().toString(), "a@b", "name", 4, false, new Date(12421982000L), "me", new Date(382910622000L), "me", internalCallContext.getTenantRecordId());
+                return null;
+            }
+        });
+
+        try {
+            final String dump = getDump();
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final BinaryExportOutputStream out = new BinaryExportOutputStream(bytes);
+            Assert.assertTrue(dao.exportDataForAccount(out, new ExportCheckpoint(), exportExecutor, internalCallContext).isCompleted(tableName));
+            out.close();
+
+            dbi.withHandle(new HandleCallback<Void>() {
+                @Override
+                public Void withHandle(final Handle handle) throws Exception {
+                    handle.execute("delete from " + tableName);
+                    handle.execute("delete from accounts where record_id = ?", internalCallContext.getAccountRecordId());
+                    return null;
+                }
+            });
+            Assert.assertNotEquals(getDump(), dump);
+
+            // Batches smaller than the table, to go through several commits
+            final ExportCheckpoint checkpoint = importDao.importData(new ByteArrayInputStream(bytes.toByteArray()), 2, internalCallContext);
+            Assert.assertTrue(checkpoint.isCompleted("accounts"));
+            Assert.assertTrue(checkpoint.isCompleted(tableName));
+            Assert.assertEquals(getDump(), dump);
+
+            // The account now belongs to this tenant: it cannot be imported in another one
+            try {
+                importDao.importData(new ByteArrayInputStream(bytes.toByteArray()), 2, new InternalTenantContext(internalCallContext.getTenantRecordId() + 1, null));
+                Assert.fail("Import in another tenant should have been rejected");
+            } catch (final RuntimeException e) {
+                Assert.assertEquals(getDump(), dump);
+            }
+
+            // Only the tables of the account exports can be imported
+            final ByteArrayOutputStream forgedBytes = new ByteArrayOutputStream();
+            final BinaryExportOutputStream forgedOut = new BinaryExportOutputStream(forgedBytes);
+            forgedOut.newTable("tenants", ImmutableList.<ColumnInfo>of(new DefaultColumnInfo("tenants", "record_id", 0, 0, false, 0, "bigint")));
+            forgedOut.close();
+            try {
+                importDao.importData(new ByteArrayInputStream(forgedBytes.toByteArray()), 2, internalCallContext);
+                Assert.fail("Import of a table outside of the account exports should have been rejected");
+            } catch (final RuntimeException e) {
+                Assert.assertEquals(getDump(), dump);
+            }
+        } finally {
+            dbi.withHandle(new HandleCallback<Void>() {
+                @Override
+                public Void withHandle(final Handle handle) throws Exception {
+                    handle.execute("drop table if exists " + tableName);
+                    return null;
+                }
+            });
+        }
+    }
+
+    private ExportCheckpoint getBinaryDump(final ExportCheckpoint resumeFrom, final Map<String, List<Object[]>> rows) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BinaryExportOutputStream out = new BinaryExportOutputStream(bytes);
+        final ExportCheckpoint checkpoint = dao.exportDataForAccount(out, resumeFrom, exportExecutor, internalCallContext);
+        out.close();
+
+        new BinaryExportInputStream(new ByteArrayInputStream(bytes.toByteArray())).read(new BinaryExportHandler() {
+            @Override
+            public void onNewTable(final String tableName, final List<String> columnNames) {
+                rows.put(tableName, new ArrayList<Object[]>());
+            }
+
+            @Override
+            public void onRow(final String tableName, final Object[] values) {
+                rows.get(tableName).add(values);
+            }
+
+            @Override
+            public void onEndOfTable(final String tableName) {
+            }
+        });
+        return checkpoint;
     }
 
     private String getDump() {
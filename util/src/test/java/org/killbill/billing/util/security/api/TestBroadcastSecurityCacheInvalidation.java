@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.security.api;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.broadcast.BroadcastApi;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.broadcast.DefaultBroadcastInternalEvent;
+import org.killbill.bus.api.PersistentBus;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestBroadcastSecurityCacheInvalidation extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testInvalidationIsReplayedFromTheBroadcast() throws Exception {
+        final LocalSecurityCacheInvalidation local = Mockito.mock(LocalSecurityCacheInvalidation.class);
+        final BroadcastApi broadcastApi = Mockito.mock(BroadcastApi.class);
+        final BroadcastSecurityCacheInvalidation invalidation = new BroadcastSecurityCacheInvalidation(local, broadcastApi, Mockito.mock(PersistentBus.class), clock);
+
+        invalidation.invalidatePermissions("accountant", "admin");
+
+        // The local caches don't wait for the broadcast
+        Mockito.verify(local).invalidatePermissions("accountant", "admin");
+
+        final ArgumentCaptor<String> type = ArgumentCaptor.forClass(String.class);
+        final ArgumentCaptor<String> event = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(broadcastApi).broadcast(Mockito.eq(DefaultSecurityService.SECURITY_SERVICE_NAME), type.capture(), event.capture(), Mockito.<DateTime>any(), Mockito.eq("admin"), Mockito.eq(false));
+        Assert.assertEquals(type.getValue(), BroadcastSecurityCacheInvalidation.INVALIDATE_PERMISSIONS);
+
+        // What the other nodes receive from the broadcast service
+        Mockito.reset(local);
+        invalidation.handleBroadcastEvent(new DefaultBroadcastInternalEvent(DefaultSecurityService.SECURITY_SERVICE_NAME, type.getValue(), event.getValue()));
+        Mockito.verify(local).invalidatePermissions("accountant", null);
+
+        // Other services broadcasts are ignored
+        Mockito.reset(local);
+        invalidation.handleBroadcastEvent(new DefaultBroadcastInternalEvent("service", type.getValue(), event.getValue()));
+        Mockito.verifyZeroInteractions(local);
+    }
+
+    @Test(groups = "fast")
+    public void testBroadcastFailureDoesNotFailTheChange() throws Exception {
+        final LocalSecurityCacheInvalidation local = Mockito.mock(LocalSecurityCacheInvalidation.class);
+        final BroadcastApi broadcastApi = Mockito.mock(BroadcastApi.class);
+        Mockito.doThrow(new RuntimeException("broadcasts table unavailable"))
+               .when(broadcastApi).broadcast(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.<DateTime>any(), Mockito.anyString(), Mockito.anyBoolean());
+        final BroadcastSecurityCacheInvalidation invalidation = new BroadcastSecurityCacheInvalidation(local, broadcastApi, Mockito.mock(PersistentBus.class), clock);
+
+        invalidation.invalidateCredentials("pierre", "admin");
+
+        Mockito.verify(local).invalidateCredentials("pierre", "admin");
+    }
+}
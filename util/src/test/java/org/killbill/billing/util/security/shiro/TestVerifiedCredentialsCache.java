@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.util.security.shiro;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestVerifiedCredentialsCache extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testVerifiedCredentials() throws Exception {
+        final VerifiedCredentialsCache cache = new VerifiedCredentialsCache(10, new TimeSpan("1m"));
+
+        Assert.assertFalse(cache.isVerified("toto", "supperCompli43cated".toCharArray()));
+        cache.markVerified("toto", "supperCompli43cated".toCharArray());
+        Assert.assertTrue(cache.isVerified("toto", "supperCompli43cated".toCharArray()));
+        Assert.assertTrue(cache.isVerified("toto", "supperCompli43cated"));
+
+        // Different password or user
+        Assert.assertFalse(cache.isVerified("toto", "suppersimple".toCharArray()));
+        Assert.assertFalse(cache.isVerified("titi", "supperCompli43cated".toCharArray()));
+        Assert.assertFalse(cache.isVerified("toto", null));
+
+        cache.invalidate("toto");
+        Assert.assertFalse(cache.isVerified("toto", "supperCompli43cated".toCharArray()));
+
+        cache.markVerified("toto", "supperCompli43cated".toCharArray());
+        cache.markVerified("titi", "c0ff33".toCharArray());
+        cache.invalidateAll();
+        Assert.assertFalse(cache.isVerified("toto", "supperCompli43cated".toCharArray()));
+        Assert.assertFalse(cache.isVerified("titi", "c0ff33".toCharArray()));
+    }
+
+    @Test(groups = "fast")
+    public void testDisabledOrExpired() throws Exception {
+        final VerifiedCredentialsCache disabledCache = new VerifiedCredentialsCache(10, new TimeSpan("0s"));
+        disabledCache.markVerified("toto", "supperCompli43cated".toCharArray());
+        Assert.assertFalse(disabledCache.isVerified("toto", "supperCompli43cated".toCharArray()));
+
+        final VerifiedCredentialsCache shortLivedCache = new VerifiedCredentialsCache(10, new TimeSpan("100ms"));
+        shortLivedCache.markVerified("toto", "supperCompli43cated".toCharArray());
+        Thread.sleep(200);
+        Assert.assertFalse(shortLivedCache.isVerified("toto", "supperCompli43cated".toCharArray()));
+    }
+}
@@ -24,6 +24,7 @@ import org.apache.shiro.session.Session;
 import org.apache.shiro.session.mgt.SimpleSession;
 import org.joda.time.DateTime;
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.skife.config.TimeSpan;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -68,6 +69,47 @@ public class TestJDBCSessionDao extends UtilTestSuiteWithEmbeddedDB {
         Assert.assertNull(jdbcSessionDao.doReadSession(session.getId()));
     }
 
+    @Test(groups = "slow")
+    public void testWriteBehindLastAccessTime() throws Exception {
+        // Long interval: flushes are triggered manually
+        final JDBCSessionDao jdbcSessionDao = new JDBCSessionDao(dbi, new TimeSpan("1h"), new TimeSpan("1h"));
+        final JDBCSessionSqlDao jdbcSessionSqlDao = dbi.onDemand(JDBCSessionSqlDao.class);
+        final DateTime initialLastAccessTime = DateTime.now().withTimeAtStartOfDay(); // Milliseconds will be truncated
+
+        // The persisted last access time keeps that session alive long after the next flush: the update is deferred
+        final SimpleSession session = createSession();
+        session.setTimeout(24 * 3600 * 1000L);
+        session.setLastAccessTime(initialLastAccessTime.toDate());
+        final Long sessionId = (Long) jdbcSessionDao.doCreate(session);
+
+        session.setLastAccessTime(initialLastAccessTime.plusMinutes(1).toDate());
+        jdbcSessionDao.doUpdate(session);
+        session.setLastAccessTime(initialLastAccessTime.plusMinutes(2).toDate());
+        jdbcSessionDao.doUpdate(session);
+        Assert.assertEquals(jdbcSessionSqlDao.read(sessionId).getLastAccessTime().compareTo(initialLastAccessTime), 0);
+        // ...but visible locally
+        Assert.assertEquals(jdbcSessionDao.doReadSession(sessionId).getLastAccessTime().compareTo(initialLastAccessTime.plusMinutes(2).toDate()), 0);
+
+        jdbcSessionDao.flushLastAccessTimes();
+        Assert.assertEquals(jdbcSessionSqlDao.read(sessionId).getLastAccessTime().compareTo(initialLastAccessTime.plusMinutes(2)), 0);
+
+        // The session could appear expired to the other nodes before the next flush: the update is written right away
+        final SimpleSession shortSession = createSession();
+        shortSession.setLastAccessTime(initialLastAccessTime.toDate());
+        final Long shortSessionId = (Long) jdbcSessionDao.doCreate(shortSession);
+
+        shortSession.setLastAccessTime(initialLastAccessTime.plusMinutes(1).toDate());
+        jdbcSessionDao.doUpdate(shortSession);
+        Assert.assertEquals(jdbcSessionSqlDao.read(shortSessionId).getLastAccessTime().compareTo(initialLastAccessTime.plusMinutes(1)), 0);
+
+        // Pending updates are flushed on shutdown
+        session.setLastAccessTime(initialLastAccessTime.plusMinutes(3).toDate());
+        jdbcSessionDao.doUpdate(session);
+        Assert.assertEquals(jdbcSessionSqlDao.read(sessionId).getLastAccessTime().compareTo(initialLastAccessTime.plusMinutes(2)), 0);
+        jdbcSessionDao.destroy();
+        Assert.assertEquals(jdbcSessionSqlDao.read(sessionId).getLastAccessTime().compareTo(initialLastAccessTime.plusMinutes(3)), 0);
+    }
+
     private SimpleSession createSession() {
         final SimpleSession simpleSession = new SimpleSession();
         simpleSession.setStartTimestamp(new Date(System.currentTimeMillis() - 5000));
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.tag;
+
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.tag.AccountTags;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestAccountTags extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testControlTagLookups() {
+        final DateTime now = clock.getUTCNow();
+        final UUID accountId = UUID.randomUUID();
+        final UUID bundleId = UUID.randomUUID();
+        final UUID writtenOffInvoiceId = UUID.randomUUID();
+        final UUID otherInvoiceId = UUID.randomUUID();
+
+        final AccountTags accountTags = new AccountTags(ImmutableList.<Tag>of(new DefaultControlTag(ControlTagType.AUTO_PAY_OFF, ObjectType.ACCOUNT, accountId, now),
+                                                                              new DefaultControlTag(ControlTagType.AUTO_INVOICING_OFF, ObjectType.BUNDLE, bundleId, now),
+                                                                              new DefaultControlTag(ControlTagType.WRITTEN_OFF, ObjectType.INVOICE, writtenOffInvoiceId, now),
+                                                                              new DescriptiveTag(UUID.randomUUID(), ObjectType.INVOICE, otherInvoiceId, now)));
+
+        Assert.assertTrue(accountTags.hasControlTag(accountId, ObjectType.ACCOUNT, ControlTagType.AUTO_PAY_OFF));
+        Assert.assertFalse(accountTags.isAutoInvoicingOff(accountId, ObjectType.ACCOUNT));
+        Assert.assertTrue(accountTags.isAutoInvoicingOff(bundleId, ObjectType.BUNDLE));
+        Assert.assertTrue(accountTags.isWrittenOff(writtenOffInvoiceId));
+        Assert.assertFalse(accountTags.isWrittenOff(otherInvoiceId));
+        Assert.assertEquals(accountTags.getTags(otherInvoiceId).size(), 1);
+        Assert.assertTrue(accountTags.getTags(UUID.randomUUID()).isEmpty());
+    }
+}